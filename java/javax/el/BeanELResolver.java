@@ -22,6 +22,9 @@ import java.beans.FeatureDescriptor;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
@@ -31,8 +34,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BeanELResolver extends ELResolver {
 
@@ -117,9 +120,10 @@ public class BeanELResolver extends ELResolver {
                     "resolverNotWriteable", base.getClass().getName()));
         }
 
-        Method m = this.property(context, base, property).write(context);
+        BeanProperty beanProperty = this.property(context, base, property);
+        Method m = beanProperty.write(context);
         try {
-            m.invoke(base, value);
+            beanProperty.setValue(m, base, value);
         } catch (InvocationTargetException e) {
             Throwable cause = e.getCause();
             Util.handleThrowable(cause);
@@ -149,19 +153,32 @@ public class BeanELResolver extends ELResolver {
         Method matchingMethod =
                 Util.findMethod(base.getClass(), methodName, paramTypes, params);
 
+        Class<?>[] parameterTypes = matchingMethod.getParameterTypes();
         Object[] parameters = Util.buildParameters(
-                matchingMethod.getParameterTypes(), matchingMethod.isVarArgs(),
-                params);
+                parameterTypes, matchingMethod.isVarArgs(), params);
 
         Object result = null;
-        try {
-            result = matchingMethod.invoke(base, parameters);
-        } catch (IllegalArgumentException | IllegalAccessException e) {
-            throw new ELException(e);
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            Util.handleThrowable(cause);
-            throw new ELException(cause);
+        MethodHandle handle = Util.getMethodHandle(matchingMethod);
+        if (handle == null || !Util.isInvocableWith(parameterTypes, parameters)) {
+            // Reflection reports unsuitable arguments as an
+            // IllegalArgumentException rather than as an exception thrown by
+            // the method
+            try {
+                result = matchingMethod.invoke(base, parameters);
+            } catch (IllegalArgumentException | IllegalAccessException e) {
+                throw new ELException(e);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                Util.handleThrowable(cause);
+                throw new ELException(cause);
+            }
+        } else {
+            try {
+                result = handle.invokeExact(base, parameters);
+            } catch (Throwable t) {
+                Util.handleThrowable(t);
+                throw new ELException(t);
+            }
         }
 
         context.setPropertyResolved(base, method);
@@ -273,6 +290,9 @@ public class BeanELResolver extends ELResolver {
     }
 
     static final class BeanProperty {
+        private static final MethodType WRITE_TYPE =
+                MethodType.methodType(void.class, Object.class, Object.class);
+
         private final Class<?> type;
 
         private final Class<?> owner;
@@ -283,6 +303,17 @@ public class BeanELResolver extends ELResolver {
 
         private Method write;
 
+        /*
+         * Handle for the write method adapted to WRITE_TYPE so it can be
+         * called via invokeExact() without boxing the arguments into an
+         * array. The holder is created once and published via the volatile
+         * field. Its handle is null when running under a SecurityManager or
+         * if no handle could be created, in which case the method is called
+         * via reflection. Reads always use reflection as measurements showed
+         * no gain from a handle for a zero argument getter.
+         */
+        private volatile HandleHolder writeHandle;
+
         public BeanProperty(Class<?> owner, PropertyDescriptor descriptor) {
             this.owner = owner;
             this.descriptor = descriptor;
@@ -331,6 +362,50 @@ public class BeanELResolver extends ELResolver {
             }
             return this.read;
         }
+
+        private void setValue(Method write, Object base, Object value)
+                throws IllegalAccessException, InvocationTargetException {
+            HandleHolder holder = this.writeHandle;
+            if (holder == null) {
+                holder = new HandleHolder(handle(write, WRITE_TYPE),
+                        write.getParameterTypes()[0]);
+                this.writeHandle = holder;
+            }
+            if (holder.handle == null || !Util.isInvocableWith(holder.valueType, value)) {
+                // Reflection reports an unsuitable value as an
+                // IllegalArgumentException rather than as an exception thrown
+                // by the method
+                write.invoke(base, value);
+                return;
+            }
+            try {
+                holder.handle.invokeExact(base, value);
+            } catch (Throwable t) {
+                // Only the method can throw as the value has been checked
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private static MethodHandle handle(Method m, MethodType type) {
+            if (System.getSecurityManager() != null) {
+                return null;
+            }
+            try {
+                return MethodHandles.publicLookup().unreflect(m).asType(type);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class HandleHolder {
+        private final MethodHandle handle;
+        private final Class<?> valueType;
+
+        HandleHolder(MethodHandle handle, Class<?> valueType) {
+            this.handle = handle;
+            this.valueType = valueType;
+        }
     }
 
     private final BeanProperty property(ELContext ctx, Object base,
@@ -347,40 +422,82 @@ public class BeanELResolver extends ELResolver {
         return props.get(ctx, prop);
     }
 
+    /*
+     * Copied from org.apache.tomcat.util.collections.ConcurrentCache since the
+     * EL API can't depend on the JAR where that class resides. When making
+     * changes keep the code in sync.
+     */
     private static final class ConcurrentCache<K,V> {
 
+        private static final int MAX_USAGE = 3;
+
         private final int size;
-        private final Map<K,V> eden;
-        private final Map<K,V> longterm;
+        private final ConcurrentHashMap<K,Entry<V>> map;
+        private final ReentrantLock evictionLock = new ReentrantLock();
+        // Guarded by evictionLock
+        private Iterator<Map.Entry<K,Entry<V>>> clockHand;
 
         public ConcurrentCache(int size) {
             this.size = size;
-            this.eden = new ConcurrentHashMap<>(size);
-            this.longterm = new WeakHashMap<>(size);
+            this.map = new ConcurrentHashMap<>(size);
         }
 
         public V get(K key) {
-            V value = this.eden.get(key);
-            if (value == null) {
-                synchronized (longterm) {
-                    value = this.longterm.get(key);
-                }
-                if (value != null) {
-                    this.eden.put(key, value);
-                }
+            Entry<V> entry = this.map.get(key);
+            if (entry == null) {
+                return null;
             }
-            return value;
+            entry.touch();
+            return entry.value;
         }
 
         public void put(K key, V value) {
-            if (this.eden.size() >= this.size) {
-                synchronized (longterm) {
-                    this.longterm.putAll(this.eden);
+            this.map.put(key, new Entry<>(value));
+            if (this.map.size() > this.size) {
+                evict();
+            }
+        }
+
+        private void evict() {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                while (map.size() > size) {
+                    if (clockHand == null || !clockHand.hasNext()) {
+                        clockHand = map.entrySet().iterator();
+                        if (!clockHand.hasNext()) {
+                            return;
+                        }
+                    }
+                    Map.Entry<K,Entry<V>> candidate = clockHand.next();
+                    Entry<V> entry = candidate.getValue();
+                    if (entry.usage > 0) {
+                        entry.usage--;
+                    } else {
+                        map.remove(candidate.getKey(), entry);
+                    }
                 }
-                this.eden.clear();
+            } finally {
+                evictionLock.unlock();
             }
-            this.eden.put(key, value);
         }
 
+        private static final class Entry<V> {
+
+            private final V value;
+            private volatile int usage;
+
+            Entry(V value) {
+                this.value = value;
+            }
+
+            void touch() {
+                int u = usage;
+                if (u < MAX_USAGE) {
+                    usage = u + 1;
+                }
+            }
+        }
     }
 }
@@ -16,6 +16,9 @@
  */
 package javax.el;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
@@ -25,6 +28,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -43,6 +47,36 @@ class Util {
     private static final Class<?>[] EMPTY_CLASS_ARRAY = new Class<?>[0];
     private static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
 
+    /*
+     * Public methods of a class grouped by name. Class.getMethods() copies
+     * every Method on each call so repeated evaluation of method expressions
+     * against the same class would otherwise repeat that work every time.
+     */
+    private static final ClassValue<ConcurrentMap<String,List<Wrapper>>> METHOD_WRAPPERS =
+            new ClassValue<ConcurrentMap<String,List<Wrapper>>>() {
+        @Override
+        protected ConcurrentMap<String,List<Wrapper>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /*
+     * Invokers for the methods declared by a class. Each invoker has the type
+     * (Object,Object[])Object so it can be called with invokeExact() and the
+     * arguments as built by buildParameters().
+     */
+    private static final ClassValue<ConcurrentMap<Method,MethodHandle>> METHOD_HANDLES =
+            new ClassValue<ConcurrentMap<Method,MethodHandle>>() {
+        @Override
+        protected ConcurrentMap<Method,MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    // Marks a method for which no handle could be created
+    private static final MethodHandle NO_HANDLE =
+            MethodHandles.constant(Object.class, null);
+
     /**
      * Checks whether the supplied Throwable is one that needs to be
      * rethrown and swallows all others.
@@ -212,9 +246,13 @@ class Util {
             paramTypes = getTypesFromValues(paramValues);
         }
 
-        Method[] methods = clazz.getMethods();
-
-        List<Wrapper> wrappers = Wrapper.wrap(methods, methodName);
+        ConcurrentMap<String,List<Wrapper>> classWrappers = METHOD_WRAPPERS.get(clazz);
+        List<Wrapper> wrappers = classWrappers.get(methodName);
+        if (wrappers == null) {
+            wrappers = Collections.unmodifiableList(
+                    Wrapper.wrap(clazz.getMethods(), methodName));
+            classWrappers.put(methodName, wrappers);
+        }
 
         Wrapper result = findWrapper(clazz, wrappers, methodName, paramTypes, paramValues);
 
@@ -620,6 +658,92 @@ class Util {
     }
 
 
+    /**
+     * Obtain a cached {@link MethodHandle} that invokes the given method. The
+     * handle has the type <code>(Object,Object[])Object</code> where the first
+     * argument is the target object (ignored for static methods) and the
+     * second the arguments as returned by {@link #buildParameters}.
+     *
+     * @param m The method for which the handle is required
+     *
+     * @return The handle or <code>null</code> if running under a
+     *         SecurityManager or a handle could not be created, in which case
+     *         the caller should use {@link Method#invoke(Object, Object...)}
+     */
+    static MethodHandle getMethodHandle(Method m) {
+        if (System.getSecurityManager() != null) {
+            // Method handles perform their access checks at creation time
+            // rather than on each call so stay with plain reflection
+            return null;
+        }
+        ConcurrentMap<Method,MethodHandle> handles =
+                METHOD_HANDLES.get(m.getDeclaringClass());
+        MethodHandle handle = handles.get(m);
+        if (handle == null) {
+            handle = createMethodHandle(m);
+            handles.put(m, handle);
+        }
+        if (handle == NO_HANDLE) {
+            return null;
+        }
+        return handle;
+    }
+
+
+    /**
+     * Determine if the given arguments can be passed to a method with the
+     * given parameter types via a {@link MethodHandle} adapted to accept
+     * {@link Object}s. If they can't, the conversions performed by the handle
+     * would throw a {@link ClassCastException} or {@link NullPointerException}
+     * that can't be distinguished from one thrown by the method, so the caller
+     * should use {@link Method#invoke(Object, Object...)} instead which
+     * reports such problems as an {@link IllegalArgumentException}.
+     *
+     * @param parameterTypes The parameter types of the method
+     * @param args           The arguments
+     *
+     * @return {@code true} if the arguments match the parameter types
+     */
+    static boolean isInvocableWith(Class<?>[] parameterTypes, Object[] args) {
+        int argCount = (args == null) ? 0 : args.length;
+        if (parameterTypes.length != argCount) {
+            return false;
+        }
+        for (int i = 0; i < argCount; i++) {
+            if (!isInvocableWith(parameterTypes[i], args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    static boolean isInvocableWith(Class<?> parameterType, Object arg) {
+        if (arg == null) {
+            return !parameterType.isPrimitive();
+        }
+        return isAssignableFrom(arg.getClass(), parameterType);
+    }
+
+
+    private static MethodHandle createMethodHandle(Method m) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(m);
+        } catch (IllegalAccessException e) {
+            return NO_HANDLE;
+        }
+        int paramCount = m.getParameterTypes().length;
+        // Varargs have already been collected into an array by buildParameters
+        handle = handle.asFixedArity();
+        if (Modifier.isStatic(m.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        handle = handle.asType(MethodType.genericMethodType(paramCount + 1));
+        return handle.asSpreader(Object[].class, paramCount);
+    }
+
+
     static Object[] buildParameters(Class<?>[] parameterTypes,
             boolean isVarArgs,Object[] params) {
         ExpressionFactory factory = getExpressionFactory();
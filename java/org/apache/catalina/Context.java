@@ -1920,4 +1920,48 @@ public interface Context extends Container, ContextBind {
      *         otherwise {@code false}
      */
     public boolean getCreateUploadTargets();
+
+
+    /**
+     * Configure whether the JARs packaged with the web application are scanned
+     * for annotations and {@link javax.servlet.annotation.HandlesTypes}
+     * matches in parallel.
+     *
+     * @param parallelAnnotationScanning {@code true} to scan the JARs in
+     *          parallel, otherwise {@code false}
+     */
+    public void setParallelAnnotationScanning(boolean parallelAnnotationScanning);
+
+
+    /**
+     * Are the JARs packaged with the web application scanned for annotations
+     * and {@link javax.servlet.annotation.HandlesTypes} matches in parallel?
+     *
+     * @return {@code true} if the JARs are scanned in parallel, otherwise
+     *         {@code false}
+     */
+    public boolean getParallelAnnotationScanning();
+
+
+    /**
+     * Configure whether the results of scanning JARs for annotations and
+     * {@link javax.servlet.annotation.HandlesTypes} matches are persisted in
+     * the work directory and reused for JARs that have not changed when the
+     * web application is next started.
+     *
+     * @param annotationScanCaching {@code true} to persist and reuse the
+     *          results, otherwise {@code false}
+     */
+    public void setAnnotationScanCaching(boolean annotationScanCaching);
+
+
+    /**
+     * Are the results of scanning JARs for annotations and
+     * {@link javax.servlet.annotation.HandlesTypes} matches persisted in the
+     * work directory and reused for JARs that have not changed?
+     *
+     * @return {@code true} if the results are persisted and reused, otherwise
+     *         {@code false}
+     */
+    public boolean getAnnotationScanCaching();
 }
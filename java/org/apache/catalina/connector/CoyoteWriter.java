@@ -18,13 +18,16 @@ package org.apache.catalina.connector;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+import org.apache.tomcat.PreEncodedWriter;
 
 /**
  * Coyote implementation of the servlet writer.
  *
  * @author Remy Maucherat
  */
-public class CoyoteWriter extends PrintWriter {
+public class CoyoteWriter extends PrintWriter implements PreEncodedWriter {
 
 
     // -------------------------------------------------------------- Constants
@@ -181,6 +184,31 @@ public class CoyoteWriter extends PrintWriter {
     }
 
 
+    // ----------------------------------------------- PreEncodedWriter Methods
+
+
+    @Override
+    public Charset getCharset() throws IOException {
+        return ob.getCharset();
+    }
+
+
+    @Override
+    public void writePreEncoded(byte[] b, int off, int len) {
+
+        if (error) {
+            return;
+        }
+
+        try {
+            ob.writePreEncoded(b, off, len);
+        } catch (IOException e) {
+            error = true;
+        }
+
+    }
+
+
     // ---------------------------------------------------- PrintWriter Methods
 
 
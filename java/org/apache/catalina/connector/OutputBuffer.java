@@ -426,6 +426,31 @@ public class OutputBuffer extends Writer {
     }
 
 
+    /**
+     * Write characters that have already been encoded using the character set
+     * returned by {@link #getCharset()}. Any characters previously written are
+     * converted first so the output remains in order.
+     *
+     * @param b   The encoded characters
+     * @param off The offset of the first byte to write
+     * @param len The number of bytes to write
+     *
+     * @throws IOException An underlying IOException occurred
+     */
+    public void writePreEncoded(byte b[], int off, int len) throws IOException {
+
+        if (suspended) {
+            return;
+        }
+
+        if (cb.remaining() > 0) {
+            flushCharBuffer();
+        }
+        writeBytes(b, off, len);
+
+    }
+
+
     public void writeByte(int b) throws IOException {
 
         if (suspended) {
@@ -572,6 +597,18 @@ public class OutputBuffer extends Writer {
     }
 
 
+    /**
+     * @return The character set used to convert characters written to this
+     *         buffer to bytes
+     *
+     * @throws IOException If the character set is not supported
+     */
+    public Charset getCharset() throws IOException {
+        checkConverter();
+        return conv.getCharset();
+    }
+
+
     public void checkConverter() throws IOException {
         if (conv != null) {
             return;
@@ -652,6 +652,13 @@ public class StandardContext extends ContainerBase
     private boolean unpackWAR = true;
 
 
+    /**
+     * The paths of the applications that must be started before this one when
+     * the Host deploys applications in phases.
+     */
+    private String startAfter = null;
+
+
     /**
      * Ӧóж/META-INF/context.xmlǷҪ$catalinaBase/xmlBaseĿ¼
      * ḲǸStandardHost
@@ -744,6 +751,10 @@ public class StandardContext extends ContainerBase
     private boolean allowMultipleLeadingForwardSlashInPath = false;
 
     private boolean createUploadTargets = false;
+
+    private boolean parallelAnnotationScanning = false;
+
+    private boolean annotationScanCaching = false;
     /* -------------------------WebӦó server.xmlϢԽ------------------------- */
 
 
@@ -833,6 +844,30 @@ public class StandardContext extends ContainerBase
     }
 
 
+    @Override
+    public void setParallelAnnotationScanning(boolean parallelAnnotationScanning) {
+        this.parallelAnnotationScanning = parallelAnnotationScanning;
+    }
+
+
+    @Override
+    public boolean getParallelAnnotationScanning() {
+        return parallelAnnotationScanning;
+    }
+
+
+    @Override
+    public void setAnnotationScanCaching(boolean annotationScanCaching) {
+        this.annotationScanCaching = annotationScanCaching;
+    }
+
+
+    @Override
+    public boolean getAnnotationScanCaching() {
+        return annotationScanCaching;
+    }
+
+
     @Override
     public void incrementInProgressAsyncCount() {
         inProgressAsyncCount.incrementAndGet();
@@ -2392,6 +2427,26 @@ public class StandardContext extends ContainerBase
         this.unpackWAR = unpackWAR;
     }
 
+    /**
+     * @return The comma separated list of the paths of the applications that
+     *         must be started before this one
+     */
+    public String getStartAfter() {
+        return startAfter;
+    }
+
+    /**
+     * Set the applications that must be started before this one. This is
+     * only used when this Context is deployed by a Host that has phased
+     * deployment enabled and then only for applications deployed at the same
+     * time. It is normally set in the context descriptor.
+     *
+     * @param startAfter Comma separated list of context paths
+     */
+    public void setStartAfter(String startAfter) {
+        this.startAfter = startAfter;
+    }
+
     public boolean getCopyXML() {
         return copyXML;
     }
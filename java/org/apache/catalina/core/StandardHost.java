@@ -174,6 +174,15 @@ public class StandardHost extends ContainerBase implements Host {
     private boolean undeployOldVersions = false;
 
 
+    /**
+     * Should applications found by automatic deployment be deployed in
+     * phases (scan, expand, start) using thread pools sized for the machine?
+     * Disabled by default since the pools ignore startStopThreads and the
+     * deployment order would change for existing configurations.
+     */
+    private boolean phasedDeployment = false;
+
+
     /** tomcatмserveltʱ쳣Ƿ Ĭϲ**/
     private boolean failCtxIfServletStartFails = false;
 
@@ -414,6 +423,31 @@ public class StandardHost extends ContainerBase implements Host {
     }
 
 
+    /**
+     * @return <code>true</code> if applications found by automatic deployment
+     *         are deployed in phases (scan, expand, start) rather than as one
+     *         task per application on the start/stop executor
+     */
+    public boolean isPhasedDeployment() {
+        return phasedDeployment;
+    }
+
+
+    /**
+     * Configure whether applications found by automatic deployment are
+     * deployed in phases. When enabled, context descriptors are read and WARs
+     * are expanded using a pool of twice as many threads as there are
+     * processors, then the applications are started using a pool with one
+     * thread per processor in the order required by their
+     * <code>startAfter</code> attributes.
+     *
+     * @param phasedDeployment <code>true</code> to use phased deployment
+     */
+    public void setPhasedDeployment(boolean phasedDeployment) {
+        this.phasedDeployment = phasedDeployment;
+    }
+
+
     public String getWorkDir() {
         return (workDir);
     }
@@ -41,7 +41,27 @@ import java.util.List;
 public class JdbcLeakPrevention {
 
     public List<String> clearJdbcDriverRegistrations() throws SQLException {
+        return clearJdbcDriverRegistrations(false);
+    }
+
+    /**
+     * De-register the JDBC drivers loaded by the web application class loader.
+     *
+     * @param includeParent Should drivers loaded by the parent of the web
+     *                      application class loader also be de-registered?
+     *                      This is only appropriate when the parent is a class
+     *                      loader that is about to be discarded along with
+     *                      the web application class loader.
+     *
+     * @return The names of the drivers that were de-registered
+     *
+     * @throws SQLException If a driver could not be de-registered
+     */
+    public List<String> clearJdbcDriverRegistrations(boolean includeParent)
+            throws SQLException {
         List<String> driverNames = new ArrayList<>();
+        ClassLoader webappClassLoader = this.getClass().getClassLoader();
+        ClassLoader parentClassLoader = includeParent ? webappClassLoader.getParent() : null;
 
         /*
          * DriverManager.getDrivers() has a nasty side-effect of registering
@@ -61,8 +81,9 @@ public class JdbcLeakPrevention {
         while (drivers.hasMoreElements()) {
             Driver driver = drivers.nextElement();
             // Only unload the drivers this web app loaded
-            if (driver.getClass().getClassLoader() !=
-                this.getClass().getClassLoader()) {
+            ClassLoader driverClassLoader = driver.getClass().getClassLoader();
+            if (driverClassLoader != webappClassLoader &&
+                    (parentClassLoader == null || driverClassLoader != parentClassLoader)) {
                 continue;
             }
             // Only report drivers that were originally registered. Skip any
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.buf.HexUtils;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * A class loader for JARs that are byte for byte identical across web
+ * applications. Web applications that contain the same set of shareable JARs
+ * (and have the same parent class loader) use a single instance of this class
+ * loader as the parent of their web application class loaders so the classes
+ * in those JARs are only loaded, defined and compiled once.
+ * <p>
+ * The JARs are copied to a shared directory, named by the SHA-256 hash of
+ * their content, so the class loader does not depend on the files of any one
+ * web application. Instances are reference counted and closed when the last
+ * web application using them is stopped. The copies are also reference counted
+ * and deleted once no open shared class loader uses them.
+ */
+class SharedJarClassLoader extends URLClassLoader {
+
+    private static final Log log = LogFactory.getLog(SharedJarClassLoader.class);
+    private static final StringManager sm = StringManager.getManager(Constants.Package);
+
+    private static final Map<String,SharedJarClassLoader> loaders = new HashMap<>();
+    // Copied JAR -> number of open class loaders using it. Guarded by loaders.
+    private static final Map<File,Integer> jarReferences = new HashMap<>();
+
+    private final String key;
+    private final File[] jars;
+    // Guarded by loaders
+    private int references = 0;
+    private boolean closed = false;
+
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+
+    private SharedJarClassLoader(String key, File[] jars, ClassLoader parent)
+            throws IOException {
+        super(toURLs(jars), parent);
+        this.key = key;
+        this.jars = jars;
+    }
+
+
+    /**
+     * Obtain the shared class loader for the given JARs, creating it if
+     * necessary.
+     *
+     * @param jars      The JARs to be loaded by the shared class loader
+     * @param sharedDir The directory to copy the JARs to
+     * @param parent    The parent class loader for the shared class loader
+     *
+     * @return The class loader or <code>null</code> if a shared class loader
+     *         for the same JARs exists but with a different parent
+     *
+     * @throws IOException If the JARs could not be read or copied
+     */
+    static SharedJarClassLoader acquire(List<File> jars, File sharedDir, ClassLoader parent)
+            throws IOException {
+        // Sorted by hash so the order of the JARs (which depends on the file
+        // system) does not affect which class loader is used
+        TreeMap<String,File> jarsByHash = new TreeMap<>();
+        for (File jar : jars) {
+            jarsByHash.put(hash(jar), jar);
+        }
+        StringBuilder key = new StringBuilder();
+        for (String hash : jarsByHash.keySet()) {
+            key.append(hash).append(';');
+        }
+
+        synchronized (loaders) {
+            SharedJarClassLoader result = loaders.get(key.toString());
+            if (result == null) {
+                if (sharedDir.isDirectory()) {
+                    // Remove any copies left behind by a previous start that
+                    // was not stopped cleanly
+                    deleteUnusedJars(sharedDir.getAbsoluteFile().listFiles());
+                } else if (!sharedDir.mkdirs()) {
+                    throw new IOException(sm.getString("webappLoader.mkdirFailure"));
+                }
+                File[] copies = new File[jarsByHash.size()];
+                int i = 0;
+                for (Map.Entry<String,File> entry : jarsByHash.entrySet()) {
+                    copies[i++] = copy(entry.getValue(), sharedDir, entry.getKey());
+                }
+                result = new SharedJarClassLoader(key.toString(), copies, parent);
+                for (File copy : copies) {
+                    Integer count = jarReferences.get(copy);
+                    jarReferences.put(copy,
+                            Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+                }
+                loaders.put(result.key, result);
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("sharedJarClassLoader.create",
+                            Integer.valueOf(copies.length), sharedDir));
+                }
+            } else if (result.getParent() != parent) {
+                return null;
+            }
+            result.references++;
+            return result;
+        }
+    }
+
+
+    /**
+     * Release a reference to this class loader. Once the last reference has
+     * been released, this class loader will not be returned by
+     * {@link #acquire(List, File, ClassLoader)} and the caller is responsible
+     * for closing it.
+     *
+     * @return <code>true</code> if this was the last reference
+     */
+    boolean release() {
+        synchronized (loaders) {
+            references--;
+            if (references == 0) {
+                loaders.remove(key);
+                return true;
+            }
+            return false;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The copies of the JARs that are no longer used by any open shared class
+     * loader are deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            synchronized (loaders) {
+                if (!closed) {
+                    closed = true;
+                    for (File jar : jars) {
+                        int count = jarReferences.get(jar).intValue() - 1;
+                        if (count == 0) {
+                            jarReferences.remove(jar);
+                        } else {
+                            jarReferences.put(jar, Integer.valueOf(count));
+                        }
+                    }
+                    deleteUnusedJars(jars);
+                }
+            }
+        }
+    }
+
+
+    /*
+     * Must be called with the lock for loaders held.
+     */
+    private static void deleteUnusedJars(File[] files) {
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile() && !jarReferences.containsKey(file) && !file.delete()) {
+                log.warn(sm.getString("sharedJarClassLoader.deleteJarFail", file));
+            }
+        }
+    }
+
+
+    private static URL[] toURLs(File[] files) throws IOException {
+        URL[] result = new URL[files.length];
+        for (int i = 0; i < files.length; i++) {
+            result[i] = files[i].toURI().toURL();
+        }
+        return result;
+    }
+
+
+    private static String hash(File jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported by every JRE
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[8192];
+        try (InputStream is = Files.newInputStream(jar.toPath())) {
+            int read;
+            while ((read = is.read(buf)) > 0) {
+                digest.update(buf, 0, read);
+            }
+        }
+        return HexUtils.toHexString(digest.digest());
+    }
+
+
+    private static File copy(File jar, File sharedDir, String hash) throws IOException {
+        File target = new File(sharedDir, hash + ".jar").getAbsoluteFile();
+        if (target.isFile() && target.length() == jar.length()) {
+            // In use by another shared class loader. The name is the hash of
+            // the content.
+            return target;
+        }
+        File tmp = File.createTempFile(hash, ".tmp", sharedDir);
+        try {
+            Files.copy(jar.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                log.warn(sm.getString("sharedJarClassLoader.deleteFail", tmp));
+            }
+        }
+        return target;
+    }
+}
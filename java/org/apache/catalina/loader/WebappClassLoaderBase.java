@@ -52,6 +52,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -420,6 +421,22 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     private List<URL> localRepositories = new ArrayList<>();
 
 
+    /**
+     * The code bases of the JARs in /WEB-INF/lib that are loaded by a parent
+     * class loader shared with other web applications. Classes and resources
+     * from these JARs are ignored when searching the local repositories.
+     */
+    private volatile Set<String> sharedCodeBases = Collections.emptySet();
+
+
+    /**
+     * Should JDBC drivers loaded by the parent class loader be de-registered
+     * as well as those loaded by this class loader? Set when the parent is a
+     * shared class loader that will be closed once this class loader stops.
+     */
+    private boolean clearReferencesParentJdbc = false;
+
+
     private volatile LifecycleState state = LifecycleState.NEW;
 
 
@@ -654,6 +671,16 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     }
 
 
+    void setSharedCodeBases(Set<String> sharedCodeBases) {
+        this.sharedCodeBases = sharedCodeBases;
+    }
+
+
+    void setClearReferencesParentJdbc(boolean clearReferencesParentJdbc) {
+        this.clearReferencesParentJdbc = clearReferencesParentJdbc;
+    }
+
+
     // ------------------------------------------------------- Reloader Methods
 
     /**
@@ -930,7 +957,7 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
         String path = nameToPath(name);
 
         WebResource resource = resources.getClassLoaderResource(path);
-        if (resource.exists()) {
+        if (resource.exists() && !isShared(resource)) {
             url = resource.getURL();
             trackLastModified(path, resource);
         }
@@ -986,7 +1013,7 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
 
         WebResource[] webResources = resources.getClassLoaderResources(path);
         for (WebResource webResource : webResources) {
-            if (webResource.exists()) {
+            if (webResource.exists() && !isShared(webResource)) {
                 result.add(webResource.getURL());
             }
         }
@@ -1131,7 +1158,7 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
             log.debug("  Searching local repositories");
         String path = nameToPath(name);
         WebResource resource = resources.getClassLoaderResource(path);
-        if (resource.exists()) {
+        if (resource.exists() && !isShared(resource)) {
             stream = resource.getInputStream();
             trackLastModified(path, resource);
         }
@@ -1659,7 +1686,8 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
             Object obj = lpClass.getConstructor().newInstance();
             @SuppressWarnings("unchecked")
             List<String> driverNames = (List<String>) obj.getClass().getMethod(
-                    "clearJdbcDriverRegistrations").invoke(obj);
+                    "clearJdbcDriverRegistrations", boolean.class).invoke(
+                            obj, Boolean.valueOf(clearReferencesParentJdbc));
             for (String name : driverNames) {
                 log.warn(sm.getString("webappClassLoader.clearJdbc",
                         getContextName(), name));
@@ -2264,7 +2292,7 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
         if (entry == null) {
             resource = resources.getClassLoaderResource(path);
 
-            if (!resource.exists()) {
+            if (!resource.exists() || isShared(resource)) {
                 return null;
             }
 
@@ -2393,6 +2421,20 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     }
 
 
+    /*
+     * Is the resource provided by a JAR that is loaded by a shared parent
+     * class loader?
+     */
+    private boolean isShared(WebResource resource) {
+        Set<String> sharedCodeBases = this.sharedCodeBases;
+        if (sharedCodeBases.isEmpty()) {
+            return false;
+        }
+        URL codeBase = resource.getCodeBase();
+        return codeBase != null && sharedCodeBases.contains(codeBase.toString());
+    }
+
+
     private String binaryNameToPath(String binaryName, boolean withLeadingSlash) {
         // 1 for leading '/', 6 for ".class"
         StringBuilder path = new StringBuilder(7 + binaryName.length());
@@ -23,8 +23,14 @@ import java.io.File;
 import java.io.FilePermission;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
 
 import javax.management.ObjectName;
 import javax.servlet.ServletContext;
@@ -35,11 +41,14 @@ import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.Loader;
+import org.apache.catalina.WebResource;
 import org.apache.catalina.util.LifecycleMBeanBase;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.buf.UDecoder;
+import org.apache.tomcat.util.buf.UriUtil;
+import org.apache.tomcat.util.file.Matcher;
 import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.res.StringManager;
 
@@ -130,6 +139,22 @@ public class WebappLoader extends LifecycleMBeanBase
     private String classpath = null;
 
 
+    /**
+     * Comma separated list of file name patterns for the JARs in /WEB-INF/lib
+     * that may be loaded by a class loader shared with other web applications
+     * that contain identical JARs.
+     */
+    private String shareableJars = null;
+    private final Set<String> shareableJarsSet = new HashSet<>();
+
+
+    /**
+     * The shared class loader, if any, that is the parent of the web
+     * application class loader.
+     */
+    private SharedJarClassLoader sharedJarClassLoader = null;
+
+
     // ------------------------------------------------------------- Properties
 
 
@@ -201,6 +226,38 @@ public class WebappLoader extends LifecycleMBeanBase
     }
 
 
+    public String getShareableJars() {
+        return shareableJars;
+    }
+
+
+    /**
+     * Set the JARs in /WEB-INF/lib that may be loaded by a class loader that
+     * is shared with other web applications. Web applications where the JARs
+     * that match are byte for byte identical (and that have the same parent
+     * class loader) share a single class loader for those JARs so the classes
+     * they contain are only loaded once. Shared classes can't see the classes
+     * of any one web application so only JARs that don't depend on the rest of
+     * the web application should be included.
+     *
+     * @param shareableJars Comma separated list of file name patterns, as
+     *                      used by {@link org.apache.tomcat.util.scan.StandardJarScanFilter}
+     */
+    public void setShareableJars(String shareableJars) {
+        this.shareableJars = shareableJars;
+        shareableJarsSet.clear();
+        if (shareableJars != null) {
+            StringTokenizer tokenizer = new StringTokenizer(shareableJars, ",");
+            while (tokenizer.hasMoreElements()) {
+                String token = tokenizer.nextToken().trim();
+                if (token.length() > 0) {
+                    shareableJarsSet.add(token);
+                }
+            }
+        }
+    }
+
+
     @Override
     public boolean getReloadable() {
         return this.reloadable;
@@ -384,10 +441,25 @@ public class WebappLoader extends LifecycleMBeanBase
 
         // Throw away our current class loader if any
         if (classLoader != null) {
+            boolean closeShared = false;
+            if (sharedJarClassLoader != null) {
+                closeShared = sharedJarClassLoader.release();
+                // The last web application to use the shared class loader is
+                // responsible for the drivers it loaded
+                classLoader.setClearReferencesParentJdbc(closeShared);
+            }
             try {
                 classLoader.stop();
             } finally {
                 classLoader.destroy();
+                if (closeShared) {
+                    try {
+                        sharedJarClassLoader.close();
+                    } catch (IOException ioe) {
+                        log.warn(sm.getString("webappLoader.sharedCloseFail"), ioe);
+                    }
+                }
+                sharedJarClassLoader = null;
             }
 
             // classLoader must be non-null to have been registered
@@ -450,15 +522,65 @@ public class WebappLoader extends LifecycleMBeanBase
         if (parentClassLoader == null) {
             parentClassLoader = context.getParentClassLoader();
         }
+
+        ClassLoader parent = parentClassLoader;
+        Set<String> sharedCodeBases = new HashSet<>();
+        if (!shareableJarsSet.isEmpty()) {
+            List<File> sharedJars = new ArrayList<>();
+            for (WebResource jar : context.getResources().listResources("/WEB-INF/lib")) {
+                File file = getShareableJarFile(jar);
+                if (file != null) {
+                    sharedJars.add(file);
+                    sharedCodeBases.add(UriUtil.buildJarSafeUrl(file).toString());
+                }
+            }
+            if (!sharedJars.isEmpty()) {
+                File sharedDir = new File(context.getCatalinaBase(),
+                        "work" + File.separator + "sharedJars");
+                sharedJarClassLoader =
+                        SharedJarClassLoader.acquire(sharedJars, sharedDir, parentClassLoader);
+                if (sharedJarClassLoader == null) {
+                    log.info(sm.getString("webappLoader.sharedParentMismatch", context.getName()));
+                } else {
+                    parent = sharedJarClassLoader;
+                }
+            }
+        }
+
         Class<?>[] argTypes = { ClassLoader.class };
-        Object[] args = { parentClassLoader };
+        Object[] args = { parent };
         Constructor<?> constr = clazz.getConstructor(argTypes);
         classLoader = (WebappClassLoaderBase) constr.newInstance(args);
 
+        if (sharedJarClassLoader != null) {
+            classLoader.setSharedCodeBases(sharedCodeBases);
+        }
+
         return classLoader;
     }
 
 
+    /*
+     * Returns the file for the JAR if it is shareable or null if it is not.
+     * JARs must be files to be shared, i.e. not in a packed WAR.
+     */
+    private File getShareableJarFile(WebResource jar) {
+        if (!jar.isFile() || !jar.getName().endsWith(".jar") ||
+                !Matcher.matchName(shareableJarsSet, jar.getName())) {
+            return null;
+        }
+        URL url = jar.getURL();
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+
     /**
      * Configure associated class loader permissions.
      */
@@ -71,6 +71,7 @@ import org.apache.catalina.connector.RequestFacade;
 import org.apache.catalina.connector.ResponseFacade;
 import org.apache.catalina.util.ServerInfo;
 import org.apache.catalina.util.URLEncoder;
+import org.apache.catalina.webresources.CompressedResourceCache;
 import org.apache.tomcat.util.http.ResponseUtil;
 import org.apache.tomcat.util.res.StringManager;
 import org.apache.tomcat.util.security.Escape;
@@ -202,6 +203,18 @@ public class DefaultServlet extends HttpServlet {
      */
     protected CompressionFormat[] compressionFormats;
 
+    /**
+     * Cache of compressed variants of compressible resources or
+     * <code>null</code> if compressed variants are not cached.
+     */
+    protected transient CompressedResourceCache compressedResourceCache = null;
+
+    /**
+     * The encodings, in preference order, for which compressed variants are
+     * cached.
+     */
+    private List<PrecompressedResource> compressedResourceCacheFormats;
+
     /**
      * The output buffer size to use when serving resources.
      */
@@ -261,7 +274,9 @@ public class DefaultServlet extends HttpServlet {
      */
     @Override
     public void destroy() {
-        // NOOP
+        if (compressedResourceCache != null) {
+            compressedResourceCache.destroy();
+        }
     }
 
 
@@ -325,6 +340,47 @@ public class DefaultServlet extends HttpServlet {
         if (getServletConfig().getInitParameter("showServerInfo") != null) {
             showServerInfo = Boolean.parseBoolean(getServletConfig().getInitParameter("showServerInfo"));
         }
+
+        if (Boolean.parseBoolean(getServletConfig().getInitParameter("compressionCache"))) {
+            initCompressedResourceCache();
+        }
+    }
+
+    private void initCompressedResourceCache() {
+        List<PrecompressedResource> formats = new ArrayList<>();
+        String encodings = getServletConfig().getInitParameter("compressionCacheEncodings");
+        if (encodings == null) {
+            encodings = "gzip";
+        }
+        for (String encoding : encodings.split(",")) {
+            encoding = encoding.trim();
+            if (CompressedResourceCache.isSupportedEncoding(encoding)) {
+                // The resource is not known until the variant is requested
+                formats.add(new PrecompressedResource(null, new CompressionFormat("", encoding)));
+            } else if (encoding.length() > 0) {
+                log(sm.getString("defaultServlet.compressionCache.unsupportedEncoding", encoding));
+            }
+        }
+        if (formats.isEmpty()) {
+            return;
+        }
+        compressedResourceCacheFormats = formats;
+
+        File spillDir = null;
+        Object tempDir = getServletContext().getAttribute(ServletContext.TEMPDIR);
+        if (tempDir instanceof File) {
+            spillDir = new File((File) tempDir, "compressionCache-" +
+                    getServletName().replaceAll("[^A-Za-z0-9_.-]", "_"));
+        }
+        compressedResourceCache = new CompressedResourceCache(resources, spillDir);
+        if (getServletConfig().getInitParameter("compressionCacheMaxSize") != null) {
+            compressedResourceCache.setMaxSize(1024L * Long.parseLong(
+                    getServletConfig().getInitParameter("compressionCacheMaxSize")));
+        }
+        if (getServletConfig().getInitParameter("compressionCacheMimeTypes") != null) {
+            compressedResourceCache.setMimeTypes(
+                    getServletConfig().getInitParameter("compressionCacheMimeTypes"));
+        }
     }
 
     private CompressionFormat[] parseCompressionFormats(String precompressed, String gzip) {
@@ -852,6 +908,25 @@ public class DefaultServlet extends HttpServlet {
             }
         }
 
+        // Serve a cached compressed variant of the file if available
+        if (compressedResourceCache != null && !usingPrecompressedVersion && !included &&
+                !isError && resource.isFile() &&
+                compressedResourceCache.isCompressible(contentType, resource.getContentLength())) {
+            // The response varies whether or not a variant is available yet
+            ResponseUtil.addVaryFieldName(response, "accept-encoding");
+            PrecompressedResource bestFormat =
+                    getBestPrecompressedResource(request, compressedResourceCacheFormats);
+            if (bestFormat != null) {
+                WebResource compressedResource = compressedResourceCache.getResource(
+                        resource, bestFormat.format.encoding);
+                if (compressedResource != null) {
+                    response.addHeader("Content-Encoding", bestFormat.format.encoding);
+                    resource = compressedResource;
+                    usingPrecompressedVersion = true;
+                }
+            }
+        }
+
         ArrayList<Range> ranges = null;
         long contentLength = -1L;
 
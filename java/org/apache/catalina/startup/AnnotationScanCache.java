@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.tomcat.util.bcel.classfile.AnnotationEntry;
+import org.apache.tomcat.util.bcel.classfile.JavaClass;
+import org.apache.tomcat.util.scan.JarScanCache;
+
+/**
+ * An index of the classes found in each JAR scanned for annotations and
+ * {@link javax.servlet.annotation.HandlesTypes} matches that is persisted in
+ * the work directory of the web application so JARs that have not changed
+ * since the previous start do not have to have every class parsed again.
+ * <p>
+ * For each class the index records the information required to check for
+ * {@link javax.servlet.annotation.HandlesTypes} matches (the super class,
+ * interfaces and class level annotation types). This does not depend on the
+ * ServletContainerInitializers present so the check is repeated against the
+ * index at each start. Classes with a Servlet annotation are re-read from the
+ * JAR since the annotation values are required.
+ * <p>
+ * A JAR is considered unchanged if its size and last modified time are the
+ * same as when the index was created.
+ */
+class AnnotationScanCache {
+
+    static final String FILE_NAME = "annotationScanCache.dat";
+
+    private static final int MAGIC = 0x544f4d41;
+    private static final int VERSION = 1;
+
+    private static final JarScanCache.Serializer<JarIndex> SERIALIZER =
+            new JarScanCache.Serializer<JarIndex>() {
+
+        @Override
+        public void write(DataOutputStream out, JarIndex value) throws IOException {
+            value.write(out);
+        }
+
+        @Override
+        public JarIndex read(DataInputStream in) throws IOException {
+            return JarIndex.read(in);
+        }
+    };
+
+    private final JarScanCache<JarIndex> cache;
+
+
+    private AnnotationScanCache(JarScanCache<JarIndex> cache) {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Load the cache from the given directory. If the cache does not exist or
+     * can't be read, an empty cache is returned.
+     *
+     * @param dir The directory, usually the work directory of the web
+     *            application
+     *
+     * @return The cache
+     */
+    static AnnotationScanCache load(File dir) {
+        return new AnnotationScanCache(JarScanCache.load(
+                new File(dir, FILE_NAME), MAGIC, VERSION, SERIALIZER));
+    }
+
+
+    /**
+     * Obtain the index for the given JAR if it has not changed since the index
+     * was created.
+     *
+     * @param key     The key for the JAR, usually its URL
+     * @param jarFile The JAR
+     *
+     * @return The index or <code>null</code> if there is no valid index for
+     *         the JAR
+     */
+    JarIndex get(String key, File jarFile) {
+        return cache.get(key, jarFile);
+    }
+
+
+    /**
+     * Add the index for the given JAR.
+     *
+     * @param key     The key for the JAR, usually its URL
+     * @param jarFile The JAR
+     * @param index   The index
+     */
+    void put(String key, File jarFile, JarIndex index) {
+        cache.put(key, jarFile, index);
+    }
+
+
+    /**
+     * Write the indexes of the JARs scanned since this cache was loaded to
+     * disk. Indexes for JARs that were not scanned, e.g. because they have
+     * been removed from the web application, are discarded. Nothing is written
+     * if nothing has changed.
+     */
+    void save() {
+        cache.save();
+    }
+
+
+    static class JarIndex {
+        private final List<ClassInfo> classes;
+
+        JarIndex(List<ClassInfo> classes) {
+            this.classes = Collections.unmodifiableList(classes);
+        }
+
+        List<ClassInfo> getClasses() {
+            return classes;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(classes.size());
+            for (ClassInfo classInfo : classes) {
+                classInfo.write(out);
+            }
+        }
+
+        private static JarIndex read(DataInputStream in) throws IOException {
+            int classCount = in.readInt();
+            List<ClassInfo> classes = new ArrayList<>(classCount);
+            for (int i = 0; i < classCount; i++) {
+                classes.add(ClassInfo.read(in));
+            }
+            return new JarIndex(classes);
+        }
+    }
+
+
+    static class ClassInfo {
+        private final String entryName;
+        private final String className;
+        private final int accessFlags;
+        private final String superclassName;
+        private final String[] interfaceNames;
+        // In internal form, e.g. Ljavax/servlet/annotation/WebServlet;
+        private final String[] annotationTypes;
+
+        ClassInfo(String entryName, JavaClass javaClass) {
+            this.entryName = entryName;
+            this.className = javaClass.getClassName();
+            this.accessFlags = javaClass.getAccessFlags();
+            this.superclassName = javaClass.getSuperclassName();
+            this.interfaceNames = javaClass.getInterfaceNames();
+            AnnotationEntry[] annotationEntries = javaClass.getAnnotationEntries();
+            if (annotationEntries == null) {
+                annotationTypes = new String[0];
+            } else {
+                annotationTypes = new String[annotationEntries.length];
+                for (int i = 0; i < annotationEntries.length; i++) {
+                    annotationTypes[i] = annotationEntries[i].getAnnotationType();
+                }
+            }
+        }
+
+        private ClassInfo(String entryName, String className, int accessFlags,
+                String superclassName, String[] interfaceNames, String[] annotationTypes) {
+            this.entryName = entryName;
+            this.className = className;
+            this.accessFlags = accessFlags;
+            this.superclassName = superclassName;
+            this.interfaceNames = interfaceNames;
+            this.annotationTypes = annotationTypes;
+        }
+
+        String getEntryName() {
+            return entryName;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        int getAccessFlags() {
+            return accessFlags;
+        }
+
+        String getSuperclassName() {
+            return superclassName;
+        }
+
+        String[] getInterfaceNames() {
+            return interfaceNames;
+        }
+
+        String[] getAnnotationTypes() {
+            return annotationTypes;
+        }
+
+        /**
+         * @return <code>true</code> if the class has one of the annotations
+         *         processed by {@link ContextConfig#processClass}
+         */
+        boolean hasServletAnnotation() {
+            for (String annotationType : annotationTypes) {
+                if ("Ljavax/servlet/annotation/WebServlet;".equals(annotationType) ||
+                        "Ljavax/servlet/annotation/WebFilter;".equals(annotationType) ||
+                        "Ljavax/servlet/annotation/WebListener;".equals(annotationType)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(entryName);
+            out.writeUTF(className);
+            out.writeInt(accessFlags);
+            out.writeUTF(superclassName);
+            writeArray(out, interfaceNames);
+            writeArray(out, annotationTypes);
+        }
+
+        private static ClassInfo read(DataInputStream in) throws IOException {
+            return new ClassInfo(in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(),
+                    readArray(in), readArray(in));
+        }
+
+        private static void writeArray(DataOutputStream out, String[] values)
+                throws IOException {
+            out.writeInt(values.length);
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String[] readArray(DataInputStream in) throws IOException {
+            String[] result = new String[in.readInt()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = in.readUTF();
+            }
+            return result;
+        }
+    }
+}
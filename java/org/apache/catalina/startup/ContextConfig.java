@@ -38,6 +38,8 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletContainerInitializer;
@@ -106,6 +108,7 @@ import org.apache.tomcat.util.digester.Digester;
 import org.apache.tomcat.util.digester.RuleSet;
 import org.apache.tomcat.util.res.StringManager;
 import org.apache.tomcat.util.scan.JarFactory;
+import org.apache.tomcat.util.scan.JarScanCache;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXParseException;
 
@@ -236,6 +239,13 @@ public class ContextConfig implements LifecycleListener {
     protected boolean handlesTypesNonAnnotations = false;
 
 
+    /**
+     * The persistent index of scanned JARs, if enabled for the Context. Only
+     * non-null while the classes are being processed.
+     */
+    private AnnotationScanCache annotationScanCache = null;
+
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -1205,7 +1215,20 @@ public class ContextConfig implements LifecycleListener {
     protected void processClasses(WebXml webXml, Set<WebXml> orderedFragments) {
         // Step 4. Process /WEB-INF/classes for annotations and
         // @HandlesTypes matches
-        Map<String, JavaClassCacheEntry> javaClassCache = new HashMap<>();
+        Map<String, JavaClassCacheEntry> javaClassCache;
+        if (context.getParallelAnnotationScanning()) {
+            javaClassCache = new ConcurrentHashMap<>();
+        } else {
+            javaClassCache = new HashMap<>();
+        }
+
+        if (context.getAnnotationScanCaching()) {
+            File workDir = (File) context.getServletContext().getAttribute(
+                    ServletContext.TEMPDIR);
+            if (workDir != null && workDir.isDirectory()) {
+                annotationScanCache = AnnotationScanCache.load(workDir);
+            }
+        }
 
         if (ok) {
             WebResource[] webResources =
@@ -1233,6 +1256,13 @@ public class ContextConfig implements LifecycleListener {
 
         // Cache, if used, is no longer required so clear it
         javaClassCache.clear();
+
+        if (annotationScanCache != null) {
+            if (ok) {
+                annotationScanCache.save();
+            }
+            annotationScanCache = null;
+        }
     }
 
 
@@ -1906,28 +1936,74 @@ public class ContextConfig implements LifecycleListener {
 
     protected void processAnnotations(Set<WebXml> fragments,
             boolean handlesTypesOnly, Map<String,JavaClassCacheEntry> javaClassCache) {
-        for(WebXml fragment : fragments) {
-            // Only need to scan for @HandlesTypes matches if any of the
-            // following are true:
-            // - it has already been determined only @HandlesTypes is required
-            //   (e.g. main web.xml has metadata-complete="true"
-            // - this fragment is for a container JAR (Servlet 3.1 section 8.1)
-            // - this fragment has metadata-complete="true"
-            boolean htOnly = handlesTypesOnly || !fragment.getWebappJar() ||
-                    fragment.isMetadataComplete();
-
-            WebXml annotations = new WebXml();
-            // no impact on distributable
-            annotations.setDistributable(true);
-            URL url = fragment.getURL();
-            processAnnotationsUrl(url, annotations, htOnly, javaClassCache);
-            Set<WebXml> set = new HashSet<>();
-            set.add(annotations);
-            // Merge annotations into fragment - fragment takes priority
-            fragment.merge(set);
+        if (context.getParallelAnnotationScanning() && fragments.size() > 1) {
+            processAnnotationsInParallel(fragments, handlesTypesOnly, javaClassCache);
+        } else {
+            for (WebXml fragment : fragments) {
+                processAnnotationsFragment(fragment, handlesTypesOnly, javaClassCache);
+            }
         }
     }
 
+
+    /**
+     * Process the given fragments for annotations and {@link HandlesTypes}
+     * matches using one task per fragment, i.e. per JAR. Fragments are
+     * independent of each other so the only shared state is the class cache,
+     * which must be thread-safe, and the SCI results.
+     *
+     * @param fragments        The fragments to process
+     * @param handlesTypesOnly Should only {@link HandlesTypes} matches be
+     *                         processed
+     * @param javaClassCache   The thread-safe class cache
+     */
+    protected void processAnnotationsInParallel(Set<WebXml> fragments,
+            final boolean handlesTypesOnly,
+            final Map<String,JavaClassCacheEntry> javaClassCache) {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                new SafeForkJoinWorkerThreadFactory(), null, false);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(fragments.size());
+            for (final WebXml fragment : fragments) {
+                tasks.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        processAnnotationsFragment(fragment, handlesTypesOnly, javaClassCache);
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                // Re-throws any RuntimeException or Error from the task
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    private void processAnnotationsFragment(WebXml fragment, boolean handlesTypesOnly,
+            Map<String,JavaClassCacheEntry> javaClassCache) {
+        // Only need to scan for @HandlesTypes matches if any of the
+        // following are true:
+        // - it has already been determined only @HandlesTypes is required
+        //   (e.g. main web.xml has metadata-complete="true"
+        // - this fragment is for a container JAR (Servlet 3.1 section 8.1)
+        // - this fragment has metadata-complete="true"
+        boolean htOnly = handlesTypesOnly || !fragment.getWebappJar() ||
+                fragment.isMetadataComplete();
+
+        WebXml annotations = new WebXml();
+        // no impact on distributable
+        annotations.setDistributable(true);
+        URL url = fragment.getURL();
+        processAnnotationsUrl(url, annotations, htOnly, javaClassCache);
+        Set<WebXml> set = new HashSet<>();
+        set.add(annotations);
+        // Merge annotations into fragment - fragment takes priority
+        fragment.merge(set);
+    }
+
     protected void processAnnotationsWebResource(WebResource webResource,
             WebXml fragment, boolean handlesTypesOnly,
             Map<String,JavaClassCacheEntry> javaClassCache) {
@@ -1986,6 +2062,22 @@ public class ContextConfig implements LifecycleListener {
     protected void processAnnotationsJar(URL url, WebXml fragment,
             boolean handlesTypesOnly, Map<String,JavaClassCacheEntry> javaClassCache) {
 
+        File jarFile = null;
+        List<AnnotationScanCache.ClassInfo> classes = null;
+        if (annotationScanCache != null) {
+            jarFile = JarScanCache.getJarFile(url);
+            if (jarFile != null) {
+                AnnotationScanCache.JarIndex index =
+                        annotationScanCache.get(url.toString(), jarFile);
+                if (index != null) {
+                    processAnnotationsJarIndex(url, index, fragment, handlesTypesOnly,
+                            javaClassCache);
+                    return;
+                }
+                classes = new ArrayList<>();
+            }
+        }
+
         try (Jar jar = JarFactory.newInstance(url)) {
             if (log.isDebugEnabled()) {
                 log.debug(sm.getString(
@@ -1997,7 +2089,14 @@ public class ContextConfig implements LifecycleListener {
             while (entryName != null) {
                 if (entryName.endsWith(".class")) {
                     try (InputStream is = jar.getEntryInputStream()) {
-                        processAnnotationsStream(is, fragment, handlesTypesOnly, javaClassCache);
+                        if (classes == null) {
+                            processAnnotationsStream(is, fragment, handlesTypesOnly, javaClassCache);
+                        } else {
+                            ClassParser parser = new ClassParser(is);
+                            JavaClass clazz = parser.parse();
+                            processJavaClass(clazz, fragment, handlesTypesOnly, javaClassCache);
+                            classes.add(new AnnotationScanCache.ClassInfo(entryName, clazz));
+                        }
                     } catch (IOException e) {
                         log.error(sm.getString("contextConfig.inputStreamJar",
                                 entryName, url),e);
@@ -2009,6 +2108,60 @@ public class ContextConfig implements LifecycleListener {
                 jar.nextEntry();
                 entryName = jar.getEntryName();
             }
+            if (classes != null) {
+                annotationScanCache.put(url.toString(), jarFile,
+                        new AnnotationScanCache.JarIndex(classes));
+            }
+        } catch (IOException e) {
+            log.error(sm.getString("contextConfig.jarFile", url), e);
+        }
+    }
+
+
+    /*
+     * Repeat the @HandlesTypes checks using the index created when the JAR was
+     * previously scanned. Only the classes with Servlet annotations need to be
+     * read from the JAR.
+     */
+    private void processAnnotationsJarIndex(URL url, AnnotationScanCache.JarIndex index,
+            WebXml fragment, boolean handlesTypesOnly,
+            Map<String,JavaClassCacheEntry> javaClassCache) {
+
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("contextConfig.processAnnotationsJarIndex.debug", url));
+        }
+
+        List<String> annotatedEntries = new ArrayList<>();
+        for (AnnotationScanCache.ClassInfo classInfo : index.getClasses()) {
+            checkHandlesTypes(classInfo.getClassName(), classInfo.getAccessFlags(),
+                    classInfo.getSuperclassName(), classInfo.getInterfaceNames(),
+                    classInfo.getAnnotationTypes(), javaClassCache);
+            if (!handlesTypesOnly && classInfo.hasServletAnnotation()) {
+                annotatedEntries.add(classInfo.getEntryName());
+            }
+        }
+
+        if (annotatedEntries.isEmpty()) {
+            return;
+        }
+
+        try (Jar jar = JarFactory.newInstance(url)) {
+            for (String entryName : annotatedEntries) {
+                try (InputStream is = jar.getInputStream(entryName)) {
+                    if (is == null) {
+                        // Should not happen since the JAR is unchanged
+                        continue;
+                    }
+                    ClassParser parser = new ClassParser(is);
+                    processClass(fragment, parser.parse());
+                } catch (IOException e) {
+                    log.error(sm.getString("contextConfig.inputStreamJar",
+                            entryName, url),e);
+                } catch (ClassFormatException e) {
+                    log.error(sm.getString("contextConfig.inputStreamJar",
+                            entryName, url),e);
+                }
+            }
         } catch (IOException e) {
             log.error(sm.getString("contextConfig.jarFile", url), e);
         }
@@ -2051,6 +2204,13 @@ public class ContextConfig implements LifecycleListener {
 
         ClassParser parser = new ClassParser(is);
         JavaClass clazz = parser.parse();
+        processJavaClass(clazz, fragment, handlesTypesOnly, javaClassCache);
+    }
+
+
+    private void processJavaClass(JavaClass clazz, WebXml fragment,
+            boolean handlesTypesOnly, Map<String,JavaClassCacheEntry> javaClassCache) {
+
         checkHandlesTypes(clazz, javaClassCache);
 
         if (handlesTypesOnly) {
@@ -2096,18 +2256,42 @@ public class ContextConfig implements LifecycleListener {
             return;
         }
 
-        if ((javaClass.getAccessFlags() &
-                org.apache.tomcat.util.bcel.Const.ACC_ANNOTATION) != 0) {
-            // Skip annotations.
+        AnnotationEntry[] annotationEntries = javaClass.getAnnotationEntries();
+        String[] annotationTypes;
+        if (annotationEntries == null) {
+            annotationTypes = null;
+        } else {
+            annotationTypes = new String[annotationEntries.length];
+            for (int i = 0; i < annotationEntries.length; i++) {
+                annotationTypes[i] = annotationEntries[i].getAnnotationType();
+            }
+        }
+
+        checkHandlesTypes(javaClass.getClassName(), javaClass.getAccessFlags(),
+                javaClass.getSuperclassName(), javaClass.getInterfaceNames(),
+                annotationTypes, javaClassCache);
+    }
+
+
+    private void checkHandlesTypes(String className, int accessFlags,
+            String superclassName, String[] interfaceNames, String[] annotationTypes,
+            Map<String,JavaClassCacheEntry> javaClassCache) {
+
+        // Skip this if we can
+        if (typeInitializerMap.size() == 0) {
             return;
         }
 
-        String className = javaClass.getClassName();
+        if ((accessFlags & org.apache.tomcat.util.bcel.Const.ACC_ANNOTATION) != 0) {
+            // Skip annotations.
+            return;
+        }
 
         Class<?> clazz = null;
         if (handlesTypesNonAnnotations) {
             // This *might* be match for a HandlesType.
-            populateJavaClassCache(className, javaClass, javaClassCache);
+            populateJavaClassCache(className, superclassName, interfaceNames,
+                    javaClassCache);
             JavaClassCacheEntry entry = javaClassCache.get(className);
             if (entry.getSciSet() == null) {
                 try {
@@ -2127,27 +2311,28 @@ public class ContextConfig implements LifecycleListener {
                     return;
                 }
 
-                for (ServletContainerInitializer sci : entry.getSciSet()) {
-                    Set<Class<?>> classes = initializerClassMap.get(sci);
-                    if (classes == null) {
-                        classes = new HashSet<>();
-                        initializerClassMap.put(sci, classes);
+                // Classes may be processed in parallel
+                synchronized (initializerClassMap) {
+                    for (ServletContainerInitializer sci : entry.getSciSet()) {
+                        Set<Class<?>> classes = initializerClassMap.get(sci);
+                        if (classes == null) {
+                            classes = new HashSet<>();
+                            initializerClassMap.put(sci, classes);
+                        }
+                        classes.add(clazz);
                     }
-                    classes.add(clazz);
                 }
             }
         }
 
         if (handlesTypesAnnotations) {
-            AnnotationEntry[] annotationEntries = javaClass.getAnnotationEntries();
-            if (annotationEntries != null) {
+            if (annotationTypes != null) {
                 for (Map.Entry<Class<?>, Set<ServletContainerInitializer>> entry :
                         typeInitializerMap.entrySet()) {
                     if (entry.getKey().isAnnotation()) {
                         String entryClassName = entry.getKey().getName();
-                        for (AnnotationEntry annotationEntry : annotationEntries) {
-                            if (entryClassName.equals(
-                                    getClassName(annotationEntry.getAnnotationType()))) {
+                        for (String annotationType : annotationTypes) {
+                            if (entryClassName.equals(getClassName(annotationType))) {
                                 if (clazz == null) {
                                     clazz = Introspection.loadClass(
                                             context, className);
@@ -2157,8 +2342,10 @@ public class ContextConfig implements LifecycleListener {
                                         return;
                                     }
                                 }
-                                for (ServletContainerInitializer sci : entry.getValue()) {
-                                    initializerClassMap.get(sci).add(clazz);
+                                synchronized (initializerClassMap) {
+                                    for (ServletContainerInitializer sci : entry.getValue()) {
+                                        initializerClassMap.get(sci).add(clazz);
+                                    }
                                 }
                                 break;
                             }
@@ -2194,18 +2381,19 @@ public class ContextConfig implements LifecycleListener {
         return msg.toString();
     }
 
-    private void populateJavaClassCache(String className, JavaClass javaClass,
-            Map<String,JavaClassCacheEntry> javaClassCache) {
+    private void populateJavaClassCache(String className, String superclassName,
+            String[] interfaceNames, Map<String,JavaClassCacheEntry> javaClassCache) {
         if (javaClassCache.containsKey(className)) {
             return;
         }
 
         // Add this class to the cache
-        javaClassCache.put(className, new JavaClassCacheEntry(javaClass));
+        javaClassCache.put(className,
+                new JavaClassCacheEntry(superclassName, interfaceNames));
 
-        populateJavaClassCache(javaClass.getSuperclassName(), javaClassCache);
+        populateJavaClassCache(superclassName, javaClassCache);
 
-        for (String interfaceName : javaClass.getInterfaceNames()) {
+        for (String interfaceName : interfaceNames) {
             populateJavaClassCache(interfaceName, javaClassCache);
         }
     }
@@ -2220,7 +2408,8 @@ public class ContextConfig implements LifecycleListener {
                 }
                 ClassParser parser = new ClassParser(is);
                 JavaClass clazz = parser.parse();
-                populateJavaClassCache(clazz.getClassName(), clazz, javaClassCache);
+                populateJavaClassCache(clazz.getClassName(), clazz.getSuperclassName(),
+                        clazz.getInterfaceNames(), javaClassCache);
             } catch (ClassFormatException e) {
                 log.debug(sm.getString("contextConfig.invalidSciHandlesTypes",
                         className), e);
@@ -2622,11 +2811,16 @@ public class ContextConfig implements LifecycleListener {
 
         public final String[] interfaceNames;
 
-        private Set<ServletContainerInitializer> sciSet = null;
+        // Volatile since classes may be processed in parallel
+        private volatile Set<ServletContainerInitializer> sciSet = null;
 
         public JavaClassCacheEntry(JavaClass javaClass) {
-            superclassName = javaClass.getSuperclassName();
-            interfaceNames = javaClass.getInterfaceNames();
+            this(javaClass.getSuperclassName(), javaClass.getInterfaceNames());
+        }
+
+        public JavaClassCacheEntry(String superclassName, String[] interfaceNames) {
+            this.superclassName = superclassName;
+            this.interfaceNames = interfaceNames;
         }
 
         public String getSuperclassName() {
@@ -0,0 +1,523 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.util.ContextName;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
+import org.apache.tomcat.util.buf.UriUtil;
+import org.apache.tomcat.util.digester.Digester;
+import org.apache.tomcat.util.digester.Rule;
+import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Deploys the applications found by a single pass of
+ * {@link HostConfig#deployApps()} in three phases rather than as one task per
+ * application:
+ * <ol>
+ * <li><b>scan</b> - the context descriptor (if any) of each application is
+ *     read to obtain the start order dependencies (<code>startAfter</code>)
+ *     and whether a WAR will be unpacked (<code>unpackWAR</code>)</li>
+ * <li><b>expand</b> - WARs that will be unpacked are expanded</li>
+ * <li><b>start</b> - each application is deployed and started once all the
+ *     applications it depends on have been started</li>
+ * </ol>
+ * The scan and expand phases are I/O bound and use a pool of twice as many
+ * threads as there are processors. The start phase is CPU bound and uses a
+ * pool with one thread per processor. The pools only exist while the
+ * applications are being deployed.
+ */
+class DeploymentScheduler {
+
+    private static final Log log = LogFactory.getLog(DeploymentScheduler.class);
+    private static final StringManager sm = StringManager.getManager(Constants.Package);
+
+    static final String PHASE_SCAN = "scan";
+    static final String PHASE_EXPAND = "expand";
+    static final String PHASE_START = "start";
+
+    private final HostConfig config;
+    private final Host host;
+    private final List<Deployment> deployments = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+
+
+    DeploymentScheduler(HostConfig config, Host host) {
+        this.config = config;
+        this.host = host;
+    }
+
+
+    void addDescriptor(ContextName cn, File contextXml) {
+        add(new Deployment(Deployment.DESCRIPTOR, cn, contextXml));
+    }
+
+
+    void addWar(ContextName cn, File war) {
+        add(new Deployment(Deployment.WAR, cn, war));
+    }
+
+
+    void addDirectory(ContextName cn, File dir) {
+        add(new Deployment(Deployment.DIRECTORY, cn, dir));
+    }
+
+
+    private void add(Deployment deployment) {
+        deployments.add(deployment);
+        names.add(deployment.cn.getName());
+    }
+
+
+    /**
+     * @param name The context name
+     *
+     * @return <code>true</code> if an application with the given name will be
+     *         deployed by this scheduler
+     */
+    boolean isScheduled(String name) {
+        return names.contains(name);
+    }
+
+
+    /**
+     * Deploy the applications added to this scheduler.
+     *
+     * @return The timeline of the deployment or <code>null</code> if there
+     *         was nothing to deploy
+     */
+    String[] deploy() {
+        if (deployments.isEmpty()) {
+            return null;
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        ExecutorService ioExecutor = createExecutor("-deployIO-",
+                Math.min(deployments.size(), 2 * processors));
+        ExecutorService cpuExecutor = createExecutor("-deployStart-",
+                Math.min(deployments.size(), processors));
+
+        long[] phaseTimes = new long[4];
+        phaseTimes[0] = System.nanoTime();
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Deployment deployment : deployments) {
+                results.add(ioExecutor.submit(new ScanTask(deployment)));
+            }
+            waitFor(results);
+            phaseTimes[1] = System.nanoTime();
+
+            results.clear();
+            for (Deployment deployment : deployments) {
+                if (deployment.unpack) {
+                    results.add(ioExecutor.submit(new ExpandTask(deployment)));
+                }
+            }
+            waitFor(results);
+            phaseTimes[2] = System.nanoTime();
+
+            resolveDependencies();
+            start(cpuExecutor);
+            phaseTimes[3] = System.nanoTime();
+        } finally {
+            ioExecutor.shutdownNow();
+            cpuExecutor.shutdownNow();
+        }
+
+        return createTimeline(phaseTimes);
+    }
+
+
+    private ExecutorService createExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new TaskThreadFactory(host.getName() + name, true, Thread.NORM_PRIORITY));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    private void waitFor(List<Future<?>> results) {
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (Exception e) {
+                log.error(sm.getString("hostConfig.phased.error"), e);
+            }
+        }
+    }
+
+
+    private void resolveDependencies() {
+        for (Deployment deployment : deployments) {
+            if (deployment.startAfter == null) {
+                continue;
+            }
+            for (String path : deployment.startAfter.split(",")) {
+                path = path.trim();
+                if (path.length() == 0) {
+                    continue;
+                }
+                // Accept base names (e.g. ROOT or foo#bar) as well as paths
+                String dependencyPath = new ContextName(path, false).getPath();
+                boolean found = false;
+                for (Deployment dependency : deployments) {
+                    if (dependency != deployment &&
+                            dependency.cn.getPath().equals(dependencyPath)) {
+                        deployment.dependencies.add(dependency);
+                        dependency.dependents.add(deployment);
+                        found = true;
+                    }
+                }
+                if (!found && !isDeployed(dependencyPath)) {
+                    log.warn(sm.getString("hostConfig.phased.unknownDependency",
+                            deployment.cn.getDisplayName(), path));
+                }
+            }
+        }
+    }
+
+
+    private boolean isDeployed(String path) {
+        for (Container child : host.findChildren()) {
+            if (child instanceof Context && path.equals(((Context) child).getPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /*
+     * Start the applications in dependency order. An application is submitted
+     * once all of the applications it depends on have finished starting,
+     * whether or not they started successfully.
+     */
+    private void start(ExecutorService executor) {
+        CompletionService<Deployment> completionService =
+                new ExecutorCompletionService<>(executor);
+        List<Deployment> waiting = new ArrayList<>(deployments);
+        Map<Future<Deployment>,Deployment> running = new HashMap<>();
+        while (!waiting.isEmpty() || !running.isEmpty()) {
+            List<Deployment> ready = new ArrayList<>();
+            for (Deployment deployment : waiting) {
+                if (deployment.dependencies.isEmpty()) {
+                    ready.add(deployment);
+                }
+            }
+            if (ready.isEmpty() && running.isEmpty()) {
+                // Everything left is part of, or depends on, a cycle
+                StringBuilder cycle = new StringBuilder();
+                for (Deployment deployment : waiting) {
+                    if (cycle.length() > 0) {
+                        cycle.append(", ");
+                    }
+                    cycle.append(deployment.cn.getDisplayName());
+                    deployment.dependencies.clear();
+                }
+                log.error(sm.getString("hostConfig.phased.cycle", cycle));
+                continue;
+            }
+            for (Deployment deployment : ready) {
+                waiting.remove(deployment);
+                running.put(completionService.submit(new StartTask(deployment), deployment),
+                        deployment);
+            }
+
+            Future<Deployment> result;
+            try {
+                result = completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error(sm.getString("hostConfig.phased.error"), e);
+                return;
+            }
+            Deployment started = running.remove(result);
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error(sm.getString("hostConfig.phased.error"), e);
+                return;
+            } catch (Exception e) {
+                // StartTask handles its own errors so this should not happen
+                log.error(sm.getString("hostConfig.phased.error"), e);
+            }
+            // Release the dependents even if the start failed so they are not
+            // left waiting for an application that will never start
+            for (Deployment dependent : started.dependents) {
+                dependent.dependencies.remove(started);
+            }
+        }
+    }
+
+
+    private String[] createTimeline(long[] phaseTimes) {
+        List<String> timeline = new ArrayList<>();
+        String[] phases = new String[] { PHASE_SCAN, PHASE_EXPAND, PHASE_START };
+        for (int i = 0; i < phases.length; i++) {
+            timeline.add("phase=" + phases[i] +
+                    ",offset=" + toMillis(phaseTimes[i] - phaseTimes[0]) +
+                    ",duration=" + toMillis(phaseTimes[i + 1] - phaseTimes[i]));
+        }
+        for (Deployment deployment : deployments) {
+            timeline.add("context=" + deployment.cn.getDisplayName() +
+                    ",scan=" + toMillis(deployment.scanTime) +
+                    ",expand=" + toMillis(deployment.expandTime) +
+                    ",start=" + toMillis(deployment.startTime));
+        }
+        return timeline.toArray(new String[0]);
+    }
+
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+
+    /*
+     * Reads the attributes of the Context element of a context descriptor
+     * without creating the Context.
+     */
+    private static Attributes readContextAttributes(InputStream is) throws Exception {
+        Digester digester = new Digester();
+        digester.setValidating(false);
+        ContextAttributesRule rule = new ContextAttributesRule();
+        digester.addRule("Context", rule);
+        digester.parse(is);
+        return rule.attributes;
+    }
+
+
+    private static class ContextAttributesRule extends Rule {
+
+        private Attributes attributes;
+
+        @Override
+        public void begin(String namespace, String name, Attributes attributes)
+                throws Exception {
+            this.attributes = new AttributesImpl(attributes);
+        }
+    }
+
+
+    private static class Deployment {
+
+        private static final int DESCRIPTOR = 1;
+        private static final int WAR = 2;
+        private static final int DIRECTORY = 3;
+
+        private final int type;
+        private final ContextName cn;
+        private final File file;
+
+        // Written by the scan phase
+        private volatile String startAfter;
+        private volatile boolean unpack;
+
+        // Only accessed by the thread running the start phase
+        private final Set<Deployment> dependencies = new HashSet<>();
+        private final Set<Deployment> dependents = new HashSet<>();
+
+        private volatile long scanTime;
+        private volatile long expandTime;
+        private volatile long startTime;
+
+        Deployment(int type, ContextName cn, File file) {
+            this.type = type;
+            this.cn = cn;
+            this.file = file;
+        }
+    }
+
+
+    private class ScanTask implements Runnable {
+
+        private final Deployment deployment;
+
+        ScanTask(Deployment deployment) {
+            this.deployment = deployment;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                Attributes attributes = null;
+                switch (deployment.type) {
+                    case Deployment.DESCRIPTOR:
+                        attributes = read(deployment.file);
+                        break;
+                    case Deployment.WAR:
+                        attributes = scanWar();
+                        break;
+                    case Deployment.DIRECTORY:
+                        if (config.isDeployThisXML(deployment.file, deployment.cn)) {
+                            attributes = read(new File(deployment.file,
+                                    Constants.ApplicationContextXml));
+                        }
+                        break;
+                }
+                if (attributes != null) {
+                    deployment.startAfter = attributes.getValue("startAfter");
+                    if (deployment.type == Deployment.WAR &&
+                            "false".equalsIgnoreCase(attributes.getValue("unpackWAR"))) {
+                        deployment.unpack = false;
+                    }
+                }
+            } catch (Exception e) {
+                // The descriptor will be parsed again when the application is
+                // deployed and any error will be reported then
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("hostConfig.phased.scanFail",
+                            deployment.cn.getDisplayName()), e);
+                }
+                deployment.unpack = false;
+            } finally {
+                deployment.scanTime = System.nanoTime() - start;
+            }
+        }
+
+        /*
+         * Mirrors the choice of descriptor in HostConfig.deployWAR()
+         */
+        private Attributes scanWar() throws Exception {
+            File war = deployment.file;
+            deployment.unpack = config.isUnpackWARs();
+            boolean deployThisXML = config.isDeployThisXML(war, deployment.cn);
+
+            File xml = new File(host.getAppBaseFile(),
+                    deployment.cn.getBaseName() + "/" + Constants.ApplicationContextXml);
+            File warTracker = new File(host.getAppBaseFile(),
+                    deployment.cn.getBaseName() + Constants.WarTracker);
+            if (deployThisXML && config.isUnpackWARs() && xml.exists() &&
+                    (!warTracker.exists() || warTracker.lastModified() == war.lastModified())) {
+                return read(xml);
+            }
+
+            try (JarFile jar = new JarFile(war)) {
+                JarEntry entry = jar.getJarEntry(Constants.ApplicationContextXml);
+                if (entry == null) {
+                    return null;
+                }
+                if (!deployThisXML) {
+                    // Deployment will be blocked
+                    deployment.unpack = false;
+                    return null;
+                }
+                try (InputStream is = jar.getInputStream(entry)) {
+                    return readContextAttributes(is);
+                }
+            }
+        }
+
+        private Attributes read(File xml) throws Exception {
+            if (!xml.isFile()) {
+                return null;
+            }
+            try (InputStream is = new FileInputStream(xml)) {
+                return readContextAttributes(is);
+            }
+        }
+    }
+
+
+    private class ExpandTask implements Runnable {
+
+        private final Deployment deployment;
+
+        ExpandTask(Deployment deployment) {
+            this.deployment = deployment;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                ExpandWar.expand(host, UriUtil.buildJarUrl(deployment.file),
+                        deployment.cn.getBaseName());
+            } catch (Exception e) {
+                // The expansion will be attempted again when the application
+                // is started
+                log.error(sm.getString("hostConfig.expand.error",
+                        deployment.file.getAbsolutePath()), e);
+            } finally {
+                deployment.expandTime = System.nanoTime() - start;
+            }
+        }
+    }
+
+
+    private class StartTask implements Runnable {
+
+        private final Deployment deployment;
+
+        StartTask(Deployment deployment) {
+            this.deployment = deployment;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                switch (deployment.type) {
+                    case Deployment.DESCRIPTOR:
+                        config.deployDescriptor(deployment.cn, deployment.file);
+                        break;
+                    case Deployment.WAR:
+                        config.deployWAR(deployment.cn, deployment.file);
+                        break;
+                    case Deployment.DIRECTORY:
+                        config.deployDirectory(deployment.cn, deployment.file);
+                        break;
+                }
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                log.error(sm.getString("hostConfig.phased.startFail",
+                        deployment.cn.getDisplayName()), t);
+            } finally {
+                deployment.startTime = System.nanoTime() - start;
+            }
+        }
+    }
+}
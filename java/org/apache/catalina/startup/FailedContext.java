@@ -826,4 +826,14 @@ public class FailedContext extends LifecycleMBeanBase implements Context {
     public void setCreateUploadTargets(boolean createUploadTargets) { /* NO-OP */}
     @Override
     public boolean getCreateUploadTargets() { return false; }
+
+    @Override
+    public void setParallelAnnotationScanning(boolean parallelAnnotationScanning) { /* NO-OP */ }
+    @Override
+    public boolean getParallelAnnotationScanning() { return false; }
+
+    @Override
+    public void setAnnotationScanCaching(boolean annotationScanCaching) { /* NO-OP */ }
+    @Override
+    public boolean getAnnotationScanCaching() { return false; }
 }
\ No newline at end of file
@@ -154,6 +154,26 @@ public class HostConfig implements LifecycleListener {
      */
     protected final Set<String> invalidWars = new HashSet<>();
 
+
+    /**
+     * Should applications be deployed in phases (scan, expand, start) using
+     * thread pools sized for the machine?
+     */
+    protected boolean phasedDeployment = false;
+
+
+    /**
+     * The scheduler for the current pass of {@link #deployApps()}, if phased
+     * deployment is enabled.
+     */
+    private DeploymentScheduler scheduler = null;
+
+
+    /**
+     * The timeline of the most recent phased deployment.
+     */
+    private volatile String[] deploymentTimeline = new String[0];
+
     // ------------------------------------------------------------- Properties
 
 
@@ -184,7 +204,7 @@ public class HostConfig implements LifecycleListener {
     }
 
 
-    private boolean isDeployThisXML(File docBase, ContextName cn) {
+    boolean isDeployThisXML(File docBase, ContextName cn) {
         boolean deployThisXML = isDeployXML();
         if (Globals.IS_SECURITY_ENABLED && !deployThisXML) {
             // When running under a SecurityManager, deployXML may be overridden
@@ -231,6 +251,27 @@ public class HostConfig implements LifecycleListener {
     }
 
 
+    public boolean isPhasedDeployment() {
+        return phasedDeployment;
+    }
+
+
+    public void setPhasedDeployment(boolean phasedDeployment) {
+        this.phasedDeployment = phasedDeployment;
+    }
+
+
+    /**
+     * @return The timeline of the most recent phased deployment of more than
+     *         one application: the offset and duration of each phase followed
+     *         by the time spent on each application in each phase, in
+     *         milliseconds
+     */
+    public String[] getDeploymentTimeline() {
+        return deploymentTimeline;
+    }
+
+
     // --------------------------------------------------------- Public Methods
 
 
@@ -247,6 +288,7 @@ public class HostConfig implements LifecycleListener {
                 setCopyXML(((StandardHost) host).isCopyXML());
                 setDeployXML(((StandardHost) host).isDeployXML());
                 setUnpackWARs(((StandardHost) host).isUnpackWARs());
+                setPhasedDeployment(((StandardHost) host).isPhasedDeployment());
                 setContextClass(((StandardHost) host).getContextClass());
             }
         } catch (ClassCastException e) {
@@ -382,12 +424,26 @@ public class HostConfig implements LifecycleListener {
         /** ȡhostdeployIgnoreʽappBaseļ**/
         String[] filteredAppPaths = filterAppPaths(appBase.list());
 
-        /** xmlBaseĿ¼xmlļʾ̬ԴļΪcontext,ӣ𣩵host**/
-        deployDescriptors(configBase, configBase.list());
-        /** appBaseĿ¼webӦówarΪcontext,ӣ𣩵host **/
-        deployWARs(appBase, filteredAppPaths);
-        /** appBaseĿ¼̬ԴļΪcontext,ӣ𣩵host **/
-        deployDirectories(appBase, filteredAppPaths);
+        if (phasedDeployment) {
+            scheduler = new DeploymentScheduler(this, host);
+        }
+        try {
+            /** xmlBaseĿ¼xmlļʾ̬ԴļΪcontext,ӣ𣩵host**/
+            deployDescriptors(configBase, configBase.list());
+            /** appBaseĿ¼webӦówarΪcontext,ӣ𣩵host **/
+            deployWARs(appBase, filteredAppPaths);
+            /** appBaseĿ¼̬ԴļΪcontext,ӣ𣩵host **/
+            deployDirectories(appBase, filteredAppPaths);
+
+            if (scheduler != null) {
+                String[] timeline = scheduler.deploy();
+                if (timeline != null) {
+                    deploymentTimeline = timeline;
+                }
+            }
+        } finally {
+            scheduler = null;
+        }
     }
 
     /**
@@ -416,8 +472,12 @@ public class HostConfig implements LifecycleListener {
                 if (isServiced(cn.getName()) || deploymentExists(cn.getName()))
                     continue;
 
-                results.add(
-                        es.submit(new DeployDescriptor(this, cn, contextXml)));
+                if (scheduler != null) {
+                    scheduler.addDescriptor(cn, contextXml);
+                } else {
+                    results.add(
+                            es.submit(new DeployDescriptor(this, cn, contextXml)));
+                }
             }
         }
 
@@ -533,7 +593,11 @@ public class HostConfig implements LifecycleListener {
 
                 /** $appBaseĿ¼ӦówarļÿӦówarļ
                  * װΪһDeployWar̳߳ش **/
-                results.add(es.submit(new DeployWar(this, cn, war)));
+                if (scheduler != null) {
+                    scheduler.addWar(cn, war);
+                } else {
+                    results.add(es.submit(new DeployWar(this, cn, war)));
+                }
             }
         }
         /** ȴ̳߳첽 **/
@@ -585,7 +649,11 @@ public class HostConfig implements LifecycleListener {
 
                 /** ̬Դļ
                  * װΪһDeployDirectory̳߳ش **/
-                results.add(es.submit(new DeployDirectory(this, cn, dir)));
+                if (scheduler != null) {
+                    scheduler.addDirectory(cn, dir);
+                } else {
+                    results.add(es.submit(new DeployDirectory(this, cn, dir)));
+                }
             }
         }
          /** ȴ̳߳첽 **/
@@ -1136,7 +1204,8 @@ public class HostConfig implements LifecycleListener {
      */
     protected boolean deploymentExists(String contextName) {
         return (deployed.containsKey(contextName) ||
-                (host.findChild(contextName) != null));
+                (host.findChild(contextName) != null) ||
+                (scheduler != null && scheduler.isScheduled(contextName)));
     }
 
 
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.catalina.WebResourceSet;
+
+/**
+ * An index of the entries in the JARs that provide class loader resources
+ * (i.e. the JARs in /WEB-INF/lib) that maps each entry name to the first JAR
+ * that contains it. This allows a class loader resource lookup to go straight
+ * to the JAR that provides the resource and, more importantly, a lookup for a
+ * resource that does not exist to skip all of the JARs rather than checking
+ * each of them in turn.
+ * <p>
+ * Only JARs mounted at /WEB-INF/classes with no internal path that are not
+ * multi-release JARs are indexed. The index does not change once created so
+ * it must be discarded if the class resources change.
+ */
+class ClassResourceIndex {
+
+    private static final String CLASSES_MOUNT = "/WEB-INF/classes";
+
+    // Entry name -> first indexed resource set that contains it
+    private final Map<String,WebResourceSet> entries = new HashMap<>();
+    // Indexed resource set -> position in the class resources
+    private final Map<WebResourceSet,Integer> indexedSets = new IdentityHashMap<>();
+
+
+    ClassResourceIndex(List<WebResourceSet> classResources) {
+        int position = 0;
+        for (WebResourceSet webResourceSet : classResources) {
+            if (webResourceSet instanceof JarResourceSet) {
+                JarResourceSet jarResourceSet = (JarResourceSet) webResourceSet;
+                if (CLASSES_MOUNT.equals(jarResourceSet.getWebAppMount()) &&
+                        jarResourceSet.getInternalPath().length() == 0 &&
+                        !jarResourceSet.isMultiRelease() &&
+                        addEntries(jarResourceSet)) {
+                    indexedSets.put(jarResourceSet, Integer.valueOf(position));
+                }
+            }
+            position++;
+        }
+    }
+
+
+    private boolean addEntries(JarResourceSet jarResourceSet) {
+        JarFile jarFile = null;
+        try {
+            jarFile = jarResourceSet.openJarFile();
+            Enumeration<JarEntry> jarEntries = jarFile.entries();
+            while (jarEntries.hasMoreElements()) {
+                String name = jarEntries.nextElement().getName();
+                if (!entries.containsKey(name)) {
+                    entries.put(name, jarResourceSet);
+                }
+            }
+            return true;
+        } catch (IOException ioe) {
+            // The JAR will be checked for every lookup as if it was not indexed
+            return false;
+        } finally {
+            if (jarFile != null) {
+                jarResourceSet.closeJarFile();
+            }
+        }
+    }
+
+
+    /**
+     * Is the given resource set covered by this index?
+     *
+     * @param webResourceSet The resource set
+     *
+     * @return <code>true</code> if the resource set only needs to be checked
+     *         for a path if {@link #getFirstSet(String)} returns it
+     */
+    boolean isIndexed(WebResourceSet webResourceSet) {
+        return indexedSets.containsKey(webResourceSet);
+    }
+
+
+    /**
+     * Is the given path one that can be resolved using this index?
+     *
+     * @param path The web application path
+     *
+     * @return <code>true</code> if the path is below /WEB-INF/classes/
+     */
+    static boolean isIndexable(String path) {
+        return path.length() > CLASSES_MOUNT.length() + 1 &&
+                path.startsWith(CLASSES_MOUNT) &&
+                path.charAt(CLASSES_MOUNT.length()) == '/';
+    }
+
+
+    /**
+     * Obtain the first indexed resource set that contains the given path.
+     * Consistent with {@link AbstractArchiveResourceSet#getResource(String)},
+     * a path that does not end in '/' also matches a directory entry.
+     *
+     * @param path The web application path, which must be indexable
+     *
+     * @return The resource set or <code>null</code> if none of the indexed
+     *         resource sets contain the path
+     */
+    WebResourceSet getFirstSet(String path) {
+        String name = path.substring(CLASSES_MOUNT.length() + 1);
+        WebResourceSet result = entries.get(name);
+        if (name.charAt(name.length() - 1) != '/') {
+            WebResourceSet dir = entries.get(name + '/');
+            if (dir != null && (result == null ||
+                    indexedSets.get(dir).intValue() < indexedSets.get(result).intValue())) {
+                result = dir;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of JARs covered by this index
+     */
+    int getJarCount() {
+        return indexedSets.size();
+    }
+
+
+    /**
+     * @return The number of distinct entry names in this index
+     */
+    int getEntryCount() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,694 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.Manifest;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
+
+/**
+ * A cache of compressed variants of frequently requested, compressible
+ * resources so that they do not have to be compressed for every request.
+ * <p>
+ * A variant is keyed by the content encoding and the path of the resource and
+ * is only used while the ETag of the resource is unchanged. The first few
+ * requests for a resource are served uncompressed (or compressed on the fly by
+ * the connector) while the variant is created by a background thread. Small
+ * variants are held in memory. Variants of resources larger than
+ * <code>objectMaxSize</code> are written to a directory so they can be
+ * served with sendfile.
+ */
+public class CompressedResourceCache {
+
+    private static final Log log = LogFactory.getLog(CompressedResourceCache.class);
+    protected static final StringManager sm = StringManager.getManager(CompressedResourceCache.class);
+
+    private static final long TARGET_FREE_PERCENT = 10;
+
+    // objectMaxSize must be < maxSize/20
+    private static final int OBJECT_MAX_SIZE_FACTOR = 20;
+
+    // Limits the memory used to track resources that are not (yet) hot
+    private static final int MAX_TRACKED_RESOURCES = 10000;
+
+    private static final int MAX_QUEUED_TASKS = 1000;
+
+    private static final String DEFAULT_MIME_TYPES = "text/html,text/xml,text/plain," +
+            "text/css,text/javascript,application/javascript,application/json," +
+            "application/xml,image/svg+xml";
+
+    private final WebResourceRoot root;
+    private final File spillDir;
+
+    private long maxSize = 10 * 1024 * 1024;
+    private long maxDiskSize = 10 * maxSize;
+    private int objectMaxSize = (int) maxSize / OBJECT_MAX_SIZE_FACTOR;
+    private int minSize = 2048;
+    private int hitThreshold = 2;
+    private Set<String> mimeTypes = parseMimeTypes(DEFAULT_MIME_TYPES);
+
+    private final AtomicLong size = new AtomicLong(0);
+    private final AtomicLong diskSize = new AtomicLong(0);
+    private final AtomicLong lookupCount = new AtomicLong(0);
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong compressCount = new AtomicLong(0);
+    private final AtomicLong spillFileCount = new AtomicLong(0);
+
+    private final ConcurrentMap<String,Variant> variants = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String,AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+    private final Object executorLock = new Object();
+    private ThreadPoolExecutor executor = null;
+    private boolean destroyed = false;
+
+
+    /**
+     * Create a cache for the given resources.
+     *
+     * @param root     The resources of the web application
+     * @param spillDir The directory for variants that are too large to hold
+     *                 in memory or <code>null</code> if such variants should
+     *                 not be cached
+     */
+    public CompressedResourceCache(WebResourceRoot root, File spillDir) {
+        this.root = root;
+        this.spillDir = spillDir;
+    }
+
+
+    /**
+     * Is the given encoding one that this cache can create variants for?
+     *
+     * @param encoding The content encoding
+     *
+     * @return <code>true</code> for <code>gzip</code> and
+     *         <code>deflate</code>
+     */
+    public static boolean isSupportedEncoding(String encoding) {
+        return "gzip".equals(encoding) || "deflate".equals(encoding);
+    }
+
+
+    /**
+     * Should compressed variants of a resource with the given content type
+     * and length be cached?
+     *
+     * @param contentType   The content type of the resource
+     * @param contentLength The length of the resource in bytes
+     *
+     * @return <code>true</code> if the resource is compressible
+     */
+    public boolean isCompressible(String contentType, long contentLength) {
+        if (contentType == null || contentLength < minSize ||
+                contentLength > Integer.MAX_VALUE) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        if (semicolon > -1) {
+            contentType = contentType.substring(0, semicolon);
+        }
+        return mimeTypes.contains(contentType.trim().toLowerCase(Locale.ENGLISH));
+    }
+
+
+    /**
+     * Obtain the compressed variant of a resource. If there is no current
+     * variant and the resource has now been requested often enough, a variant
+     * is created in the background.
+     *
+     * @param resource The resource, which must be a compressible file
+     * @param encoding The content encoding, which must be supported
+     *
+     * @return The compressed variant or <code>null</code> if the resource
+     *         should be served uncompressed for this request
+     */
+    public WebResource getResource(WebResource resource, String encoding) {
+        lookupCount.incrementAndGet();
+
+        String key = encoding + ':' + resource.getWebappPath();
+        String eTag = resource.getETag();
+
+        Variant variant = variants.get(key);
+        if (variant != null) {
+            CompressedResource result = variant.resource;
+            if (!variant.eTag.equals(eTag)) {
+                // The resource has changed
+                removeVariant(key, variant);
+            } else if (result != null && result.file != null && !result.file.isFile()) {
+                // The file has been removed from the spill directory
+                removeVariant(key, variant);
+            } else {
+                variant.lastAccess = System.currentTimeMillis();
+                if (result != null) {
+                    hitCount.incrementAndGet();
+                }
+                // Null if the variant is still being created or the resource
+                // does not compress well
+                return result;
+            }
+        }
+
+        AtomicInteger count = requestCounts.get(key);
+        if (count == null) {
+            if (requestCounts.size() > MAX_TRACKED_RESOURCES) {
+                requestCounts.clear();
+            }
+            count = new AtomicInteger();
+            AtomicInteger existing = requestCounts.putIfAbsent(key, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        if (count.incrementAndGet() >= hitThreshold) {
+            requestCounts.remove(key);
+            Variant pending = new Variant(eTag);
+            if (variants.putIfAbsent(key, pending) == null) {
+                submit(new CompressTask(key, pending, resource, encoding));
+            }
+        }
+        return null;
+    }
+
+
+    private void submit(CompressTask task) {
+        synchronized (executorLock) {
+            if (destroyed) {
+                variants.remove(task.key, task.variant);
+                return;
+            }
+            if (executor == null) {
+                executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<Runnable>(MAX_QUEUED_TASKS),
+                        new TaskThreadFactory(root.getContext().getName() +
+                                "-compressedResourceCache-", true, Thread.NORM_PRIORITY));
+                executor.allowCoreThreadTimeOut(true);
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Too busy. The variant will be created on a later request.
+                variants.remove(task.key, task.variant);
+            }
+        }
+    }
+
+
+    private void removeVariant(String key, Variant variant) {
+        if (variants.remove(key, variant)) {
+            release(variant);
+        }
+    }
+
+
+    private void release(Variant variant) {
+        CompressedResource resource = variant.resource;
+        if (resource == null || !variant.released.compareAndSet(false, true)) {
+            return;
+        }
+        if (resource.file == null) {
+            size.addAndGet(-resource.length);
+        } else {
+            diskSize.addAndGet(-resource.length);
+            if (!resource.file.delete() && resource.file.exists()) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("compressedResourceCache.deleteFail", resource.file));
+                }
+                resource.file.deleteOnExit();
+            }
+        }
+    }
+
+
+    private void evict(boolean disk) {
+        long limit = disk ? maxDiskSize : maxSize;
+        AtomicLong current = disk ? diskSize : size;
+        if (current.get() <= limit) {
+            return;
+        }
+        long targetSize = limit * (100 - TARGET_FREE_PERCENT) / 100;
+
+        List<Map.Entry<String,Variant>> candidates = new ArrayList<>();
+        for (Map.Entry<String,Variant> entry : variants.entrySet()) {
+            CompressedResource resource = entry.getValue().resource;
+            if (resource != null && (resource.file != null) == disk) {
+                candidates.add(entry);
+            }
+        }
+        // Least recently used first
+        Collections.sort(candidates, new Comparator<Map.Entry<String,Variant>>() {
+            @Override
+            public int compare(Map.Entry<String,Variant> e1, Map.Entry<String,Variant> e2) {
+                return Long.compare(e1.getValue().lastAccess, e2.getValue().lastAccess);
+            }
+        });
+        for (Map.Entry<String,Variant> entry : candidates) {
+            if (current.get() <= targetSize) {
+                break;
+            }
+            removeVariant(entry.getKey(), entry.getValue());
+        }
+    }
+
+
+    /**
+     * Remove all the variants from this cache, delete any files that were
+     * created and stop the background thread.
+     */
+    public void destroy() {
+        synchronized (executorLock) {
+            destroyed = true;
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        for (Map.Entry<String,Variant> entry : variants.entrySet()) {
+            removeVariant(entry.getKey(), entry.getValue());
+        }
+        requestCounts.clear();
+    }
+
+
+    // ------------------------------------------------------------- Properties
+
+    /**
+     * @return The maximum size, in bytes, of the variants held in memory
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+
+    /**
+     * Set the maximum size of the variants held in memory. The maximum size of
+     * the variants written to disk is set to ten times this value and the
+     * maximum size of a variant held in memory is reduced if necessary.
+     *
+     * @param maxSize The maximum size in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.maxDiskSize = 10 * maxSize;
+        long limit = maxSize / OBJECT_MAX_SIZE_FACTOR;
+        if (objectMaxSize > limit) {
+            objectMaxSize = (int) Math.min(limit, Integer.MAX_VALUE);
+        }
+    }
+
+
+    /**
+     * @return The size, in bytes, of the largest resource for which the
+     *         variant will be held in memory. Variants of larger resources are
+     *         written to disk.
+     */
+    public int getObjectMaxSize() {
+        return objectMaxSize;
+    }
+
+
+    public void setObjectMaxSize(int objectMaxSize) {
+        if (objectMaxSize > maxSize / OBJECT_MAX_SIZE_FACTOR) {
+            objectMaxSize = (int) Math.min(maxSize / OBJECT_MAX_SIZE_FACTOR, Integer.MAX_VALUE);
+        }
+        this.objectMaxSize = objectMaxSize;
+    }
+
+
+    /**
+     * @return The size, in bytes, of the smallest resource that will be
+     *         compressed
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+
+    /**
+     * @return The number of requests for a resource after which a compressed
+     *         variant is created
+     */
+    public int getHitThreshold() {
+        return hitThreshold;
+    }
+
+
+    public void setHitThreshold(int hitThreshold) {
+        this.hitThreshold = Math.max(1, hitThreshold);
+    }
+
+
+    /**
+     * Set the content types of the resources that may be compressed.
+     *
+     * @param mimeTypes Comma separated list of MIME types
+     */
+    public void setMimeTypes(String mimeTypes) {
+        this.mimeTypes = parseMimeTypes(mimeTypes);
+    }
+
+
+    public long getSize() {
+        return size.get();
+    }
+
+
+    public long getDiskSize() {
+        return diskSize.get();
+    }
+
+
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    /**
+     * @return The number of variants that have been created
+     */
+    public long getCompressCount() {
+        return compressCount.get();
+    }
+
+
+    private static Set<String> parseMimeTypes(String mimeTypes) {
+        Set<String> result = new HashSet<>();
+        for (String mimeType : mimeTypes.split(",")) {
+            mimeType = mimeType.trim();
+            if (mimeType.length() > 0) {
+                result.add(mimeType.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return result;
+    }
+
+
+    private static class Variant {
+
+        private final String eTag;
+        // Null while the variant is being created and if the resource did not
+        // compress
+        private volatile CompressedResource resource;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Variant(String eTag) {
+            this.eTag = eTag;
+        }
+    }
+
+
+    private class CompressTask implements Runnable {
+
+        private final String key;
+        private final Variant variant;
+        private final WebResource resource;
+        private final String encoding;
+
+        CompressTask(String key, Variant variant, WebResource resource, String encoding) {
+            this.key = key;
+            this.variant = variant;
+            this.resource = resource;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void run() {
+            long originalLength = resource.getContentLength();
+            boolean toDisk = originalLength > objectMaxSize;
+            if (toDisk && spillDir == null) {
+                // Leave the placeholder so the resource is not compressed again
+                return;
+            }
+
+            File file = null;
+            ByteArrayOutputStream baos = null;
+            try {
+                OutputStream target;
+                if (toDisk) {
+                    if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+                        throw new IOException(sm.getString(
+                                "compressedResourceCache.mkdirFail", spillDir));
+                    }
+                    file = new File(spillDir, Long.toString(
+                            spillFileCount.incrementAndGet()) + '.' + encoding);
+                    target = new FileOutputStream(file);
+                } else {
+                    baos = new ByteArrayOutputStream((int) originalLength / 4);
+                    target = baos;
+                }
+                compress(resource, encoding, target);
+            } catch (IOException e) {
+                log.warn(sm.getString("compressedResourceCache.compressFail",
+                        resource.getWebappPath(), encoding), e);
+                if (file != null && !file.delete()) {
+                    file.deleteOnExit();
+                }
+                // Leave the placeholder so the resource is not compressed again
+                // until it changes
+                return;
+            }
+
+            long length = toDisk ? file.length() : baos.size();
+            if (length >= originalLength) {
+                // Not worth it
+                if (file != null && !file.delete()) {
+                    file.deleteOnExit();
+                }
+                return;
+            }
+
+            CompressedResource compressed = new CompressedResource(
+                    root, resource, encoding, toDisk ? null : baos.toByteArray(), file, length);
+            (toDisk ? diskSize : size).addAndGet(length);
+            variant.resource = compressed;
+            compressCount.incrementAndGet();
+            if (variants.get(key) != variant) {
+                // Removed while it was being created
+                release(variant);
+                return;
+            }
+            evict(toDisk);
+        }
+    }
+
+
+    /*
+     * The output is the same for the same input so a variant can be re-created
+     * with the length that was used when it was cached.
+     */
+    private static void compress(WebResource resource, String encoding, OutputStream target)
+            throws IOException {
+        OutputStream encoder;
+        if ("gzip".equals(encoding)) {
+            encoder = new GZIPOutputStream(target, 8192);
+        } else {
+            encoder = new DeflaterOutputStream(target);
+        }
+        try (InputStream is = resource.getInputStream();
+                OutputStream os = encoder) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) > 0) {
+                os.write(buf, 0, n);
+            }
+        }
+    }
+
+
+    /**
+     * The compressed content of a resource, held either in memory or in a
+     * file. All other attributes are those of the original resource.
+     */
+    private static class CompressedResource extends AbstractResource {
+
+        private static final Log log = LogFactory.getLog(CompressedResource.class);
+
+        private final WebResource original;
+        private final String encoding;
+        private final byte[] content;
+        private final File file;
+        private final long length;
+
+        CompressedResource(WebResourceRoot root, WebResource original, String encoding,
+                byte[] content, File file, long length) {
+            super(root, original.getWebappPath());
+            this.original = original;
+            this.encoding = encoding;
+            this.content = content;
+            this.file = file;
+            this.length = length;
+            setMimeType(original.getMimeType());
+        }
+
+        @Override
+        public long getLastModified() {
+            return original.getLastModified();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public boolean isVirtual() {
+            return false;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public boolean isFile() {
+            return true;
+        }
+
+        @Override
+        public boolean delete() {
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return original.getName();
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public String getCanonicalPath() {
+            // Allows sendfile to be used for variants held on disk
+            if (file == null || !file.isFile()) {
+                return null;
+            }
+            return file.getAbsolutePath();
+        }
+
+        @Override
+        public boolean canRead() {
+            return true;
+        }
+
+        @Override
+        public URL getURL() {
+            return null;
+        }
+
+        @Override
+        public URL getCodeBase() {
+            return null;
+        }
+
+        @Override
+        public byte[] getContent() {
+            return content;
+        }
+
+        @Override
+        public long getCreation() {
+            return original.getCreation();
+        }
+
+        @Override
+        public Certificate[] getCertificates() {
+            return null;
+        }
+
+        @Override
+        public Manifest getManifest() {
+            return null;
+        }
+
+        @Override
+        protected InputStream doGetInputStream() {
+            if (content != null) {
+                return new ByteArrayInputStream(content);
+            }
+            try {
+                return new FileInputStream(file);
+            } catch (FileNotFoundException e) {
+                // Evicted since this variant was selected. The headers for the
+                // compressed content may already have been sent so compress
+                // the original resource again.
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream((int) length);
+            try {
+                compress(original, encoding, baos);
+            } catch (IOException e) {
+                log.warn(sm.getString("compressedResourceCache.compressFail",
+                        getWebappPath(), encoding), e);
+                return null;
+            }
+            return new ByteArrayInputStream(baos.toByteArray());
+        }
+
+        @Override
+        protected Log getLog() {
+            return log;
+        }
+    }
+}
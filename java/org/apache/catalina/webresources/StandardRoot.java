@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.ObjectName;
 
@@ -81,6 +82,13 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
     private final Set<TrackedWebResource> trackedResources =
             Collections.newSetFromMap(new ConcurrentHashMap<TrackedWebResource,Boolean>());
 
+    private boolean indexClassResources = false;
+    private volatile ClassResourceIndex classResourceIndex = null;
+    private final Object classResourceIndexLock = new Object();
+    // Incremented whenever the index is invalidated so an index built from
+    // the previous class resources is never published
+    private final AtomicInteger classResourceIndexGeneration = new AtomicInteger(0);
+
     // Constructs to make iteration over all WebResourceSets simpler
     private final List<WebResourceSet> mainResources = new ArrayList<>();
     private final List<List<WebResourceSet>> allResources =
@@ -274,10 +282,25 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         WebResource result = null;
         WebResource virtual = null;
         WebResource mainEmpty = null;
+        ClassResourceIndex index = null;
+        WebResourceSet indexedSet = null;
+        if (useClassLoaderResources) {
+            if (ClassResourceIndex.isIndexable(path)) {
+                index = getClassResourceIndex();
+                if (index != null) {
+                    indexedSet = index.getFirstSet(path);
+                }
+            }
+        }
         for (List<WebResourceSet> list : allResources) {
             for (WebResourceSet webResourceSet : list) {
                 if (!useClassLoaderResources &&  !webResourceSet.getClassLoaderOnly() ||
                         useClassLoaderResources && !webResourceSet.getStaticOnly()) {
+                    if (index != null && webResourceSet != indexedSet &&
+                            index.isIndexed(webResourceSet)) {
+                        // The index shows the resource isn't in this JAR
+                        continue;
+                    }
                     result = webResourceSet.getResource(path);
                     if (result.exists()) {
                         return result;
@@ -321,9 +344,22 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
     protected WebResource[] getResourcesInternal(String path,
             boolean useClassLoaderResources) {
         List<WebResource> result = new ArrayList<>();
+        ClassResourceIndex index = null;
+        if (useClassLoaderResources && ClassResourceIndex.isIndexable(path)) {
+            index = getClassResourceIndex();
+            if (index != null && index.getFirstSet(path) != null) {
+                // At least one indexed JAR contains the resource so check all
+                // of them
+                index = null;
+            }
+        }
         for (List<WebResourceSet> list : allResources) {
             for (WebResourceSet webResourceSet : list) {
                 if (useClassLoaderResources || !webResourceSet.getClassLoaderOnly()) {
+                    if (index != null && index.isIndexed(webResourceSet)) {
+                        // The index shows the resource isn't in this JAR
+                        continue;
+                    }
                     WebResource webResource = webResourceSet.getResource(path);
                     if (webResource.exists()) {
                         result.add(webResource);
@@ -422,6 +458,7 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
 
         if (type.equals(ResourceSetType.CLASSES_JAR)) {
             resourceSet.setClassLoaderOnly(true);
+            invalidateClassResourceIndex();
         } else if (type.equals(ResourceSetType.RESOURCE_JAR)) {
             resourceSet.setStaticOnly(true);
         }
@@ -469,6 +506,7 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
     protected void addClassResources(WebResourceSet webResourceSet) {
         webResourceSet.setRoot(this);
         classResources.add(webResourceSet);
+        invalidateClassResourceIndex();
     }
 
     @Override
@@ -546,6 +584,75 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         return trackLockedFiles;
     }
 
+    /**
+     * Should an index of the entries in the JARs in /WEB-INF/lib be used to
+     * resolve class loader resource lookups? The index is created on first use
+     * and allows lookups, particularly for resources that do not exist, to
+     * skip the JARs that do not contain the resource.
+     *
+     * @param indexClassResources <code>true</code> to use an index
+     */
+    public void setIndexClassResources(boolean indexClassResources) {
+        this.indexClassResources = indexClassResources;
+        if (!indexClassResources) {
+            invalidateClassResourceIndex();
+        }
+    }
+
+    public boolean getIndexClassResources() {
+        return indexClassResources;
+    }
+
+    /**
+     * @return The number of JARs covered by the class resource index or -1 if
+     *         no index is in use
+     */
+    public int getClassResourceIndexJarCount() {
+        ClassResourceIndex index = classResourceIndex;
+        if (index == null) {
+            return -1;
+        }
+        return index.getJarCount();
+    }
+
+    /*
+     * Returns null if the index is disabled or this root isn't available.
+     */
+    private ClassResourceIndex getClassResourceIndex() {
+        if (!indexClassResources) {
+            return null;
+        }
+        ClassResourceIndex result = classResourceIndex;
+        if (result == null && getState().isAvailable()) {
+            synchronized (classResourceIndexLock) {
+                result = classResourceIndex;
+                if (result == null) {
+                    long start = System.currentTimeMillis();
+                    int generation = classResourceIndexGeneration.get();
+                    result = new ClassResourceIndex(classResources);
+                    if (generation != classResourceIndexGeneration.get()) {
+                        // The class resources changed while the index was
+                        // being built. Don't use it.
+                        return null;
+                    }
+                    classResourceIndex = result;
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("standardRoot.classResourceIndex",
+                                context.getName(), Integer.valueOf(result.getJarCount()),
+                                Integer.valueOf(result.getEntryCount()),
+                                Long.valueOf(System.currentTimeMillis() - start)));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void invalidateClassResourceIndex() {
+        classResourceIndexGeneration.incrementAndGet();
+        classResourceIndex = null;
+    }
+
     public List<String> getTrackedResources() {
         List<String> result = new ArrayList<>(trackedResources.size());
         for (TrackedWebResource resource : trackedResources) {
@@ -776,6 +883,7 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
             webResourceSet.destroy();
         }
         classResources.clear();
+        invalidateClassResourceIndex();
 
         for (TrackedWebResource trackedResource : trackedResources) {
             log.error(sm.getString("standardRoot.lockedFile",
@@ -16,23 +16,66 @@
  */
 package org.apache.coyote;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.MimeHeaders;
 import org.apache.tomcat.util.http.ResponseUtil;
+import org.apache.tomcat.util.http.parser.AcceptEncoding;
+import org.apache.tomcat.util.res.StringManager;
 
 public class CompressionConfig {
 
+    private static final StringManager sm = StringManager.getManager(CompressionConfig.class);
+
     private int compressionLevel = 0;
     private Pattern noCompressionUserAgents = null;
     private String compressibleMimeType = "text/html,text/xml,text/plain,text/css," +
             "text/javascript,application/javascript,application/json,application/xml";
     private String[] compressibleMimeTypes = null;
     private int compressionMinSize = 2048;
+    // Content coding name -> encoder provided by the protocol
+    private final Map<String,ContentEncoder> namedEncoders = new ConcurrentHashMap<>();
+    private String compressionEncodings = "gzip";
+    private volatile ContentEncoder[] contentEncoders = new ContentEncoder[0];
+    private String compressionLevels = null;
+    // Encoding -> minimum content length -> level
+    private volatile Map<String,TreeMap<Long,Integer>> levels = new HashMap<>();
+
+
+    public CompressionConfig() {
+    }
+
+
+    /**
+     * Create a copy of a compression configuration. The copy uses the same
+     * content encoders as the original.
+     *
+     * @param config The configuration to copy
+     */
+    public CompressionConfig(CompressionConfig config) {
+        compressionLevel = config.compressionLevel;
+        noCompressionUserAgents = config.noCompressionUserAgents;
+        compressibleMimeType = config.compressibleMimeType;
+        compressibleMimeTypes = config.compressibleMimeTypes;
+        compressionMinSize = config.compressionMinSize;
+        namedEncoders.putAll(config.namedEncoders);
+        compressionEncodings = config.compressionEncodings;
+        contentEncoders = config.contentEncoders;
+        compressionLevels = config.compressionLevels;
+        levels = config.levels;
+    }
 
 
     /**
@@ -169,6 +212,148 @@ public class CompressionConfig {
     }
 
 
+    /**
+     * Make a content encoder available by the name of its content coding.
+     * Protocols use this to provide their implementations of the standard
+     * content codings, such as gzip and deflate, before the compression
+     * settings are configured. The current content codings are resolved again
+     * so that they use the new encoder.
+     *
+     * @param encoder The content encoder
+     */
+    public void addContentEncoder(ContentEncoder encoder) {
+        namedEncoders.put(encoder.getName(), encoder);
+        setCompressionEncodings(compressionEncodings);
+    }
+
+
+    public String getCompressionEncodings() {
+        return compressionEncodings;
+    }
+
+
+    /**
+     * Set the content codings that may be used to compress responses. The
+     * value is a comma separated list, in order of preference, of the names
+     * of content codings added with {@link #addContentEncoder(ContentEncoder)}
+     * and/or the class names of {@link ContentEncoder} implementations. Where the client accepts more
+     * than one of the content codings with the same quality, the first one in
+     * this list is used.
+     *
+     * @param compressionEncodings The content codings
+     */
+    public void setCompressionEncodings(String compressionEncodings) {
+        List<ContentEncoder> encoders = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(compressionEncodings, ",");
+        while (tokens.hasMoreTokens()) {
+            String token = tokens.nextToken().trim();
+            if (token.length() == 0) {
+                continue;
+            }
+            ContentEncoder encoder = namedEncoders.get(token.toLowerCase(Locale.ENGLISH));
+            if (encoder != null) {
+                encoders.add(encoder);
+            } else {
+                try {
+                    Class<?> clazz = Class.forName(token);
+                    encoders.add((ContentEncoder) clazz.getConstructor().newInstance());
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException(
+                            sm.getString("compressionConfig.invalidEncoder", token), e);
+                }
+            }
+        }
+        this.contentEncoders = encoders.toArray(new ContentEncoder[encoders.size()]);
+        this.compressionEncodings = compressionEncodings;
+    }
+
+
+    public ContentEncoder[] getContentEncoders() {
+        return contentEncoders;
+    }
+
+
+    public String getCompressionLevels() {
+        return compressionLevels;
+    }
+
+
+    /**
+     * Set the compression level to use for each content coding, optionally
+     * depending on the size of the response. The value is a comma separated
+     * list of entries of the form <code>coding[:minSize]=level</code>, e.g.
+     * <code>gzip=6,gzip:1048576=1</code>. For a response of known length, the
+     * entry for the content coding with the largest minimum size that is no
+     * greater than the length is used. For a response of unknown length, the
+     * entry without a minimum size is used. If no entry applies, the content
+     * encoder's default is used.
+     *
+     * @param compressionLevels The compression levels
+     */
+    public void setCompressionLevels(String compressionLevels) {
+        Map<String,TreeMap<Long,Integer>> newLevels = new HashMap<>();
+        if (compressionLevels != null) {
+            StringTokenizer tokens = new StringTokenizer(compressionLevels, ",");
+            while (tokens.hasMoreTokens()) {
+                String token = tokens.nextToken().trim();
+                if (token.length() == 0) {
+                    continue;
+                }
+                int equals = token.indexOf('=');
+                if (equals < 1) {
+                    throw new IllegalArgumentException(
+                            sm.getString("compressionConfig.invalidLevel", token));
+                }
+                String encoding = token.substring(0, equals).trim();
+                long minSize = 0;
+                try {
+                    int colon = encoding.indexOf(':');
+                    if (colon > -1) {
+                        minSize = Long.parseLong(encoding.substring(colon + 1).trim());
+                        encoding = encoding.substring(0, colon).trim();
+                    }
+                    Integer level = Integer.valueOf(token.substring(equals + 1).trim());
+                    String key = encoding.toLowerCase(Locale.ENGLISH);
+                    TreeMap<Long,Integer> encodingLevels = newLevels.get(key);
+                    if (encodingLevels == null) {
+                        encodingLevels = new TreeMap<>();
+                        newLevels.put(key, encodingLevels);
+                    }
+                    encodingLevels.put(Long.valueOf(minSize), level);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            sm.getString("compressionConfig.invalidLevel", token), e);
+                }
+            }
+        }
+        this.levels = newLevels;
+        this.compressionLevels = compressionLevels;
+    }
+
+
+    /**
+     * Obtain the compression level to use for a response.
+     *
+     * @param encoder       The content encoder used for the response
+     * @param contentLength The uncompressed length of the response or -1 if
+     *                      not known
+     *
+     * @return The configured level or {@link ContentEncoder#DEFAULT_LEVEL}
+     */
+    public int getLevel(ContentEncoder encoder, long contentLength) {
+        TreeMap<Long,Integer> encodingLevels = levels.get(encoder.getName());
+        if (encodingLevels == null) {
+            return ContentEncoder.DEFAULT_LEVEL;
+        }
+        Map.Entry<Long,Integer> entry =
+                encodingLevels.floorEntry(Long.valueOf(Math.max(contentLength, 0)));
+        if (entry == null) {
+            return ContentEncoder.DEFAULT_LEVEL;
+        }
+        return entry.getValue().intValue();
+    }
+
+
     /**
      * Determines if compression should be enabled for the given response and if
      * it is, sets any necessary headers to mark it as such.
@@ -180,19 +365,39 @@ public class CompressionConfig {
      *         otherwise {@code false}
      */
     public boolean useCompression(Request request, Response response) {
+        if (getContentEncoder(request, response) == null) {
+            return false;
+        }
+        // Compressed content length is unknown so mark it as such.
+        response.setContentLength(-1);
+        return true;
+    }
+
+
+    /**
+     * Determines which, if any, content coding should be applied to the given
+     * response and, if there is one, sets the headers to mark the response as
+     * encoded. The caller is responsible for marking the content length of the
+     * response as unknown (after obtaining the compression level if required).
+     *
+     * @param request  The request that triggered the response
+     * @param response The response to consider compressing
+     *
+     * @return The content encoder to use or {@code null} if the response
+     *         should not be compressed
+     */
+    public ContentEncoder getContentEncoder(Request request, Response response) {
         // Check if compression is enabled
         if (compressionLevel == 0) {
-            return false;
+            return null;
         }
 
         MimeHeaders responseHeaders = response.getMimeHeaders();
 
-        // Check if content is not already compressed
+        // Check if content is not already encoded
         MessageBytes contentEncodingMB = responseHeaders.getValue("Content-Encoding");
-        if (contentEncodingMB != null &&
-                (contentEncodingMB.indexOf("gzip") != -1 ||
-                        contentEncodingMB.indexOf("br") != -1)) {
-            return false;
+        if (contentEncodingMB != null && !contentEncodingMB.equalsIgnoreCase("identity")) {
+            return null;
         }
 
         // If force mode, the length and MIME type checks are skipped
@@ -200,14 +405,14 @@ public class CompressionConfig {
             // Check if the response is of sufficient length to trigger the compression
             long contentLength = response.getContentLengthLong();
             if (contentLength != -1 && contentLength < compressionMinSize) {
-                return false;
+                return null;
             }
 
             // Check for compatible MIME-TYPE
             String[] compressibleMimeTypes = getCompressibleMimeTypes();
             if (compressibleMimeTypes != null &&
                     !startsWithStringArray(compressibleMimeTypes, response.getContentType())) {
-                return false;
+                return null;
             }
         }
 
@@ -215,10 +420,10 @@ public class CompressionConfig {
         // Therefore, set the Vary header to keep proxies happy
         ResponseUtil.addVaryFieldName(responseHeaders, "accept-encoding");
 
-        // Check if browser support gzip encoding
-        MessageBytes acceptEncodingMB = request.getMimeHeaders().getValue("accept-encoding");
-        if ((acceptEncodingMB == null) || (acceptEncodingMB.indexOf("gzip") == -1)) {
-            return false;
+        // Check which, if any, of the content codings the browser supports
+        ContentEncoder encoder = negotiate(request.getMimeHeaders());
+        if (encoder == null) {
+            return null;
         }
 
         // If force mode, the browser checks are skipped
@@ -230,7 +435,7 @@ public class CompressionConfig {
                 if(userAgentValueMB != null) {
                     String userAgentValue = userAgentValueMB.toString();
                     if (noCompressionUserAgents.matcher(userAgentValue).matches()) {
-                        return false;
+                        return null;
                     }
                 }
             }
@@ -238,12 +443,59 @@ public class CompressionConfig {
 
         // All checks have passed. Compression is enabled.
 
-        // Compressed content length is unknown so mark it as such.
-        response.setContentLength(-1);
         // Configure the content encoding for compressed content
-        responseHeaders.setValue("Content-Encoding").setString("gzip");
+        responseHeaders.setValue("Content-Encoding").setString(encoder.getName());
 
-        return true;
+        return encoder;
+    }
+
+
+    /*
+     * Select the content encoder with the highest quality in the
+     * Accept-Encoding header(s) of the request, using the configured order of
+     * the encoders to break ties.
+     */
+    private ContentEncoder negotiate(MimeHeaders requestHeaders) {
+        Enumeration<String> values = requestHeaders.values("accept-encoding");
+        if (!values.hasMoreElements()) {
+            return null;
+        }
+        List<AcceptEncoding> accepted = new ArrayList<>();
+        try {
+            while (values.hasMoreElements()) {
+                accepted.addAll(AcceptEncoding.parse(new StringReader(values.nextElement())));
+            }
+        } catch (IOException e) {
+            // Can't happen with a StringReader
+            return null;
+        }
+
+        ContentEncoder result = null;
+        double resultQuality = 0;
+        for (ContentEncoder encoder : contentEncoders) {
+            double quality = getQuality(accepted, encoder.getName());
+            if (quality > resultQuality) {
+                result = encoder;
+                resultQuality = quality;
+            }
+        }
+        return result;
+    }
+
+
+    private static double getQuality(List<AcceptEncoding> accepted, String name) {
+        double wildcard = 0;
+        for (AcceptEncoding acceptEncoding : accepted) {
+            String encoding = acceptEncoding.getEncoding();
+            if (encoding.equals(name) ||
+                    // RFC 7230 section 4.2.3
+                    encoding.equals("x-gzip") && name.equals("gzip")) {
+                return acceptEncoding.getQuality();
+            } else if (encoding.equals("*")) {
+                wildcard = acceptEncoding.getQuality();
+            }
+        }
+        return wildcard;
     }
 
 
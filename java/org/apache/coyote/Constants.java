@@ -111,4 +111,13 @@ public final class Constants {
      * the X-Forwarded-For HTTP header.
      */
     public static final String REMOTE_ADDR_ATTRIBUTE = "org.apache.tomcat.remoteAddr";
+
+
+    /**
+     * The request attribute that is set to the value of the
+     * <code>:protocol</code> pseudo header when an HTTP/2 client uses the
+     * extended CONNECT method defined by RFC 8441 (e.g. to bootstrap a
+     * WebSocket connection). The value is a {@code java.lang.String}.
+     */
+    public static final String CONNECT_PROTOCOL_ATTR = "org.apache.tomcat.connectProtocol";
 }
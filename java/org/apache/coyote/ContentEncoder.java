@@ -0,0 +1,64 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import org.apache.coyote.http11.OutputFilter;
+
+/**
+ * A content coding (e.g. gzip) that may be applied to responses by the
+ * connectors. Implementations are configured via the
+ * <code>compressionEncodings</code> attribute of the connector and must have a
+ * public, no argument constructor. A single instance is shared by all the
+ * connections of a connector so implementations must be thread safe.
+ */
+public interface ContentEncoder {
+
+    /**
+     * Passed to {@link #setLevel(OutputFilter, int)} when no compression level
+     * has been configured for a response.
+     */
+    int DEFAULT_LEVEL = Integer.MIN_VALUE;
+
+
+    /**
+     * @return The name of the content coding, in lower case, as used in the
+     *         Accept-Encoding and Content-Encoding headers
+     */
+    String getName();
+
+
+    /**
+     * Create a new filter that applies this content coding. The caller may
+     * recycle and reuse the filter for subsequent responses.
+     *
+     * @return The new filter
+     */
+    OutputFilter createOutputFilter();
+
+
+    /**
+     * Set the compression level to use for the next response encoded by the
+     * given filter. This is called before the filter is added to the filter
+     * chain for a response.
+     *
+     * @param filter A filter created by {@link #createOutputFilter()}
+     * @param level  The compression level configured for the response or
+     *               {@link #DEFAULT_LEVEL} if none is configured in which case
+     *               the encoder's default level should be used
+     */
+    void setLevel(OutputFilter filter, int level);
+}
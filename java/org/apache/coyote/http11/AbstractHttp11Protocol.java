@@ -33,9 +33,13 @@ import org.apache.coyote.CompressionConfig;
 import org.apache.coyote.Processor;
 import org.apache.coyote.UpgradeProtocol;
 import org.apache.coyote.UpgradeToken;
+import org.apache.coyote.http11.filters.DeflateContentEncoder;
+import org.apache.coyote.http11.filters.DeflaterPool;
+import org.apache.coyote.http11.filters.GzipContentEncoder;
 import org.apache.coyote.http11.upgrade.InternalHttpUpgradeHandler;
 import org.apache.coyote.http11.upgrade.UpgradeProcessorExternal;
 import org.apache.coyote.http11.upgrade.UpgradeProcessorInternal;
+import org.apache.coyote.http2.Http2Protocol;
 import org.apache.tomcat.util.buf.StringUtils;
 import org.apache.tomcat.util.net.AbstractEndpoint;
 import org.apache.tomcat.util.net.SSLHostConfig;
@@ -48,10 +52,13 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
             StringManager.getManager(AbstractHttp11Protocol.class);
 
     private final CompressionConfig compressionConfig = new CompressionConfig();
+    private final DeflaterPool deflaterPool = new DeflaterPool();
 
 
     public AbstractHttp11Protocol(AbstractEndpoint<S> endpoint) {
         super(endpoint);
+        compressionConfig.addContentEncoder(new GzipContentEncoder(deflaterPool));
+        compressionConfig.addContentEncoder(new DeflateContentEncoder(deflaterPool));
         setConnectionTimeout(Constants.DEFAULT_CONNECTION_TIMEOUT);
         ConnectionHandler<S> cHandler = new ConnectionHandler<>(this);
         setHandler(cHandler);
@@ -73,6 +80,18 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    @Override
+    public void stop() throws Exception {
+        super.stop();
+        deflaterPool.clear();
+        for (UpgradeProtocol upgradeProtocol : upgradeProtocols) {
+            if (upgradeProtocol instanceof Http2Protocol) {
+                ((Http2Protocol) upgradeProtocol).stop();
+            }
+        }
+    }
+
+
     @Override
     protected String getProtocolName() {
         return "Http";
@@ -158,6 +177,21 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    private boolean fastHeaderParsing = false;
+    /**
+     * Are complete request lines and header lines that are present in the
+     * input buffer parsed with a table driven parser that locates delimiters
+     * a word at a time? Lines it does not handle, such as partial or invalid
+     * lines, are always parsed with the standard parser.
+     *
+     * @return {@code true} if the table driven parser is used
+     */
+    public boolean getFastHeaderParsing() { return fastHeaderParsing; }
+    public void setFastHeaderParsing(boolean fastHeaderParsing) {
+        this.fastHeaderParsing = fastHeaderParsing;
+    }
+
+
     /**
      * Maximum size of the post which will be saved when processing certain
      * requests, such as a POST.
@@ -258,6 +292,78 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    public String getCompressionEncodings() {
+        return compressionConfig.getCompressionEncodings();
+    }
+    public void setCompressionEncodings(String compressionEncodings) {
+        compressionConfig.setCompressionEncodings(compressionEncodings);
+    }
+
+
+    public String getCompressionLevels() {
+        return compressionConfig.getCompressionLevels();
+    }
+    public void setCompressionLevels(String compressionLevels) {
+        compressionConfig.setCompressionLevels(compressionLevels);
+    }
+
+
+    public int getDeflateLevel() {
+        return deflaterPool.getLevel();
+    }
+    public void setDeflateLevel(int deflateLevel) {
+        deflaterPool.setLevel(deflateLevel);
+    }
+
+
+    public String getDeflateStrategy() {
+        return deflaterPool.getStrategy();
+    }
+    public void setDeflateStrategy(String deflateStrategy) {
+        deflaterPool.setStrategy(deflateStrategy);
+    }
+
+
+    public String getDeflateMimeTypes() {
+        return deflaterPool.getMimeTypes();
+    }
+    public void setDeflateMimeTypes(String deflateMimeTypes) {
+        deflaterPool.setMimeTypes(deflateMimeTypes);
+    }
+
+
+    public int getMaxIdleDeflaters() {
+        return deflaterPool.getMaxIdle();
+    }
+    public void setMaxIdleDeflaters(int maxIdleDeflaters) {
+        deflaterPool.setMaxIdle(maxIdleDeflaters);
+    }
+
+
+    // Statistics for the responses compressed by this protocol
+    public long getCompressedCount() {
+        return deflaterPool.getCompressedCount();
+    }
+    public long getCompressionBytesIn() {
+        return deflaterPool.getBytesIn();
+    }
+    public long getCompressionBytesOut() {
+        return deflaterPool.getBytesOut();
+    }
+    public double getCompressionRatio() {
+        return deflaterPool.getCompressionRatio();
+    }
+    public long getCompressionTime() {
+        return deflaterPool.getCompressionTime();
+    }
+    public long getDeflaterCreatedCount() {
+        return deflaterPool.getCreatedCount();
+    }
+    public void resetCompressionStatistics() {
+        deflaterPool.resetStatistics();
+    }
+
+
     /**
      * Regular expression that defines the User agents which should be
      * restricted to HTTP/1.0 support.
@@ -881,19 +987,16 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
                 getAllowHostHeaderMismatch(), getRejectIllegalHeaderName(), getEndpoint(),
                 getMaxTrailerSize(), allowedTrailerHeaders, getMaxExtensionSize(),
                 getMaxSwallowSize(), httpUpgradeProtocols, getSendReasonPhrase(),
-                relaxedPathChars, relaxedQueryChars);
+                relaxedPathChars, relaxedQueryChars, compressionConfig);
         processor.setAdapter(getAdapter());
         processor.setMaxKeepAliveRequests(getMaxKeepAliveRequests());
         processor.setConnectionUploadTimeout(getConnectionUploadTimeout());
         processor.setDisableUploadTimeout(getDisableUploadTimeout());
-        processor.setCompressionMinSize(getCompressionMinSize());
-        processor.setCompression(getCompression());
-        processor.setNoCompressionUserAgents(getNoCompressionUserAgents());
-        processor.setCompressibleMimeTypes(getCompressibleMimeTypes());
         processor.setRestrictedUserAgents(getRestrictedUserAgents());
         processor.setMaxSavePostSize(getMaxSavePostSize());
         processor.setServer(getServer());
         processor.setServerRemoveAppProvidedValues(getServerRemoveAppProvidedValues());
+        processor.setFastHeaderParsing(getFastHeaderParsing());
         return processor;
     }
 
@@ -139,12 +139,6 @@ public final class Constants {
     public static final int VOID_FILTER = 2;
 
 
-    /**
-     * GZIP filter (output).
-     */
-    public static final int GZIP_FILTER = 3;
-
-
     /**
      * Buffered filter (input)
      */
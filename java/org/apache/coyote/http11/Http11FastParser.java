@@ -0,0 +1,301 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.coyote.Request;
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.HttpParser;
+
+/**
+ * Parser for complete, well formed HTTP/1.1 request lines and header lines
+ * that are already present in the input buffer. Delimiters are located eight
+ * bytes at a time and the bytes between them are validated with a single
+ * character class table rather than with a branch per byte.
+ * <p>
+ * Anything this parser does not handle - partial lines, obsolete line folding,
+ * tolerated extra whitespace, HTTP/0.9 requests and anything invalid - is left
+ * untouched for the state machine in {@link Http11InputBuffer} which is then
+ * responsible for parsing it and for reporting any errors. Therefore, this
+ * parser never changes the result of parsing a request, only how quickly the
+ * result is obtained.
+ */
+final class Http11FastParser {
+
+    static final int FALLBACK = -1;
+    static final int DONE = 0;
+    static final int HEADER = 1;
+
+    // Character classes
+    private static final int TOKEN = 0x01;
+    private static final int TARGET = 0x02;
+    private static final int QUERY = 0x04;
+    private static final int PROTOCOL = 0x08;
+    private static final int VALUE = 0x10;
+    private static final int ALL = 0xFF;
+
+    private static final byte[] TO_LOWER = new byte[256];
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final long SP_PATTERN = pattern(Constants.SP);
+    private static final long LF_PATTERN = pattern(Constants.LF);
+    private static final long COLON_PATTERN = pattern(Constants.COLON);
+    private static final long QUESTION_PATTERN = pattern(Constants.QUESTION);
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            if (i >= Constants.A && i <= Constants.Z) {
+                TO_LOWER[i] = (byte) (i - Constants.LC_OFFSET);
+            } else {
+                TO_LOWER[i] = (byte) i;
+            }
+        }
+    }
+
+
+    /*
+     * Indexed by (byte & 0xFF). The classes of the request target depend on
+     * the relaxed path and query characters so the table is per instance.
+     */
+    private final byte[] charClass = new byte[256];
+
+
+    Http11FastParser(HttpParser httpParser) {
+        for (int i = 0; i < 256; i++) {
+            // The state machine tests the signed byte value
+            byte chr = (byte) i;
+            boolean separator = chr == Constants.SP || chr == Constants.HT ||
+                    chr == Constants.CR || chr == Constants.LF;
+            int cls = 0;
+            if (HttpParser.isToken(chr)) {
+                cls |= TOKEN;
+            }
+            if (!separator && chr != Constants.QUESTION &&
+                    !httpParser.isNotRequestTargetRelaxed(chr)) {
+                cls |= TARGET;
+            }
+            if (!separator && httpParser.isQueryRelaxed(chr)) {
+                cls |= QUERY;
+            }
+            if (HttpParser.isHttpProtocol(chr)) {
+                cls |= PROTOCOL;
+            }
+            if (chr != Constants.CR && chr != Constants.LF) {
+                cls |= VALUE;
+            }
+            charClass[i] = (byte) cls;
+        }
+    }
+
+
+    /**
+     * Parse the request line starting at the current position of the buffer.
+     *
+     * @param buffer    The buffer containing the request line
+     * @param request   The request to populate
+     *
+     * @return <code>true</code> if the request line was parsed and the buffer
+     *         positioned after it, otherwise <code>false</code> with the
+     *         buffer and request unchanged
+     */
+    boolean parseRequestLine(ByteBuffer buffer, Request request) {
+        byte[] buf = buffer.array();
+        int start = buffer.position();
+        int limit = buffer.limit();
+
+        int lf = indexOf(buffer, start, limit, LF_PATTERN);
+        if (lf == -1) {
+            return false;
+        }
+        int lineEnd = lf;
+        if (lineEnd > start && buf[lineEnd - 1] == Constants.CR) {
+            lineEnd--;
+        }
+
+        // Method
+        int methodEnd = indexOf(buffer, start, lineEnd, SP_PATTERN);
+        if (methodEnd <= start || !isAll(buf, start, methodEnd, TOKEN)) {
+            return false;
+        }
+
+        // Request target. Exactly one SP either side.
+        int targetStart = methodEnd + 1;
+        int targetEnd = indexOf(buffer, targetStart, lineEnd, SP_PATTERN);
+        if (targetEnd <= targetStart) {
+            return false;
+        }
+        int qPos = indexOf(buffer, targetStart, targetEnd, QUESTION_PATTERN);
+        int pathEnd = qPos == -1 ? targetEnd : qPos;
+        if (!isAll(buf, targetStart, pathEnd, TARGET) ||
+                qPos != -1 && !isAll(buf, qPos + 1, targetEnd, QUERY)) {
+            return false;
+        }
+
+        // Protocol
+        int protocolStart = targetEnd + 1;
+        if (protocolStart >= lineEnd || !isAll(buf, protocolStart, lineEnd, PROTOCOL)) {
+            return false;
+        }
+
+        request.method().setBytes(buf, start, methodEnd - start);
+        if (qPos != -1) {
+            request.queryString().setBytes(buf, qPos + 1, targetEnd - qPos - 1);
+        }
+        request.requestURI().setBytes(buf, targetStart, pathEnd - targetStart);
+        request.protocol().setBytes(buf, protocolStart, lineEnd - protocolStart);
+        buffer.position(lf + 1);
+        return true;
+    }
+
+
+    /**
+     * Parse the header line, or the blank line that ends the headers, that
+     * starts at the current position of the buffer.
+     *
+     * @param buffer    The buffer containing the header
+     * @param headers   The headers to add the header to
+     *
+     * @return {@link #HEADER} if a header was added, {@link #DONE} if the end
+     *         of the headers was reached or {@link #FALLBACK} if the line was
+     *         not parsed, in which case the buffer and the headers are
+     *         unchanged
+     */
+    int parseHeader(ByteBuffer buffer, MimeHeaders headers) {
+        byte[] buf = buffer.array();
+        int start = buffer.position();
+        int limit = buffer.limit();
+
+        if (start >= limit) {
+            return FALLBACK;
+        }
+        byte first = buf[start];
+        if (first == Constants.LF) {
+            buffer.position(start + 1);
+            return DONE;
+        } else if (first == Constants.CR) {
+            if (start + 1 < limit && buf[start + 1] == Constants.LF) {
+                buffer.position(start + 2);
+                return DONE;
+            }
+            return FALLBACK;
+        }
+
+        int lf = indexOf(buffer, start, limit, LF_PATTERN);
+        // The first byte of the next line is required to rule out obsolete
+        // line folding
+        if (lf == -1 || lf + 1 >= limit) {
+            return FALLBACK;
+        }
+        byte next = buf[lf + 1];
+        if (next == Constants.SP || next == Constants.HT) {
+            return FALLBACK;
+        }
+        int lineEnd = lf;
+        if (buf[lineEnd - 1] == Constants.CR) {
+            lineEnd--;
+        }
+
+        int colon = indexOf(buffer, start, lineEnd, COLON_PATTERN);
+        if (colon <= start || !isAll(buf, start, colon, TOKEN)) {
+            return FALLBACK;
+        }
+
+        int valueStart = colon + 1;
+        while (valueStart < lineEnd &&
+                (buf[valueStart] == Constants.SP || buf[valueStart] == Constants.HT)) {
+            valueStart++;
+        }
+        // A CR within the value would be removed by the state machine
+        if (!isAll(buf, valueStart, lineEnd, VALUE)) {
+            return FALLBACK;
+        }
+        int valueEnd = lineEnd;
+        while (valueEnd > valueStart &&
+                (buf[valueEnd - 1] == Constants.SP || buf[valueEnd - 1] == Constants.HT)) {
+            valueEnd--;
+        }
+
+        // Header names are converted to lower case in place
+        for (int i = start; i < colon; i++) {
+            buf[i] = TO_LOWER[buf[i] & 0xFF];
+        }
+        headers.addValue(buf, start, colon - start).setBytes(
+                buf, valueStart, valueEnd - valueStart);
+        buffer.position(lf + 1);
+        return HEADER;
+    }
+
+
+    /*
+     * Branch free validation: AND together the classes of all the bytes.
+     */
+    private boolean isAll(byte[] buf, int start, int end, int cls) {
+        int result = ALL;
+        for (int i = start; i < end; i++) {
+            result &= charClass[buf[i] & 0xFF];
+        }
+        return (result & cls) != 0;
+    }
+
+
+    /*
+     * Find the first byte in the range that matches the given pattern, eight
+     * bytes at a time.
+     */
+    static int indexOf(ByteBuffer buffer, int start, int end, long pattern) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int i = start;
+        for (; i + 8 <= end; i += 8) {
+            long matches = zeroBytes(buffer.getLong(i) ^ pattern);
+            if (matches != 0) {
+                if (bigEndian) {
+                    return i + (Long.numberOfLeadingZeros(matches) >>> 3);
+                } else {
+                    return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+                }
+            }
+        }
+        byte target = (byte) pattern;
+        for (; i < end; i++) {
+            if (buffer.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    static long pattern(byte b) {
+        return (b & 0xFFL) * ONES;
+    }
+
+
+    /*
+     * Sets the high bit of each byte of the result for which the corresponding
+     * byte of the input is zero. Unlike the shorter (x - ONES) & ~x & HIGH_BITS
+     * form, this never reports a false match so the position of any match,
+     * not just the first, may be used.
+     */
+    private static long zeroBytes(long x) {
+        long y = (x & LOW_BITS) + LOW_BITS;
+        return ~(y | x | LOW_BITS);
+    }
+}
@@ -135,6 +135,11 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     private final HeaderParseData headerData = new HeaderParseData();
     private final HttpParser httpParser;
 
+    /**
+     * Parser used for complete request and header lines, if enabled.
+     */
+    private Http11FastParser fastParser = null;
+
     /**
      * Maximum allowed size of the HTTP request line plus headers plus any
      * leading blank lines.
@@ -237,6 +242,21 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     }
 
 
+    /**
+     * Should complete request lines and header lines in the input buffer be
+     * parsed with {@link Http11FastParser}?
+     */
+    void setFastHeaderParsing(boolean fastHeaderParsing) {
+        if (fastHeaderParsing) {
+            if (fastParser == null) {
+                fastParser = new Http11FastParser(httpParser);
+            }
+        } else {
+            fastParser = null;
+        }
+    }
+
+
     // ---------------------------------------------------- InputBuffer Methods
 
     /**
@@ -403,6 +423,14 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
                         + new String(byteBuffer.array(), byteBuffer.position(), byteBuffer.remaining(), StandardCharsets.ISO_8859_1) + "]");
             }
         }
+        if (parsingRequestLinePhase == 2 && fastParser != null &&
+                byteBuffer.position() == parsingRequestLineStart &&
+                fastParser.parseRequestLine(byteBuffer, request)) {
+            parsingRequestLine = false;
+            parsingRequestLinePhase = 0;
+            parsingRequestLineStart = 0;
+            return true;
+        }
         if (parsingRequestLinePhase == 2) {
             //
             // Reading the method name
@@ -570,7 +598,23 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
         HeaderParseStatus status = HeaderParseStatus.HAVE_MORE_HEADERS;
 
         do {
-            status = parseHeader();
+            status = null;
+            if (fastParser != null && headerParsePos == HeaderParsePosition.HEADER_START) {
+                switch (fastParser.parseHeader(byteBuffer, headers)) {
+                case Http11FastParser.HEADER:
+                    status = HeaderParseStatus.HAVE_MORE_HEADERS;
+                    break;
+                case Http11FastParser.DONE:
+                    status = HeaderParseStatus.DONE;
+                    break;
+                default:
+                    // Partial, unusual or invalid line
+                    break;
+                }
+            }
+            if (status == null) {
+                status = parseHeader();
+            }
             // Checking that
             // (1) Headers plus request line size does not exceed its limit
             // (2) There are enough bytes to avoid expanding the buffer when
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,8 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
+import org.apache.coyote.CompressionConfig;
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
 import org.apache.coyote.RequestInfo;
@@ -37,7 +40,6 @@ import org.apache.coyote.UpgradeToken;
 import org.apache.coyote.http11.filters.BufferedInputFilter;
 import org.apache.coyote.http11.filters.ChunkedInputFilter;
 import org.apache.coyote.http11.filters.ChunkedOutputFilter;
-import org.apache.coyote.http11.filters.GzipOutputFilter;
 import org.apache.coyote.http11.filters.IdentityInputFilter;
 import org.apache.coyote.http11.filters.IdentityOutputFilter;
 import org.apache.coyote.http11.filters.SavedRequestInputFilter;
@@ -158,13 +160,23 @@ public class Http11Processor extends AbstractProcessor {
 
     /**
      * Allowed compression level.
+     *
+     * @deprecated Only updated by the deprecated setters of this class.
+     *             Compression is configured by the {@link CompressionConfig}
+     *             of the protocol. This will be removed in Tomcat 9.
      */
+    @Deprecated
     protected int compressionLevel = 0;
 
 
     /**
      * Minimum content size to make compression.
+     *
+     * @deprecated Only updated by the deprecated setters of this class.
+     *             Compression is configured by the {@link CompressionConfig}
+     *             of the protocol. This will be removed in Tomcat 9.
      */
+    @Deprecated
     protected int compressionMinSize = 2048;
 
 
@@ -176,7 +188,12 @@ public class Http11Processor extends AbstractProcessor {
 
     /**
      * Regular expression that defines the user agents to not use gzip with
+     *
+     * @deprecated Only updated by the deprecated setters of this class.
+     *             Compression is configured by the {@link CompressionConfig}
+     *             of the protocol. This will be removed in Tomcat 9.
      */
+    @Deprecated
     protected Pattern noCompressionUserAgents = null;
 
 
@@ -184,7 +201,12 @@ public class Http11Processor extends AbstractProcessor {
      * List of MIMES for which compression may be enabled.
      * Note: This is not spelled correctly but can't be changed without breaking
      *       compatibility
+     *
+     * @deprecated Only updated by the deprecated setters of this class.
+     *             Compression is configured by the {@link CompressionConfig}
+     *             of the protocol. This will be removed in Tomcat 9.
      */
+    @Deprecated
     protected String[] compressableMimeTypes;
 
 
@@ -222,11 +244,29 @@ public class Http11Processor extends AbstractProcessor {
     private final boolean allowHostHeaderMismatch;
 
 
+    /**
+     * Compression configuration shared by all processors of the protocol or,
+     * once one of the deprecated compression setters has been called, a copy
+     * that only applies to this processor.
+     */
+    private CompressionConfig compressionConfig;
+    private boolean compressionConfigCopied = false;
+
+
+    /**
+     * Filters for the content codings used by this processor, created on
+     * first use. The filters are discarded when the content encoders are
+     * reconfigured.
+     */
+    private final Map<ContentEncoder,OutputFilter> encodingFilters = new HashMap<>();
+    private ContentEncoder[] encodingFiltersEncoders = null;
+
+
     public Http11Processor(int maxHttpHeaderSize, boolean allowHostHeaderMismatch,
             boolean rejectIllegalHeaderName, AbstractEndpoint<?> endpoint, int maxTrailerSize,
             Set<String> allowedTrailerHeaders, int maxExtensionSize, int maxSwallowSize,
             Map<String,UpgradeProtocol> httpUpgradeProtocols, boolean sendReasonPhrase,
-            String relaxedPathChars, String relaxedQueryChars) {
+            String relaxedPathChars, String relaxedQueryChars, CompressionConfig compressionConfig) {
 
         super(endpoint);
 
@@ -254,14 +294,11 @@ public class Http11Processor extends AbstractProcessor {
         // Create and add buffered input filter
         inputBuffer.addFilter(new BufferedInputFilter());
 
-        // Create and add the chunked filters.
-        //inputBuffer.addFilter(new GzipInputFilter());
-        outputBuffer.addFilter(new GzipOutputFilter());
-
         pluggableFilterIndex = inputBuffer.getFilters().length;
 
         this.httpUpgradeProtocols = httpUpgradeProtocols;
         this.allowHostHeaderMismatch = allowHostHeaderMismatch;
+        this.compressionConfig = compressionConfig;
     }
 
 
@@ -271,33 +308,33 @@ public class Http11Processor extends AbstractProcessor {
      * @param compression One of <code>on</code>, <code>force</code>,
      *                    <code>off</code> or the minimum compression size in
      *                    bytes which implies <code>on</code>
+     *
+     * @deprecated This only changes the setting for this processor. Use
+     *             {@link AbstractHttp11Protocol#setCompression(String)}. This
+     *             will be removed in Tomcat 9.
      */
+    @Deprecated
     public void setCompression(String compression) {
-        if (compression.equals("on")) {
-            this.compressionLevel = 1;
-        } else if (compression.equals("force")) {
-            this.compressionLevel = 2;
-        } else if (compression.equals("off")) {
-            this.compressionLevel = 0;
-        } else {
-            try {
-                // Try to parse compression as an int, which would give the
-                // minimum compression size
-                compressionMinSize = Integer.parseInt(compression);
-                this.compressionLevel = 1;
-            } catch (Exception e) {
-                this.compressionLevel = 0;
-            }
-        }
+        CompressionConfig config = getProcessorCompressionConfig();
+        config.setCompression(compression);
+        this.compressionLevel = config.getCompressionLevel();
+        this.compressionMinSize = config.getCompressionMinSize();
     }
 
+
     /**
      * Set Minimum size to trigger compression.
      *
      * @param compressionMinSize The minimum content length required for
      *                           compression in bytes
+     *
+     * @deprecated This only changes the setting for this processor. Use
+     *             {@link AbstractHttp11Protocol#setCompressionMinSize(int)}.
+     *             This will be removed in Tomcat 9.
      */
+    @Deprecated
     public void setCompressionMinSize(int compressionMinSize) {
+        getProcessorCompressionConfig().setCompressionMinSize(compressionMinSize);
         this.compressionMinSize = compressionMinSize;
     }
 
@@ -309,14 +346,16 @@ public class Http11Processor extends AbstractProcessor {
      * @param noCompressionUserAgents The regular expression for user agent
      *                                strings for which compression should not
      *                                be applied
+     *
+     * @deprecated This only changes the setting for this processor. Use
+     *             {@link AbstractHttp11Protocol#setNoCompressionUserAgents(String)}.
+     *             This will be removed in Tomcat 9.
      */
+    @Deprecated
     public void setNoCompressionUserAgents(String noCompressionUserAgents) {
-        if (noCompressionUserAgents == null || noCompressionUserAgents.length() == 0) {
-            this.noCompressionUserAgents = null;
-        } else {
-            this.noCompressionUserAgents =
-                Pattern.compile(noCompressionUserAgents);
-        }
+        CompressionConfig config = getProcessorCompressionConfig();
+        config.setNoCompressionUserAgents(noCompressionUserAgents);
+        this.noCompressionUserAgents = config.getNoCompressionUserAgentsPattern();
     }
 
 
@@ -339,46 +378,49 @@ public class Http11Processor extends AbstractProcessor {
      *
      * @param compressibleMimeTypes MIME types for which compression should be
      *                              enabled
+     *
+     * @deprecated This only changes the setting for this processor. Use
+     *             {@link AbstractHttp11Protocol#setCompressibleMimeType(String)}.
+     *             This will be removed in Tomcat 9.
      */
+    @Deprecated
     public void setCompressibleMimeTypes(String[] compressibleMimeTypes) {
+        StringBuilder sb = new StringBuilder();
+        for (String compressibleMimeType : compressibleMimeTypes) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(compressibleMimeType);
+        }
+        getProcessorCompressionConfig().setCompressibleMimeType(sb.toString());
         this.compressableMimeTypes = compressibleMimeTypes;
     }
 
 
-    /**
-     * Return compression level.
-     *
-     * @return The current compression level in string form (off/on/force)
+    /*
+     * The deprecated compression setters must not change the configuration
+     * shared with the other processors of the protocol.
      */
-    public String getCompression() {
-        switch (compressionLevel) {
-        case 0:
-            return "off";
-        case 1:
-            return "on";
-        case 2:
-            return "force";
+    private CompressionConfig getProcessorCompressionConfig() {
+        if (!compressionConfigCopied) {
+            compressionConfig = new CompressionConfig(compressionConfig);
+            compressionConfigCopied = true;
         }
-        return "off";
+        return compressionConfig;
     }
 
 
     /**
-     * Checks if any entry in the string array starts with the specified value
+     * Return compression level.
      *
-     * @param sArray the StringArray
-     * @param value string
+     * @return The current compression level in string form (off/on/force)
+     *
+     * @deprecated Use {@link AbstractHttp11Protocol#getCompression()}. This
+     *             will be removed in Tomcat 9.
      */
-    private static boolean startsWithStringArray(String sArray[], String value) {
-        if (value == null) {
-            return false;
-        }
-        for (int i = 0; i < sArray.length; i++) {
-            if (value.startsWith(sArray[i])) {
-                return true;
-            }
-        }
-        return false;
+    @Deprecated
+    public String getCompression() {
+        return compressionConfig.getCompression();
     }
 
 
@@ -505,72 +547,13 @@ public class Http11Processor extends AbstractProcessor {
 
 
     /**
-     * Check if the resource could be compressed, if the client supports it.
-     */
-    private boolean isCompressible() {
-
-        // Check if content is not already gzipped
-        MessageBytes contentEncodingMB =
-            response.getMimeHeaders().getValue("Content-Encoding");
-
-        if ((contentEncodingMB != null)
-            && (contentEncodingMB.indexOf("gzip") != -1)) {
-            return false;
-        }
-
-        // If force mode, always compress (test purposes only)
-        if (compressionLevel == 2) {
-            return true;
-        }
-
-        // Check if sufficient length to trigger the compression
-        long contentLength = response.getContentLengthLong();
-        if ((contentLength == -1)
-            || (contentLength > compressionMinSize)) {
-            // Check for compatible MIME-TYPE
-            if (compressableMimeTypes != null) {
-                return (startsWithStringArray(compressableMimeTypes, response.getContentType()));
-            }
-        }
-
-        return false;
-    }
-
-
-    /**
-     * Check if compression should be used for this resource. Already checked
-     * that the resource could be compressed if the client supports it.
+     * Should complete request lines and header lines that are present in the
+     * input buffer be parsed with the table driven parser?
+     *
+     * @param fastHeaderParsing {@code true} to use the table driven parser
      */
-    private boolean useCompression() {
-
-        // Check if browser support gzip encoding
-        MessageBytes acceptEncodingMB =
-            request.getMimeHeaders().getValue("accept-encoding");
-
-        if ((acceptEncodingMB == null)
-            || (acceptEncodingMB.indexOf("gzip") == -1)) {
-            return false;
-        }
-
-        // If force mode, always compress (test purposes only)
-        if (compressionLevel == 2) {
-            return true;
-        }
-
-        // Check for incompatible Browser
-        if (noCompressionUserAgents != null) {
-            MessageBytes userAgentValueMB =
-                request.getMimeHeaders().getValue("user-agent");
-            if(userAgentValueMB != null) {
-                String userAgentValue = userAgentValueMB.toString();
-
-                if (noCompressionUserAgents.matcher(userAgentValue).matches()) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
+    public void setFastHeaderParsing(boolean fastHeaderParsing) {
+        inputBuffer.setFastHeaderParsing(fastHeaderParsing);
     }
 
 
@@ -1263,15 +1246,14 @@ public class Http11Processor extends AbstractProcessor {
         }
 
         // Check for compression
-        boolean isCompressible = false;
-        boolean useCompression = false;
-        if (entityBody && (compressionLevel > 0) && sendfileData == null) {
-            isCompressible = isCompressible();
-            if (isCompressible) {
-                useCompression = useCompression();
-            }
-            // Change content-length to -1 to force chunking
-            if (useCompression) {
+        ContentEncoder contentEncoder = null;
+        int compressionLevel = ContentEncoder.DEFAULT_LEVEL;
+        if (entityBody && sendfileData == null) {
+            contentEncoder = compressionConfig.getContentEncoder(request, response);
+            if (contentEncoder != null) {
+                compressionLevel = compressionConfig.getLevel(
+                        contentEncoder, response.getContentLengthLong());
+                // Change content-length to -1 to force chunking
                 response.setContentLength(-1);
             }
         }
@@ -1312,24 +1294,20 @@ public class Http11Processor extends AbstractProcessor {
             }
         }
 
-        if (useCompression) {
-            outputBuffer.addActiveFilter(outputFilters[Constants.GZIP_FILTER]);
-            headers.setValue("Content-Encoding").setString("gzip");
-        }
-        // If it might be compressed, set the Vary header
-        if (isCompressible) {
-            // Make Proxies happy via Vary (from mod_deflate)
-            MessageBytes vary = headers.getValue("Vary");
-            if (vary == null) {
-                // Add a new Vary header
-                headers.setValue("Vary").setString("Accept-Encoding");
-            } else if (vary.equals("*")) {
-                // No action required
-            } else {
-                // Merge into current header
-                headers.setValue("Vary").setString(
-                        vary.getString() + ",Accept-Encoding");
+        if (contentEncoder != null) {
+            ContentEncoder[] contentEncoders = compressionConfig.getContentEncoders();
+            if (contentEncoders != encodingFiltersEncoders) {
+                // Drop the filters of encoders that are no longer configured
+                encodingFilters.clear();
+                encodingFiltersEncoders = contentEncoders;
+            }
+            OutputFilter encodingFilter = encodingFilters.get(contentEncoder);
+            if (encodingFilter == null) {
+                encodingFilter = contentEncoder.createOutputFilter();
+                encodingFilters.put(contentEncoder, encodingFilter);
             }
+            contentEncoder.setLevel(encodingFilter, compressionLevel);
+            outputBuffer.addActiveFilter(encodingFilter);
         }
 
         // Add date header unless application has already set one (e.g. in a
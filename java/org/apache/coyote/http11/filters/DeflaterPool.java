@@ -0,0 +1,370 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import org.apache.tomcat.util.collections.KeyedIdlePool;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * A pool of {@link Deflater}s shared by the {@link GzipOutputFilter}s of a
+ * connector. A {@link Deflater} holds native zlib state that is only freed
+ * when {@link Deflater#end()} is called (or the {@link Deflater} is
+ * finalized) so creating one per compressed response causes a significant
+ * amount of native memory churn and finalizer work under load. Pooled
+ * {@link Deflater}s are {@link Deflater#reset() reset} and reused instead.
+ * <p>
+ * The pool also holds the compression level and strategy to use for each
+ * content type and collects statistics for the responses compressed with the
+ * {@link Deflater}s it provides.
+ */
+public class DeflaterPool extends KeyedIdlePool<Deflater> {
+
+    private static final StringManager sm = StringManager.getManager(DeflaterPool.class);
+
+    private volatile int level = Deflater.DEFAULT_COMPRESSION;
+    private volatile int strategy = Deflater.DEFAULT_STRATEGY;
+    private volatile String mimeTypes = null;
+    private volatile MimeTypeSettings[] mimeTypeSettings = new MimeTypeSettings[0];
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong compressedCount = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong compressionTime = new AtomicLong();
+
+
+    public DeflaterPool() {
+        super(200);
+    }
+
+
+    // ------------------------------------------------------------- Properties
+
+    public int getLevel() {
+        return level;
+    }
+
+
+    /**
+     * Set the compression level used for content types that do not have a
+     * specific level configured.
+     *
+     * @param level The compression level, -1 to 9
+     */
+    public void setLevel(int level) {
+        this.level = validateLevel(level);
+    }
+
+
+    public String getStrategy() {
+        return strategyToString(strategy);
+    }
+
+
+    /**
+     * Set the compression strategy used for content types that do not have a
+     * specific strategy configured.
+     *
+     * @param strategy One of <code>default</code>, <code>filtered</code> or
+     *                 <code>huffmanOnly</code>
+     */
+    public void setStrategy(String strategy) {
+        this.strategy = parseStrategy(strategy);
+    }
+
+
+    public String getMimeTypes() {
+        return mimeTypes;
+    }
+
+
+    /**
+     * Set the compression level and, optionally, the compression strategy for
+     * specific content types. The value is a comma separated list of entries
+     * of the form <code>type=level[:strategy]</code>. As for the compressible
+     * MIME types, an entry applies to any content type that starts with the
+     * given type and the first matching entry is used.
+     *
+     * @param mimeTypes The per content type settings
+     */
+    public void setMimeTypes(String mimeTypes) {
+        List<MimeTypeSettings> settings = new ArrayList<>();
+        if (mimeTypes != null) {
+            for (String entry : mimeTypes.split(",")) {
+                entry = entry.trim();
+                if (entry.length() == 0) {
+                    continue;
+                }
+                int equals = entry.indexOf('=');
+                if (equals < 1) {
+                    throw new IllegalArgumentException(
+                            sm.getString("deflaterPool.invalidMimeType", entry));
+                }
+                String type = entry.substring(0, equals).trim();
+                String value = entry.substring(equals + 1).trim();
+                int entryStrategy = -1;
+                int colon = value.indexOf(':');
+                if (colon > -1) {
+                    entryStrategy = parseStrategy(value.substring(colon + 1).trim());
+                    value = value.substring(0, colon).trim();
+                }
+                int entryLevel;
+                try {
+                    entryLevel = validateLevel(Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            sm.getString("deflaterPool.invalidMimeType", entry), e);
+                }
+                settings.add(new MimeTypeSettings(type, entryLevel, entryStrategy));
+            }
+        }
+        this.mimeTypeSettings = settings.toArray(new MimeTypeSettings[settings.size()]);
+        this.mimeTypes = mimeTypes;
+    }
+
+
+    /**
+     * Obtain the compression level to use for the given content type.
+     *
+     * @param contentType The content type of the response, may be
+     *                    <code>null</code>
+     *
+     * @return The compression level
+     */
+    public int getLevel(String contentType) {
+        MimeTypeSettings settings = findSettings(contentType);
+        if (settings == null) {
+            return level;
+        }
+        return settings.level;
+    }
+
+
+    /**
+     * Obtain the compression strategy to use for the given content type.
+     *
+     * @param contentType The content type of the response, may be
+     *                    <code>null</code>
+     *
+     * @return The compression strategy
+     */
+    public int getStrategy(String contentType) {
+        MimeTypeSettings settings = findSettings(contentType);
+        if (settings == null || settings.strategy == -1) {
+            return strategy;
+        }
+        return settings.strategy;
+    }
+
+
+    // ------------------------------------------------------------- Statistics
+
+    /**
+     * @return The number of {@link Deflater}s created by this pool
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+
+    /**
+     * @return The number of responses that have been compressed
+     */
+    public long getCompressedCount() {
+        return compressedCount.get();
+    }
+
+
+    /**
+     * @return The number of uncompressed bytes that have been compressed
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+
+    /**
+     * @return The number of compressed bytes written, including the gzip
+     *         header and trailer
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+
+    /**
+     * @return The ratio of compressed to uncompressed bytes or zero if no
+     *         data has been compressed
+     */
+    public double getCompressionRatio() {
+        long in = bytesIn.get();
+        if (in == 0) {
+            return 0;
+        }
+        return (double) bytesOut.get() / in;
+    }
+
+
+    /**
+     * @return The total time, in milliseconds, spent compressing data
+     */
+    public long getCompressionTime() {
+        return compressionTime.get() / 1000000;
+    }
+
+
+    /**
+     * Reset the statistics collected by this pool.
+     */
+    public void resetStatistics() {
+        compressedCount.set(0);
+        bytesIn.set(0);
+        bytesOut.set(0);
+        compressionTime.set(0);
+    }
+
+
+    void addStatistics(long in, long out, long nanos) {
+        compressedCount.incrementAndGet();
+        bytesIn.addAndGet(in);
+        bytesOut.addAndGet(out);
+        compressionTime.addAndGet(nanos);
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Obtain a {@link Deflater} with the given settings.
+     *
+     * @param level    The compression level
+     * @param strategy The compression strategy
+     * @param nowrap   <code>true</code> for raw deflate data (i.e. without
+     *                 the zlib header and trailer)
+     *
+     * @return A pooled {@link Deflater} if one is available, else a new one
+     */
+    public Deflater acquire(int level, int strategy, boolean nowrap) {
+        Deflater deflater = poll(key(level, strategy, nowrap));
+        if (deflater != null) {
+            return deflater;
+        }
+        created.incrementAndGet();
+        deflater = new Deflater(level, nowrap);
+        deflater.setStrategy(strategy);
+        return deflater;
+    }
+
+
+    /**
+     * Return a {@link Deflater} obtained from
+     * {@link #acquire(int, int, boolean)} to this pool. The {@link Deflater}
+     * must not be used by the caller once it has been released.
+     *
+     * @param deflater The {@link Deflater}
+     * @param level    The compression level it was acquired with
+     * @param strategy The compression strategy it was acquired with
+     * @param nowrap   The format it was acquired with
+     */
+    public void release(Deflater deflater, int level, int strategy, boolean nowrap) {
+        deflater.reset();
+        offer(key(level, strategy, nowrap), deflater);
+    }
+
+
+    /**
+     * {@link Deflater}s that are not retained are ended.
+     */
+    @Override
+    protected void discard(Deflater deflater) {
+        deflater.end();
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+    private MimeTypeSettings findSettings(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (MimeTypeSettings settings : mimeTypeSettings) {
+            if (contentType.startsWith(settings.type)) {
+                return settings;
+            }
+        }
+        return null;
+    }
+
+
+    private static int key(int level, int strategy, boolean nowrap) {
+        // Level is -1 to 9, strategy is 0 to 2
+        return ((level + 1) * 4 + strategy) * 2 + (nowrap ? 1 : 0);
+    }
+
+
+    private static int validateLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(
+                    sm.getString("deflaterPool.invalidLevel", Integer.toString(level)));
+        }
+        return level;
+    }
+
+
+    private static int parseStrategy(String strategy) {
+        if ("default".equalsIgnoreCase(strategy)) {
+            return Deflater.DEFAULT_STRATEGY;
+        } else if ("filtered".equalsIgnoreCase(strategy)) {
+            return Deflater.FILTERED;
+        } else if ("huffmanOnly".equalsIgnoreCase(strategy)) {
+            return Deflater.HUFFMAN_ONLY;
+        }
+        throw new IllegalArgumentException(
+                sm.getString("deflaterPool.invalidStrategy", strategy));
+    }
+
+
+    private static String strategyToString(int strategy) {
+        switch (strategy) {
+        case Deflater.FILTERED:
+            return "filtered";
+        case Deflater.HUFFMAN_ONLY:
+            return "huffmanOnly";
+        default:
+            return "default";
+        }
+    }
+
+
+    private static class MimeTypeSettings {
+
+        private final String type;
+        private final int level;
+        private final int strategy;
+
+        private MimeTypeSettings(String type, int level, int strategy) {
+            this.type = type;
+            this.level = level;
+            this.strategy = strategy;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.util.zip.Deflater;
+
+import org.apache.coyote.ContentEncoder;
+import org.apache.coyote.http11.OutputFilter;
+
+/**
+ * The gzip content coding, implemented by {@link GzipOutputFilter}.
+ */
+public class GzipContentEncoder implements ContentEncoder {
+
+    protected final DeflaterPool deflaterPool;
+
+
+    public GzipContentEncoder() {
+        this(null);
+    }
+
+
+    public GzipContentEncoder(DeflaterPool deflaterPool) {
+        this.deflaterPool = deflaterPool;
+    }
+
+
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+
+    @Override
+    public OutputFilter createOutputFilter() {
+        return new GzipOutputFilter(deflaterPool);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Levels outside of the range supported by {@link Deflater} are limited to
+     * that range.
+     */
+    @Override
+    public void setLevel(OutputFilter filter, int level) {
+        if (level != DEFAULT_LEVEL) {
+            level = Math.max(Deflater.DEFAULT_COMPRESSION, Math.min(level, Deflater.BEST_COMPRESSION));
+        }
+        ((GzipOutputFilter) filter).setLevel(level);
+    }
+}
@@ -17,10 +17,11 @@
 package org.apache.coyote.http11.filters;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.Response;
 import org.apache.coyote.http11.HttpOutputBuffer;
 import org.apache.coyote.http11.OutputFilter;
@@ -29,7 +30,10 @@ import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.buf.ByteChunk;
 
 /**
- * Gzip output filter.
+ * Gzip output filter. The data is compressed with a {@link Deflater} obtained
+ * from a {@link DeflaterPool} (if any) and the compressed data is written
+ * directly to the next buffer in the pipeline. Sub-classes may use the zlib
+ * format of the deflate content coding rather than the gzip format.
  *
  * @author Remy Maucherat
  */
@@ -37,6 +41,9 @@ public class GzipOutputFilter implements OutputFilter {
 
     protected static final Log log = LogFactory.getLog(GzipOutputFilter.class);
 
+    private static final byte[] GZIP_HEADER = new byte[] {
+            (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
 
     // ----------------------------------------------------- Instance Variables
 
@@ -47,15 +54,70 @@ public class GzipOutputFilter implements OutputFilter {
 
 
     /**
-     * Compression output stream.
+     * The pool the compressor is obtained from. If <code>null</code> a new
+     * compressor is created for each response.
      */
-    protected GZIPOutputStream compressionStream = null;
+    protected final DeflaterPool deflaterPool;
 
 
     /**
-     * Fake internal output stream.
+     * Compressor for the current response, created on the first write.
      */
-    protected final OutputStream fakeOutputStream = new FakeOutputStream();
+    protected Deflater deflater = null;
+
+
+    private final boolean gzip;
+    private int requestedLevel = ContentEncoder.DEFAULT_LEVEL;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private int strategy = Deflater.DEFAULT_STRATEGY;
+    private final CRC32 crc = new CRC32();
+
+    // Compressed data is written from this array
+    private final byte[] output = new byte[8192];
+    private final ByteBuffer outputBuffer = ByteBuffer.wrap(output);
+    // Used to copy data from buffers that are not backed by an array
+    private byte[] input = null;
+
+    private long bytesOut = 0;
+    private long compressionTime = 0;
+
+
+    // ----------------------------------------------------------- Constructors
+
+    public GzipOutputFilter() {
+        this(null);
+    }
+
+
+    public GzipOutputFilter(DeflaterPool deflaterPool) {
+        this(deflaterPool, true);
+    }
+
+
+    /**
+     * @param deflaterPool The pool to obtain compressors from or
+     *                     <code>null</code> to create a compressor for each
+     *                     response
+     * @param gzip         <code>true</code> for the gzip format,
+     *                     <code>false</code> for the zlib format
+     */
+    protected GzipOutputFilter(DeflaterPool deflaterPool, boolean gzip) {
+        this.deflaterPool = deflaterPool;
+        this.gzip = gzip;
+    }
+
+
+    /**
+     * Set the compression level for the next response, overriding the level
+     * configured in the {@link DeflaterPool} for its content type.
+     *
+     * @param level The compression level or
+     *              {@link ContentEncoder#DEFAULT_LEVEL} to use the level
+     *              configured in the {@link DeflaterPool}
+     */
+    public void setLevel(int level) {
+        requestedLevel = level;
+    }
 
 
     // --------------------------------------------------- OutputBuffer Methods
@@ -67,27 +129,24 @@ public class GzipOutputFilter implements OutputFilter {
     @Deprecated
     @Override
     public int doWrite(ByteChunk chunk) throws IOException {
-        if (compressionStream == null) {
-            compressionStream = new GZIPOutputStream(fakeOutputStream, true);
-        }
-        compressionStream.write(chunk.getBytes(), chunk.getStart(),
-                                chunk.getLength());
-        return chunk.getLength();
+        int len = chunk.getLength();
+        deflate(chunk.getBytes(), chunk.getStart(), len);
+        return len;
     }
 
 
     @Override
     public int doWrite(ByteBuffer chunk) throws IOException {
-        if (compressionStream == null) {
-            compressionStream = new GZIPOutputStream(fakeOutputStream, true);
-        }
         int len = chunk.remaining();
         if (chunk.hasArray()) {
-            compressionStream.write(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
+            deflate(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
+            chunk.position(chunk.limit());
         } else {
-            byte[] bytes = new byte[len];
-            chunk.put(bytes);
-            compressionStream.write(bytes, 0, len);
+            if (input == null || input.length < len) {
+                input = new byte[Math.max(len, output.length)];
+            }
+            chunk.get(input, 0, len);
+            deflate(input, 0, len);
         }
         return len;
     }
@@ -106,12 +165,16 @@ public class GzipOutputFilter implements OutputFilter {
      */
     @Override
     public void flush() throws IOException {
-        if (compressionStream != null) {
+        if (deflater != null) {
             try {
                 if (log.isDebugEnabled()) {
                     log.debug("Flushing the compression stream!");
                 }
-                compressionStream.flush();
+                int n;
+                do {
+                    n = deflate(Deflater.SYNC_FLUSH);
+                    write(n);
+                } while (n == output.length);
             } catch (IOException e) {
                 if (log.isDebugEnabled()) {
                     log.debug("Ignored exception while flushing gzip filter", e);
@@ -122,9 +185,17 @@ public class GzipOutputFilter implements OutputFilter {
     }
 
 
+    /**
+     * Obtains the compression level and strategy for the response from the
+     * {@link DeflaterPool}, if any.
+     */
     @Override
     public void setResponse(Response response) {
-        // NOOP: No need for parameters from response in this filter
+        if (deflaterPool != null) {
+            String contentType = response.getContentType();
+            level = deflaterPool.getLevel(contentType);
+            strategy = deflaterPool.getStrategy(contentType);
+        }
     }
 
 
@@ -136,11 +207,26 @@ public class GzipOutputFilter implements OutputFilter {
 
     @Override
     public void end() throws IOException {
-        if (compressionStream == null) {
-            compressionStream = new GZIPOutputStream(fakeOutputStream, true);
+        if (deflater == null) {
+            start();
         }
-        compressionStream.finish();
-        compressionStream.close();
+        deflater.finish();
+        while (!deflater.finished()) {
+            write(deflate(Deflater.NO_FLUSH));
+        }
+
+        long bytesIn = deflater.getBytesRead();
+        if (gzip) {
+            // Trailer: CRC-32 and uncompressed size (modulo 2^32), little endian
+            writeInt((int) crc.getValue(), 0);
+            writeInt((int) bytesIn, 4);
+            write(8);
+        }
+
+        if (deflaterPool != null) {
+            deflaterPool.addStatistics(bytesIn, bytesOut, compressionTime);
+        }
+        releaseDeflater();
         buffer.end();
     }
 
@@ -150,35 +236,96 @@ public class GzipOutputFilter implements OutputFilter {
      */
     @Override
     public void recycle() {
-        // Set compression stream to null
-        compressionStream = null;
+        if (deflater != null) {
+            // Response was not completed normally
+            releaseDeflater();
+        }
+        requestedLevel = ContentEncoder.DEFAULT_LEVEL;
+        level = Deflater.DEFAULT_COMPRESSION;
+        strategy = Deflater.DEFAULT_STRATEGY;
+        crc.reset();
+        bytesOut = 0;
+        compressionTime = 0;
     }
 
 
-    // ------------------------------------------- FakeOutputStream Inner Class
+    // -------------------------------------------------------- Private Methods
+
+    private void start() throws IOException {
+        if (requestedLevel != ContentEncoder.DEFAULT_LEVEL) {
+            level = requestedLevel;
+        }
+        if (deflaterPool == null) {
+            deflater = new Deflater(level, gzip);
+            deflater.setStrategy(strategy);
+        } else {
+            deflater = deflaterPool.acquire(level, strategy, gzip);
+        }
+        if (gzip) {
+            System.arraycopy(GZIP_HEADER, 0, output, 0, GZIP_HEADER.length);
+            write(GZIP_HEADER.length);
+        }
+    }
 
 
-    protected class FakeOutputStream
-        extends OutputStream {
-        protected final ByteBuffer outputChunk = ByteBuffer.allocate(1);
-        @Override
-        public void write(int b)
-            throws IOException {
-            // Shouldn't get used for good performance, but is needed for
-            // compatibility with Sun JDK 1.4.0
-            outputChunk.put(0, (byte) (b & 0xff));
-            buffer.doWrite(outputChunk);
+    private void deflate(byte[] b, int off, int len) throws IOException {
+        if (deflater == null) {
+            start();
         }
-        @Override
-        public void write(byte[] b, int off, int len)
-            throws IOException {
-            buffer.doWrite(ByteBuffer.wrap(b, off, len));
+        if (len == 0) {
+            return;
+        }
+        if (gzip) {
+            long start = System.nanoTime();
+            crc.update(b, off, len);
+            compressionTime += System.nanoTime() - start;
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            write(deflate(Deflater.NO_FLUSH));
         }
-        @Override
-        public void flush() throws IOException {/*NOOP*/}
-        @Override
-        public void close() throws IOException {/*NOOP*/}
     }
 
 
+    /*
+     * Compresses into the output array. Only the time spent compressing is
+     * included in the statistics, not the time spent writing the result.
+     */
+    private int deflate(int flush) {
+        long start = System.nanoTime();
+        int n = deflater.deflate(output, 0, output.length, flush);
+        compressionTime += System.nanoTime() - start;
+        return n;
+    }
+
+
+    /*
+     * Writes the first len bytes of the output array to the next buffer.
+     */
+    private void write(int len) throws IOException {
+        if (len > 0) {
+            outputBuffer.clear();
+            outputBuffer.limit(len);
+            buffer.doWrite(outputBuffer);
+            bytesOut += len;
+        }
+    }
+
+
+    private void writeInt(int value, int off) {
+        output[off] = (byte) value;
+        output[off + 1] = (byte) (value >> 8);
+        output[off + 2] = (byte) (value >> 16);
+        output[off + 3] = (byte) (value >> 24);
+    }
+
+
+    private void releaseDeflater() {
+        if (deflaterPool == null) {
+            deflater.end();
+        } else {
+            deflaterPool.release(deflater, level, strategy, gzip);
+        }
+        deflater = null;
+    }
 }
@@ -44,6 +44,7 @@ public abstract class ConnectionSettingsBase<T extends Throwable> {
     protected static final int DEFAULT_INITIAL_WINDOW_SIZE = (1 << 16) - 1;
     protected static final int DEFAULT_MAX_FRAME_SIZE = MIN_MAX_FRAME_SIZE;
     protected static final long DEFAULT_MAX_HEADER_LIST_SIZE = UNLIMITED;
+    protected static final boolean DEFAULT_ENABLE_CONNECT_PROTOCOL = false;
 
     protected Map<Setting,Long> current = new HashMap<>();
     protected Map<Setting,Long> pending = new HashMap<>();
@@ -58,6 +59,8 @@ public abstract class ConnectionSettingsBase<T extends Throwable> {
         current.put(Setting.INITIAL_WINDOW_SIZE,    Long.valueOf(DEFAULT_INITIAL_WINDOW_SIZE));
         current.put(Setting.MAX_FRAME_SIZE,         Long.valueOf(DEFAULT_MAX_FRAME_SIZE));
         current.put(Setting.MAX_HEADER_LIST_SIZE,   Long.valueOf(DEFAULT_MAX_HEADER_LIST_SIZE));
+        current.put(Setting.ENABLE_CONNECT_PROTOCOL,
+                Long.valueOf(DEFAULT_ENABLE_CONNECT_PROTOCOL ? 1 : 0));
     }
 
 
@@ -86,6 +89,9 @@ public abstract class ConnectionSettingsBase<T extends Throwable> {
         case MAX_HEADER_LIST_SIZE:
             // No further validation required
             break;
+        case ENABLE_CONNECT_PROTOCOL:
+            validateEnableConnectProtocol(value);
+            break;
         case UNKNOWN:
             // Unrecognised. Ignore it.
             log.warn(sm.getString("connectionSettings.unknown",
@@ -133,6 +139,12 @@ public abstract class ConnectionSettingsBase<T extends Throwable> {
     }
 
 
+    public boolean getEnableConnectProtocol() {
+        long result = getMax(Setting.ENABLE_CONNECT_PROTOCOL);
+        return result != 0;
+    }
+
+
     private synchronized long getMin(Setting setting) {
         Long pendingValue = pending.get(setting);
         long currentValue = current.get(setting).longValue();
@@ -195,6 +207,17 @@ public abstract class ConnectionSettingsBase<T extends Throwable> {
     }
 
 
+    private void validateEnableConnectProtocol(long enableConnectProtocol) throws T {
+        // Can't be less than zero since the result of the byte->long conversion
+        // will never be negative
+        if (enableConnectProtocol > 1) {
+            String msg = sm.getString("connectionSettings.enableConnectProtocolInvalid",
+                    connectionId, Long.toString(enableConnectProtocol));
+            throwException(msg, Http2Error.PROTOCOL_ERROR);
+        }
+    }
+
+
     private void validateInitialWindowSize(long initialWindowSize) throws T {
         if (initialWindowSize > MAX_WINDOW_SIZE) {
             String msg = sm.getString("connectionSettings.windowSizeTooBig",
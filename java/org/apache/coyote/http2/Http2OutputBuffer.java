@@ -42,6 +42,7 @@ public class Http2OutputBuffer implements HttpOutputBuffer {
      */
     public void addFilter(OutputFilter filter) {
         filter.setBuffer(next);
+        filter.setResponse(coyoteResponse);
         next = filter;
     }
 
@@ -29,11 +29,15 @@ import java.util.regex.Pattern;
 
 import org.apache.coyote.Adapter;
 import org.apache.coyote.CompressionConfig;
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.Processor;
 import org.apache.coyote.Request;
 import org.apache.coyote.Response;
 import org.apache.coyote.UpgradeProtocol;
 import org.apache.coyote.UpgradeToken;
+import org.apache.coyote.http11.filters.DeflateContentEncoder;
+import org.apache.coyote.http11.filters.DeflaterPool;
+import org.apache.coyote.http11.filters.GzipContentEncoder;
 import org.apache.coyote.http11.upgrade.InternalHttpUpgradeHandler;
 import org.apache.coyote.http11.upgrade.UpgradeProcessorInternal;
 import org.apache.tomcat.util.buf.StringUtils;
@@ -84,8 +88,18 @@ public class Http2Protocol implements UpgradeProtocol {
     private int overheadCountFactor = DEFAULT_OVERHEAD_COUNT_FACTOR;
 
     private boolean initiatePingDisabled = false;
+    // RFC 8441
+    private boolean enableConnectProtocol = false;
     // Compression
     private final CompressionConfig compressionConfig = new CompressionConfig();
+    private final DeflaterPool deflaterPool = new DeflaterPool();
+
+
+    public Http2Protocol() {
+        compressionConfig.addContentEncoder(new GzipContentEncoder(deflaterPool));
+        compressionConfig.addContentEncoder(new DeflateContentEncoder(deflaterPool));
+    }
+
 
     @Override
     public String getHttpUpgradeName(boolean isSSLEnabled) {
@@ -131,6 +145,7 @@ public class Http2Protocol implements UpgradeProtocol {
         result.setMaxTrailerCount(getMaxTrailerCount());
         result.setMaxTrailerSize(getMaxTrailerSize());
         result.setInitiatePingDisabled(initiatePingDisabled);
+        result.setEnableConnectProtocol(getEnableConnectProtocol());
         return result;
     }
 
@@ -321,6 +336,35 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    public boolean getEnableConnectProtocol() {
+        return enableConnectProtocol;
+    }
+
+
+    /**
+     * Should the server advertise support for the extended CONNECT method
+     * defined by RFC 8441? This allows clients to bootstrap protocols such as
+     * WebSocket over an HTTP/2 stream. The protocol requested by the client is
+     * exposed to the application via the
+     * {@link org.apache.coyote.Constants#CONNECT_PROTOCOL_ATTR} request
+     * attribute.
+     *
+     * @param enableConnectProtocol <code>true</code> to advertise support
+     */
+    public void setEnableConnectProtocol(boolean enableConnectProtocol) {
+        this.enableConnectProtocol = enableConnectProtocol;
+    }
+
+
+    /**
+     * Release the resources held for compression. Called when the connector
+     * this protocol is configured for is stopped.
+     */
+    public void stop() {
+        deflaterPool.clear();
+    }
+
+
     public void setCompression(String compression) {
         compressionConfig.setCompression(compression);
     }
@@ -362,7 +406,29 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    public String getCompressionEncodings() {
+        return compressionConfig.getCompressionEncodings();
+    }
+    public void setCompressionEncodings(String compressionEncodings) {
+        compressionConfig.setCompressionEncodings(compressionEncodings);
+    }
+
+
+    public String getCompressionLevels() {
+        return compressionConfig.getCompressionLevels();
+    }
+    public void setCompressionLevels(String compressionLevels) {
+        compressionConfig.setCompressionLevels(compressionLevels);
+    }
+
+
     public boolean useCompression(Request request, Response response) {
         return compressionConfig.useCompression(request, response);
     }
+    public ContentEncoder getContentEncoder(Request request, Response response) {
+        return compressionConfig.getContentEncoder(request, response);
+    }
+    public int getEncodingLevel(ContentEncoder encoder, long contentLength) {
+        return compressionConfig.getLevel(encoder, contentLength);
+    }
 }
@@ -1328,6 +1328,11 @@ public class Http2UpgradeHandler extends AbstractStream implements InternalHttpU
     }
 
 
+    public void setEnableConnectProtocol(boolean enableConnectProtocol) {
+        localSettings.set(Setting.ENABLE_CONNECT_PROTOCOL, enableConnectProtocol ? 1 : 0);
+    }
+
+
     // ----------------------------------------------- Http2Parser.Input methods
 
     @Override
@@ -432,6 +432,23 @@ public class Stream extends AbstractStream implements HeaderEmitter {
             }
             break;
         }
+        case ":protocol": {
+            // RFC 8441 extended CONNECT. Only permitted if enabled, otherwise
+            // this is treated as any other unknown pseudo header.
+            if (!handler.getLocalSettings().getEnableConnectProtocol()) {
+                headerException = new StreamException(sm.getString(
+                        "stream.header.unknownPseudoHeader", getConnectionId(), getIdentifier(),
+                        name), Http2Error.PROTOCOL_ERROR, getIdAsInt());
+            } else if (coyoteRequest.getAttribute(
+                    org.apache.coyote.Constants.CONNECT_PROTOCOL_ATTR) == null) {
+                coyoteRequest.setAttribute(org.apache.coyote.Constants.CONNECT_PROTOCOL_ATTR,
+                        value);
+            } else {
+                throw new HpackException(sm.getString("stream.header.duplicate",
+                        getConnectionId(), getIdentifier(), ":protocol" ));
+            }
+            break;
+        }
         case "cookie": {
             // Cookie headers need to be concatenated into a single header
             // See RFC 7540 8.1.2.5
@@ -473,7 +490,16 @@ public class Stream extends AbstractStream implements HeaderEmitter {
     @Override
     public void validateHeaders() throws StreamException {
         if (headerException == null) {
-            return;
+            // The :protocol pseudo header may have been received before the
+            // :method pseudo header so this can't be checked any earlier
+            if (coyoteRequest.getAttribute(
+                    org.apache.coyote.Constants.CONNECT_PROTOCOL_ATTR) == null ||
+                    "CONNECT".equals(coyoteRequest.method().toString())) {
+                return;
+            }
+            headerException = new StreamException(sm.getString(
+                    "stream.header.connectProtocol", getConnectionId(), getIdentifier()),
+                    Http2Error.PROTOCOL_ERROR, getIdAsInt());
         }
 
         throw headerException;
@@ -23,10 +23,11 @@ import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
 import org.apache.coyote.ContainerThreadMarker;
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
 import org.apache.coyote.Response;
-import org.apache.coyote.http11.filters.GzipOutputFilter;
+import org.apache.coyote.http11.OutputFilter;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.buf.ByteChunk;
@@ -134,6 +135,22 @@ class StreamProcessor extends AbstractProcessor {
             }
         }
 
+        // Check for compression before the content-length header is added as
+        // the compressed length is not known
+        if (protocol != null) {
+            ContentEncoder contentEncoder =
+                    protocol.getContentEncoder(coyoteRequest, coyoteResponse);
+            if (contentEncoder != null) {
+                // Enable compression. Headers will have been set. Need to
+                // configure output filter at this point.
+                OutputFilter filter = contentEncoder.createOutputFilter();
+                contentEncoder.setLevel(filter, protocol.getEncodingLevel(
+                        contentEncoder, coyoteResponse.getContentLengthLong()));
+                coyoteResponse.setContentLength(-1);
+                stream.addOutputFilter(filter);
+            }
+        }
+
         // Add a content-length header if a content length has been set unless
         // the application has already added one
         long contentLength = coyoteResponse.getContentLengthLong();
@@ -146,12 +163,6 @@ class StreamProcessor extends AbstractProcessor {
         if (statusCode >= 200 && headers.getValue("date") == null) {
             headers.addValue("date").setString(FastHttpDateFormat.getCurrentDate());
         }
-
-        if (protocol != null && protocol.useCompression(coyoteRequest, coyoteResponse)) {
-            // Enable compression. Headers will have been set. Need to configure
-            // output filter at this point.
-            stream.addOutputFilter(new GzipOutputFilter());
-        }
     }
 
 
@@ -33,6 +33,7 @@ import org.apache.el.lang.ELSupport;
 import org.apache.el.lang.EvaluationContext;
 import org.apache.el.stream.Optional;
 import org.apache.el.util.MessageFactory;
+import org.apache.el.util.PropertyInlineCache;
 import org.apache.el.util.ReflectionUtil;
 
 
@@ -49,6 +50,13 @@ public final class AstValue extends SimpleNode {
         protected Object property;
     }
 
+    /*
+     * Inline caches for property reads, indexed by child. Only used if
+     * PropertyInlineCache.ENABLED is true. Races are benign since the entries
+     * are immutable and a lost update just means the resolver chain is used.
+     */
+    private volatile PropertyInlineCache[] inlineCaches;
+
     public AstValue(int id) {
         super(id);
     }
@@ -166,7 +174,12 @@ public final class AstValue extends SimpleNode {
                 }
 
                 ctx.setPropertyResolved(false);
-                base = resolver.getValue(ctx, base, suffix);
+                if (PropertyInlineCache.ENABLED &&
+                        this.children[i] instanceof AstDotSuffix) {
+                    base = getValueCached(ctx, resolver, base, (String) suffix, i);
+                } else {
+                    base = resolver.getValue(ctx, base, suffix);
+                }
                 i++;
             }
         }
@@ -177,6 +190,27 @@ public final class AstValue extends SimpleNode {
         return base;
     }
 
+    private Object getValueCached(EvaluationContext ctx, ELResolver resolver,
+            Object base, String property, int index) {
+        PropertyInlineCache[] caches = inlineCaches;
+        if (caches == null) {
+            caches = new PropertyInlineCache[this.children.length];
+            inlineCaches = caches;
+        }
+        PropertyInlineCache cache = caches[index];
+        if (cache == PropertyInlineCache.MEGAMORPHIC) {
+            return resolver.getValue(ctx, base, property);
+        }
+        if (cache != null && cache.matches(resolver, base)) {
+            return cache.getValue(ctx, base, property);
+        }
+        Object result = resolver.getValue(ctx, base, property);
+        if (ctx.isPropertyResolved()) {
+            caches[index] = PropertyInlineCache.update(cache, resolver, base, property);
+        }
+        return result;
+    }
+
     @Override
     public boolean isReadOnly(EvaluationContext ctx) throws ELException {
         Target t = getTarget(ctx);
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.el.util;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collection;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.el.ELClass;
+import javax.el.ELException;
+import javax.el.ELResolver;
+
+import org.apache.el.lang.EvaluationContext;
+import org.apache.el.stream.Optional;
+import org.apache.el.stream.Stream;
+
+/**
+ * A monomorphic inline cache for a single JavaBean property read in an EL
+ * expression, e.g. the <code>b</code> in <code>${a.b}</code>.
+ * <p>
+ * When enabled via the system property
+ * {@code org.apache.el.parser.INLINE_CACHE}, the first time the
+ * {@link ELResolver} chain resolves a property of a plain JavaBean the
+ * expression node records the class of the base object and the public read
+ * method for the property. Subsequent evaluations with a base object of the
+ * same class and the same {@link ELResolver} call the read method directly
+ * rather than walking the resolver chain. If the node sees a base object of a
+ * different class, or a base object that is not a plain JavaBean (a Map, List,
+ * array, ResourceBundle, etc.), it switches permanently to the standard
+ * resolver chain.
+ * <p>
+ * The cache assumes that, for a non-null base object, which resolver in the
+ * chain handles a property depends only on the class of the base object and
+ * the name of the property. This holds for all the resolvers provided by the
+ * EL, JSP and Servlet specifications but may not hold for custom resolvers,
+ * which is why the cache is disabled by default.
+ * <p>
+ * The read methods are held in a {@link ClassValue} and the nodes only hold
+ * weak references to them, so caching does not prevent web application
+ * classes from being unloaded.
+ */
+public final class PropertyInlineCache {
+
+    public static final boolean ENABLED;
+
+    static {
+        String enabledStr;
+        if (System.getSecurityManager() == null) {
+            enabledStr = System.getProperty(
+                    "org.apache.el.parser.INLINE_CACHE", "false");
+        } else {
+            enabledStr = AccessController.doPrivileged(
+                    new PrivilegedAction<String>() {
+                        @Override
+                        public String run() {
+                            return System.getProperty(
+                                    "org.apache.el.parser.INLINE_CACHE", "false");
+                        }
+                    });
+        }
+        ENABLED = Boolean.parseBoolean(enabledStr);
+    }
+
+    /**
+     * Shared instance used once a node has seen more than one class of base
+     * object or a base object that is not a plain JavaBean.
+     */
+    public static final PropertyInlineCache MEGAMORPHIC =
+            new PropertyInlineCache(null, null);
+
+    private static final ClassValue<ConcurrentMap<String,PropertyReader>> READERS =
+            new ClassValue<ConcurrentMap<String,PropertyReader>>() {
+                @Override
+                protected ConcurrentMap<String,PropertyReader> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private static final PropertyReader NO_READER = new PropertyReader(null, null);
+
+    private final WeakReference<ELResolver> resolver;
+    private final WeakReference<PropertyReader> reader;
+
+
+    private PropertyInlineCache(ELResolver resolver, PropertyReader reader) {
+        this.resolver = new WeakReference<>(resolver);
+        this.reader = new WeakReference<>(reader);
+    }
+
+
+    /**
+     * Creates the cache to use after the resolver chain has successfully
+     * resolved a property.
+     *
+     * @param current   The cache currently held by the node, may be
+     *                  <code>null</code>
+     * @param resolver  The resolver that resolved the property
+     * @param base      The base object
+     * @param property  The name of the property
+     *
+     * @return The new cache for the node
+     */
+    public static PropertyInlineCache update(PropertyInlineCache current,
+            ELResolver resolver, Object base, String property) {
+        if (current == MEGAMORPHIC ||
+                current != null && current.reader.get() != null) {
+            // The node has already seen a different class of base object or
+            // a different resolver
+            return MEGAMORPHIC;
+        }
+        PropertyReader reader = getReader(base.getClass(), property);
+        if (reader == NO_READER) {
+            return MEGAMORPHIC;
+        }
+        return new PropertyInlineCache(resolver, reader);
+    }
+
+
+    /**
+     * @param resolver  The resolver for the current evaluation
+     * @param base      The base object
+     *
+     * @return <code>true</code> if the cached read method may be used for the
+     *         given base object
+     */
+    public boolean matches(ELResolver resolver, Object base) {
+        PropertyReader r = reader.get();
+        return r != null && r.type == base.getClass() &&
+                this.resolver.get() == resolver;
+    }
+
+
+    /**
+     * Reads the property using the cached read method. Must only be called
+     * if {@link #matches(ELResolver, Object)} returned <code>true</code>.
+     *
+     * @param ctx       The context for the current evaluation
+     * @param base      The base object
+     * @param property  The name of the property
+     *
+     * @return The value of the property
+     */
+    public Object getValue(EvaluationContext ctx, Object base, String property) {
+        PropertyReader r = reader.get();
+        if (r == null) {
+            // Class has been unloaded. Can't happen since the caller holds
+            // an instance of it.
+            throw new IllegalStateException();
+        }
+        ctx.setPropertyResolved(base, property);
+        try {
+            return r.read.invoke(base, (Object[]) null);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ThreadDeath) {
+                throw (ThreadDeath) cause;
+            }
+            if (cause instanceof VirtualMachineError) {
+                throw (VirtualMachineError) cause;
+            }
+            throw new ELException(MessageFactory.get("error.property.read",
+                    base.getClass().getName(), property), cause);
+        } catch (Exception e) {
+            throw new ELException(e);
+        }
+    }
+
+
+    private static PropertyReader getReader(Class<?> type, String property) {
+        if (Map.class.isAssignableFrom(type) ||
+                Collection.class.isAssignableFrom(type) ||
+                ResourceBundle.class.isAssignableFrom(type) ||
+                type.isArray() ||
+                type == ELClass.class ||
+                type == Optional.class ||
+                type == Stream.class) {
+            // Handled by resolvers other than BeanELResolver
+            return NO_READER;
+        }
+        ConcurrentMap<String,PropertyReader> readers = READERS.get(type);
+        PropertyReader reader = readers.get(property);
+        if (reader == null) {
+            reader = createReader(type, property);
+            PropertyReader existing = readers.putIfAbsent(property, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
+
+    private static PropertyReader createReader(Class<?> type, String property) {
+        try {
+            BeanInfo info = Introspector.getBeanInfo(type);
+            for (PropertyDescriptor pd : info.getPropertyDescriptors()) {
+                if (property.equals(pd.getName())) {
+                    Method read = ReflectionUtil.getMethod(type, pd.getReadMethod());
+                    if (read == null) {
+                        return NO_READER;
+                    }
+                    return new PropertyReader(type, read);
+                }
+            }
+        } catch (IntrospectionException | SecurityException e) {
+            // Fall through. Use the resolver chain.
+        }
+        return NO_READER;
+    }
+
+
+    private static final class PropertyReader {
+
+        private final Class<?> type;
+        private final Method read;
+
+        PropertyReader(Class<?> type, Method read) {
+            this.type = type;
+            this.read = read;
+        }
+    }
+}
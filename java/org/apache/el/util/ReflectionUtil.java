@@ -21,10 +21,14 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.el.ELException;
 import javax.el.MethodNotFoundException;
@@ -47,6 +51,22 @@ public class ReflectionUtil {
             byte.class, char.class, double.class, float.class, int.class,
             long.class, short.class, Void.TYPE };
 
+    private static final Method[] EMPTY_METHOD_ARRAY = new Method[0];
+
+    /*
+     * Public methods of a class grouped by name. Class.getMethods() copies
+     * every Method on each call so repeated evaluation of method expressions
+     * against the same class would otherwise repeat that work every time.
+     * This is the same cache as used by javax.el.Util.findMethod().
+     */
+    private static final ClassValue<ConcurrentMap<String,Method[]>> METHODS =
+            new ClassValue<ConcurrentMap<String,Method[]>>() {
+        @Override
+        protected ConcurrentMap<String,Method[]> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     private ReflectionUtil() {
         super();
     }
@@ -148,7 +168,7 @@ public class ReflectionUtil {
             paramCount = paramTypes.length;
         }
 
-        Method[] methods = base.getClass().getMethods();
+        Method[] methods = getMethods(base.getClass(), methodName);
         Map<Method,MatchResult> candidates = new HashMap<>();
 
         for (Method m : methods) {
@@ -301,6 +321,22 @@ public class ReflectionUtil {
         return getMethod(base.getClass(), match);
     }
 
+    private static Method[] getMethods(Class<?> clazz, String methodName) {
+        ConcurrentMap<String,Method[]> classMethods = METHODS.get(clazz);
+        Method[] methods = classMethods.get(methodName);
+        if (methods == null) {
+            List<Method> named = new ArrayList<>();
+            for (Method m : clazz.getMethods()) {
+                if (m.getName().equals(methodName)) {
+                    named.add(m);
+                }
+            }
+            methods = named.toArray(EMPTY_METHOD_ARRAY);
+            classMethods.put(methodName, methods);
+        }
+        return methods;
+    }
+
     /*
      * This class duplicates code in javax.el.Util. When making changes keep
      * the code in sync.
@@ -427,7 +463,7 @@ public class ReflectionUtil {
      * This class duplicates code in javax.el.Util. When making changes keep
      * the code in sync.
      */
-    private static Method getMethod(Class<?> type, Method m) {
+    static Method getMethod(Class<?> type, Method m) {
         if (m == null || Modifier.isPublic(type.getModifiers())) {
             return m;
         }
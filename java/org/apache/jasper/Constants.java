@@ -154,4 +154,13 @@ public class Constants {
      */
     public static final String XML_BLOCK_EXTERNAL_INIT_PARAM =
             "org.apache.jasper.XML_BLOCK_EXTERNAL";
+
+    /**
+     * Name of the ServletContext init-param that determines if the results of
+     * scanning JARs for TLDs are retained in the work directory of the web
+     * application so JARs that have not changed are not scanned again when the
+     * web application is next started.
+     */
+    public static final String TLD_SCAN_CACHE_INIT_PARAM =
+            "org.apache.jasper.TLD_SCAN_CACHE";
 }
@@ -104,6 +104,11 @@ public final class EmbeddedServletOptions implements Options {
      */
     private boolean genStringAsCharArray = false;
 
+    /**
+     * Is template text to be generated as pre-encoded byte arrays?
+     */
+    private boolean genStringAsByteArray = false;
+
     private boolean errorOnUseBeanInvalidClassAttribute = true;
 
     /**
@@ -211,6 +216,17 @@ public final class EmbeddedServletOptions implements Options {
      */
     private boolean quoteAttributeEL = true;
 
+    /**
+     * Should changes to the files JSPs depend on be detected via file system
+     * events rather than by checking every file?
+     */
+    private boolean watchSourceFiles = false;
+
+    /**
+     * Should all JSPs be compiled in the background on start?
+     */
+    private boolean precompileOnStartup = false;
+
     public String getProperty(String name ) {
         return settings.getProperty( name );
     }
@@ -230,6 +246,24 @@ public final class EmbeddedServletOptions implements Options {
         return quoteAttributeEL;
     }
 
+    public void setWatchSourceFiles(boolean b) {
+        this.watchSourceFiles = b;
+    }
+
+    @Override
+    public boolean getWatchSourceFiles() {
+        return watchSourceFiles;
+    }
+
+    public void setPrecompileOnStartup(boolean b) {
+        this.precompileOnStartup = b;
+    }
+
+    @Override
+    public boolean getPrecompileOnStartup() {
+        return precompileOnStartup;
+    }
+
     /**
      * Are we keeping generated code around?
      */
@@ -323,6 +357,14 @@ public final class EmbeddedServletOptions implements Options {
         return this.genStringAsCharArray;
     }
 
+    /**
+     * Is template text to be generated as pre-encoded byte arrays?
+     */
+    @Override
+    public boolean genStringAsByteArray() {
+        return this.genStringAsByteArray;
+    }
+
     /**
      * Class ID for use in the plugin tag when the browser is IE.
      */
@@ -637,6 +679,19 @@ public final class EmbeddedServletOptions implements Options {
             }
         }
 
+        String genByteArray = config.getInitParameter("genStringAsByteArray");
+        if (genByteArray != null) {
+            if (genByteArray.equalsIgnoreCase("true")) {
+                genStringAsByteArray = true;
+            } else if (genByteArray.equalsIgnoreCase("false")) {
+                genStringAsByteArray = false;
+            } else {
+                if (log.isWarnEnabled()) {
+                    log.warn(Localizer.getMessage("jsp.warning.genbytearray"));
+                }
+            }
+        }
+
         String errBeanClass =
             config.getInitParameter("errorOnUseBeanInvalidClassAttribute");
         if (errBeanClass != null) {
@@ -799,6 +854,32 @@ public final class EmbeddedServletOptions implements Options {
             }
         }
 
+        String watchSourceFiles = config.getInitParameter("watchSourceFiles");
+        if (watchSourceFiles != null) {
+            if (watchSourceFiles.equalsIgnoreCase("true")) {
+                this.watchSourceFiles = true;
+            } else if (watchSourceFiles.equalsIgnoreCase("false")) {
+                this.watchSourceFiles = false;
+            } else {
+                if (log.isWarnEnabled()) {
+                    log.warn(Localizer.getMessage("jsp.warning.watchSourceFiles"));
+                }
+            }
+        }
+
+        String precompileOnStartup = config.getInitParameter("precompileOnStartup");
+        if (precompileOnStartup != null) {
+            if (precompileOnStartup.equalsIgnoreCase("true")) {
+                this.precompileOnStartup = true;
+            } else if (precompileOnStartup.equalsIgnoreCase("false")) {
+                this.precompileOnStartup = false;
+            } else {
+                if (log.isWarnEnabled()) {
+                    log.warn(Localizer.getMessage("jsp.warning.precompileOnStartup"));
+                }
+            }
+        }
+
         // Setup the global Tag Libraries location cache for this
         // web-application.
         tldCache = TldCache.getInstance(context);
@@ -176,6 +176,7 @@ public class JspC extends Task implements Options {
     protected ClassLoader loader = null;
     protected boolean trimSpaces = false;
     protected boolean genStringAsCharArray = false;
+    protected boolean genStringAsByteArray = false;
     protected boolean validateTld;
     protected boolean validateXml;
     protected boolean blockExternal = true;
@@ -684,6 +685,26 @@ public class JspC extends Task implements Options {
         return genStringAsCharArray;
     }
 
+    /**
+     * Determines whether template text is to be generated as byte arrays,
+     * pre-encoded using the character set of the page, which improves
+     * performance in some cases.
+     *
+     * @param genStringAsByteArray true if template text is to be generated as
+     * pre-encoded byte arrays, false otherwise
+     */
+    public void setGenStringAsByteArray(boolean genStringAsByteArray) {
+        this.genStringAsByteArray = genStringAsByteArray;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean genStringAsByteArray() {
+        return genStringAsByteArray;
+    }
+
     /**
      * Sets the class-id value to be sent to Internet Explorer when using
      * &lt;jsp:plugin&gt; tags.
@@ -962,6 +983,26 @@ public class JspC extends Task implements Options {
         return quoteAttributeEL;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * JspC compiles each JSP once so there is nothing to watch.
+     */
+    @Override
+    public boolean getWatchSourceFiles() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * JspC always compiles all the requested JSPs.
+     */
+    @Override
+    public boolean getPrecompileOnStartup() {
+        return false;
+    }
+
     public int getThreadCount() {
         return threadCount;
     }
@@ -198,6 +198,16 @@ public interface Options {
      */
     public boolean genStringAsCharArray();
 
+    /**
+     * Indicates whether template text is to be encoded, using the character
+     * set of the page's content type, when the generated servlet is loaded so
+     * that the bytes can be written directly to the response where possible.
+     *
+     * @return <code>true</code> if template text is to be generated as
+     *         pre-encoded byte arrays, <code>false</code> otherwise
+     */
+    public boolean genStringAsByteArray();
+
     /**
      * @return modification test interval.
      */
@@ -253,4 +263,17 @@ public interface Options {
      *         the quoting rules in JSP.1.6 applied to the expression.
      */
     public boolean getQuoteAttributeEL();
+
+    /**
+     * @return {@code true} if the file system should be watched for changes to
+     *         the files JSPs depend on so that only JSPs affected by a change
+     *         are checked for modification.
+     */
+    public boolean getWatchSourceFiles();
+
+    /**
+     * @return {@code true} if all the JSPs in the web application should be
+     *         compiled in the background when the JSP servlet starts.
+     */
+    public boolean getPrecompileOnStartup();
 }
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jasper.Constants;
+
+/**
+ * Caches the results of the class file lookups made by the Java compiler while
+ * compiling JSPs so that the types referenced by every JSP (the Servlet and
+ * JSP APIs, the JRE, tag handlers etc.) are only located via the web
+ * application class loader once rather than once per compilation. The JDT
+ * compiler in particular looks up every simple type name in every imported
+ * package, most of which fail, and each failed lookup has to search the whole
+ * class path.
+ * <p>
+ * Classes in the package used for generated JSP and tag file classes are never
+ * cached since they change as JSPs are recompiled. All other classes are
+ * loaded via the parent class loader of the JSPs which does not change for the
+ * lifetime of the {@link JspRuntimeContext} that owns this cache.
+ * <p>
+ * Classes that were found are always cached since the parent class loader
+ * never loses them. Classes that were not found are only cached, along with the
+ * content of the class files, in precompile mode, i.e. for JspC where the cache
+ * is discarded once all the JSPs have been compiled. At runtime, classes and
+ * JARs may be added to the web application (e.g. by a reload of the class
+ * loader or by copying them in place) and a cached miss would hide them until
+ * Tomcat was restarted so callers are expected to track misses for the
+ * duration of a single compilation instead.
+ */
+class ClassResourceCache {
+
+    private static final byte[] NOT_FOUND = new byte[0];
+    private static final byte[] FOUND = new byte[0];
+
+    private final ClassLoader classLoader;
+    private final boolean precompile;
+    private final ConcurrentMap<String,byte[]> classes = new ConcurrentHashMap<>();
+
+
+    ClassResourceCache(ClassLoader classLoader, boolean precompile) {
+        this.classLoader = classLoader;
+        this.precompile = precompile;
+    }
+
+
+    /**
+     * Can the lookups for the given class be cached?
+     *
+     * @param className The fully qualified name of the class
+     *
+     * @return <code>true</code> unless the class is in the package used for
+     *         generated JSP and tag file classes
+     */
+    boolean isCacheable(String className) {
+        return !className.startsWith(Constants.JSP_PACKAGE_NAME + '.');
+    }
+
+
+    /**
+     * Does the class exist?
+     *
+     * @param className The fully qualified name of a cacheable class
+     *
+     * @return <code>true</code> if the class file is available from the class
+     *         loader
+     */
+    boolean exists(String className) {
+        byte[] result = classes.get(className);
+        if (result == null) {
+            String resourceName = className.replace('.', '/') + ".class";
+            try (InputStream is = classLoader.getResourceAsStream(resourceName)) {
+                result = (is == null) ? NOT_FOUND : FOUND;
+            } catch (IOException e) {
+                // Close failed. That means the resource was not null.
+                result = FOUND;
+            }
+            if (result == FOUND || precompile) {
+                classes.putIfAbsent(className, result);
+            }
+        }
+        return result != NOT_FOUND;
+    }
+
+
+    /**
+     * Obtain the content of the class file for the given class.
+     *
+     * @param className The fully qualified name of a cacheable class
+     *
+     * @return The content of the class file or <code>null</code> if the class
+     *         does not exist
+     *
+     * @throws IOException If the class file could not be read
+     */
+    byte[] getClassBytes(String className) throws IOException {
+        byte[] result = classes.get(className);
+        if (result == NOT_FOUND) {
+            return null;
+        }
+        if (result == null || result == FOUND) {
+            result = readClassBytes(classLoader, className);
+            if (result == null) {
+                if (precompile) {
+                    classes.put(className, NOT_FOUND);
+                }
+            } else if (precompile) {
+                classes.put(className, result);
+            } else {
+                classes.putIfAbsent(className, FOUND);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Read the content of the class file for the given class from the given
+     * class loader.
+     *
+     * @param classLoader The class loader to read the class file from
+     * @param className   The fully qualified name of the class
+     *
+     * @return The content of the class file or <code>null</code> if the class
+     *         does not exist
+     *
+     * @throws IOException If the class file could not be read
+     */
+    static byte[] readClassBytes(ClassLoader classLoader, String className)
+            throws IOException {
+        String resourceName = className.replace('.', '/') + ".class";
+        try (InputStream is = classLoader.getResourceAsStream(resourceName)) {
+            if (is == null) {
+                return null;
+            }
+            byte[] buf = new byte[8192];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(buf.length);
+            int count;
+            while ((count = is.read(buf, 0, buf.length)) > 0) {
+                baos.write(buf, 0, count);
+            }
+            return baos.toByteArray();
+        }
+    }
+}
@@ -438,6 +438,14 @@ public abstract class Compiler {
      */
     public boolean isOutDated(boolean checkClass) {
 
+        JspFileWatcher watcher = null;
+        if (jsw != null && ctxt.getRuntimeContext() != null) {
+            watcher = ctxt.getRuntimeContext().getFileWatcher();
+            if (watcher != null && watcher.isUpToDate(jsw)) {
+                return false;
+            }
+        }
+
         if (jsw != null
                 && (ctxt.getOptions().getModificationTestInterval() > 0)) {
 
@@ -449,6 +457,24 @@ public abstract class Compiler {
             jsw.setLastModificationTest(System.currentTimeMillis());
         }
 
+        if (checkOutDated(checkClass)) {
+            return true;
+        }
+
+        if (watcher != null && watcher.watch(jsw, ctxt, jsw.getDependants())) {
+            // A change made after the files were checked above but before
+            // they were watched would be missed so check them once more.
+            if (checkOutDated(checkClass)) {
+                return true;
+            }
+            watcher.setUpToDate(jsw);
+        }
+
+        return false;
+    }
+
+    private boolean checkOutDated(boolean checkClass) {
+
         // Test the target file first. Unless there is an error checking the
         // last modified time of the source (unlikely) the target is going to
         // have to be checked anyway. If the target doesn't exist (likely during
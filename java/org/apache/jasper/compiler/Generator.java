@@ -123,6 +123,12 @@ class Generator {
 
     private GenBuffer charArrayBuffer;
 
+    /*
+     * The character set to pre-encode template text with or null if template
+     * text is not to be pre-encoded.
+     */
+    private final String templateCharset;
+
     private final DateFormat timestampFormat;
 
     private final ELInterpreter elInterpreter;
@@ -2118,6 +2124,51 @@ class Generator {
                 return;
             }
 
+            if (templateCharset != null) {
+                // Generate Strings as pre-encoded bytes, for performance
+                ServletWriter caOut;
+                if (charArrayBuffer == null) {
+                    charArrayBuffer = new GenBuffer();
+                    caOut = charArrayBuffer.getOut();
+                    caOut.pushIndent();
+                    textMap = new HashMap<>();
+                } else {
+                    caOut = charArrayBuffer.getOut();
+                }
+                // String constants are limited to 64k bytes
+                // Limit string constants here to 16k characters
+                int textIndex = 0;
+                int textLength = text.length();
+                while (textIndex < textLength) {
+                    int len = 0;
+                    if (textLength - textIndex > 16384) {
+                        len = 16384;
+                    } else {
+                        len = textLength - textIndex;
+                    }
+                    String output = text.substring(textIndex, textIndex + len);
+                    String textName = textMap.get(output);
+                    if (textName == null) {
+                        textName = "_jspx_text_" + charArrayCount++;
+                        textMap.put(output, textName);
+                        caOut.printin("static final org.apache.jasper.runtime.PreEncodedText ");
+                        caOut.print(textName);
+                        caOut.print(" = new org.apache.jasper.runtime.PreEncodedText(");
+                        caOut.print(quote(output));
+                        caOut.print(", ");
+                        caOut.print(quote(templateCharset));
+                        caOut.println(");");
+                    }
+
+                    n.setBeginJavaLine(out.getJavaLine());
+                    out.printil(textName + ".writeTo(out);");
+                    n.setEndJavaLine(out.getJavaLine());
+
+                    textIndex = textIndex + len;
+                }
+                return;
+            }
+
             if (ctxt.getOptions().genStringAsCharArray()) {
                 // Generate Strings as char arrays, for performance
                 ServletWriter caOut;
@@ -3617,6 +3668,36 @@ class Generator {
         }
         timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        // Tag files write to the writer of the invoking page so the character
+        // set is not known
+        if (ctxt.getOptions().genStringAsByteArray() && !ctxt.isTagFile()) {
+            templateCharset = getCharset(pageInfo.getContentType());
+        } else {
+            templateCharset = null;
+        }
+    }
+
+    /*
+     * Extract the character set from a content type, defaulting to the
+     * default response character set. The generated code checks that the
+     * response actually uses this character set before using the pre-encoded
+     * bytes.
+     */
+    private static String getCharset(String contentType) {
+        int start = (contentType == null) ? -1 : contentType.indexOf("charset=");
+        if (start < 0) {
+            return "ISO-8859-1";
+        }
+        String charset = contentType.substring(start + 8);
+        int end = charset.indexOf(';');
+        if (end > -1) {
+            charset = charset.substring(0, end);
+        }
+        charset = charset.trim();
+        if (charset.length() > 1 && charset.startsWith("\"") && charset.endsWith("\"")) {
+            charset = charset.substring(1, charset.length() - 1);
+        }
+        return charset;
     }
 
     /**
@@ -18,7 +18,6 @@ package org.apache.jasper.compiler;
 
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -30,8 +29,10 @@ import java.io.Reader;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.jasper.JasperException;
@@ -110,7 +111,16 @@ public class JDTCompiler extends org.apache.jasper.compiler.Compiler {
         final String targetClassName =
             ((packageName.length() != 0) ? (packageName + ".") : "")
                     + ctxt.getServletClassName();
+        final String targetPackagePrefix = targetClassName.substring(
+                0, targetClassName.lastIndexOf('.') + 1);
         final ClassLoader classLoader = ctxt.getJspLoader();
+        // Lookups of classes other than generated JSP classes are delegated to
+        // the parent class loader and may be shared between compilations
+        final ClassResourceCache classCache =
+                ctxt.getRuntimeContext().getClassResourceCache(ctxt.getClassLoader());
+        // Classes that could not be found are only remembered for this
+        // compilation since they may be added to the web application later
+        final Set<String> missingClasses = new HashSet<>();
         String[] fileNames = new String[] {sourceFile};
         String[] classNames = new String[] {targetClassName};
         final ArrayList<JavacErrorDetail> problemList = new ArrayList<>();
@@ -219,21 +229,21 @@ public class JDTCompiler extends org.apache.jasper.compiler.Compiler {
                             new NameEnvironmentAnswer(compilationUnit, null);
                     }
 
-                    String resourceName =
-                            className.replace('.', '/') + ".class";
-
-                    try (InputStream is = classLoader.getResourceAsStream(resourceName)) {
-                        if (is != null) {
-                            byte[] classBytes;
-                            byte[] buf = new byte[8192];
-                            ByteArrayOutputStream baos =
-                                new ByteArrayOutputStream(buf.length);
-                            int count;
-                            while ((count = is.read(buf, 0, buf.length)) > 0) {
-                                baos.write(buf, 0, count);
+                    try {
+                        byte[] classBytes;
+                        if (isCacheable(className)) {
+                            if (missingClasses.contains(className)) {
+                                return null;
+                            }
+                            classBytes = classCache.getClassBytes(className);
+                            if (classBytes == null) {
+                                missingClasses.add(className);
                             }
-                            baos.flush();
-                            classBytes = baos.toByteArray();
+                        } else {
+                            classBytes = ClassResourceCache.readClassBytes(
+                                    classLoader, className);
+                        }
+                        if (classBytes != null) {
                             char[] fileName = className.toCharArray();
                             ClassFileReader classFileReader =
                                 new ClassFileReader(classBytes, fileName,
@@ -249,10 +259,26 @@ public class JDTCompiler extends org.apache.jasper.compiler.Compiler {
                     return null;
                 }
 
+                private boolean isCacheable(String className) {
+                    // Classes generated for JSPs may be in a custom package
+                    return classCache.isCacheable(className) &&
+                            !className.startsWith(targetPackagePrefix);
+                }
+
                 private boolean isPackage(String result) {
                     if (result.equals(targetClassName)) {
                         return false;
                     }
+                    if (isCacheable(result)) {
+                        if (missingClasses.contains(result)) {
+                            return true;
+                        }
+                        if (classCache.exists(result)) {
+                            return false;
+                        }
+                        missingClasses.add(result);
+                        return true;
+                    }
                     String resourceName = result.replace('.', '/') + ".class";
                     try (InputStream is =
                         classLoader.getResourceAsStream(resourceName)) {
@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.compiler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jasper.JspCompilationContext;
+import org.apache.jasper.servlet.JspServletWrapper;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * Tracks the source files (JSP, tag files, TLDs, included files and JARs) that
+ * each loaded JSP depends on using a {@link WatchService} so that the
+ * modification checks only have to look at the file system for JSPs with a
+ * dependency that has actually changed.
+ * <p>
+ * A JSP is only considered up to date by this class once all of its
+ * dependencies have been mapped to a file in a watched directory and a full
+ * modification check has completed after the watches were registered. JSPs
+ * with a dependency that can't be watched (e.g. a resource that is not
+ * available as a file or an entry in a nested JAR) are never considered up to
+ * date and continue to be checked by polling.
+ */
+class JspFileWatcher {
+
+    private final Log log = LogFactory.getLog(JspFileWatcher.class); // must not be static
+
+    // State is not known. A full modification check is required.
+    private static final int STATE_DIRTY = 0;
+    // Watches are registered and a full modification check is in progress.
+    private static final int STATE_CHECKING = 1;
+    // No watched file has changed since the last full modification check.
+    private static final int STATE_UP_TO_DATE = 2;
+
+    private final WatchService watchService;
+
+    private final ConcurrentMap<Path,WatchKey> directories = new ConcurrentHashMap<>();
+
+    /*
+     * Maps each watched file to the JSPs that depend on it.
+     */
+    private final ConcurrentMap<Path,Set<JspServletWrapper>> dependents =
+            new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<JspServletWrapper,WatchState> states =
+            new ConcurrentHashMap<>();
+
+    /*
+     * The number of entries in dependents for each watched directory so the
+     * watch on a directory can be cancelled once no JSP depends on any of the
+     * files in it. Guarded by registrationLock which also guards all updates
+     * to directories and dependents.
+     */
+    private final Map<Path,Integer> directoryFileCounts = new HashMap<>();
+
+    private final Object registrationLock = new Object();
+
+    private final ReentrantLock eventLock = new ReentrantLock();
+
+
+    private JspFileWatcher(WatchService watchService) {
+        this.watchService = watchService;
+    }
+
+
+    /**
+     * Create a new watcher.
+     *
+     * @return The new watcher or <code>null</code> if the file system does not
+     *         support watching for changes
+     */
+    static JspFileWatcher create() {
+        try {
+            return new JspFileWatcher(FileSystems.getDefault().newWatchService());
+        } catch (IOException | UnsupportedOperationException e) {
+            LogFactory.getLog(JspFileWatcher.class).warn(
+                    Localizer.getMessage("jsp.watcher.unavailable"), e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Is the given JSP known to be up to date? This will process any pending
+     * file system events before returning.
+     *
+     * @param jsw The JSP to check
+     *
+     * @return <code>true</code> if none of the files the JSP depends on have
+     *         changed since the last full modification check, otherwise
+     *         <code>false</code> in which case a full check is required
+     */
+    boolean isUpToDate(JspServletWrapper jsw) {
+        WatchState state = states.get(jsw);
+        if (state == null) {
+            return false;
+        }
+        processEvents();
+        return state.value.get() == STATE_UP_TO_DATE;
+    }
+
+
+    /**
+     * Start watching the files the given JSP depends on. This must be called
+     * before the full modification check that, if it finds the JSP is up to
+     * date, is followed by a call to {@link #setUpToDate(JspServletWrapper)}.
+     *
+     * @param jsw        The JSP
+     * @param ctxt       The compilation context for the JSP
+     * @param dependants The dependencies of the JSP as recorded in the
+     *                   generated servlet
+     *
+     * @return <code>true</code> if all the dependencies are being watched,
+     *         <code>false</code> if the JSP must continue to be checked by
+     *         polling
+     */
+    boolean watch(JspServletWrapper jsw, JspCompilationContext ctxt,
+            Map<String,Long> dependants) {
+
+        remove(jsw);
+
+        Set<Path> files = new HashSet<>();
+        if (!addFile(files, ctxt.getRealPath(ctxt.getJspFile()))) {
+            return false;
+        }
+        if (dependants != null) {
+            for (String key : dependants.keySet()) {
+                if (!addFile(files, resolve(ctxt, key))) {
+                    return false;
+                }
+            }
+        }
+
+        WatchState state = new WatchState(files);
+        states.put(jsw, state);
+
+        synchronized (registrationLock) {
+            for (Path file : files) {
+                Path dir = file.getParent();
+                if (!directories.containsKey(dir)) {
+                    try {
+                        WatchKey key = dir.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE,
+                                StandardWatchEventKinds.ENTRY_MODIFY);
+                        directories.put(dir, key);
+                    } catch (IOException | UnsupportedOperationException e) {
+                        if (log.isDebugEnabled()) {
+                            log.debug(Localizer.getMessage("jsp.watcher.registerFail", dir.toString()), e);
+                        }
+                        states.remove(jsw, state);
+                        removeDependent(jsw, state);
+                        return false;
+                    }
+                }
+                Set<JspServletWrapper> jsws = dependents.get(file);
+                if (jsws == null) {
+                    jsws = Collections.newSetFromMap(
+                            new ConcurrentHashMap<JspServletWrapper,Boolean>());
+                    dependents.put(file, jsws);
+                    Integer count = directoryFileCounts.get(dir);
+                    directoryFileCounts.put(dir,
+                            Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+                }
+                jsws.add(jsw);
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Record that a full modification check started after the most recent call
+     * to {@link #watch(JspServletWrapper, JspCompilationContext, Map)} found
+     * the JSP to be up to date. If a watched file changed while that check was
+     * in progress, the JSP remains out of date.
+     *
+     * @param jsw The JSP
+     */
+    void setUpToDate(JspServletWrapper jsw) {
+        WatchState state = states.get(jsw);
+        if (state != null) {
+            state.value.compareAndSet(STATE_CHECKING, STATE_UP_TO_DATE);
+        }
+    }
+
+
+    /**
+     * Stop tracking the given JSP, e.g. because it has been unloaded.
+     *
+     * @param jsw The JSP
+     */
+    void remove(JspServletWrapper jsw) {
+        WatchState state = states.remove(jsw);
+        if (state != null) {
+            removeDependent(jsw, state);
+        }
+    }
+
+
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.debug(Localizer.getMessage("jsp.watcher.closeFail"), e);
+        }
+        synchronized (registrationLock) {
+            directories.clear();
+            dependents.clear();
+            directoryFileCounts.clear();
+        }
+        states.clear();
+    }
+
+
+    /*
+     * For testing.
+     */
+    int getWatchedDirectoryCount() {
+        return directories.size();
+    }
+
+
+    private void processEvents() {
+        // Only one thread needs to process the events. Any other thread can
+        // continue with the current state which is no worse than the
+        // modification test interval used when polling.
+        if (!eventLock.tryLock()) {
+            return;
+        }
+        try {
+            WatchKey key = watchService.poll();
+            while (key != null) {
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        if (log.isDebugEnabled()) {
+                            log.debug(Localizer.getMessage("jsp.watcher.overflow", dir.toString()));
+                        }
+                        markAllDirty();
+                    } else {
+                        markDirty(dir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    // The directory is no longer accessible
+                    synchronized (registrationLock) {
+                        directories.remove(dir, key);
+                    }
+                    markAllDirty();
+                }
+                key = watchService.poll();
+            }
+        } finally {
+            eventLock.unlock();
+        }
+    }
+
+
+    private void markDirty(Path file) {
+        Set<JspServletWrapper> jsws = dependents.get(file);
+        if (jsws == null) {
+            return;
+        }
+        for (JspServletWrapper jsw : jsws) {
+            WatchState state = states.get(jsw);
+            if (state != null) {
+                state.value.set(STATE_DIRTY);
+            }
+        }
+    }
+
+
+    private void markAllDirty() {
+        for (WatchState state : states.values()) {
+            state.value.set(STATE_DIRTY);
+        }
+    }
+
+
+    /*
+     * Remove the JSP from the dependents of its files. Files that no longer
+     * have any dependents are no longer tracked and the watch on a directory
+     * is cancelled once none of its files are tracked.
+     */
+    private void removeDependent(JspServletWrapper jsw, WatchState state) {
+        synchronized (registrationLock) {
+            for (Path file : state.files) {
+                Set<JspServletWrapper> jsws = dependents.get(file);
+                if (jsws == null || !jsws.remove(jsw) || !jsws.isEmpty()) {
+                    continue;
+                }
+                dependents.remove(file);
+                Path dir = file.getParent();
+                Integer count = directoryFileCounts.get(dir);
+                if (count == null || count.intValue() > 1) {
+                    if (count != null) {
+                        directoryFileCounts.put(dir, Integer.valueOf(count.intValue() - 1));
+                    }
+                    continue;
+                }
+                directoryFileCounts.remove(dir);
+                WatchKey key = directories.remove(dir);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+
+    private static boolean addFile(Set<Path> files, String path) {
+        if (path == null) {
+            return false;
+        }
+        files.add(Paths.get(path).toAbsolutePath().normalize());
+        return true;
+    }
+
+
+    /*
+     * Map a dependency, as recorded by the generated servlet, to a file. JARs
+     * are watched as a whole. Dependencies that are not files (e.g. entries in
+     * a JAR nested in a WAR) return null.
+     */
+    private static String resolve(JspCompilationContext ctxt, String key) {
+        try {
+            if (key.startsWith("jar:jar:")) {
+                return null;
+            }
+            if (key.startsWith("jar:file:")) {
+                int entryStart = key.lastIndexOf("!/");
+                if (entryStart < 0) {
+                    return null;
+                }
+                return Paths.get(new URI(key.substring(4, entryStart))).toString();
+            }
+            if (key.startsWith("file:")) {
+                return Paths.get(new URI(key)).toString();
+            }
+            if (key.indexOf(':') > -1) {
+                return null;
+            }
+            return ctxt.getRealPath(key);
+        } catch (Exception e) {
+            // Invalid URI or the path is not available on the default file
+            // system. Either way, fall back to polling.
+            return null;
+        }
+    }
+
+
+    private static class WatchState {
+        private final Set<Path> files;
+        private final AtomicInteger value = new AtomicInteger(STATE_CHECKING);
+
+        public WatchState(Set<Path> files) {
+            this.files = files;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletContext;
@@ -110,10 +111,16 @@ public final class JspRuntimeContext {
         classpath = initClassPath();
 
         if (context instanceof org.apache.jasper.servlet.JspCServletContext) {
+            // JspC compiles each JSP once and then discards this context so
+            // the content of the class files used and the classes that could
+            // not be found may be cached as well
+            cacheClassContent = true;
             codeSource = null;
             permissionCollection = null;
+            fileWatcher = null;
             return;
         }
+        cacheClassContent = false;
 
         if (Constants.IS_SECURITY_ENABLED) {
             SecurityHolder holder = initSecurity();
@@ -133,6 +140,12 @@ public final class JspRuntimeContext {
             lastCompileCheck = System.currentTimeMillis();
         }
 
+        if (appBase != null && options.getWatchSourceFiles()) {
+            fileWatcher = JspFileWatcher.create();
+        } else {
+            fileWatcher = null;
+        }
+
         if (options.getMaxLoadedJsps() > 0) {
             jspQueue = new FastRemovalDequeue<>(options.getMaxLoadedJsps());
             if (log.isDebugEnabled()) {
@@ -171,6 +184,18 @@ public final class JspRuntimeContext {
      */
     private FastRemovalDequeue<JspServletWrapper> jspQueue = null;
 
+    /**
+     * Watches the files loaded JSPs depend on, if enabled.
+     */
+    private final JspFileWatcher fileWatcher;
+
+    /**
+     * Caches the class file lookups made when compiling JSPs, per class loader.
+     */
+    private final ConcurrentMap<ClassLoader,ClassResourceCache> classResourceCaches =
+            new ConcurrentHashMap<>();
+    private final boolean cacheClassContent;
+
     /**
      * Flag that indicates if a background compilation check is in progress.
      */
@@ -205,7 +230,10 @@ public final class JspRuntimeContext {
      * @param jspUri JSP URI of JspServletWrapper to remove
      */
     public void removeWrapper(String jspUri) {
-        jsps.remove(jspUri);
+        JspServletWrapper jsw = jsps.remove(jspUri);
+        if (jsw != null && fileWatcher != null) {
+            fileWatcher.remove(jsw);
+        }
     }
 
     /**
@@ -293,6 +321,9 @@ public final class JspRuntimeContext {
         for (JspServletWrapper jspServletWrapper : jsps.values()) {
             jspServletWrapper.destroy();
         }
+        if (fileWatcher != null) {
+            fileWatcher.close();
+        }
     }
 
     /**
@@ -369,6 +400,10 @@ public final class JspRuntimeContext {
         Object [] wrappers = jsps.values().toArray();
         for (int i = 0; i < wrappers.length; i++ ) {
             JspServletWrapper jsw = (JspServletWrapper)wrappers[i];
+            if (fileWatcher != null && fileWatcher.isUpToDate(jsw)) {
+                // None of the files this JSP depends on have changed
+                continue;
+            }
             JspCompilationContext ctxt = jsw.getJspEngineContext();
             // Sync on JspServletWrapper when calling ctxt.compile()
             synchronized(jsw) {
@@ -410,6 +445,34 @@ public final class JspRuntimeContext {
         }
     }
 
+    /**
+     * @return the watcher for the files loaded JSPs depend on or
+     *         <code>null</code> if changes are detected by polling
+     */
+    JspFileWatcher getFileWatcher() {
+        return fileWatcher;
+    }
+
+    /**
+     * Obtain the cache for the class file lookups made when compiling JSPs
+     * with the given class loader.
+     *
+     * @param loader The class loader used to compile JSPs
+     *
+     * @return the cache for the given class loader
+     */
+    ClassResourceCache getClassResourceCache(ClassLoader loader) {
+        ClassResourceCache cache = classResourceCaches.get(loader);
+        if (cache == null) {
+            cache = new ClassResourceCache(loader, cacheClassContent);
+            ClassResourceCache existing = classResourceCaches.putIfAbsent(loader, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
     public boolean isCompileCheckInProgress() {
         return compileCheckInProgress;
     }
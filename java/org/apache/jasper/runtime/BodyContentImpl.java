@@ -76,8 +76,10 @@ public class BodyContentImpl extends BodyContent {
     }
 
 
-    private char[] cb;
-    private int nextChar;
+    // Unbounded, as required by the specification. Segments are obtained from
+    // the shared pool as the content grows.
+    private final SegmentedCharBuffer cb =
+            new SegmentedCharBuffer(CharSegmentPool.getInstance());
     private boolean closed;
 
     /**
@@ -91,9 +93,7 @@ public class BodyContentImpl extends BodyContent {
      */
     public BodyContentImpl(JspWriter enclosingWriter) {
         super(enclosingWriter);
-        cb = new char[TAG_BUFFER_SIZE];
-        bufferSize = cb.length;
-        nextChar = 0;
+        bufferSize = TAG_BUFFER_SIZE;
         closed = false;
     }
 
@@ -108,10 +108,8 @@ public class BodyContentImpl extends BodyContent {
             writer.write(c);
         } else {
             ensureOpen();
-            if (nextChar >= bufferSize) {
-                reAllocBuff (1);
-            }
-            cb[nextChar++] = (char) c;
+            cb.append((char) c);
+            updateBufferSize();
         }
     }
 
@@ -145,11 +143,8 @@ public class BodyContentImpl extends BodyContent {
                 return;
             }
 
-            if (len >= bufferSize - nextChar)
-                reAllocBuff (len);
-
-            System.arraycopy(cbuf, off, cb, nextChar, len);
-            nextChar+=len;
+            cb.append(cbuf, off, len);
+            updateBufferSize();
         }
     }
 
@@ -182,11 +177,8 @@ public class BodyContentImpl extends BodyContent {
             writer.write(s, off, len);
         } else {
             ensureOpen();
-            if (len >= bufferSize - nextChar)
-                reAllocBuff(len);
-
-            s.getChars(off, off + len, cb, nextChar);
-            nextChar += len;
+            cb.append(s, off, len);
+            updateBufferSize();
         }
     }
 
@@ -545,11 +537,12 @@ public class BodyContentImpl extends BodyContent {
         if (writer != null) {
             throw new IOException();
         } else {
-            nextChar = 0;
-            if (LIMIT_BUFFER && (cb.length > TAG_BUFFER_SIZE)) {
-                cb = new char[TAG_BUFFER_SIZE];
-                bufferSize = cb.length;
+            if (LIMIT_BUFFER && (cb.capacity() > TAG_BUFFER_SIZE)) {
+                cb.release();
+            } else {
+                cb.clear();
             }
+            bufferSize = Math.max(TAG_BUFFER_SIZE, cb.capacity());
         }
     }
 
@@ -603,7 +596,7 @@ public class BodyContentImpl extends BodyContent {
      */
     @Override
     public int getRemaining() {
-        return (writer == null) ? bufferSize-nextChar : 0;
+        return (writer == null) ? bufferSize - cb.length() : 0;
     }
 
     /**
@@ -615,7 +608,7 @@ public class BodyContentImpl extends BodyContent {
      */
     @Override
     public Reader getReader() {
-        return (writer == null) ? new CharArrayReader (cb, 0, nextChar) : null;
+        return (writer == null) ? new CharArrayReader(cb.toCharArray()) : null;
     }
 
     /**
@@ -627,7 +620,7 @@ public class BodyContentImpl extends BodyContent {
      */
     @Override
     public String getString() {
-        return (writer == null) ? new String(cb, 0, nextChar) : null;
+        return (writer == null) ? cb.toString() : null;
     }
 
     /**
@@ -642,7 +635,7 @@ public class BodyContentImpl extends BodyContent {
     @Override
     public void writeOut(Writer out) throws IOException {
         if (writer == null) {
-            out.write(cb, 0, nextChar);
+            cb.writeTo(out);
             // Flush not called as the writer passed could be a BodyContent and
             // it doesn't allow to flush.
         }
@@ -663,6 +656,7 @@ public class BodyContentImpl extends BodyContent {
      * This method shall "reset" the internal state of a BodyContentImpl,
      * releasing all internal references, and preparing it for potential
      * reuse by a later invocation of {@link PageContextImpl#pushBody(Writer)}.
+     * Any buffer segments are returned to the shared pool.
      *
      * <p>Note, that BodyContentImpl instances are usually owned by a
      * PageContextImpl instance, and PageContextImpl instances are recycled
@@ -672,36 +666,21 @@ public class BodyContentImpl extends BodyContent {
      */
     protected void recycle() {
         this.writer = null;
-        try {
-            this.clear();
-        } catch (IOException ex) {
-            // ignore
-        }
+        cb.release();
+        bufferSize = TAG_BUFFER_SIZE;
     }
 
     private void ensureOpen() throws IOException {
         if (closed) throw new IOException("Stream closed");
     }
 
-    /**
-     * Reallocates buffer since the spec requires it to be unbounded.
+    /*
+     * The buffer is unbounded so the reported size grows with the content.
      */
-    private void reAllocBuff(int len) {
-
-        if (bufferSize + len <= cb.length) {
-            bufferSize = cb.length;
-            return;
-        }
-
-        if (len < cb.length) {
-            len = cb.length;
+    private void updateBufferSize() {
+        if (cb.capacity() > bufferSize) {
+            bufferSize = cb.capacity();
         }
-
-        char[] tmp = new char[cb.length + len];
-        System.arraycopy(cb, 0, tmp, 0, cb.length);
-        cb = tmp;
-        bufferSize = cb.length;
     }
 
-
 }
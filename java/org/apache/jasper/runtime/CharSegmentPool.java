@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed size char arrays (segments) shared by the output buffers of
+ * all JSPs. {@link JspWriterImpl} and {@link BodyContentImpl} hold their
+ * content in a list of segments obtained from this pool so a buffer never has
+ * to be copied to grow it and the segments are returned to the pool once the
+ * page has completed rather than being retained, at whatever size they grew
+ * to, by the pooled page contexts.
+ * <p>
+ * Each thread keeps a small number of returned segments for its own use so
+ * that a thread that processes one page after another does not touch the
+ * shared pool. Only segments that do not fit in the thread's cache are
+ * returned to the shared pool.
+ */
+public final class CharSegmentPool {
+
+    private static final int SEGMENT_SIZE =
+            getInteger("org.apache.jasper.runtime.CharSegmentPool.SEGMENT_SIZE", 1024);
+    private static final int MAX_POOLED_SEGMENTS =
+            getInteger("org.apache.jasper.runtime.CharSegmentPool.MAX_POOLED_SEGMENTS", 1024);
+    private static final int THREAD_CACHE_SEGMENTS =
+            getInteger("org.apache.jasper.runtime.CharSegmentPool.THREAD_CACHE_SEGMENTS", 8);
+
+    private static final CharSegmentPool INSTANCE =
+            new CharSegmentPool(SEGMENT_SIZE, MAX_POOLED_SEGMENTS, THREAD_CACHE_SEGMENTS);
+
+
+    /**
+     * @return The pool used by the JSP runtime
+     */
+    public static CharSegmentPool getInstance() {
+        return INSTANCE;
+    }
+
+
+    private static int getInteger(final String name, final int defaultValue) {
+        if (System.getSecurityManager() == null) {
+            return Integer.getInteger(name, defaultValue).intValue();
+        }
+        return AccessController.doPrivileged(
+                new PrivilegedAction<Integer>() {
+                    @Override
+                    public Integer run() {
+                        return Integer.getInteger(name, defaultValue);
+                    }
+                }
+        ).intValue();
+    }
+
+
+    private final int segmentSize;
+    private final int maxPooledSegments;
+    private final int threadCacheSegments;
+    private final Queue<char[]> segments = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCount = new AtomicInteger();
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache(threadCacheSegments);
+        }
+    };
+
+
+    CharSegmentPool(int segmentSize, int maxPooledSegments, int threadCacheSegments) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.segmentSize = segmentSize;
+        this.maxPooledSegments = maxPooledSegments;
+        this.threadCacheSegments = threadCacheSegments;
+    }
+
+
+    /**
+     * Obtain a segment from the pool, creating a new one if the pool is empty.
+     *
+     * @return A segment of {@link #getSegmentSize()} chars. The content is
+     *         undefined.
+     */
+    char[] take() {
+        if (threadCacheSegments > 0) {
+            ThreadCache cache = threadCache.get();
+            if (cache.count > 0) {
+                char[] segment = cache.segments[--cache.count];
+                cache.segments[cache.count] = null;
+                return segment;
+            }
+        }
+        char[] segment = segments.poll();
+        if (segment == null) {
+            return new char[segmentSize];
+        }
+        pooledCount.decrementAndGet();
+        return segment;
+    }
+
+
+    /**
+     * Return a segment to the pool. The segment is discarded if the pool is
+     * full.
+     *
+     * @param segment The segment, previously obtained from {@link #take()}
+     */
+    void offer(char[] segment) {
+        if (threadCacheSegments > 0) {
+            ThreadCache cache = threadCache.get();
+            if (cache.count < threadCacheSegments) {
+                cache.segments[cache.count++] = segment;
+                return;
+            }
+        }
+        if (pooledCount.incrementAndGet() > maxPooledSegments) {
+            pooledCount.decrementAndGet();
+            return;
+        }
+        segments.offer(segment);
+    }
+
+
+    /**
+     * @return The size, in chars, of each segment
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+
+    /**
+     * @return The maximum number of segments retained by the shared pool
+     */
+    public int getMaxPooledSegments() {
+        return maxPooledSegments;
+    }
+
+
+    /**
+     * @return The maximum number of segments retained by each thread
+     */
+    public int getThreadCacheSegments() {
+        return threadCacheSegments;
+    }
+
+
+    /**
+     * @return The number of segments currently in the shared pool. Segments
+     *         retained by threads are not included.
+     */
+    public int getPooledCount() {
+        return pooledCount.get();
+    }
+
+
+    private static final class ThreadCache {
+        private final char[][] segments;
+        private int count;
+
+        ThreadCache(int size) {
+            segments = new char[size][];
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.Tag;
+
+import org.apache.jasper.compiler.Localizer;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * Pool of tag handlers that does not synchronize on the pool. Each thread
+ * caches the most recently returned tag handler so a tag used repeatedly by
+ * the same thread (e.g. in a loop) does not touch any shared state. Other tag
+ * handlers are pooled in a lock-free stack. The handlers cached by threads
+ * count towards the configured maximum size so the pool never holds more than
+ * that many idle handlers. When a thread first uses the pool, the handlers
+ * cached by threads that have since terminated are released.
+ * <p>
+ * To use this pool, set the <code>tagpoolClassName</code> init parameter of
+ * the JSP servlet (or context) to the name of this class.
+ * <p>
+ * The pool also records how often a tag handler was obtained from the pool
+ * (hits), how often one was not available (misses) and how many were created.
+ * Since each generated servlet uses a separate pool for each tag handler class
+ * and attribute set, these are the counts for a single tag handler class. They
+ * are logged at debug level when the pool is released. The totals for a web
+ * application are available from the {@link TagHandlerPoolStatistics} stored
+ * in the servlet context which the JSP servlet exposes via JMX.
+ */
+public class ConcurrentTagHandlerPool extends TagHandlerPool {
+
+    private final Log log = LogFactory.getLog(ConcurrentTagHandlerPool.class); // must not be static
+
+    private final AtomicReference<Node> top = new AtomicReference<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private int maxSize;
+
+    private final Queue<ThreadCache> threadCaches = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            purgeThreadCaches();
+            ThreadCache result = new ThreadCache(Thread.currentThread());
+            threadCaches.add(result);
+            return result;
+        }
+    };
+
+    // Counts of the threads whose caches have been purged
+    private final AtomicLong purgedHitCount = new AtomicLong();
+    private final AtomicLong purgedMissCount = new AtomicLong();
+    private final AtomicLong purgedInstantiationCount = new AtomicLong();
+
+    private volatile Class<? extends Tag> handlerClass;
+    private TagHandlerPoolStatistics statistics;
+
+
+    @Override
+    protected void init(ServletConfig config) {
+        maxSize = getMaxSize(config);
+        instanceManager = InstanceManagerFactory.getInstanceManager(config);
+        statistics = TagHandlerPoolStatistics.getInstance(config.getServletContext());
+        statistics.register(this);
+    }
+
+
+    @Override
+    public Tag get(Class<? extends Tag> handlerClass) throws JspException {
+        ThreadCache cache = threadCache.get();
+
+        Tag handler = cache.handler.getAndSet(null);
+        if (handler == null) {
+            handler = pop();
+        } else {
+            size.decrementAndGet();
+        }
+        if (handler != null) {
+            cache.hits++;
+            return handler;
+        }
+
+        cache.misses++;
+        if (this.handlerClass == null) {
+            this.handlerClass = handlerClass;
+        }
+        handler = newInstance(handlerClass);
+        cache.instantiations++;
+        return handler;
+    }
+
+
+    @Override
+    public void reuse(Tag handler) {
+        // Reserve space first so handlers cached by threads count towards
+        // the maximum size as well
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            JspRuntimeLibrary.releaseTag(handler, instanceManager);
+            return;
+        }
+        if (!threadCache.get().handler.compareAndSet(null, handler)) {
+            push(handler);
+        }
+    }
+
+
+    @Override
+    public void release() {
+        for (ThreadCache cache : threadCaches) {
+            Tag handler = cache.handler.getAndSet(null);
+            if (handler != null) {
+                size.decrementAndGet();
+                JspRuntimeLibrary.releaseTag(handler, instanceManager);
+            }
+        }
+        Tag handler = pop();
+        while (handler != null) {
+            JspRuntimeLibrary.releaseTag(handler, instanceManager);
+            handler = pop();
+        }
+        statistics.unregister(this);
+        if (log.isDebugEnabled() && handlerClass != null) {
+            log.debug(Localizer.getMessage("jsp.tagpool.stats", handlerClass.getName(),
+                    Long.toString(getHitCount()), Long.toString(getMissCount()),
+                    Long.toString(getInstantiationCount())));
+        }
+    }
+
+
+    /**
+     * @return The class of the tag handlers in this pool or <code>null</code>
+     *         if no tag handler has been created yet
+     */
+    public Class<? extends Tag> getHandlerClass() {
+        return handlerClass;
+    }
+
+
+    /**
+     * @return The number of idle tag handlers held by the pool, including
+     *         those cached by threads
+     */
+    public int getIdleCount() {
+        return size.get();
+    }
+
+
+    /**
+     * @return The number of times a tag handler was obtained from the pool
+     */
+    public long getHitCount() {
+        long result = purgedHitCount.get();
+        for (ThreadCache cache : threadCaches) {
+            result += cache.hits;
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of times no tag handler was available in the pool
+     */
+    public long getMissCount() {
+        long result = purgedMissCount.get();
+        for (ThreadCache cache : threadCaches) {
+            result += cache.misses;
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of tag handlers created by this pool
+     */
+    public long getInstantiationCount() {
+        long result = purgedInstantiationCount.get();
+        for (ThreadCache cache : threadCaches) {
+            result += cache.instantiations;
+        }
+        return result;
+    }
+
+
+    /*
+     * Remove the caches of threads that have terminated, e.g. after an
+     * executor has been resized, so the pool does not hold on to them and
+     * their tag handlers forever.
+     */
+    private void purgeThreadCaches() {
+        for (ThreadCache cache : threadCaches) {
+            Thread owner = cache.owner.get();
+            if ((owner == null || !owner.isAlive()) && threadCaches.remove(cache)) {
+                purgedHitCount.addAndGet(cache.hits);
+                purgedMissCount.addAndGet(cache.misses);
+                purgedInstantiationCount.addAndGet(cache.instantiations);
+                Tag handler = cache.handler.getAndSet(null);
+                if (handler != null) {
+                    size.decrementAndGet();
+                    JspRuntimeLibrary.releaseTag(handler, instanceManager);
+                }
+            }
+        }
+    }
+
+
+    private Tag pop() {
+        Node node = top.get();
+        while (node != null) {
+            if (top.compareAndSet(node, node.next)) {
+                size.decrementAndGet();
+                return node.handler;
+            }
+            node = top.get();
+        }
+        return null;
+    }
+
+
+    /*
+     * The caller must already have reserved space for the handler by
+     * incrementing size.
+     */
+    private void push(Tag handler) {
+        Node node = new Node(handler);
+        do {
+            node.next = top.get();
+        } while (!top.compareAndSet(node.next, node));
+    }
+
+
+    private static class Node {
+        private final Tag handler;
+        private Node next;
+
+        Node(Tag handler) {
+            this.handler = handler;
+        }
+    }
+
+
+    /*
+     * The counts are only written by the owning thread. They are volatile so
+     * the metrics see reasonably current values.
+     */
+    private static class ThreadCache {
+        private final WeakReference<Thread> owner;
+        private final AtomicReference<Tag> handler = new AtomicReference<>();
+        private volatile long hits;
+        private volatile long misses;
+        private volatile long instantiations;
+
+        ThreadCache(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.jasper.runtime;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 
@@ -28,6 +29,7 @@ import javax.servlet.jsp.JspWriter;
 import org.apache.jasper.Constants;
 import org.apache.jasper.compiler.Localizer;
 import org.apache.jasper.security.SecurityUtil;
+import org.apache.tomcat.PreEncodedWriter;
 
 /**
  * Write text to a character-output stream, buffering characters so as
@@ -46,10 +48,22 @@ public class JspWriterImpl extends JspWriter {
 
     private Writer out;
     private ServletResponse response;
-    private char cb[];
-    private int nextChar;
+    // Segments are obtained from the shared pool as the buffer is filled and
+    // returned to it when this writer is recycled
+    private final SegmentedCharBuffer cb =
+            new SegmentedCharBuffer(CharSegmentPool.getInstance());
     private boolean flushed = false;
     private boolean closed = false;
+    // The character set used by the underlying writer if it accepts
+    // pre-encoded template text
+    private Charset preEncodedCharset = null;
+    private boolean preEncodedChecked = false;
+    // Pre-encoded template text in the buffer and where it starts. Whether the
+    // bytes can be used is only known once the buffer is flushed since the
+    // page may change the character set of the response until then.
+    private PreEncodedText[] preEncodedTexts = new PreEncodedText[8];
+    private int[] preEncodedOffsets = new int[8];
+    private int preEncodedCount = 0;
 
     public JspWriterImpl() {
         super( Constants.DEFAULT_BUFFER_SIZE, true );
@@ -71,15 +85,12 @@ public class JspWriterImpl extends JspWriter {
         if (sz < 0)
             throw new IllegalArgumentException("Buffer size <= 0");
         this.response = response;
-        cb = sz == 0 ? null : new char[sz];
-        nextChar = 0;
     }
 
     void init( ServletResponse response, int sz, boolean autoFlush ) {
         this.response= response;
-        if( sz > 0 && ( cb == null || sz > cb.length ) )
-            cb=new char[sz];
-        nextChar = 0;
+        clearPreEncoded();
+        cb.clear();
         this.autoFlush=autoFlush;
         this.bufferSize=sz;
     }
@@ -91,8 +102,11 @@ public class JspWriterImpl extends JspWriter {
         flushed = false;
         closed = false;
         out = null;
-        nextChar = 0;
+        clearPreEncoded();
+        cb.release();
         response = null;
+        preEncodedCharset = null;
+        preEncodedChecked = false;
     }
 
     /**
@@ -106,11 +120,27 @@ public class JspWriterImpl extends JspWriter {
             return;
         flushed = true;
         ensureOpen();
-        if (nextChar == 0)
+        if (cb.length() == 0)
             return;
         initOut();
-        out.write(cb, 0, nextChar);
-        nextChar = 0;
+        if (preEncodedCount > 0 && isPreEncodedWriter()) {
+            int start = 0;
+            for (int i = 0; i < preEncodedCount; i++) {
+                PreEncodedText text = preEncodedTexts[i];
+                if (text.getCharset().equals(preEncodedCharset)) {
+                    int offset = preEncodedOffsets[i];
+                    cb.writeTo(out, start, offset);
+                    byte[] bytes = text.getBytes();
+                    ((PreEncodedWriter) out).writePreEncoded(bytes, 0, bytes.length);
+                    start = offset + text.getText().length();
+                }
+            }
+            cb.writeTo(out, start, cb.length());
+        } else {
+            cb.writeTo(out);
+        }
+        clearPreEncoded();
+        cb.clear();
     }
 
     private void initOut() throws IOException {
@@ -119,6 +149,26 @@ public class JspWriterImpl extends JspWriter {
         }
     }
 
+    /*
+     * Must only be called once out has been initialised.
+     */
+    private boolean isPreEncodedWriter() throws IOException {
+        if (!preEncodedChecked) {
+            if (out instanceof PreEncodedWriter) {
+                preEncodedCharset = ((PreEncodedWriter) out).getCharset();
+            }
+            preEncodedChecked = true;
+        }
+        return preEncodedCharset != null;
+    }
+
+    private void clearPreEncoded() {
+        for (int i = 0; i < preEncodedCount; i++) {
+            preEncodedTexts[i] = null;
+        }
+        preEncodedCount = 0;
+    }
+
     private String getLocalizeMessage(final String message){
         if (SecurityUtil.isPackageProtectionEnabled()){
             return AccessController.doPrivileged(new PrivilegedAction<String>(){
@@ -145,7 +195,8 @@ public class JspWriterImpl extends JspWriter {
             throw new IOException(
                     getLocalizeMessage("jsp.error.attempt_to_clear_flushed_buffer"));
         ensureOpen();
-        nextChar = 0;
+        clearPreEncoded();
+        cb.clear();
     }
 
     @Override
@@ -154,7 +205,8 @@ public class JspWriterImpl extends JspWriter {
             throw new IllegalStateException(
                     getLocalizeMessage("jsp.error.ise_on_clear"));
         ensureOpen();
-        nextChar = 0;
+        clearPreEncoded();
+        cb.clear();
     }
 
     private final void bufferOverflow() throws IOException {
@@ -194,7 +246,7 @@ public class JspWriterImpl extends JspWriter {
      */
     @Override
     public int getRemaining() {
-        return bufferSize - nextChar;
+        return bufferSize - cb.length();
     }
 
     /** check to make sure that the stream has not been closed */
@@ -215,12 +267,12 @@ public class JspWriterImpl extends JspWriter {
             out.write(c);
         }
         else {
-            if (nextChar >= bufferSize)
+            if (cb.length() >= bufferSize)
                 if (autoFlush)
                     flushBuffer();
                 else
                     bufferOverflow();
-            cb[nextChar++] = (char) c;
+            cb.append((char) c);
         }
     }
 
@@ -281,11 +333,10 @@ public class JspWriterImpl extends JspWriter {
 
         int b = off, t = off + len;
         while (b < t) {
-            int d = min(bufferSize - nextChar, t - b);
-            System.arraycopy(cbuf, b, cb, nextChar, d);
+            int d = min(bufferSize - cb.length(), t - b);
+            cb.append(cbuf, b, d);
             b += d;
-            nextChar += d;
-            if (nextChar >= bufferSize)
+            if (cb.length() >= bufferSize)
                 if (autoFlush)
                     flushBuffer();
                 else
@@ -294,6 +345,48 @@ public class JspWriterImpl extends JspWriter {
 
     }
 
+    /**
+     * Write template text that was encoded when the page was loaded. The
+     * encoded bytes are written to the response in place of the characters if
+     * the underlying writer supports this and uses the same character set.
+     * Text that fits in the remaining buffer space is buffered as characters,
+     * so {@link #clearBuffer()} behaves as usual, and the bytes are used when
+     * the buffer is flushed. Text that is written directly, i.e. when this
+     * writer is unbuffered or the text would not fit in the buffer anyway, is
+     * checked immediately. Otherwise the text is written as characters.
+     *
+     * @param text The template text
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void write(PreEncodedText text) throws IOException {
+        ensureOpen();
+        String s = text.getText();
+        int len = s.length();
+        if (bufferSize == 0 || (autoFlush && len >= bufferSize)) {
+            initOut();
+            if (isPreEncodedWriter() && text.getCharset().equals(preEncodedCharset)) {
+                flushBuffer();
+                byte[] bytes = text.getBytes();
+                ((PreEncodedWriter) out).writePreEncoded(bytes, 0, bytes.length);
+                return;
+            }
+        } else if (len > 0 && len <= bufferSize - cb.length()) {
+            if (preEncodedCount == preEncodedTexts.length) {
+                PreEncodedText[] texts = new PreEncodedText[preEncodedCount * 2];
+                System.arraycopy(preEncodedTexts, 0, texts, 0, preEncodedCount);
+                preEncodedTexts = texts;
+                int[] offsets = new int[preEncodedCount * 2];
+                System.arraycopy(preEncodedOffsets, 0, offsets, 0, preEncodedCount);
+                preEncodedOffsets = offsets;
+            }
+            preEncodedTexts[preEncodedCount] = text;
+            preEncodedOffsets[preEncodedCount] = cb.length();
+            preEncodedCount++;
+        }
+        write(s);
+    }
+
     /**
      * Write an array of characters.  This method cannot be inherited from the
      * Writer class because it must suppress I/O exceptions.
@@ -320,11 +413,10 @@ public class JspWriterImpl extends JspWriter {
         }
         int b = off, t = off + len;
         while (b < t) {
-            int d = min(bufferSize - nextChar, t - b);
-            s.getChars(b, b + d, cb, nextChar);
+            int d = min(bufferSize - cb.length(), t - b);
+            cb.append(s, b, d);
             b += d;
-            nextChar += d;
-            if (nextChar >= bufferSize)
+            if (cb.length() >= bufferSize)
                 if (autoFlush)
                     flushBuffer();
                 else
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+
+import javax.servlet.jsp.JspWriter;
+
+/**
+ * Template text of a JSP page together with its encoding in the character set
+ * of the page's content type. Instances are created when the generated servlet
+ * is loaded so the text does not have to be encoded on every request when it
+ * can be written directly to the response.
+ */
+public final class PreEncodedText {
+
+    private final String text;
+    private final Charset charset;
+    private final byte[] bytes;
+
+
+    /**
+     * Encode the given template text.
+     *
+     * @param text        The template text
+     * @param charsetName The name of the character set of the page's content
+     *                    type
+     */
+    public PreEncodedText(String text, String charsetName) {
+        this.text = text;
+
+        Charset cs = null;
+        byte[] b = null;
+        try {
+            cs = Charset.forName(charsetName);
+            // Don't replace characters the character set can't represent
+            ByteBuffer bb = cs.newEncoder().encode(CharBuffer.wrap(text));
+            b = new byte[bb.remaining()];
+            bb.get(b);
+        } catch (IllegalArgumentException | UnsupportedOperationException |
+                CharacterCodingException e) {
+            // Always write the text as characters
+            cs = null;
+            b = null;
+        }
+        this.charset = cs;
+        this.bytes = b;
+    }
+
+
+    /**
+     * Write the template text to the given writer, using the pre-encoded
+     * bytes if possible.
+     *
+     * @param out The writer for the current page or tag body
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeTo(JspWriter out) throws IOException {
+        if (bytes != null && out instanceof JspWriterImpl) {
+            ((JspWriterImpl) out).write(this);
+        } else {
+            out.write(text);
+        }
+    }
+
+
+    String getText() {
+        return text;
+    }
+
+
+    Charset getCharset() {
+        return charset;
+    }
+
+
+    byte[] getBytes() {
+        return bytes;
+    }
+}
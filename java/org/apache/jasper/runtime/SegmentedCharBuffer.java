@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An unbounded character buffer made up of segments obtained from a
+ * {@link CharSegmentPool}. Segments are only allocated as content is added and
+ * are kept when the buffer is cleared so they can be reused for the next
+ * content. {@link #release()} returns them to the pool.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class SegmentedCharBuffer {
+
+    private final CharSegmentPool pool;
+    private final int segmentSize;
+
+    private char[][] segments = new char[4][];
+    // Number of entries in segments that hold a segment
+    private int segmentCount = 0;
+    // Index of the segment currently being written to
+    private int current = 0;
+    // Position of the next char in the current segment
+    private int pos = 0;
+    private int length = 0;
+
+
+    SegmentedCharBuffer(CharSegmentPool pool) {
+        this.pool = pool;
+        this.segmentSize = pool.getSegmentSize();
+    }
+
+
+    /**
+     * @return The number of chars in the buffer
+     */
+    int length() {
+        return length;
+    }
+
+
+    /**
+     * @return The number of chars the buffer can hold without obtaining
+     *         another segment from the pool
+     */
+    int capacity() {
+        return segmentCount * segmentSize;
+    }
+
+
+    void append(char c) {
+        char[] segment = writableSegment();
+        segment[pos++] = c;
+        length++;
+    }
+
+
+    void append(char[] src, int off, int len) {
+        while (len > 0) {
+            char[] segment = writableSegment();
+            int n = Math.min(len, segmentSize - pos);
+            System.arraycopy(src, off, segment, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+            length += n;
+        }
+    }
+
+
+    void append(String src, int off, int len) {
+        while (len > 0) {
+            char[] segment = writableSegment();
+            int n = Math.min(len, segmentSize - pos);
+            src.getChars(off, off + n, segment, pos);
+            pos += n;
+            off += n;
+            len -= n;
+            length += n;
+        }
+    }
+
+
+    /**
+     * Write the content of the buffer to the given writer. The buffer is not
+     * modified.
+     *
+     * @param out The writer
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void writeTo(Writer out) throws IOException {
+        int remaining = length;
+        for (int i = 0; remaining > 0; i++) {
+            int n = Math.min(remaining, segmentSize);
+            out.write(segments[i], 0, n);
+            remaining -= n;
+        }
+    }
+
+
+    /**
+     * Write part of the content of the buffer to the given writer. The buffer
+     * is not modified.
+     *
+     * @param out   The writer
+     * @param start The index of the first character to write
+     * @param end   The index after the last character to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void writeTo(Writer out, int start, int end) throws IOException {
+        while (start < end) {
+            int i = start / segmentSize;
+            int off = start - i * segmentSize;
+            int n = Math.min(end - start, segmentSize - off);
+            out.write(segments[i], off, n);
+            start += n;
+        }
+    }
+
+
+    char[] toCharArray() {
+        char[] result = new char[length];
+        int remaining = length;
+        for (int i = 0; remaining > 0; i++) {
+            int n = Math.min(remaining, segmentSize);
+            System.arraycopy(segments[i], 0, result, length - remaining, n);
+            remaining -= n;
+        }
+        return result;
+    }
+
+
+    @Override
+    public String toString() {
+        return new String(toCharArray());
+    }
+
+
+    /**
+     * Discard the content of the buffer, keeping the segments.
+     */
+    void clear() {
+        current = 0;
+        pos = 0;
+        length = 0;
+    }
+
+
+    /**
+     * Discard the content of the buffer and return all segments to the pool.
+     */
+    void release() {
+        for (int i = 0; i < segmentCount; i++) {
+            pool.offer(segments[i]);
+            segments[i] = null;
+        }
+        segmentCount = 0;
+        clear();
+    }
+
+
+    private char[] writableSegment() {
+        if (pos == segmentSize) {
+            current++;
+            pos = 0;
+        }
+        if (current == segmentCount) {
+            if (segmentCount == segments.length) {
+                char[][] tmp = new char[segmentCount * 2][];
+                System.arraycopy(segments, 0, tmp, 0, segmentCount);
+                segments = tmp;
+            }
+            segments[segmentCount++] = pool.take();
+        }
+        return segments[current];
+    }
+}
@@ -61,18 +61,7 @@ public class TagHandlerPool {
     }
 
     protected void init(ServletConfig config) {
-        int maxSize = -1;
-        String maxSizeS = getOption(config, OPTION_MAXSIZE, null);
-        if (maxSizeS != null) {
-            try {
-                maxSize = Integer.parseInt(maxSizeS);
-            } catch (Exception ex) {
-                maxSize = -1;
-            }
-        }
-        if (maxSize < 0) {
-            maxSize = Constants.MAX_POOL_SIZE;
-        }
+        int maxSize = getMaxSize(config);
         this.handlers = new Tag[maxSize];
         this.current = -1;
         instanceManager = InstanceManagerFactory.getInstanceManager(config);
@@ -107,6 +96,19 @@ public class TagHandlerPool {
 
         // Out of sync block - there is no need for other threads to
         // wait for us to construct a tag for this thread.
+        return newInstance(handlerClass);
+    }
+
+    /**
+     * Instantiates a new tag handler.
+     *
+     * @param handlerClass
+     *            Tag handler class
+     * @return Newly instantiated tag handler
+     * @throws JspException
+     *             if a tag handler cannot be instantiated
+     */
+    protected Tag newInstance(Class<? extends Tag> handlerClass) throws JspException {
         try {
             if (Constants.USE_INSTANCE_MANAGER_FOR_TAGS) {
                 return (Tag) instanceManager.newInstance(
@@ -153,6 +155,31 @@ public class TagHandlerPool {
     }
 
 
+    /**
+     * Obtains the maximum number of tag handlers to pool as configured by the
+     * {@link #OPTION_MAXSIZE} option.
+     *
+     * @param config The configuration of the servlet using the pool
+     * @return The configured maximum or {@link Constants#MAX_POOL_SIZE} if the
+     *         option is not set or is invalid
+     */
+    protected static int getMaxSize(ServletConfig config) {
+        int maxSize = -1;
+        String maxSizeS = getOption(config, OPTION_MAXSIZE, null);
+        if (maxSizeS != null) {
+            try {
+                maxSize = Integer.parseInt(maxSizeS);
+            } catch (Exception ex) {
+                maxSize = -1;
+            }
+        }
+        if (maxSize < 0) {
+            maxSize = Constants.MAX_POOL_SIZE;
+        }
+        return maxSize;
+    }
+
+
     protected static String getOption(ServletConfig config, String name,
             String defaultV) {
         if (config == null)
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Aggregates the counts recorded by the {@link ConcurrentTagHandlerPool}s of
+ * a web application so they can be monitored, e.g. via the JspMonitor MBean
+ * of the JSP servlet. The counts of pools that have been released are retained
+ * so the totals do not drop when JSPs are unloaded or reloaded.
+ */
+public class TagHandlerPoolStatistics {
+
+    /**
+     * The name of the servlet context attribute that holds the statistics for
+     * a web application.
+     */
+    public static final String ATTRIBUTE_NAME = TagHandlerPoolStatistics.class.getName();
+
+    private final Queue<ConcurrentTagHandlerPool> pools = new ConcurrentLinkedQueue<>();
+    private final AtomicLong releasedHitCount = new AtomicLong();
+    private final AtomicLong releasedMissCount = new AtomicLong();
+    private final AtomicLong releasedInstantiationCount = new AtomicLong();
+
+
+    /**
+     * Obtain the statistics for the given web application, creating them if
+     * necessary.
+     *
+     * @param context The servlet context of the web application
+     *
+     * @return The statistics for the web application
+     */
+    static TagHandlerPoolStatistics getInstance(ServletContext context) {
+        synchronized (TagHandlerPoolStatistics.class) {
+            TagHandlerPoolStatistics result =
+                    (TagHandlerPoolStatistics) context.getAttribute(ATTRIBUTE_NAME);
+            if (result == null) {
+                result = new TagHandlerPoolStatistics();
+                context.setAttribute(ATTRIBUTE_NAME, result);
+            }
+            return result;
+        }
+    }
+
+
+    void register(ConcurrentTagHandlerPool pool) {
+        pools.add(pool);
+    }
+
+
+    void unregister(ConcurrentTagHandlerPool pool) {
+        if (pools.remove(pool)) {
+            releasedHitCount.addAndGet(pool.getHitCount());
+            releasedMissCount.addAndGet(pool.getMissCount());
+            releasedInstantiationCount.addAndGet(pool.getInstantiationCount());
+        }
+    }
+
+
+    /**
+     * @return The number of times a tag handler was obtained from a pool
+     */
+    public long getHitCount() {
+        long result = releasedHitCount.get();
+        for (ConcurrentTagHandlerPool pool : pools) {
+            result += pool.getHitCount();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of times no tag handler was available in a pool
+     */
+    public long getMissCount() {
+        long result = releasedMissCount.get();
+        for (ConcurrentTagHandlerPool pool : pools) {
+            result += pool.getMissCount();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of tag handlers created by the pools
+     */
+    public long getInstantiationCount() {
+        long result = releasedInstantiationCount.get();
+        for (ConcurrentTagHandlerPool pool : pools) {
+            result += pool.getInstantiationCount();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of tag handlers currently held by the pools
+     */
+    public int getIdleCount() {
+        int result = 0;
+        for (ConcurrentTagHandlerPool pool : pools) {
+            result += pool.getIdleCount();
+        }
+        return result;
+    }
+}
@@ -24,6 +24,12 @@ import java.net.MalformedURLException;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletConfig;
@@ -39,11 +45,13 @@ import org.apache.jasper.Options;
 import org.apache.jasper.compiler.JspRuntimeContext;
 import org.apache.jasper.compiler.Localizer;
 import org.apache.jasper.runtime.ExceptionUtils;
+import org.apache.jasper.runtime.TagHandlerPoolStatistics;
 import org.apache.jasper.security.SecurityUtil;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.PeriodicEventListener;
 import org.apache.tomcat.util.security.Escape;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
 
 /**
  * The JSP engine (a.k.a Jasper).
@@ -75,6 +83,8 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
     // jspFile for a jsp configured explicitly as a servlet, in environments where this
     // configuration is translated into an init-param for this servlet.
     private String jspFile;
+    // Compiles the JSPs in the background if precompileOnStartup is enabled
+    private transient ExecutorService precompileExecutor;
 
 
     /*
@@ -147,6 +157,15 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
             }
         }
 
+        if (jspFile == null && options.getPrecompileOnStartup()) {
+            if (Constants.IS_SECURITY_ENABLED) {
+                log.info(Localizer.getMessage(
+                        "jsp.info.ignoreSetting", "precompileOnStartup", "true"));
+            } else {
+                startPrecompile();
+            }
+        }
+
         if (log.isDebugEnabled()) {
             log.debug(Localizer.getMessage("jsp.message.scratch.dir.is",
                     options.getScratchDir().toString()));
@@ -219,6 +238,76 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
     }
 
 
+    /**
+     * Gets the number of times a tag handler was obtained from a tag handler
+     * pool. Only recorded if
+     * {@link org.apache.jasper.runtime.ConcurrentTagHandlerPool} is used.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of tag handlers (in the webapp with which this
+     * JspServlet is associated) that were reused
+     */
+    public long getTagPoolHitCount() {
+        TagHandlerPoolStatistics statistics = getTagPoolStatistics();
+        return (statistics == null) ? 0 : statistics.getHitCount();
+    }
+
+
+    /**
+     * Gets the number of times no tag handler was available in a tag handler
+     * pool. Only recorded if
+     * {@link org.apache.jasper.runtime.ConcurrentTagHandlerPool} is used.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of tag handler requests (in the webapp with which
+     * this JspServlet is associated) that could not be met from a pool
+     */
+    public long getTagPoolMissCount() {
+        TagHandlerPoolStatistics statistics = getTagPoolStatistics();
+        return (statistics == null) ? 0 : statistics.getMissCount();
+    }
+
+
+    /**
+     * Gets the number of tag handlers created by tag handler pools. Only
+     * recorded if {@link org.apache.jasper.runtime.ConcurrentTagHandlerPool}
+     * is used.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of tag handlers (in the webapp with which this
+     * JspServlet is associated) that have been created
+     */
+    public long getTagPoolInstantiationCount() {
+        TagHandlerPoolStatistics statistics = getTagPoolStatistics();
+        return (statistics == null) ? 0 : statistics.getInstantiationCount();
+    }
+
+
+    /**
+     * Gets the number of idle tag handlers held by tag handler pools. Only
+     * recorded if {@link org.apache.jasper.runtime.ConcurrentTagHandlerPool}
+     * is used.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of idle tag handlers (in the webapp with which this
+     * JspServlet is associated)
+     */
+    public int getTagPoolIdleCount() {
+        TagHandlerPoolStatistics statistics = getTagPoolStatistics();
+        return (statistics == null) ? 0 : statistics.getIdleCount();
+    }
+
+
+    private TagHandlerPoolStatistics getTagPoolStatistics() {
+        return (TagHandlerPoolStatistics) context.getAttribute(
+                TagHandlerPoolStatistics.ATTRIBUTE_NAME);
+    }
+
+
     /**
      * <p>Look for a <em>precompilation request</em> as described in
      * Section 8.4.2 of the JSP 1.2 Specification.  <strong>WARNING</strong> -
@@ -347,6 +436,9 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
             log.debug("JspServlet.destroy()");
         }
 
+        if (precompileExecutor != null) {
+            precompileExecutor.shutdownNow();
+        }
         rctxt.destroy();
     }
 
@@ -364,6 +456,24 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
                                 boolean precompile)
         throws ServletException, IOException {
 
+        JspServletWrapper wrapper = getWrapper(jspUri);
+        if (wrapper == null) {
+            handleMissingResource(request, response, jspUri);
+            return;
+        }
+
+        try {
+            wrapper.service(request, response, precompile);
+        } catch (FileNotFoundException fnfe) {
+            handleMissingResource(request, response, jspUri);
+        }
+
+    }
+
+
+    private JspServletWrapper getWrapper(String jspUri)
+            throws MalformedURLException {
+
         JspServletWrapper wrapper = rctxt.getWrapper(jspUri);
         if (wrapper == null) {
             synchronized(this) {
@@ -372,8 +482,7 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
                     // Check if the requested JSP page exists, to avoid
                     // creating unnecessary directories and files.
                     if (null == context.getResource(jspUri)) {
-                        handleMissingResource(request, response, jspUri);
-                        return;
+                        return null;
                     }
                     wrapper = new JspServletWrapper(config, options, jspUri,
                                                     rctxt);
@@ -381,13 +490,86 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
                 }
             }
         }
+        return wrapper;
+    }
 
-        try {
-            wrapper.service(request, response, precompile);
-        } catch (FileNotFoundException fnfe) {
-            handleMissingResource(request, response, jspUri);
+
+    /*
+     * Compiles every JSP in the web application using a pool of low priority
+     * daemon threads. Requests for a JSP that is being compiled wait for that
+     * compilation to complete as they would for a compilation triggered by
+     * another request.
+     */
+    private void startPrecompile() {
+        final List<String> jspUris = new ArrayList<>();
+        findJsps("/", jspUris);
+        if (jspUris.isEmpty()) {
+            return;
+        }
+
+        final String contextPath = context.getContextPath();
+        log.info(Localizer.getMessage("jsp.precompile.start",
+                Integer.toString(jspUris.size()), contextPath));
+
+        final long start = System.currentTimeMillis();
+        final ClassLoader webappLoader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger remaining = new AtomicInteger(jspUris.size());
+        final AtomicInteger failures = new AtomicInteger();
+
+        int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        precompileExecutor = Executors.newFixedThreadPool(threadCount,
+                new TaskThreadFactory("JspPrecompile[" + contextPath + "]-",
+                        true, Thread.MIN_PRIORITY));
+
+        for (final String jspUri : jspUris) {
+            precompileExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Thread currentThread = Thread.currentThread();
+                    ClassLoader originalLoader = currentThread.getContextClassLoader();
+                    currentThread.setContextClassLoader(webappLoader);
+                    try {
+                        JspServletWrapper wrapper = getWrapper(jspUri);
+                        if (wrapper != null) {
+                            wrapper.compile();
+                        }
+                    } catch (Throwable t) {
+                        ExceptionUtils.handleThrowable(t);
+                        failures.incrementAndGet();
+                        // Typically a JSP fragment that is only valid when
+                        // included. Errors will be reported on first use.
+                        if (log.isDebugEnabled()) {
+                            log.debug(Localizer.getMessage("jsp.precompile.fail", jspUri), t);
+                        }
+                    } finally {
+                        currentThread.setContextClassLoader(originalLoader);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        log.info(Localizer.getMessage("jsp.precompile.complete",
+                                Integer.toString(jspUris.size()), contextPath,
+                                Long.toString(System.currentTimeMillis() - start),
+                                Integer.toString(failures.get())));
+                        precompileExecutor.shutdown();
+                    }
+                }
+            });
         }
+    }
 
+
+    private void findJsps(String path, List<String> jspUris) {
+        Set<String> paths = context.getResourcePaths(path);
+        if (paths == null) {
+            return;
+        }
+        for (String child : paths) {
+            if (child.endsWith("/")) {
+                findJsps(child, jspUris);
+            } else if (child.endsWith(".jsp") || child.endsWith(".jspx") ||
+                    options.getJspConfig().isJspPage(child)) {
+                jspUris.add(child);
+            }
+        }
     }
 
 
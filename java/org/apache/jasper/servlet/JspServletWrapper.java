@@ -212,6 +212,19 @@ public class JspServletWrapper {
         return theServlet;
     }
 
+    /**
+     * Compile the JSP, if it is out of date, without loading the generated
+     * servlet. The servlet will be loaded when the JSP is first used.
+     *
+     * @throws JasperException       If the JSP fails to compile
+     * @throws FileNotFoundException If the JSP no longer exists
+     */
+    public void compile() throws JasperException, FileNotFoundException {
+        synchronized (this) {
+            ctxt.compile();
+        }
+    }
+
     public ServletContext getServletContext() {
         return ctxt.getServletContext();
     }
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.servlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.scan.JarScanCache;
+
+/**
+ * Retains the results of scanning JARs for TLDs so that JARs that have not
+ * changed do not have to be opened and searched again.
+ * <p>
+ * For each JAR scanned, the names of the TLD entries it contains (usually
+ * none) are persisted in the work directory of the web application. When the
+ * web application is next started, JARs with the same size and last modified
+ * time are not opened unless they contain TLDs.
+ * <p>
+ * TLDs in JARs provided by the container are the same for every web
+ * application so the parsed TLDs are also retained, in memory, and shared by
+ * all the web applications that use this cache. They are only weakly
+ * referenced so they are discarded once no running web application uses them.
+ */
+class TldScanCache {
+
+    static final String FILE_NAME = "tldScanCache.dat";
+
+    private static final int MAGIC = 0x544f4d54;
+    private static final int VERSION = 1;
+
+    private static final String[] NO_ENTRIES = new String[0];
+
+    private static final JarScanCache.Serializer<TldEntries> SERIALIZER =
+            new JarScanCache.Serializer<TldEntries>() {
+
+        @Override
+        public void write(DataOutputStream out, TldEntries value) throws IOException {
+            out.writeInt(value.entryNames.length);
+            for (String entryName : value.entryNames) {
+                out.writeUTF(entryName);
+            }
+        }
+
+        @Override
+        public TldEntries read(DataInputStream in) throws IOException {
+            String[] entryNames = new String[in.readInt()];
+            for (int i = 0; i < entryNames.length; i++) {
+                entryNames[i] = in.readUTF();
+            }
+            return new TldEntries(entryNames);
+        }
+    };
+
+    /*
+     * Parsed TLDs from JARs provided by the container. The key includes the
+     * parser configuration. The TldCache of each web application holds the
+     * TLDs it uses so they remain in this map while any of those web
+     * applications is running.
+     */
+    private static final ConcurrentMap<String,SharedTld> sharedTlds =
+            new ConcurrentHashMap<>();
+    private static final ReferenceQueue<TaglibXml> sharedTldQueue = new ReferenceQueue<>();
+
+    private final JarScanCache<TldEntries> cache;
+
+
+    private TldScanCache(JarScanCache<TldEntries> cache) {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Load the cache from the given directory. If the cache does not exist or
+     * can't be read, an empty cache is returned.
+     *
+     * @param dir The work directory of the web application
+     *
+     * @return The cache
+     */
+    static TldScanCache load(File dir) {
+        return new TldScanCache(JarScanCache.load(
+                new File(dir, FILE_NAME), MAGIC, VERSION, SERIALIZER));
+    }
+
+
+    /**
+     * Obtain the names of the TLD entries in the given JAR if it has not
+     * changed since it was last scanned.
+     *
+     * @param jarFileUrl The URL of the JAR file
+     * @param jarFile    The JAR file
+     *
+     * @return The names of the TLD entries or <code>null</code> if the JAR
+     *         needs to be scanned
+     */
+    String[] getTldEntries(URL jarFileUrl, File jarFile) {
+        TldEntries tldEntries = cache.get(jarFileUrl.toString(), jarFile);
+        if (tldEntries == null) {
+            return null;
+        }
+        return tldEntries.entryNames;
+    }
+
+
+    /**
+     * Record the names of the TLD entries found when scanning a JAR.
+     *
+     * @param jarFileUrl The URL of the JAR file
+     * @param jarFile    The JAR file
+     * @param entryNames The names of the TLD entries in the JAR
+     */
+    void putTldEntries(URL jarFileUrl, File jarFile, List<String> entryNames) {
+        cache.put(jarFileUrl.toString(), jarFile,
+                new TldEntries(entryNames.toArray(NO_ENTRIES)));
+    }
+
+
+    /**
+     * Write the results for the JARs scanned since this cache was loaded to
+     * disk. Results for JARs that were not scanned are discarded. Nothing is
+     * written if nothing has changed.
+     */
+    void save() {
+        cache.save();
+    }
+
+
+    /**
+     * Obtain a previously parsed TLD from a JAR provided by the container.
+     *
+     * @param key     The key for the TLD and the parser configuration
+     * @param jarFile The JAR file containing the TLD
+     *
+     * @return The parsed TLD or <code>null</code> if the TLD has not been
+     *         parsed or the JAR has changed since it was
+     */
+    static TaglibXml getSharedTld(String key, File jarFile) {
+        expungeSharedTlds();
+        SharedTld sharedTld = sharedTlds.get(key);
+        if (sharedTld == null || sharedTld.length != jarFile.length() ||
+                sharedTld.lastModified != jarFile.lastModified()) {
+            return null;
+        }
+        return sharedTld.get();
+    }
+
+
+    static void putSharedTld(String key, File jarFile, TaglibXml taglibXml) {
+        sharedTlds.put(key, new SharedTld(key, jarFile.length(), jarFile.lastModified(),
+                taglibXml, sharedTldQueue));
+    }
+
+
+    /**
+     * @return The number of parsed TLDs retained for sharing between web
+     *         applications
+     */
+    static int getSharedTldCount() {
+        expungeSharedTlds();
+        return sharedTlds.size();
+    }
+
+
+    /*
+     * Remove the entries for TLDs that are no longer used by any web
+     * application.
+     */
+    private static void expungeSharedTlds() {
+        SharedTld sharedTld = (SharedTld) sharedTldQueue.poll();
+        while (sharedTld != null) {
+            sharedTlds.remove(sharedTld.key, sharedTld);
+            sharedTld = (SharedTld) sharedTldQueue.poll();
+        }
+    }
+
+
+    private static class TldEntries {
+        private final String[] entryNames;
+
+        TldEntries(String[] entryNames) {
+            this.entryNames = entryNames;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TldEntries)) {
+                return false;
+            }
+            return Arrays.equals(entryNames, ((TldEntries) obj).entryNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(entryNames);
+        }
+    }
+
+
+    private static class SharedTld extends WeakReference<TaglibXml> {
+        private final String key;
+        private final long length;
+        private final long lastModified;
+
+        SharedTld(String key, long length, long lastModified, TaglibXml taglibXml,
+                ReferenceQueue<TaglibXml> queue) {
+            super(taglibXml, queue);
+            this.key = key;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+}
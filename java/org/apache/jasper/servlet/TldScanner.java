@@ -36,10 +36,12 @@ import javax.servlet.ServletContext;
 import javax.servlet.descriptor.JspConfigDescriptor;
 import javax.servlet.descriptor.TaglibDescriptor;
 
+import org.apache.jasper.Constants;
 import org.apache.jasper.compiler.JarScannerFactory;
 import org.apache.jasper.compiler.Localizer;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.CachedJarScannerCallback;
 import org.apache.tomcat.Jar;
 import org.apache.tomcat.JarScanType;
 import org.apache.tomcat.JarScanner;
@@ -47,6 +49,7 @@ import org.apache.tomcat.JarScannerCallback;
 import org.apache.tomcat.util.descriptor.tld.TaglibXml;
 import org.apache.tomcat.util.descriptor.tld.TldParser;
 import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.apache.tomcat.util.scan.JarScanCache;
 import org.xml.sax.SAXException;
 
 /**
@@ -59,6 +62,8 @@ public class TldScanner {
     private static final String WEB_INF = "/WEB-INF/";
     private final ServletContext context;
     private final TldParser tldParser;
+    private final String parserConfig;
+    private TldScanCache scanCache;
     private final Map<String, TldResourcePath> uriTldResourcePathMap = new HashMap<>();
     private final Map<TldResourcePath, TaglibXml> tldResourcePathTaglibXmlMap = new HashMap<>();
     private final List<String> listeners = new ArrayList<>();
@@ -82,6 +87,7 @@ public class TldScanner {
         this.context = context;
 
         this.tldParser = new TldParser(namespaceAware, validation, blockExternal);
+        this.parserConfig = "?" + namespaceAware + "," + validation + "," + blockExternal;
     }
 
     /**
@@ -259,7 +265,18 @@ public class TldScanner {
     public void scanJars() {
         JarScanner scanner = JarScannerFactory.getJarScanner(context);
         TldScannerCallback callback = new TldScannerCallback();
+        scanCache = null;
+        if (Boolean.parseBoolean(context.getInitParameter(Constants.TLD_SCAN_CACHE_INIT_PARAM))) {
+            Object tempDir = context.getAttribute(ServletContext.TEMPDIR);
+            if (tempDir instanceof File) {
+                scanCache = TldScanCache.load((File) tempDir);
+            }
+        }
         scanner.scan(JarScanType.TLD, context, callback);
+        if (scanCache != null) {
+            scanCache.save();
+            scanCache = null;
+        }
         if (callback.scanFoundNoTLDs()) {
             log.info(Localizer.getMessage("jsp.tldCache.noTldSummary"));
         }
@@ -272,11 +289,31 @@ public class TldScanner {
     }
 
     protected void parseTld(TldResourcePath path) throws IOException, SAXException {
+        parseTld(path, null);
+    }
+
+    /*
+     * If the TLD is in a JAR provided by the container, sharedJarFile is the
+     * JAR file and the parsed TLD may be shared with other web applications.
+     */
+    private void parseTld(TldResourcePath path, File sharedJarFile)
+            throws IOException, SAXException {
         if (tldResourcePathTaglibXmlMap.containsKey(path)) {
             // TLD has already been parsed as a result of processing web.xml
             return;
         }
-        TaglibXml tld = tldParser.parse(path);
+        TaglibXml tld = null;
+        String sharedKey = null;
+        if (sharedJarFile != null) {
+            sharedKey = path.getUrl().toString() + "!/" + path.getEntryName() + parserConfig;
+            tld = TldScanCache.getSharedTld(sharedKey, sharedJarFile);
+        }
+        if (tld == null) {
+            tld = tldParser.parse(path);
+            if (sharedKey != null) {
+                TldScanCache.putSharedTld(sharedKey, sharedJarFile, tld);
+            }
+        }
         String uri = tld.getUri();
         if (uri != null) {
             if (!uriTldResourcePathMap.containsKey(uri)) {
@@ -289,15 +326,48 @@ public class TldScanner {
         }
     }
 
-    class TldScannerCallback implements JarScannerCallback {
+    class TldScannerCallback implements CachedJarScannerCallback {
         private boolean foundJarWithoutTld = false;
         private boolean foundFileWithoutTld = false;
 
 
+        @Override
+        public boolean scanCached(URL url, String webappPath, boolean isWebapp)
+                throws IOException {
+            if (scanCache == null) {
+                return false;
+            }
+            URL jarFileUrl = JarScanCache.getJarFileUrl(url);
+            File jarFile = JarScanCache.getJarFile(jarFileUrl);
+            if (jarFile == null) {
+                return false;
+            }
+            String[] entryNames = scanCache.getTldEntries(jarFileUrl, jarFile);
+            if (entryNames == null) {
+                return false;
+            }
+            for (String entryName : entryNames) {
+                TldResourcePath tldResourcePath =
+                        new TldResourcePath(jarFileUrl, webappPath, entryName);
+                try {
+                    parseTld(tldResourcePath, isWebapp ? null : jarFile);
+                } catch (SAXException e) {
+                    throw new IOException(e);
+                }
+            }
+            logJarResult(jarFileUrl, entryNames.length > 0);
+            return true;
+        }
+
+
         @Override
         public void scan(Jar jar, String webappPath, boolean isWebapp) throws IOException {
-            boolean found = false;
             URL jarFileUrl = jar.getJarFileURL();
+            File jarFile = null;
+            if (scanCache != null) {
+                jarFile = JarScanCache.getJarFile(jarFileUrl);
+            }
+            List<String> entryNames = new ArrayList<>();
             jar.nextEntry();
             for (String entryName = jar.getEntryName();
                 entryName != null;
@@ -306,15 +376,23 @@ public class TldScanner {
                         entryName.endsWith(TLD_EXT))) {
                     continue;
                 }
-                found = true;
+                entryNames.add(entryName);
                 TldResourcePath tldResourcePath =
                         new TldResourcePath(jarFileUrl, webappPath, entryName);
                 try {
-                    parseTld(tldResourcePath);
+                    parseTld(tldResourcePath, isWebapp ? null : jarFile);
                 } catch (SAXException e) {
                     throw new IOException(e);
                 }
             }
+            if (scanCache != null && jarFile != null) {
+                scanCache.putTldEntries(jarFileUrl, jarFile, entryNames);
+            }
+            logJarResult(jarFileUrl, !entryNames.isEmpty());
+        }
+
+
+        private void logJarResult(URL jarFileUrl, boolean found) {
             if (found) {
                 if (log.isDebugEnabled()) {
                     log.debug(Localizer.getMessage("jsp.tldCache.tldInJar", jarFileUrl.toString()));
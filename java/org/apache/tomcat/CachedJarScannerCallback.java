@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Optional extension of {@link JarScannerCallback} for clients of the
+ * {@link JarScanner} that may be able to process a JAR without it being
+ * opened, typically because they have retained the results of scanning the
+ * same, unchanged, JAR previously.
+ */
+public interface CachedJarScannerCallback extends JarScannerCallback {
+
+    /**
+     * A JAR was found. Called before the JAR is opened. If the JAR is
+     * processed by this method it will not be opened and
+     * {@link #scan(Jar, String, boolean)} will not be called for it.
+     *
+     * @param url        The URL of the JAR
+     * @param webappPath The path, if any, to the JAR within the web application
+     * @param isWebapp   Indicates if the JAR was found within a web
+     *                       application. If <code>false</code> the JAR should
+     *                       be treated as being provided by the container
+     *
+     * @return <code>true</code> if the JAR has been processed, otherwise
+     *         <code>false</code> in which case the JAR will be opened and
+     *         scanned as usual
+     *
+     * @throws IOException if an I/O error occurs while processing the JAR
+     */
+    public boolean scanCached(URL url, String webappPath, boolean isWebapp)
+            throws IOException;
+}
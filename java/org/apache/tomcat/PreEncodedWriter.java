@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Implemented by response writers that can accept characters that have
+ * already been encoded, e.g. static template text encoded once when a JSP is
+ * loaded rather than on every request.
+ */
+public interface PreEncodedWriter {
+
+    /**
+     * Obtain the character set this writer uses to encode characters.
+     *
+     * @return The character set or <code>null</code> if it is not known in
+     *         which case pre-encoded characters must not be written
+     *
+     * @throws IOException If the character set could not be determined
+     */
+    Charset getCharset() throws IOException;
+
+    /**
+     * Write characters that have already been encoded using the character set
+     * returned by {@link #getCharset()}. The bytes are written after any
+     * characters previously written to this writer.
+     *
+     * @param b   The encoded characters
+     * @param off The offset of the first byte to write
+     * @param len The number of bytes to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void writePreEncoded(byte[] b, int off, int len) throws IOException;
+}
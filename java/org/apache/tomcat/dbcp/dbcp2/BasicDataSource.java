@@ -572,6 +572,41 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
         }
     }
 
+    /**
+     * The number of lock-free idle connection stripes placed in front of the shared idle connection queue.
+     */
+    private int idleStripes = GenericObjectPoolConfig.DEFAULT_IDLE_STRIPES;
+
+    /**
+     * Returns the number of idle connection stripes.
+     *
+     * @return the number of idle connection stripes
+     * @see GenericObjectPoolConfig#getIdleStripes()
+     */
+    public synchronized int getIdleStripes() {
+        return this.idleStripes;
+    }
+
+    /**
+     * <p>
+     * Sets the number of lock-free idle connection stripes. A positive value reduces contention on the idle connection
+     * queue when many threads borrow and return connections concurrently. Stripes are only used when {@link #getLifo()
+     * lifo} is <code>true</code>.
+     * </p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been initialized. The pool is initialized the first
+     * time one of the following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code>
+     * </p>
+     *
+     * @param idleStripes
+     *            the number of idle connection stripes, 0 to disable
+     * @see GenericObjectPoolConfig#setIdleStripes(int)
+     */
+    public synchronized void setIdleStripes(final int idleStripes) {
+        this.idleStripes = idleStripes;
+    }
+
     /**
      * The initial number of connections that are created when the pool is started.
      */
@@ -2263,6 +2298,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
         updateJmxName(config);
         // Disable JMX on the underlying pool if the DS is not registered:
         config.setJmxEnabled(registeredJmxObjectName != null);
+        config.setIdleStripes(idleStripes);
         final GenericObjectPool<PoolableConnection> gop = createObjectPool(factory, config, abandonedConfig);
         gop.setMaxTotal(maxTotal);
         gop.setMaxIdle(maxIdle);
@@ -70,6 +70,7 @@ public class BasicDataSourceFactory implements ObjectFactory {
     private static final String PROP_MAXTOTAL = "maxTotal";
     private static final String PROP_MAXIDLE = "maxIdle";
     private static final String PROP_MINIDLE = "minIdle";
+    private static final String PROP_IDLESTRIPES = "idleStripes";
     private static final String PROP_INITIALSIZE = "initialSize";
     private static final String PROP_MAXWAITMILLIS = "maxWaitMillis";
     private static final String PROP_TESTONCREATE = "testOnCreate";
@@ -132,8 +133,8 @@ public class BasicDataSourceFactory implements ObjectFactory {
 
     private static final String[] ALL_PROPERTIES = {PROP_DEFAULTAUTOCOMMIT, PROP_DEFAULTREADONLY,
             PROP_DEFAULTTRANSACTIONISOLATION, PROP_DEFAULTCATALOG, PROP_DEFAULTSCHEMA, PROP_CACHESTATE,
-            PROP_DRIVERCLASSNAME, PROP_LIFO, PROP_MAXTOTAL, PROP_MAXIDLE, PROP_MINIDLE, PROP_INITIALSIZE,
-            PROP_MAXWAITMILLIS, PROP_TESTONCREATE, PROP_TESTONBORROW, PROP_TESTONRETURN,
+            PROP_DRIVERCLASSNAME, PROP_LIFO, PROP_MAXTOTAL, PROP_MAXIDLE, PROP_MINIDLE, PROP_IDLESTRIPES,
+            PROP_INITIALSIZE, PROP_MAXWAITMILLIS, PROP_TESTONCREATE, PROP_TESTONBORROW, PROP_TESTONRETURN,
             PROP_TIMEBETWEENEVICTIONRUNSMILLIS, PROP_NUMTESTSPEREVICTIONRUN, PROP_MINEVICTABLEIDLETIMEMILLIS,
             PROP_SOFTMINEVICTABLEIDLETIMEMILLIS, PROP_EVICTIONPOLICYCLASSNAME, PROP_TESTWHILEIDLE, PROP_PASSWORD,
             PROP_URL, PROP_USERNAME, PROP_VALIDATIONQUERY, PROP_VALIDATIONQUERY_TIMEOUT, PROP_CONNECTIONINITSQLS,
@@ -373,6 +374,11 @@ public class BasicDataSourceFactory implements ObjectFactory {
             dataSource.setMinIdle(Integer.parseInt(value));
         }
 
+        value = properties.getProperty(PROP_IDLESTRIPES);
+        if (value != null) {
+            dataSource.setIdleStripes(Integer.parseInt(value));
+        }
+
         value = properties.getProperty(PROP_INITIALSIZE);
         if (value != null) {
             dataSource.setInitialSize(Integer.parseInt(value));
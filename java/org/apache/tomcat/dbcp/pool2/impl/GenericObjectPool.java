@@ -110,6 +110,11 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         this.factory = factory;
 
         idleObjects = new LinkedBlockingDeque<>(config.getFairness());
+        if (config.getIdleStripes() > 0) {
+            idleStripes = new IdleObjectStripes<>(config.getIdleStripes());
+        } else {
+            idleStripes = null;
+        }
 
         setConfig(config);
     }
@@ -411,7 +416,12 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
         while (p == null) {
             create = false;
-            p = idleObjects.pollFirst();
+            if (idleStripes != null) {
+                p = idleStripes.poll();
+            }
+            if (p == null) {
+                p = idleObjects.pollFirst();
+            }
             if (p == null) {
                 p = create();
                 if (p != null) {
@@ -420,11 +430,21 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             }
             if (blockWhenExhausted) {
                 if (p == null) {
-                    if (borrowMaxWaitMillis < 0) {
-                        p = idleObjects.takeFirst();
+                    if (idleStripes == null) {
+                        p = waitForIdleObject(borrowMaxWaitMillis);
                     } else {
-                        p = idleObjects.pollFirst(borrowMaxWaitMillis,
-                                TimeUnit.MILLISECONDS);
+                        // Register as a waiter before the final check of the
+                        // stripes so a concurrently returned object is either
+                        // seen here or handed over to idleObjects
+                        idleStripes.beginWait();
+                        try {
+                            p = idleStripes.poll();
+                            if (p == null) {
+                                p = waitForIdleObject(borrowMaxWaitMillis);
+                            }
+                        } finally {
+                            idleStripes.endWait();
+                        }
                     }
                 }
                 if (p == null) {
@@ -490,6 +510,14 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         return p.getObject();
     }
 
+    private PooledObject<T> waitForIdleObject(final long borrowMaxWaitMillis)
+            throws InterruptedException {
+        if (borrowMaxWaitMillis < 0) {
+            return idleObjects.takeFirst();
+        }
+        return idleObjects.pollFirst(borrowMaxWaitMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -560,7 +588,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         }
 
         final int maxIdleSave = getMaxIdle();
-        if (isClosed() || maxIdleSave > -1 && maxIdleSave <= idleObjects.size()) {
+        if (isClosed() || maxIdleSave > -1 && maxIdleSave <= getNumIdle()) {
             try {
                 destroy(p);
             } catch (final Exception e) {
@@ -568,7 +596,9 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             }
         } else {
             if (getLifo()) {
-                idleObjects.addFirst(p);
+                if (idleStripes == null || !idleStripes.offer(p)) {
+                    idleObjects.addFirst(p);
+                }
             } else {
                 idleObjects.addLast(p);
             }
@@ -630,6 +660,9 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      */
     @Override
     public void clear() {
+        if (idleStripes != null) {
+            idleStripes.drainTo(idleObjects);
+        }
         PooledObject<T> p = idleObjects.poll();
 
         while (p != null) {
@@ -644,12 +677,15 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
     @Override
     public int getNumActive() {
-        return allObjects.size() - idleObjects.size();
+        return allObjects.size() - getNumIdle();
     }
 
     @Override
     public int getNumIdle() {
-        return idleObjects.size();
+        if (idleStripes == null) {
+            return idleObjects.size();
+        }
+        return idleObjects.size() + idleStripes.size();
     }
 
     /**
@@ -696,12 +732,17 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     public void evict() throws Exception {
         assertOpen();
 
-        if (idleObjects.size() > 0) {
+        if (getNumIdle() > 0) {
 
             PooledObject<T> underTest = null;
             final EvictionPolicy<T> evictionPolicy = getEvictionPolicy();
 
             synchronized (evictionLock) {
+                // Objects parked in the stripes are not visible to the
+                // eviction iterator
+                if (idleStripes != null) {
+                    idleStripes.drainTo(idleObjects);
+                }
                 final EvictionConfig evictionConfig = new EvictionConfig(
                         getMinEvictableIdleTimeMillis(),
                         getSoftMinEvictableIdleTimeMillis(),
@@ -907,7 +948,9 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      */
     private void destroy(final PooledObject<T> toDestroy) throws Exception {
         toDestroy.invalidate();
-        idleObjects.remove(toDestroy);
+        if (idleStripes == null || !idleStripes.remove(toDestroy)) {
+            idleObjects.remove(toDestroy);
+        }
         allObjects.remove(new IdentityWrapper<>(toDestroy.getObject()));
         try {
             factory.destroyObject(toDestroy);
@@ -939,7 +982,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             return;
         }
 
-        while (idleObjects.size() < idleCount) {
+        while (getNumIdle() < idleCount) {
             final PooledObject<T> p = create();
             if (p == null) {
                 // Can't create objects, no reason to think another call to
@@ -1007,9 +1050,9 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     private int getNumTests() {
         final int numTestsPerEvictionRun = getNumTestsPerEvictionRun();
         if (numTestsPerEvictionRun >= 0) {
-            return Math.min(numTestsPerEvictionRun, idleObjects.size());
+            return Math.min(numTestsPerEvictionRun, getNumIdle());
         }
-        return (int) (Math.ceil(idleObjects.size() /
+        return (int) (Math.ceil(getNumIdle() /
                 Math.abs((double) numTestsPerEvictionRun)));
     }
 
@@ -1157,6 +1200,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     private long makeObjectCount = 0;
     private final Object makeObjectCountLock = new Object();
     private final LinkedBlockingDeque<PooledObject<T>> idleObjects;
+    private final IdleObjectStripes<PooledObject<T>> idleStripes;
 
     // JMX specific attributes
     private static final String ONAME_BASE =
@@ -1182,6 +1226,8 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         builder.append(createCount);
         builder.append(", idleObjects=");
         builder.append(idleObjects);
+        builder.append(", idleStripes=");
+        builder.append(idleStripes);
         builder.append(", abandonedConfig=");
         builder.append(abandonedConfig);
     }
@@ -48,6 +48,12 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
      */
     public static final int DEFAULT_MIN_IDLE = 0;
 
+    /**
+     * The default value for the {@code idleStripes} configuration attribute.
+     * @see GenericObjectPoolConfig#getIdleStripes()
+     */
+    public static final int DEFAULT_IDLE_STRIPES = 0;
+
 
     private int maxTotal = DEFAULT_MAX_TOTAL;
 
@@ -55,6 +61,8 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
 
     private int minIdle = DEFAULT_MIN_IDLE;
 
+    private int idleStripes = DEFAULT_IDLE_STRIPES;
+
     /**
      * Get the value for the {@code maxTotal} configuration attribute
      * for pools created with this configuration instance.
@@ -135,6 +143,37 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
         this.minIdle = minIdle;
     }
 
+    /**
+     * Get the value for the {@code idleStripes} configuration attribute
+     * for pools created with this configuration instance.
+     * <p>
+     * If greater than zero, a LIFO pool keeps up to this many (rounded up to
+     * a power of two) returned objects in lock-free per-thread stripes in
+     * front of the shared idle object queue. This reduces lock contention
+     * when many threads borrow and return objects concurrently. Waiting
+     * borrowers, fairness, eviction and {@code maxIdle} behave as they do
+     * without stripes. Stripes are not used for FIFO pools.
+     *
+     * @return  The current setting of {@code idleStripes} for this
+     *          configuration instance
+     */
+    public int getIdleStripes() {
+        return idleStripes;
+    }
+
+    /**
+     * Set the value for the {@code idleStripes} configuration attribute for
+     * pools created with this configuration instance.
+     *
+     * @param idleStripes The new setting of {@code idleStripes}
+     *        for this configuration instance
+     *
+     * @see #getIdleStripes()
+     */
+    public void setIdleStripes(final int idleStripes) {
+        this.idleStripes = idleStripes;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public GenericObjectPoolConfig<T> clone() {
@@ -154,5 +193,7 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
         builder.append(maxIdle);
         builder.append(", minIdle=");
         builder.append(minIdle);
+        builder.append(", idleStripes=");
+        builder.append(idleStripes);
     }
 }
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.dbcp.pool2.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free, striped front cache for the idle objects of a
+ * {@link GenericObjectPool}. Each stripe holds at most one idle object and a
+ * thread returning an object prefers the stripe selected by its own id, so a
+ * thread that repeatedly borrows and returns tends to get back the object it
+ * used last without touching the lock of the shared {@link LinkedBlockingDeque}.
+ * <p>
+ * The stripes never hold an object while a thread is blocked waiting for one.
+ * Borrowers register themselves via {@link #beginWait()} before their final
+ * scan of the stripes and returning threads check for registered waiters
+ * after parking an object, so that an object is either seen by the waiter or
+ * handed over to the shared deque where the waiter (and the deque's fairness
+ * policy) will pick it up. Callers are expected to drain the stripes into the
+ * shared deque before iterating over it, e.g. for eviction.
+ * <p>
+ * The class is intended for internal use only.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <E> Type of element held in the stripes
+ */
+class IdleObjectStripes<E> {
+
+    private final AtomicReferenceArray<E> stripes;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+
+    /**
+     * Create a new set of stripes.
+     *
+     * @param stripeCount The requested number of stripes. This is rounded up
+     *                    to the next power of two.
+     */
+    IdleObjectStripes(final int stripeCount) {
+        int n = 1;
+        while (n < stripeCount) {
+            n <<= 1;
+        }
+        stripes = new AtomicReferenceArray<>(n);
+        mask = n - 1;
+    }
+
+
+    /**
+     * Removes an idle object from the stripes, starting with the stripe of the
+     * current thread.
+     *
+     * @return An idle object or <code>null</code> if all stripes are empty
+     */
+    E poll() {
+        if (size.get() == 0) {
+            return null;
+        }
+        final int start = stripeIndex();
+        for (int i = 0; i <= mask; i++) {
+            final int index = (start + i) & mask;
+            if (stripes.get(index) != null) {
+                final E e = stripes.getAndSet(index, null);
+                if (e != null) {
+                    size.decrementAndGet();
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Attempts to park an idle object in the stripe of the current thread.
+     *
+     * @param e The idle object
+     *
+     * @return <code>true</code> if the object was parked, <code>false</code>
+     *         if it must be added to the shared deque instead
+     */
+    boolean offer(final E e) {
+        if (waiters.get() > 0) {
+            return false;
+        }
+        final int index = stripeIndex();
+        if (!stripes.compareAndSet(index, null, e)) {
+            return false;
+        }
+        size.incrementAndGet();
+        if (waiters.get() > 0 && stripes.compareAndSet(index, e, null)) {
+            // A borrower started waiting concurrently and may have missed the
+            // object. Take it back so the caller hands it to the shared deque.
+            size.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Removes the given object if it is parked in one of the stripes.
+     *
+     * @param e The object to remove
+     *
+     * @return <code>true</code> if the object was removed
+     */
+    boolean remove(final E e) {
+        if (size.get() == 0) {
+            return false;
+        }
+        for (int i = 0; i <= mask; i++) {
+            if (stripes.get(i) == e && stripes.compareAndSet(i, e, null)) {
+                size.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Moves all parked objects to the head of the given deque.
+     *
+     * @param deque The shared idle object deque
+     */
+    void drainTo(final LinkedBlockingDeque<E> deque) {
+        E e = poll();
+        while (e != null) {
+            deque.addFirst(e);
+            e = poll();
+        }
+    }
+
+
+    /**
+     * Registers the current thread as about to block on the shared deque. Must
+     * be followed by a call to {@link #endWait()}.
+     */
+    void beginWait() {
+        waiters.incrementAndGet();
+    }
+
+
+    void endWait() {
+        waiters.decrementAndGet();
+    }
+
+
+    /**
+     * @return The number of objects currently parked in the stripes
+     */
+    int size() {
+        return size.get();
+    }
+
+
+    private int stripeIndex() {
+        final long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & mask;
+    }
+
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("IdleObjectStripes [stripes=");
+        builder.append(mask + 1);
+        builder.append(", size=");
+        builder.append(size.get());
+        builder.append(", waiters=");
+        builder.append(waiters.get());
+        builder.append("]");
+        return builder.toString();
+    }
+}
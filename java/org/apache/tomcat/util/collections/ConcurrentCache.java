@@ -16,44 +16,105 @@
  */
 package org.apache.tomcat.util.collections;
 
+import java.util.Iterator;
 import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A bounded cache that is safe for concurrent use. Reads never block. When
+ * the cache grows beyond its size, entries are evicted using the GCLOCK
+ * algorithm: each entry has a small usage counter that is incremented when the
+ * entry is read and decremented as the clock hand passes over it, and the
+ * first entry found with a counter of zero is evicted. Frequently and recently
+ * used entries therefore survive while entries that were only used once are
+ * evicted first. Eviction is performed by whichever thread gets the eviction
+ * lock first; other threads do not wait for it.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
 public final class ConcurrentCache<K,V> {
 
+    private static final int MAX_USAGE = 3;
+
     private final int size;
 
-    private final Map<K,V> eden;
+    private final ConcurrentHashMap<K,Entry<V>> map;
 
-    private final Map<K,V> longterm;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // Guarded by evictionLock
+    private Iterator<Map.Entry<K,Entry<V>>> clockHand;
 
     public ConcurrentCache(int size) {
         this.size = size;
-        this.eden = new ConcurrentHashMap<>(size);
-        this.longterm = new WeakHashMap<>(size);
+        this.map = new ConcurrentHashMap<>(size);
     }
 
     public V get(K k) {
-        V v = this.eden.get(k);
-        if (v == null) {
-            synchronized (longterm) {
-                v = this.longterm.get(k);
-            }
-            if (v != null) {
-                this.eden.put(k, v);
-            }
+        Entry<V> entry = map.get(k);
+        if (entry == null) {
+            return null;
         }
-        return v;
+        entry.touch();
+        return entry.value;
     }
 
     public void put(K k, V v) {
-        if (this.eden.size() >= size) {
-            synchronized (longterm) {
-                this.longterm.putAll(this.eden);
+        map.put(k, new Entry<>(v));
+        if (map.size() > size) {
+            evict();
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            // Another thread is evicting. It will also remove any excess
+            // entries added by this thread.
+            return;
+        }
+        try {
+            while (map.size() > size) {
+                if (clockHand == null || !clockHand.hasNext()) {
+                    clockHand = map.entrySet().iterator();
+                    if (!clockHand.hasNext()) {
+                        return;
+                    }
+                }
+                Map.Entry<K,Entry<V>> candidate = clockHand.next();
+                Entry<V> entry = candidate.getValue();
+                if (entry.usage > 0) {
+                    entry.usage--;
+                } else {
+                    map.remove(candidate.getKey(), entry);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        // Updates are not atomic. A lost update only affects the choice of
+        // entry to evict.
+        private volatile int usage;
+
+        Entry(V value) {
+            this.value = value;
+        }
+
+        void touch() {
+            int u = usage;
+            if (u < MAX_USAGE) {
+                usage = u + 1;
             }
-            this.eden.clear();
         }
-        this.eden.put(k, v);
     }
 }
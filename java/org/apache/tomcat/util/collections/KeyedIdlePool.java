@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded, thread-safe store of idle objects that can be re-used, grouped
+ * by a key that identifies the objects that are interchangeable (e.g. a
+ * buffer capacity). Sub-classes create the objects when the pool is empty and
+ * decide what happens to objects that are not retained.
+ *
+ * @param <T> The type of object held by the pool
+ */
+public abstract class KeyedIdlePool<T> {
+
+    private final ConcurrentMap<Integer,Queue<T>> idle = new ConcurrentHashMap<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile int maxIdle;
+
+
+    protected KeyedIdlePool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+
+    /**
+     * Set the maximum number of idle objects, across all keys, retained by
+     * this pool. Objects returned to a full pool are discarded.
+     *
+     * @param maxIdle The maximum number of idle objects
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+
+    /**
+     * @return The number of idle objects currently in this pool
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+
+    /**
+     * Discard all the idle objects in this pool.
+     */
+    public void clear() {
+        for (Queue<T> queue : idle.values()) {
+            T object;
+            while ((object = queue.poll()) != null) {
+                idleCount.decrementAndGet();
+                discard(object);
+            }
+        }
+    }
+
+
+    /**
+     * Remove an idle object from this pool.
+     *
+     * @param key The key of the required object
+     *
+     * @return An idle object or <code>null</code> if there are none for the
+     *         given key
+     */
+    protected T poll(int key) {
+        Queue<T> queue = idle.get(Integer.valueOf(key));
+        if (queue != null) {
+            T result = queue.poll();
+            if (result != null) {
+                idleCount.decrementAndGet();
+                return result;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Add an object that is no longer in use to this pool. If the pool is
+     * full, the object is passed to {@link #discard(Object)} instead. The
+     * caller must have reset the object if that is required.
+     *
+     * @param key    The key of the object
+     * @param object The object
+     */
+    protected void offer(int key, T object) {
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            discard(object);
+            return;
+        }
+        Integer k = Integer.valueOf(key);
+        Queue<T> queue = idle.get(k);
+        if (queue == null) {
+            queue = new ConcurrentLinkedQueue<>();
+            Queue<T> existing = idle.putIfAbsent(k, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        queue.offer(object);
+    }
+
+
+    /**
+     * Called for each object that is removed from, or not retained by, this
+     * pool.
+     *
+     * @param object The object that will no longer be used
+     */
+    protected abstract void discard(T object);
+}
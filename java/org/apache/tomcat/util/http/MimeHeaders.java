@@ -19,8 +19,10 @@ package org.apache.tomcat.util.http;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Enumeration;
 
+import org.apache.tomcat.util.buf.Ascii;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.res.StringManager;
 
@@ -55,11 +57,14 @@ import org.apache.tomcat.util.res.StringManager;
    Apache seems to be using a similar method for storing and manipulating
    headers.
 
+   The names of common headers ( host, content-length, etc ) are
+   recognised as they are added and the position of the first header with
+   each such name is recorded so looking them up does not require a scan.
+   Other headers are still found with a linear search.
+
    Future enhancements:
    - hash the headers the first time a header is requested ( i.e. if the
    servlet needs direct access to headers).
-   - scan "common" values ( length, cookies, etc ) during the parse
-   ( addHeader hook )
 
 */
 
@@ -97,6 +102,43 @@ public class MimeHeaders {
     private static final StringManager sm =
             StringManager.getManager("org.apache.tomcat.util.http");
 
+    /*
+     * The names of the headers that are indexed, in lower case. There must be
+     * no more than 64 so the ids fit in the bits of a long.
+     */
+    private static final String[] COMMON_NAMES = {
+        "accept", "accept-charset", "accept-encoding", "accept-language",
+        "authorization", "cache-control", "connection", "content-encoding",
+        "content-language", "content-length", "content-type", "cookie", "date",
+        "expect", "host", "if-match", "if-modified-since", "if-none-match",
+        "if-range", "if-unmodified-since", "keep-alive", "location", "origin",
+        "pragma", "range", "referer", "set-cookie", "te", "trailer",
+        "transfer-encoding", "upgrade", "user-agent", "vary", "x-forwarded-for",
+        "x-forwarded-proto" };
+
+    // The ids of the common names, grouped by the length of the name
+    private static final int[][] COMMON_IDS_BY_LENGTH;
+
+    static {
+        int maxLength = 0;
+        for (String name : COMMON_NAMES) {
+            maxLength = Math.max(maxLength, name.length());
+        }
+        int[] counts = new int[maxLength + 1];
+        for (String name : COMMON_NAMES) {
+            counts[name.length()]++;
+        }
+        COMMON_IDS_BY_LENGTH = new int[maxLength + 1][];
+        for (int i = 0; i <= maxLength; i++) {
+            COMMON_IDS_BY_LENGTH[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int id = 0; id < COMMON_NAMES.length; id++) {
+            int len = COMMON_NAMES[id].length();
+            COMMON_IDS_BY_LENGTH[len][counts[len]++] = id;
+        }
+    }
+
     /**
      * The header fields.
      */
@@ -113,6 +155,18 @@ public class MimeHeaders {
      */
     private int limit = -1;
 
+    /**
+     * For each common header, the index of the first header field with that
+     * name plus one or zero if there is no such field.
+     */
+    private final int[] commonFirst = new int[COMMON_NAMES.length];
+
+    /**
+     * Bit set, indexed by id, of the common headers for which there is more
+     * than one header field.
+     */
+    private long commonMultiple = 0;
+
     /**
      * Creates a new MimeHeaders object using a default buffer size.
      */
@@ -150,6 +204,8 @@ public class MimeHeaders {
             headers[i].recycle();
         }
         count = 0;
+        Arrays.fill(commonFirst, 0);
+        commonMultiple = 0;
     }
 
     /**
@@ -179,6 +235,7 @@ public class MimeHeaders {
             MimeHeaderField mhf = createHeader();
             mhf.getName().duplicate(source.getName(i));
             mhf.getValue().duplicate(source.getValue(i));
+            index(source.headers[i].getId());
         }
     }
 
@@ -286,8 +343,9 @@ public class MimeHeaders {
      * @return the message bytes container for the value
      */
     public MessageBytes addValue( String name ) {
-         MimeHeaderField mh = createHeader();
+        MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        index(getFieldId(name));
         return mh.getValue();
     }
 
@@ -304,6 +362,7 @@ public class MimeHeaders {
     {
         MimeHeaderField mhf=createHeader();
         mhf.getName().setBytes(b, startN, len);
+        index(getFieldId(b, startN, len));
         return mhf.getValue();
     }
 
@@ -314,6 +373,19 @@ public class MimeHeaders {
      * @return the message bytes container for the value
      */
     public MessageBytes setValue( String name ) {
+        int id = getQueryId(name);
+        if (id >= 0) {
+            int first = commonFirst[id];
+            if (first == 0) {
+                MimeHeaderField mh = createHeader();
+                mh.getName().setString(name);
+                index(id);
+                return mh.getValue();
+            }
+            if ((commonMultiple & (1L << id)) == 0) {
+                return headers[first - 1].getValue();
+            }
+        }
         for ( int i = 0; i < count; i++ ) {
             if(headers[i].getName().equalsIgnoreCase(name)) {
                 for ( int j=i+1; j < count; j++ ) {
@@ -326,6 +398,7 @@ public class MimeHeaders {
         }
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        index(getFieldId(name));
         return mh.getValue();
     }
 
@@ -338,6 +411,11 @@ public class MimeHeaders {
      * @return the value
      */
     public MessageBytes getValue(String name) {
+        int id = getQueryId(name);
+        if (id >= 0) {
+            int first = commonFirst[id];
+            return first == 0 ? null : headers[first - 1].getValue();
+        }
         for (int i = 0; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
                 return headers[i].getValue();
@@ -355,6 +433,14 @@ public class MimeHeaders {
      * @throws IllegalArgumentException if the header has multiple values
      */
     public MessageBytes getUniqueValue(String name) {
+        int id = getQueryId(name);
+        if (id >= 0) {
+            if ((commonMultiple & (1L << id)) != 0) {
+                throw new IllegalArgumentException();
+            }
+            int first = commonFirst[id];
+            return first == 0 ? null : headers[first - 1].getValue();
+        }
         MessageBytes result = null;
         for (int i = 0; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
@@ -399,10 +485,100 @@ public class MimeHeaders {
     private void removeHeader(int idx) {
         MimeHeaderField mh = headers[idx];
 
+        int id = mh.getId();
         mh.recycle();
         headers[idx] = headers[count - 1];
         headers[count - 1] = mh;
         count--;
+        if (id >= 0 || idx < count && headers[idx].getId() >= 0) {
+            reindex();
+        }
+    }
+
+    // -------------------- Common header index --------------------
+
+    /*
+     * Record the id of the most recently created header field.
+     */
+    private void index(int id) {
+        headers[count - 1].setId(id);
+        if (id >= 0) {
+            addToIndex(id, count - 1);
+        }
+    }
+
+    private void addToIndex(int id, int idx) {
+        if (commonFirst[id] == 0) {
+            commonFirst[id] = idx + 1;
+        } else {
+            commonMultiple |= 1L << id;
+        }
+    }
+
+    private void reindex() {
+        Arrays.fill(commonFirst, 0);
+        commonMultiple = 0;
+        for (int i = 0; i < count; i++) {
+            int id = headers[i].getId();
+            if (id >= 0) {
+                addToIndex(id, i);
+            }
+        }
+    }
+
+    /*
+     * The id of a header name stored as bytes. The comparison is the one used
+     * by ByteChunk.equalsIgnoreCase(String).
+     */
+    private static int getFieldId(byte[] b, int start, int len) {
+        if (b == null || len >= COMMON_IDS_BY_LENGTH.length) {
+            return -1;
+        }
+        for (int id : COMMON_IDS_BY_LENGTH[len]) {
+            String common = COMMON_NAMES[id];
+            int i = 0;
+            while (i < len && Ascii.toLower(b[start + i]) == common.charAt(i)) {
+                i++;
+            }
+            if (i == len) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * The id of a header name stored as a String. The comparison is the one
+     * used by String.equalsIgnoreCase(String).
+     */
+    private static int getFieldId(String name) {
+        if (name == null || name.length() >= COMMON_IDS_BY_LENGTH.length) {
+            return -1;
+        }
+        for (int id : COMMON_IDS_BY_LENGTH[name.length()]) {
+            if (COMMON_NAMES[id].equalsIgnoreCase(name)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * The id of a header name used to look up header fields. The index may
+     * only be used for US-ASCII names as, for other names, the different
+     * comparisons used for header names stored as bytes and as Strings may
+     * give different results.
+     */
+    private static int getQueryId(String name) {
+        if (name == null) {
+            return -1;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 127) {
+                return -1;
+            }
+        }
+        return getFieldId(name);
     }
 
 }
@@ -508,6 +684,7 @@ class MimeHeaderField {
 
     private final MessageBytes nameB = MessageBytes.newInstance();
     private final MessageBytes valueB = MessageBytes.newInstance();
+    private int id = -1;
 
     /**
      * Creates a new, uninitialized header field.
@@ -519,6 +696,7 @@ class MimeHeaderField {
     public void recycle() {
         nameB.recycle();
         valueB.recycle();
+        id = -1;
     }
 
     public MessageBytes getName() {
@@ -528,4 +706,16 @@ class MimeHeaderField {
     public MessageBytes getValue() {
         return valueB;
     }
+
+    /**
+     * @return The id of the name of this field if it is one of the common
+     *         header names, otherwise -1
+     */
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
 }
@@ -111,6 +111,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel> {
      */
     private SynchronizedStack<NioChannel> nioChannels;
 
+    /**
+     * Pool of socket buffers released by idle connections. Only used if
+     * socket.releaseIdleBuffers is enabled.
+     */
+    private volatile SocketBufferPool socketBufferPool = null;
+
 
     // ------------------------------------------------------------- Properties
 
@@ -214,6 +220,38 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel> {
     }
 
 
+    /**
+     * @return The number of bytes of socket buffers held by the pool of
+     *         buffers released by idle connections or -1 if
+     *         socket.releaseIdleBuffers is not enabled
+     */
+    public long getSocketBufferPooledBytes() {
+        SocketBufferPool pool = socketBufferPool;
+        return pool == null ? -1 : pool.getPooledBytes();
+    }
+
+
+    /**
+     * @return The number of bytes of socket buffers borrowed from the pool
+     *         that are attached to connections or -1 if
+     *         socket.releaseIdleBuffers is not enabled
+     */
+    public long getSocketBufferAttachedBytes() {
+        SocketBufferPool pool = socketBufferPool;
+        return pool == null ? -1 : pool.getAttachedBytes();
+    }
+
+
+    /**
+     * @return The number of times a connection has returned its socket buffers
+     *         to the pool or -1 if socket.releaseIdleBuffers is not enabled
+     */
+    public long getSocketBufferReleaseCount() {
+        SocketBufferPool pool = socketBufferPool;
+        return pool == null ? -1 : pool.getReleaseCount();
+    }
+
+
     // ----------------------------------------------- Public Lifecycle Methods
 
     /**
@@ -281,6 +319,13 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel> {
                             socketProperties.getEventCache());
             nioChannels = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
                     socketProperties.getBufferPool());
+            if (socketProperties.getReleaseIdleBuffers()) {
+                socketBufferPool = new SocketBufferPool(socketProperties.getAppReadBufSize(),
+                        socketProperties.getAppWriteBufSize(), socketProperties.getDirectBuffer(),
+                        socketProperties.getBufferPoolSize());
+            } else {
+                socketBufferPool = null;
+            }
 
             /** 创建一个连接池 **/
             if ( getExecutor() == null ) {
@@ -332,6 +377,9 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel> {
             eventCache.clear();
             nioChannels.clear();
             processorCache.clear();
+            if (socketBufferPool != null) {
+                socketBufferPool.clear();
+            }
         }
     }
 
@@ -420,10 +468,15 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel> {
 
             NioChannel channel = nioChannels.pop();
             if (channel == null) {
-                SocketBufferHandler bufhandler = new SocketBufferHandler(
-                        socketProperties.getAppReadBufSize(),
-                        socketProperties.getAppWriteBufSize(),
-                        socketProperties.getDirectBuffer());
+                SocketBufferHandler bufhandler;
+                if (socketBufferPool == null) {
+                    bufhandler = new SocketBufferHandler(
+                            socketProperties.getAppReadBufSize(),
+                            socketProperties.getAppWriteBufSize(),
+                            socketProperties.getDirectBuffer());
+                } else {
+                    bufhandler = new SocketBufferHandler(socketBufferPool);
+                }
                 if (isSSLEnabled()) {
                     channel = new SecureNioChannel(socket, bufhandler, selectorPool, this);
                 } else {
@@ -573,6 +626,11 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel> {
                     log.debug("Socket: [" + socket + "] closed");
                 }
                 if (running && !paused) {
+                    if (socketBufferPool != null) {
+                        // Cached channels don't need buffers until reused
+                        socket.getBufHandler().reset();
+                        socket.getBufHandler().release();
+                    }
                     if (!nioChannels.push(socket)) {
                         socket.free();
                     }
@@ -1350,6 +1408,15 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel> {
         }
 
 
+        @Override
+        public void releaseIdleResources() {
+            // NO-OP unless the buffers were borrowed from a pool
+            if (socketBufferHandler.release() && log.isDebugEnabled()) {
+                log.debug("Socket: [" + this + "], Released idle buffers");
+            }
+        }
+
+
         @Override
         public void registerWriteInterest() {
             getPoller().add(getSocket(), SelectionKey.OP_WRITE);
@@ -30,9 +30,16 @@ public class SocketBufferHandler {
 
     private final boolean direct;
 
+    private final SocketBufferPool pool;
+    // The buffer sizes to borrow from the pool when the buffers have been
+    // released
+    private int readBufferSize;
+    private int writeBufferSize;
+
     public SocketBufferHandler(int readBufferSize, int writeBufferSize,
             boolean direct) {
         this.direct = direct;
+        this.pool = null;
         if (direct) {
             readBuffer = ByteBuffer.allocateDirect(readBufferSize);
             writeBuffer = ByteBuffer.allocateDirect(writeBufferSize);
@@ -43,6 +50,22 @@ public class SocketBufferHandler {
     }
 
 
+    /**
+     * Create a handler that borrows its buffers from the given pool. The
+     * buffers may be returned to the pool with {@link #release()} while the
+     * connection is idle and are borrowed again when next used.
+     *
+     * @param pool The pool from which to borrow the buffers
+     */
+    public SocketBufferHandler(SocketBufferPool pool) {
+        this.direct = pool.isDirect();
+        this.pool = pool;
+        this.readBufferSize = pool.getReadBufferSize();
+        this.writeBufferSize = pool.getWriteBufferSize();
+        attach();
+    }
+
+
     public void configureReadBufferForWrite() {
         setReadBufferConfiguredForWrite(true);
     }
@@ -56,6 +79,7 @@ public class SocketBufferHandler {
     private void setReadBufferConfiguredForWrite(boolean readBufferConFiguredForWrite) {
         // NO-OP if buffer is already in correct state
         if (this.readBufferConfiguredForWrite != readBufferConFiguredForWrite) {
+            attach();
             if (readBufferConFiguredForWrite) {
                 // Switching to write
                 int remaining = readBuffer.remaining();
@@ -74,12 +98,15 @@ public class SocketBufferHandler {
 
 
     public ByteBuffer getReadBuffer() {
+        attach();
         return readBuffer;
     }
 
 
     public boolean isReadBufferEmpty() {
-        if (readBufferConfiguredForWrite) {
+        if (readBuffer == null) {
+            return true;
+        } else if (readBufferConfiguredForWrite) {
             return readBuffer.position() == 0;
         } else {
             return readBuffer.remaining() == 0;
@@ -100,6 +127,7 @@ public class SocketBufferHandler {
     private void setWriteBufferConfiguredForWrite(boolean writeBufferConfiguredForWrite) {
         // NO-OP if buffer is already in correct state
         if (this.writeBufferConfiguredForWrite != writeBufferConfiguredForWrite) {
+            attach();
             if (writeBufferConfiguredForWrite) {
                 // Switching to write
                 int remaining = writeBuffer.remaining();
@@ -120,7 +148,9 @@ public class SocketBufferHandler {
 
 
     public boolean isWriteBufferWritable() {
-        if (writeBufferConfiguredForWrite) {
+        if (writeBuffer == null) {
+            return true;
+        } else if (writeBufferConfiguredForWrite) {
             return writeBuffer.hasRemaining();
         } else {
             return writeBuffer.remaining() == 0;
@@ -129,12 +159,15 @@ public class SocketBufferHandler {
 
 
     public ByteBuffer getWriteBuffer() {
+        attach();
         return writeBuffer;
     }
 
 
     public boolean isWriteBufferEmpty() {
-        if (writeBufferConfiguredForWrite) {
+        if (writeBuffer == null) {
+            return true;
+        } else if (writeBufferConfiguredForWrite) {
             return writeBuffer.position() == 0;
         } else {
             return writeBuffer.remaining() == 0;
@@ -143,22 +176,85 @@ public class SocketBufferHandler {
 
 
     public void reset() {
-        readBuffer.clear();
+        if (readBuffer != null) {
+            readBuffer.clear();
+            writeBuffer.clear();
+        }
         readBufferConfiguredForWrite = true;
-        writeBuffer.clear();
         writeBufferConfiguredForWrite = true;
     }
 
 
     public void expand(int newSize) {
-        configureReadBufferForWrite();
-        readBuffer = ByteBufferUtils.expand(readBuffer, newSize);
-        configureWriteBufferForWrite();
-        writeBuffer = ByteBufferUtils.expand(writeBuffer, newSize);
+        if (pool == null) {
+            configureReadBufferForWrite();
+            readBuffer = ByteBufferUtils.expand(readBuffer, newSize);
+            configureWriteBufferForWrite();
+            writeBuffer = ByteBufferUtils.expand(writeBuffer, newSize);
+        } else {
+            // Exchange the buffers for pooled buffers of the new size so they
+            // are re-used by the next connection that expands its buffers
+            attach();
+            configureReadBufferForWrite();
+            readBuffer = pool.expand(readBuffer, newSize);
+            configureWriteBufferForWrite();
+            writeBuffer = pool.expand(writeBuffer, newSize);
+        }
     }
 
+
+    /**
+     * Return the buffers to the pool, if this handler was created with one and
+     * the buffers contain no data. The buffers will be borrowed from the pool
+     * again the next time they are used. The caller must ensure that no other
+     * thread is using the buffers.
+     *
+     * @return <code>true</code> if the buffers were returned to the pool
+     */
+    public boolean release() {
+        if (pool == null || readBuffer == null ||
+                !isReadBufferEmpty() || !isWriteBufferEmpty()) {
+            return false;
+        }
+        ByteBuffer read = readBuffer;
+        ByteBuffer write = writeBuffer;
+        readBufferSize = read.capacity();
+        writeBufferSize = write.capacity();
+        readBuffer = null;
+        writeBuffer = null;
+        readBufferConfiguredForWrite = true;
+        writeBufferConfiguredForWrite = true;
+        pool.returnBuffer(read);
+        pool.returnBuffer(write);
+        pool.released();
+        return true;
+    }
+
+
+    /**
+     * @return <code>true</code> if the buffers have been returned to the pool
+     *         and have not yet been borrowed again
+     */
+    public boolean isReleased() {
+        return readBuffer == null;
+    }
+
+
+    private void attach() {
+        if (readBuffer == null) {
+            writeBuffer = pool.borrowBuffer(writeBufferSize);
+            readBuffer = pool.borrowBuffer(readBufferSize);
+        }
+    }
+
+
     public void free() {
-        if (direct) {
+        if (pool != null) {
+            if (readBuffer != null) {
+                reset();
+                release();
+            }
+        } else if (direct) {
             ByteBufferUtils.cleanDirectBuffer(readBuffer);
             ByteBufferUtils.cleanDirectBuffer(writeBuffer);
         }
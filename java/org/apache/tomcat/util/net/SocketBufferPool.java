@@ -0,0 +1,201 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tomcat.util.buf.ByteBufferUtils;
+import org.apache.tomcat.util.collections.SynchronizedStack;
+
+/**
+ * A pool of socket read and write buffers shared by the connections of an
+ * endpoint. Connections that are idle between requests return their buffers
+ * to the pool and borrow them again when the next request arrives so that
+ * only connections that are being processed hold buffers.
+ * <p>
+ * Buffers are pooled by capacity and read and write buffers are
+ * interchangeable. As well as buffers of the configured sizes, this pools the
+ * buffers that TLS connections expand to the application buffer size of the
+ * TLS engine.
+ */
+public class SocketBufferPool {
+
+    private final int readBufferSize;
+    private final int writeBufferSize;
+    private final boolean direct;
+    private final long maxPooledBytes;
+
+    // Capacity -> idle buffers
+    private final ConcurrentMap<Integer,SynchronizedStack<ByteBuffer>> buffers =
+            new ConcurrentHashMap<>();
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong attachedBytes = new AtomicLong();
+    private final AtomicLong releaseCount = new AtomicLong();
+
+
+    /**
+     * Create a new pool.
+     *
+     * @param readBufferSize    The initial size of the read buffers
+     * @param writeBufferSize   The initial size of the write buffers
+     * @param direct            Should direct buffers be used
+     * @param maxPooledBytes    The maximum number of bytes held by the pool
+     *                          when no connection is using them. -1 means
+     *                          unlimited.
+     */
+    public SocketBufferPool(int readBufferSize, int writeBufferSize, boolean direct,
+            long maxPooledBytes) {
+        this.readBufferSize = readBufferSize;
+        this.writeBufferSize = writeBufferSize;
+        this.direct = direct;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+
+    /**
+     * @return The number of bytes held by the pool that are not attached to
+     *         any connection
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+
+    /**
+     * @return The number of bytes borrowed from the pool that are currently
+     *         attached to connections
+     */
+    public long getAttachedBytes() {
+        return attachedBytes.get();
+    }
+
+
+    /**
+     * @return The number of times a connection has returned its buffers to
+     *         the pool
+     */
+    public long getReleaseCount() {
+        return releaseCount.get();
+    }
+
+
+    ByteBuffer borrowBuffer(int size) {
+        ByteBuffer buffer = null;
+        SynchronizedStack<ByteBuffer> stack = buffers.get(Integer.valueOf(size));
+        if (stack != null) {
+            buffer = stack.pop();
+        }
+        if (buffer == null) {
+            if (direct) {
+                buffer = ByteBuffer.allocateDirect(size);
+            } else {
+                buffer = ByteBuffer.allocate(size);
+            }
+        } else {
+            pooledBytes.addAndGet(-buffer.capacity());
+            buffer.clear();
+        }
+        attachedBytes.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+
+    void returnBuffer(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        attachedBytes.addAndGet(-capacity);
+        // The limit is not enforced exactly under concurrent returns. That is
+        // acceptable as it is only there to bound the memory held by the pool.
+        if (maxPooledBytes < 0 || pooledBytes.get() + capacity <= maxPooledBytes) {
+            Integer key = Integer.valueOf(capacity);
+            SynchronizedStack<ByteBuffer> stack = buffers.get(key);
+            if (stack == null) {
+                stack = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE, -1);
+                SynchronizedStack<ByteBuffer> existing = buffers.putIfAbsent(key, stack);
+                if (existing != null) {
+                    stack = existing;
+                }
+            }
+            pooledBytes.addAndGet(capacity);
+            stack.push(buffer);
+        } else if (direct) {
+            ByteBufferUtils.cleanDirectBuffer(buffer);
+        }
+    }
+
+
+    /**
+     * Replace a buffer, that is in write mode, with one from this pool with at
+     * least the given capacity. The data in the buffer is copied and the
+     * buffer is returned to this pool.
+     *
+     * @param buffer  The buffer borrowed from this pool
+     * @param newSize The required capacity
+     *
+     * @return The buffer or its replacement
+     */
+    ByteBuffer expand(ByteBuffer buffer, int newSize) {
+        if (buffer.capacity() >= newSize) {
+            return buffer;
+        }
+        ByteBuffer result = borrowBuffer(newSize);
+        buffer.flip();
+        result.put(buffer);
+        returnBuffer(buffer);
+        return result;
+    }
+
+
+    void released() {
+        releaseCount.incrementAndGet();
+    }
+
+
+    /**
+     * Release all the buffers held by the pool. Buffers attached to
+     * connections are not affected.
+     */
+    public void clear() {
+        for (SynchronizedStack<ByteBuffer> stack : buffers.values()) {
+            ByteBuffer buffer;
+            while ((buffer = stack.pop()) != null) {
+                pooledBytes.addAndGet(-buffer.capacity());
+                if (direct) {
+                    ByteBufferUtils.cleanDirectBuffer(buffer);
+                }
+            }
+        }
+    }
+}
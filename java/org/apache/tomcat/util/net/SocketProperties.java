@@ -102,6 +102,14 @@ public class SocketProperties {
      */
     protected int bufferPoolSize = 1024*1024*100;
 
+    /**
+     * Return the application read and write buffers of connections that are
+     * idle between requests to a pool shared by the endpoint. The pool is
+     * limited to bufferPoolSize bytes.
+     * Default value is disabled
+     */
+    protected boolean releaseIdleBuffers = false;
+
     /**
      * TCP_NO_DELAY option. JVM default used if not set.
      */
@@ -304,6 +312,10 @@ public class SocketProperties {
         return bufferPoolSize;
     }
 
+    public boolean getReleaseIdleBuffers() {
+        return releaseIdleBuffers;
+    }
+
     public int getEventCache() {
         return eventCache;
     }
@@ -393,6 +405,10 @@ public class SocketProperties {
         this.bufferPoolSize = bufferPoolSize;
     }
 
+    public void setReleaseIdleBuffers(boolean releaseIdleBuffers) {
+        this.releaseIdleBuffers = releaseIdleBuffers;
+    }
+
     public void setEventCache(int eventCache) {
         this.eventCache = eventCache;
     }
@@ -753,6 +753,16 @@ public abstract class SocketWrapperBase<E> {
 
     public abstract void registerReadInterest();
 
+    /**
+     * Called when the connection is idle between requests, before read
+     * interest is registered to wait for the next request. Implementations may
+     * release resources, such as buffers, that are not required while the
+     * connection is idle. The default implementation is a NO-OP.
+     */
+    public void releaseIdleResources() {
+        // NO-OP
+    }
+
     public abstract void registerWriteInterest();
 
     public abstract SendfileDataBase createSendfileData(String filename, long pos, long length);
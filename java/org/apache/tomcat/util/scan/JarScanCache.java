@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.scan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Retains the results of scanning JARs, persisted in a file that is usually
+ * in the work directory of the web application, so that JARs that have not
+ * changed since the previous start do not have to be scanned again. A JAR is
+ * considered unchanged if its size and last modified time are the same as
+ * when it was scanned.
+ * <p>
+ * Only the results for the JARs looked up or added since the cache was loaded
+ * are written when the cache is saved so results for JARs that have been
+ * removed are discarded.
+ *
+ * @param <T> The type of the result of scanning a JAR
+ */
+public final class JarScanCache<T> {
+
+    private static final Log log = LogFactory.getLog(JarScanCache.class);
+    private static final StringManager sm = StringManager.getManager(Constants.Package);
+
+    private final File file;
+    private final int magic;
+    private final int version;
+    private final Serializer<T> serializer;
+    private final Map<String,Entry<T>> previous;
+    private final ConcurrentMap<String,Entry<T>> current = new ConcurrentHashMap<>();
+    private volatile boolean modified = false;
+
+
+    private JarScanCache(File file, int magic, int version, Serializer<T> serializer,
+            Map<String,Entry<T>> previous) {
+        this.file = file;
+        this.magic = magic;
+        this.version = version;
+        this.serializer = serializer;
+        this.previous = previous;
+    }
+
+
+    /**
+     * Load a cache. If the cache does not exist or can't be read, e.g. because
+     * it was written by a different version, an empty cache is returned.
+     *
+     * @param file       The file the cache is persisted in
+     * @param magic      The value that identifies the type of cache file
+     * @param version    The version of the format of the results
+     * @param serializer Reads and writes the results
+     *
+     * @param <T> The type of the result of scanning a JAR
+     *
+     * @return The cache
+     */
+    public static <T> JarScanCache<T> load(File file, int magic, int version,
+            Serializer<T> serializer) {
+        Map<String,Entry<T>> entries = new HashMap<>();
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != magic || in.readInt() != version) {
+                    throw new IOException(sm.getString("jarScanCache.invalid"));
+                }
+                int jarCount = in.readInt();
+                for (int i = 0; i < jarCount; i++) {
+                    String key = in.readUTF();
+                    long length = in.readLong();
+                    long lastModified = in.readLong();
+                    entries.put(key, new Entry<>(length, lastModified, serializer.read(in)));
+                }
+            } catch (IOException e) {
+                log.warn(sm.getString("jarScanCache.readFail", file), e);
+                entries.clear();
+            }
+        }
+        return new JarScanCache<>(file, magic, version, serializer, entries);
+    }
+
+
+    /**
+     * Obtain the result of scanning the given JAR if it has not changed since
+     * it was scanned.
+     *
+     * @param key     The key for the JAR, usually its URL
+     * @param jarFile The JAR file
+     *
+     * @return The result or <code>null</code> if the JAR needs to be scanned
+     */
+    public T get(String key, File jarFile) {
+        Entry<T> entry = previous.get(key);
+        if (entry == null || entry.length != jarFile.length() ||
+                entry.lastModified != jarFile.lastModified()) {
+            return null;
+        }
+        current.put(key, entry);
+        return entry.value;
+    }
+
+
+    /**
+     * Record the result of scanning the given JAR.
+     *
+     * @param key     The key for the JAR, usually its URL
+     * @param jarFile The JAR file
+     * @param value   The result
+     */
+    public void put(String key, File jarFile, T value) {
+        Entry<T> entry = new Entry<>(jarFile.length(), jarFile.lastModified(), value);
+        current.put(key, entry);
+        // JARs that have to be scanned anyway, e.g. to read the manifest, will
+        // usually be unchanged
+        if (!entry.equals(previous.get(key))) {
+            modified = true;
+        }
+    }
+
+
+    /**
+     * Write the results for the JARs looked up or added since this cache was
+     * loaded to disk. Nothing is written if nothing has changed.
+     */
+    public void save() {
+        if (!modified && current.size() == previous.size()) {
+            return;
+        }
+        File fileNew = new File(file.getParentFile(), file.getName() + ".new");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileNew)))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(current.size());
+            for (Map.Entry<String,Entry<T>> entry : current.entrySet()) {
+                Entry<T> value = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(value.length);
+                out.writeLong(value.lastModified);
+                serializer.write(out, value.value);
+            }
+        } catch (IOException e) {
+            log.warn(sm.getString("jarScanCache.writeFail", file), e);
+            if (!fileNew.delete()) {
+                log.debug(sm.getString("jarScanCache.deleteFail", fileNew));
+            }
+            return;
+        }
+        if (file.exists() && !file.delete() || !fileNew.renameTo(file)) {
+            log.warn(sm.getString("jarScanCache.writeFail", file));
+        }
+    }
+
+
+    /**
+     * Obtain the URL of the JAR file for the given URL.
+     *
+     * @param url The URL of the JAR, either <code>file:...</code> or
+     *            <code>jar:file:...!/</code>
+     *
+     * @return The URL of the JAR file or <code>null</code> if the JAR is not
+     *         a file, e.g. if it is nested in a packed WAR.
+     */
+    public static URL getJarFileUrl(URL url) {
+        String urlString = url.toString();
+        try {
+            if (urlString.startsWith("jar:file:") && urlString.endsWith("!/")) {
+                return new URL(urlString.substring(4, urlString.length() - 2));
+            } else if (urlString.startsWith("file:")) {
+                return url;
+            }
+        } catch (IOException e) {
+            // Ignore
+        }
+        return null;
+    }
+
+
+    /**
+     * Obtain the file for a JAR so it can be checked for changes.
+     *
+     * @param url The URL of the JAR, either <code>file:...</code> or
+     *            <code>jar:file:...!/</code>
+     *
+     * @return The JAR file or <code>null</code> if the JAR is not a file, e.g.
+     *         if it is nested in a packed WAR.
+     */
+    public static File getJarFile(URL url) {
+        URL jarFileUrl = (url == null) ? null : getJarFileUrl(url);
+        if (jarFileUrl == null) {
+            return null;
+        }
+        try {
+            File file = new File(jarFileUrl.toURI());
+            if (file.isFile()) {
+                return file;
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            // Ignore
+        }
+        return null;
+    }
+
+
+    /**
+     * Reads and writes the results of scanning a JAR.
+     *
+     * @param <T> The type of the result of scanning a JAR
+     */
+    public interface Serializer<T> {
+
+        void write(DataOutputStream out, T value) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+
+    private static class Entry<T> {
+        private final long length;
+        private final long lastModified;
+        private final T value;
+
+        Entry(long length, long lastModified, T value) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry<?> other = (Entry<?>) obj;
+            return length == other.length && lastModified == other.lastModified &&
+                    value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode() ^ (int) (length ^ lastModified);
+        }
+    }
+}
@@ -35,6 +35,7 @@ import javax.servlet.ServletContext;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.CachedJarScannerCallback;
 import org.apache.tomcat.Jar;
 import org.apache.tomcat.JarScanFilter;
 import org.apache.tomcat.JarScanType;
@@ -371,6 +372,13 @@ public class StandardJarScanner implements JarScanner {
         }
 
         if ("jar".equals(url.getProtocol()) || url.getPath().endsWith(Constants.JAR_EXT)) {
+            // The JAR only has to be opened if the callback can't process it
+            // without doing so and the manifest doesn't need to be read
+            if (callback instanceof CachedJarScannerCallback &&
+                    (!isScanManifest() || isWebapp || classPathUrlsToProcess == null) &&
+                    ((CachedJarScannerCallback) callback).scanCached(url, webappPath, isWebapp)) {
+                return;
+            }
             try (Jar jar = JarFactory.newInstance(url)) {
                 if (isScanManifest()) {
                     processManifest(jar, isWebapp, classPathUrlsToProcess);
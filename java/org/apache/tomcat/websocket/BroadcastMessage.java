@@ -0,0 +1,122 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+
+import javax.websocket.Session;
+
+import org.apache.tomcat.util.buf.Utf8Encoder;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * A message that is to be sent to multiple sessions. The message is encoded
+ * once and, for sessions that have not negotiated any extensions, the
+ * complete frame is built once and the same bytes are written to each
+ * session.
+ * <p>
+ * If a session is still sending a previous message when the broadcast message
+ * is sent to it, the broadcast message is dropped for that session rather
+ * than being queued or blocking the caller. This ensures that slow clients
+ * neither hold up nor accumulate memory on behalf of a broadcast.
+ */
+public class BroadcastMessage {
+
+    private static final StringManager sm = StringManager.getManager(BroadcastMessage.class);
+
+    private final byte opCode;
+    private final ByteBuffer payload;
+    private ByteBuffer frame = null;
+
+
+    /**
+     * Create a text message.
+     *
+     * @param text The message
+     */
+    public BroadcastMessage(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException(sm.getString("wsRemoteEndpoint.nullData"));
+        }
+        this.opCode = Constants.OPCODE_TEXT;
+        try {
+            this.payload = new Utf8Encoder().encode(CharBuffer.wrap(text));
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+
+    /**
+     * Create a binary message. The data is copied so the caller may re-use
+     * the provided buffer once this constructor returns.
+     *
+     * @param data The message
+     */
+    public BroadcastMessage(ByteBuffer data) {
+        if (data == null) {
+            throw new IllegalArgumentException(sm.getString("wsRemoteEndpoint.nullData"));
+        }
+        this.opCode = Constants.OPCODE_BINARY;
+        this.payload = ByteBuffer.allocate(data.remaining());
+        this.payload.put(data.duplicate());
+        this.payload.flip();
+    }
+
+
+    /**
+     * Send this message to the given session. The message is sent
+     * asynchronously. If the write fails, the session is closed.
+     *
+     * @param session The session, which must have been created by this
+     *                WebSocket implementation
+     *
+     * @return <code>true</code> if the message is being sent to the session
+     *         or <code>false</code> if the session is closed or still sending
+     *         a previous message
+     */
+    public boolean sendTo(Session session) {
+        if (!(session instanceof WsSession)) {
+            throw new IllegalArgumentException(sm.getString("broadcastMessage.invalidSession"));
+        }
+        WsSession wsSession = (WsSession) session;
+        if (!wsSession.isOpen()) {
+            return false;
+        }
+        WsRemoteEndpointImplBase endpoint = wsSession.getWsRemoteEndpoint();
+        if (endpoint.isMasked() || !wsSession.getNegotiatedExtensions().isEmpty()) {
+            // The payload has to be masked or transformed (e.g. compressed)
+            // for this session
+            return endpoint.sendBroadcast(opCode, payload.duplicate());
+        }
+        return endpoint.sendBroadcast(Constants.INTERNAL_OPCODE_FRAME, getFrame().duplicate());
+    }
+
+
+    /*
+     * Built on first use so no frame is built if all the sessions have
+     * negotiated extensions.
+     */
+    private synchronized ByteBuffer getFrame() {
+        if (frame == null) {
+            frame = WsRemoteEndpointImplBase.createFrame(opCode, payload);
+        }
+        return frame;
+    }
+}
@@ -39,6 +39,8 @@ public class Constants {
     // RFC 6455 limits OP Codes to 4 bits so these should never clash
     // Always set bit 4 so these will be treated as control codes
     static final byte INTERNAL_OPCODE_FLUSH = 0x18;
+    // A complete, pre-built frame (see BroadcastMessage)
+    static final byte INTERNAL_OPCODE_FRAME = 0x19;
 
     // Buffers
     static final int DEFAULT_BUFFER_SIZE = Integer.getInteger(
@@ -114,6 +116,17 @@ public class Constants {
     // Milliseconds so this is 20 seconds
     public static final long DEFAULT_BLOCKING_SEND_TIMEOUT = 20 * 1000;
 
+    /**
+     * Property name to set in the session user properties to deliver the
+     * payload of incoming binary frames to a
+     * {@link javax.websocket.MessageHandler.Partial} directly from the network
+     * input buffer rather than from a copy. The value should be a
+     * {@link Boolean} or the {@link String} <code>true</code>. The buffer
+     * passed to the message handler is only valid until the handler returns.
+     */
+    public static final String READ_IN_PLACE_PROPERTY =
+            "org.apache.tomcat.websocket.READ_IN_PLACE";
+
     // Configuration for background processing checks intervals
     static final int DEFAULT_PROCESS_PERIOD = Integer.getInteger(
             "org.apache.tomcat.websocket.DEFAULT_PROCESS_PERIOD", 10)
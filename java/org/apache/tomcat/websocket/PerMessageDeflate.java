@@ -49,9 +49,15 @@ public class PerMessageDeflate implements Transformation {
     private final boolean clientContextTakeover;
     private final int clientMaxWindowBits;
     private final boolean isServer;
-    private final Inflater inflater = new Inflater(true);
+    // Null if no pool was provided
+    private final PerMessageDeflatePool pool;
+    // If true, the inflater / deflater is borrowed from the pool for each
+    // message rather than being held for the lifetime of the session
+    private final boolean releaseInflater;
+    private final boolean releaseDeflater;
+    private Inflater inflater;
     private final ByteBuffer readBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
-    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private Deflater deflater;
     private final byte[] EOM_BUFFER = new byte[EOM_BYTES.length + 1];
 
     private volatile Transformation next;
@@ -61,7 +67,19 @@ public class PerMessageDeflate implements Transformation {
     // Flag to track if a message is completely empty
     private volatile boolean emptyMessage = true;
 
+    // Statistics. Each is only updated by the thread reading or writing.
+    private volatile long receivedCompressedBytes = 0;
+    private volatile long receivedUncompressedBytes = 0;
+    private volatile long sentUncompressedBytes = 0;
+    private volatile long sentCompressedBytes = 0;
+
     static PerMessageDeflate negotiate(List<List<Parameter>> preferences, boolean isServer) {
+        return negotiate(preferences, isServer, null);
+    }
+
+
+    static PerMessageDeflate negotiate(List<List<Parameter>> preferences, boolean isServer,
+            PerMessageDeflatePool pool) {
         // Accept the first preference that the endpoint is able to support
         for (List<Parameter> preference : preferences) {
             boolean ok = true;
@@ -156,8 +174,23 @@ public class PerMessageDeflate implements Transformation {
                 }
             }
             if (ok) {
+                if (isServer && pool != null) {
+                    if (pool.getReleaseWhenIdle()) {
+                        // RFC 7692 permits the server to add these even if
+                        // the client did not include them in its offer
+                        serverContextTakeover = false;
+                        clientContextTakeover = false;
+                    }
+                    // The server may only limit the client's window if the
+                    // client indicated that it supports this parameter
+                    int poolClientMaxWindowBits = pool.getClientMaxWindowBits();
+                    if (clientMaxWindowBits != -1 && poolClientMaxWindowBits != -1 &&
+                            poolClientMaxWindowBits < clientMaxWindowBits) {
+                        clientMaxWindowBits = poolClientMaxWindowBits;
+                    }
+                }
                 return new PerMessageDeflate(serverContextTakeover, serverMaxWindowBits,
-                        clientContextTakeover, clientMaxWindowBits, isServer);
+                        clientContextTakeover, clientMaxWindowBits, isServer, pool);
             }
         }
         // Failed to negotiate agreeable terms
@@ -166,12 +199,73 @@ public class PerMessageDeflate implements Transformation {
 
 
     private PerMessageDeflate(boolean serverContextTakeover, int serverMaxWindowBits,
-            boolean clientContextTakeover, int clientMaxWindowBits, boolean isServer) {
+            boolean clientContextTakeover, int clientMaxWindowBits, boolean isServer,
+            PerMessageDeflatePool pool) {
         this.serverContextTakeover = serverContextTakeover;
         this.serverMaxWindowBits = serverMaxWindowBits;
         this.clientContextTakeover = clientContextTakeover;
         this.clientMaxWindowBits = clientMaxWindowBits;
         this.isServer = isServer;
+        this.pool = pool;
+        // State may only be released between messages if context takeover is
+        // not used in that direction
+        boolean release = pool != null && pool.getReleaseWhenIdle();
+        releaseInflater = release && (isServer ? !clientContextTakeover : !serverContextTakeover);
+        releaseDeflater = release && (isServer ? !serverContextTakeover : !clientContextTakeover);
+        if (!releaseInflater) {
+            inflater = new Inflater(true);
+        }
+        if (!releaseDeflater) {
+            if (pool == null) {
+                deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            } else {
+                deflater = new Deflater(pool.getCompressionLevel(), true);
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of compressed payload bytes received
+     */
+    public long getReceivedCompressedBytes() {
+        return receivedCompressedBytes;
+    }
+
+
+    /**
+     * @return The number of bytes the received compressed payloads
+     *         decompressed to
+     */
+    public long getReceivedUncompressedBytes() {
+        return receivedUncompressedBytes;
+    }
+
+
+    /**
+     * @return The number of payload bytes passed to the compressor for
+     *         sending
+     */
+    public long getSentUncompressedBytes() {
+        return sentUncompressedBytes;
+    }
+
+
+    /**
+     * @return The number of compressed payload bytes sent
+     */
+    public long getSentCompressedBytes() {
+        return sentCompressedBytes;
+    }
+
+
+    /**
+     * @return <code>true</code> if an {@link Inflater} and a {@link Deflater}
+     *         are only held while a compressed message is being read or
+     *         written
+     */
+    public boolean isReleaseWhenIdle() {
+        return releaseInflater && releaseDeflater;
     }
 
 
@@ -194,6 +288,10 @@ public class PerMessageDeflate implements Transformation {
             return next.getMoreData(opCode, fin, rsv, dest);
         }
 
+        if (inflater == null) {
+            inflater = pool.getInflater();
+        }
+
         int written;
         boolean usedEomBytes = false;
 
@@ -206,12 +304,14 @@ public class PerMessageDeflate implements Transformation {
                 throw new IOException(sm.getString("perMessageDeflate.deflateFailed"), e);
             }
             dest.position(dest.position() + written);
+            receivedUncompressedBytes += written;
 
             if (inflater.needsInput() && !usedEomBytes ) {
                 if (dest.hasRemaining()) {
                     readBuffer.clear();
                     TransformationResult nextResult =
                             next.getMoreData(opCode, fin, (rsv ^ RSV_BITMASK), readBuffer);
+                    receivedCompressedBytes += readBuffer.position();
                     inflater.setInput(
                             readBuffer.array(), readBuffer.arrayOffset(), readBuffer.position());
                     if (TransformationResult.UNDERFLOW.equals(nextResult)) {
@@ -229,7 +329,12 @@ public class PerMessageDeflate implements Transformation {
             } else if (written == 0) {
                 if (fin && (isServer && !clientContextTakeover ||
                         !isServer && !serverContextTakeover)) {
-                    inflater.reset();
+                    if (releaseInflater) {
+                        pool.returnInflater(inflater);
+                        inflater = null;
+                    } else {
+                        inflater.reset();
+                    }
                 }
                 return TransformationResult.END_OF_FRAME;
             }
@@ -335,6 +440,10 @@ public class PerMessageDeflate implements Transformation {
                 SendHandler uncompressedIntermediateHandler =
                         uncompressedPart.getIntermediateHandler();
 
+                if (deflater == null) {
+                    deflater = pool.getDeflater();
+                }
+                sentUncompressedBytes += uncompressedPayload.remaining();
                 deflater.setInput(uncompressedPayload.array(),
                         uncompressedPayload.arrayOffset() + uncompressedPayload.position(),
                         uncompressedPayload.remaining());
@@ -427,6 +536,7 @@ public class PerMessageDeflate implements Transformation {
                     // Add the newly created compressed part to the set of parts
                     // to pass on to the next transformation.
                     compressedParts.add(compressedPart);
+                    sentCompressedBytes += compressedPayload.remaining();
                 }
 
                 SendHandler uncompressedEndHandler = uncompressedPart.getEndHandler();
@@ -451,7 +561,12 @@ public class PerMessageDeflate implements Transformation {
         firstCompressedFrameWritten = false;
         emptyMessage = true;
         if (isServer && !serverContextTakeover || !isServer && !clientContextTakeover) {
-            deflater.reset();
+            if (releaseDeflater) {
+                pool.returnDeflater(deflater);
+                deflater = null;
+            } else {
+                deflater.reset();
+            }
         }
     }
 
@@ -470,7 +585,15 @@ public class PerMessageDeflate implements Transformation {
     public void close() {
         // There will always be a next transformation
         next.close();
-        inflater.end();
-        deflater.end();
+        // Anything still held is ended rather than returned to the pool as it
+        // may be part way through a message
+        Inflater inflater = this.inflater;
+        if (inflater != null) {
+            inflater.end();
+        }
+        Deflater deflater = this.deflater;
+        if (deflater != null) {
+            deflater.end();
+        }
     }
 }
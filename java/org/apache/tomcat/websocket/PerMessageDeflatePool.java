@@ -0,0 +1,278 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.tomcat.util.collections.KeyedIdlePool;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * The permessage-deflate configuration of a {@link WsWebSocketContainer} and
+ * a pool of the {@link Deflater}s and {@link Inflater}s used by its sessions.
+ * <p>
+ * Each {@link Deflater} and {@link Inflater} holds native zlib state that
+ * includes a 32 KB window. When context takeover is in use, that state has to
+ * be retained for the lifetime of the session. If
+ * {@link #setReleaseWhenIdle(boolean) releaseWhenIdle} is enabled, the server
+ * negotiates <code>server_no_context_takeover</code> and
+ * <code>client_no_context_takeover</code> so that sessions only need to hold a
+ * {@link Deflater} or {@link Inflater} while a compressed message is being
+ * written or read. They are borrowed from, and returned to, this pool.
+ */
+public class PerMessageDeflatePool {
+
+    private static final StringManager sm = StringManager.getManager(PerMessageDeflatePool.class);
+
+    private static final int DEFAULT_MAX_IDLE = 200;
+
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private volatile int clientMaxWindowBits = -1;
+    private volatile boolean releaseWhenIdle = false;
+
+    private final DeflaterIdlePool deflaters = new DeflaterIdlePool();
+    private final InflaterIdlePool inflaters = new InflaterIdlePool();
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+
+    // ------------------------------------------------------------- Properties
+
+    public int getMaxIdle() {
+        return deflaters.getMaxIdle();
+    }
+
+
+    /**
+     * Set the maximum number of idle {@link Deflater}s, and separately the
+     * maximum number of idle {@link Inflater}s, retained by this pool.
+     *
+     * @param maxIdle The maximum number of each that is retained
+     */
+    public void setMaxIdle(int maxIdle) {
+        deflaters.setMaxIdle(maxIdle);
+        inflaters.setMaxIdle(maxIdle);
+    }
+
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+
+    /**
+     * Set the compression level used for outgoing messages. This only affects
+     * sessions created after this is set.
+     *
+     * @param compressionLevel The compression level, -1 to 9
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION ||
+                compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(sm.getString(
+                    "perMessageDeflatePool.invalidCompressionLevel",
+                    Integer.valueOf(compressionLevel)));
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+
+    public int getClientMaxWindowBits() {
+        return clientMaxWindowBits;
+    }
+
+
+    /**
+     * Set the maximum LZ77 window size, as a power of two, that the server
+     * asks clients to use when compressing messages. Clients only accept this
+     * if they include <code>client_max_window_bits</code> in their offer.
+     * Smaller windows reduce the memory required by the client's compressor
+     * at the cost of the compression ratio. The Java SE compression API does
+     * not allow the window size to be configured so this does not affect the
+     * memory used by the server.
+     *
+     * @param clientMaxWindowBits 8 to 15 inclusive or -1 to use the window
+     *                            size offered by the client
+     */
+    public void setClientMaxWindowBits(int clientMaxWindowBits) {
+        if (clientMaxWindowBits != -1 && (clientMaxWindowBits < 8 || clientMaxWindowBits > 15)) {
+            throw new IllegalArgumentException(sm.getString(
+                    "perMessageDeflate.invalidWindowSize", "clientMaxWindowBits",
+                    Integer.valueOf(clientMaxWindowBits)));
+        }
+        this.clientMaxWindowBits = clientMaxWindowBits;
+    }
+
+
+    public boolean getReleaseWhenIdle() {
+        return releaseWhenIdle;
+    }
+
+
+    /**
+     * Configure whether server sessions negotiate permessage-deflate without
+     * context takeover so that they only hold compression state while a
+     * compressed message is being read or written. This trades compression
+     * ratio, particularly for small messages, for native memory. This only
+     * affects sessions created after this is set.
+     *
+     * @param releaseWhenIdle <code>true</code> to release compression state
+     *                        between messages
+     */
+    public void setReleaseWhenIdle(boolean releaseWhenIdle) {
+        this.releaseWhenIdle = releaseWhenIdle;
+    }
+
+
+    // ------------------------------------------------------------- Statistics
+
+    /**
+     * @return The number of {@link Deflater}s and {@link Inflater}s created
+     *         by this pool
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+
+    /**
+     * @return The number of idle {@link Deflater}s and {@link Inflater}s
+     *         currently in this pool
+     */
+    public int getIdleCount() {
+        return deflaters.getIdleCount() + inflaters.getIdleCount();
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Obtain a raw (no zlib header) {@link Deflater} configured with the
+     * current compression level.
+     *
+     * @return A pooled {@link Deflater} if one is available, else a new one
+     */
+    public Deflater getDeflater() {
+        Deflater result = deflaters.poll();
+        if (result == null) {
+            createdCount.incrementAndGet();
+            return new Deflater(compressionLevel, true);
+        }
+        result.setLevel(compressionLevel);
+        return result;
+    }
+
+
+    /**
+     * Return a {@link Deflater} obtained from {@link #getDeflater()} to this
+     * pool. The {@link Deflater} must not be used by the caller once it has
+     * been returned.
+     *
+     * @param deflater The {@link Deflater}
+     */
+    public void returnDeflater(Deflater deflater) {
+        deflater.reset();
+        deflaters.offer(deflater);
+    }
+
+
+    /**
+     * Obtain a raw (no zlib header) {@link Inflater}.
+     *
+     * @return A pooled {@link Inflater} if one is available, else a new one
+     */
+    public Inflater getInflater() {
+        Inflater result = inflaters.poll();
+        if (result == null) {
+            createdCount.incrementAndGet();
+            return new Inflater(true);
+        }
+        return result;
+    }
+
+
+    /**
+     * Return an {@link Inflater} obtained from {@link #getInflater()} to this
+     * pool. The {@link Inflater} must not be used by the caller once it has
+     * been returned.
+     *
+     * @param inflater The {@link Inflater}
+     */
+    public void returnInflater(Inflater inflater) {
+        inflater.reset();
+        inflaters.offer(inflater);
+    }
+
+
+    /**
+     * End all the idle {@link Deflater}s and {@link Inflater}s in this pool.
+     */
+    public void clear() {
+        deflaters.clear();
+        inflaters.clear();
+    }
+
+
+    /*
+     * Deflaters that are not retained are ended.
+     */
+    private static final class DeflaterIdlePool extends KeyedIdlePool<Deflater> {
+
+        DeflaterIdlePool() {
+            super(DEFAULT_MAX_IDLE);
+        }
+
+        Deflater poll() {
+            return poll(0);
+        }
+
+        void offer(Deflater deflater) {
+            offer(0, deflater);
+        }
+
+        @Override
+        protected void discard(Deflater deflater) {
+            deflater.end();
+        }
+    }
+
+
+    /*
+     * Inflaters that are not retained are ended.
+     */
+    private static final class InflaterIdlePool extends KeyedIdlePool<Inflater> {
+
+        InflaterIdlePool() {
+            super(DEFAULT_MAX_IDLE);
+        }
+
+        Inflater poll() {
+            return poll(0);
+        }
+
+        void offer(Inflater inflater) {
+            offer(0, inflater);
+        }
+
+        @Override
+        protected void discard(Inflater inflater) {
+            inflater.end();
+        }
+    }
+}
@@ -38,8 +38,13 @@ public class TransformationFactory {
 
     public Transformation create(String name, List<List<Extension.Parameter>> preferences,
             boolean isServer) {
+        return create(name, preferences, isServer, null);
+    }
+
+    public Transformation create(String name, List<List<Extension.Parameter>> preferences,
+            boolean isServer, PerMessageDeflatePool deflatePool) {
         if (PerMessageDeflate.NAME.equals(name)) {
-            return PerMessageDeflate.negotiate(preferences, isServer);
+            return PerMessageDeflate.negotiate(preferences, isServer, deflatePool);
         }
         if (Constants.ALLOW_UNSUPPORTED_EXTENSIONS) {
             return null;
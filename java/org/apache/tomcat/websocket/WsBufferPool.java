@@ -0,0 +1,152 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tomcat.util.collections.KeyedIdlePool;
+
+/**
+ * A pool of the buffers used to read and write WebSocket frames that is
+ * shared by all the sessions of a {@link WsWebSocketContainer}. When pooled
+ * buffers are enabled for a container, sessions only hold a buffer while a
+ * frame or message is being read or written and return it to the pool
+ * afterwards so mostly idle sessions do not each retain several buffers.
+ * <p>
+ * Buffers are pooled by capacity. Buffers that are not returned (e.g. because
+ * a session was closed part way through a message) are simply left for the
+ * garbage collector.
+ * <p>
+ * Buffers are borrowed and returned for every frame so the statistics are
+ * only updated when a buffer is created or discarded.
+ */
+public class WsBufferPool extends KeyedIdlePool<Buffer> {
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+
+
+    public WsBufferPool() {
+        super(1000);
+    }
+
+
+    // ------------------------------------------------------------- Statistics
+
+    /**
+     * @return The number of buffers created by this pool
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+
+    /**
+     * @return The number of buffers that were returned to a full pool, or
+     *         removed by {@link #clear()}, and were discarded
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+
+    /**
+     * @return The number of buffers currently borrowed from this pool. This
+     *         includes buffers that were borrowed by sessions that closed
+     *         before returning them.
+     */
+    public long getActiveCount() {
+        return createdCount.get() - discardedCount.get() - getIdleCount();
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Obtain a cleared {@link ByteBuffer}.
+     *
+     * @param capacity The required capacity
+     *
+     * @return A pooled buffer if one is available, else a new one
+     */
+    public ByteBuffer getByteBuffer(int capacity) {
+        ByteBuffer result = (ByteBuffer) poll(key(capacity, false));
+        if (result == null) {
+            createdCount.incrementAndGet();
+            result = ByteBuffer.allocate(capacity);
+        }
+        return result;
+    }
+
+
+    /**
+     * Return a buffer obtained from {@link #getByteBuffer(int)} to this pool.
+     * The buffer must not be used by the caller once it has been returned.
+     *
+     * @param buffer The buffer
+     */
+    public void returnByteBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        offer(key(buffer.capacity(), false), buffer);
+    }
+
+
+    /**
+     * Obtain a cleared {@link CharBuffer}.
+     *
+     * @param capacity The required capacity
+     *
+     * @return A pooled buffer if one is available, else a new one
+     */
+    public CharBuffer getCharBuffer(int capacity) {
+        CharBuffer result = (CharBuffer) poll(key(capacity, true));
+        if (result == null) {
+            createdCount.incrementAndGet();
+            result = CharBuffer.allocate(capacity);
+        }
+        return result;
+    }
+
+
+    /**
+     * Return a buffer obtained from {@link #getCharBuffer(int)} to this pool.
+     * The buffer must not be used by the caller once it has been returned.
+     *
+     * @param buffer The buffer
+     */
+    public void returnCharBuffer(CharBuffer buffer) {
+        buffer.clear();
+        offer(key(buffer.capacity(), true), buffer);
+    }
+
+
+    @Override
+    protected void discard(Buffer buffer) {
+        discardedCount.incrementAndGet();
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+    private static int key(int capacity, boolean chars) {
+        // Capacities are well below 2^30
+        return capacity * 2 + (chars ? 1 : 0);
+    }
+}
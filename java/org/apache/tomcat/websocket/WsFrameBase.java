@@ -18,6 +18,7 @@ package org.apache.tomcat.websocket;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
@@ -45,9 +46,14 @@ public abstract class WsFrameBase {
 
     private static final StringManager sm = StringManager.getManager(WsFrameBase.class);
 
+    // Held by sessions that use pooled buffers while they have no buffer
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
     // Connection level attributes
     protected final WsSession wsSession;
-    protected final ByteBuffer inputBuffer;
+    // Not final as it is borrowed from the pool on demand when pooled buffers
+    // are used
+    protected ByteBuffer inputBuffer;
     private final Transformation transformation;
 
     // Attributes for control messages
@@ -67,6 +73,15 @@ public abstract class WsFrameBase {
     private boolean textMessage = false;
     private ByteBuffer messageBufferBinary;
     private CharBuffer messageBufferText;
+    // Null unless pooled buffers are used
+    private final WsBufferPool bufferPool;
+    // True if no extensions are in use so payload data may be unmasked and
+    // processed directly in the input buffer
+    private final boolean inPlaceCapable;
+    // Partial binary messages are delivered directly from the input buffer
+    private boolean binaryInPlace = false;
+    // Exactly sized buffer for a binary message sent in a single frame
+    private ByteBuffer messageBufferFrame = null;
     // Cache the message handler in force when the message starts so it is used
     // consistently for the entire message
     private MessageHandler binaryMsgHandler = null;
@@ -90,10 +105,16 @@ public abstract class WsFrameBase {
     private volatile ReadState readState = ReadState.WAITING;
 
     public WsFrameBase(WsSession wsSession, Transformation transformation) {
-        inputBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
-        inputBuffer.position(0).limit(0);
-        messageBufferBinary = ByteBuffer.allocate(wsSession.getMaxBinaryMessageBufferSize());
-        messageBufferText = CharBuffer.allocate(wsSession.getMaxTextMessageBufferSize());
+        bufferPool = wsSession.getBufferPool();
+        if (bufferPool == null) {
+            inputBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
+            inputBuffer.position(0).limit(0);
+            messageBufferBinary = ByteBuffer.allocate(wsSession.getMaxBinaryMessageBufferSize());
+            messageBufferText = CharBuffer.allocate(wsSession.getMaxTextMessageBufferSize());
+        } else {
+            // Buffers are borrowed when a frame or message is processed
+            inputBuffer = EMPTY_BUFFER;
+        }
         wsSession.setWsFrame(this);
         this.wsSession = wsSession;
         Transformation finalTransformation;
@@ -104,7 +125,9 @@ public abstract class WsFrameBase {
         }
         if (transformation == null) {
             this.transformation = finalTransformation;
+            inPlaceCapable = true;
         } else {
+            inPlaceCapable = false;
             transformation.setNext(finalTransformation);
             this.transformation = transformation;
         }
@@ -182,21 +205,34 @@ public abstract class WsFrameBase {
                     if (opCode == Constants.OPCODE_BINARY) {
                         // New binary message
                         textMessage = false;
+                        binaryMsgHandler = wsSession.getBinaryMessageHandler();
+                        textMsgHandler = null;
+                        binaryInPlace = inPlaceCapable &&
+                                binaryMsgHandler instanceof MessageHandler.Partial<?> &&
+                                isReadInPlace();
                         int size = wsSession.getMaxBinaryMessageBufferSize();
-                        if (size != messageBufferBinary.capacity()) {
+                        if (bufferPool != null) {
+                            if (!binaryInPlace) {
+                                messageBufferBinary = bufferPool.getByteBuffer(size);
+                            }
+                        } else if (size != messageBufferBinary.capacity()) {
                             messageBufferBinary = ByteBuffer.allocate(size);
                         }
-                        binaryMsgHandler = wsSession.getBinaryMessageHandler();
-                        textMsgHandler = null;
                     } else if (opCode == Constants.OPCODE_TEXT) {
                         // New text message
                         textMessage = true;
                         int size = wsSession.getMaxTextMessageBufferSize();
-                        if (size != messageBufferText.capacity()) {
+                        if (bufferPool != null) {
+                            // Text messages are decoded via the binary buffer
+                            messageBufferBinary = bufferPool.getByteBuffer(
+                                    wsSession.getMaxBinaryMessageBufferSize());
+                            messageBufferText = bufferPool.getCharBuffer(size);
+                        } else if (size != messageBufferText.capacity()) {
                             messageBufferText = CharBuffer.allocate(size);
                         }
                         binaryMsgHandler = null;
                         textMsgHandler = wsSession.getTextMessageHandler();
+                        binaryInPlace = false;
                     } else {
                         throw new WsIOException(new CloseReason(
                                 CloseCodes.PROTOCOL_ERROR,
@@ -403,6 +439,10 @@ public abstract class WsFrameBase {
 
 
     private boolean processDataText() throws IOException {
+        if (inPlaceCapable && messageBufferBinary.position() == 0) {
+            return processDataTextInPlace();
+        }
+
         // Copy the available data to the buffer
         TransformationResult tr = transformation.getMoreData(opCode, fin, rsv, messageBufferBinary);
         while (!TransformationResult.END_OF_FRAME.equals(tr)) {
@@ -449,6 +489,70 @@ public abstract class WsFrameBase {
         }
 
         messageBufferBinary.flip();
+        return processEndOfTextFrame();
+    }
+
+
+    /*
+     * Unmasks the available payload in the input buffer and decodes it
+     * directly from there, avoiding the copy to the binary message buffer.
+     * Only the bytes of an incomplete multi-byte sequence at the end of the
+     * available data are copied to the binary message buffer. The caller
+     * ensures that buffer is empty so the next call will use the copying
+     * path until that sequence has been completed.
+     */
+    private boolean processDataTextInPlace() throws IOException {
+        int start = inputBuffer.position();
+        int toProcess = (int) Math.min(payloadLength - payloadWritten, inputBuffer.remaining());
+        if (isMasked()) {
+            maskIndex = unmask(inputBuffer, start, toProcess, mask, maskIndex);
+        }
+        payloadWritten += toProcess;
+
+        int orgLimit = inputBuffer.limit();
+        inputBuffer.limit(start + toProcess);
+        try {
+            while (true) {
+                CoderResult cr = utf8DecoderMessage.decode(inputBuffer, messageBufferText, false);
+                if (cr.isError()) {
+                    throw new WsIOException(new CloseReason(
+                            CloseCodes.NOT_CONSISTENT,
+                            sm.getString("wsFrame.invalidUtf8")));
+                } else if (cr.isOverflow()) {
+                    // Ran out of space in text buffer - flush it
+                    if (usePartial()) {
+                        messageBufferText.flip();
+                        sendMessageText(false);
+                        messageBufferText.clear();
+                    } else {
+                        throw new WsIOException(new CloseReason(
+                                CloseCodes.TOO_BIG,
+                                sm.getString("wsFrame.textMessageTooBig")));
+                    }
+                } else {
+                    // Underflow. Retain any incomplete sequence.
+                    messageBufferBinary.put(inputBuffer);
+                    break;
+                }
+            }
+        } finally {
+            inputBuffer.limit(orgLimit);
+        }
+
+        if (payloadWritten < payloadLength) {
+            // Need more input data
+            return false;
+        }
+        messageBufferBinary.flip();
+        return processEndOfTextFrame();
+    }
+
+
+    /*
+     * The whole of the current frame has been read. Any remaining undecoded
+     * bytes are in the (flipped) binary message buffer.
+     */
+    private boolean processEndOfTextFrame() throws IOException {
         boolean last = false;
         // Frame is fully received
         // Convert bytes to UTF-8
@@ -502,6 +606,31 @@ public abstract class WsFrameBase {
 
 
     private boolean processDataBinary() throws IOException {
+        if (binaryInPlace) {
+            return processDataBinaryInPlace();
+        }
+
+        if (messageBufferFrame == null && inPlaceCapable && !continuationExpected &&
+                !usePartial() && payloadWritten == 0 && messageBufferBinary.position() == 0 &&
+                payloadLength <= messageBufferBinary.capacity()) {
+            // The entire message is in this frame and is known to fit so read
+            // it straight into the buffer that is passed to the application
+            messageBufferFrame = ByteBuffer.allocate((int) payloadLength);
+        }
+        if (messageBufferFrame != null) {
+            if (TransformationResult.UNDERFLOW.equals(
+                    transformation.getMoreData(opCode, fin, rsv, messageBufferFrame))) {
+                return false;
+            }
+            // The buffer is exactly sized so the frame is complete
+            ByteBuffer msg = messageBufferFrame;
+            messageBufferFrame = null;
+            msg.flip();
+            sendMessageBinary(msg, true);
+            newMessage();
+            return true;
+        }
+
         // Copy the available data to the buffer
         TransformationResult tr = transformation.getMoreData(opCode, fin, rsv, messageBufferBinary);
         while (!TransformationResult.END_OF_FRAME.equals(tr)) {
@@ -554,6 +683,41 @@ public abstract class WsFrameBase {
     }
 
 
+    /*
+     * Unmasks the available payload in the input buffer and passes a view of
+     * it to the partial message handler without copying it. The view is only
+     * valid until the handler returns as the input buffer is then re-used.
+     */
+    private boolean processDataBinaryInPlace() throws IOException {
+        int start = inputBuffer.position();
+        int toProcess = (int) Math.min(payloadLength - payloadWritten, inputBuffer.remaining());
+        payloadWritten += toProcess;
+        boolean endOfFrame = payloadWritten == payloadLength;
+        if (toProcess == 0 && !endOfFrame) {
+            return false;
+        }
+        if (isMasked()) {
+            maskIndex = unmask(inputBuffer, start, toProcess, mask, maskIndex);
+        }
+        ByteBuffer view = inputBuffer.duplicate();
+        view.limit(start + toProcess);
+        view.position(start);
+        inputBuffer.position(start + toProcess);
+        sendMessageBinary(view.slice(), endOfFrame && !continuationExpected);
+
+        if (!endOfFrame) {
+            // Need more input data
+            return false;
+        }
+        if (continuationExpected) {
+            newFrame();
+        } else {
+            newMessage();
+        }
+        return true;
+    }
+
+
     private void handleThrowableOnSend(Throwable t) throws WsIOException {
         ExceptionUtils.handleThrowable(t);
         wsSession.getLocal().onError(wsSession, t);
@@ -588,8 +752,20 @@ public abstract class WsFrameBase {
 
 
     private void newMessage() {
-        messageBufferBinary.clear();
-        messageBufferText.clear();
+        if (bufferPool == null) {
+            messageBufferBinary.clear();
+            messageBufferText.clear();
+        } else {
+            if (messageBufferBinary != null) {
+                bufferPool.returnByteBuffer(messageBufferBinary);
+                messageBufferBinary = null;
+            }
+            if (messageBufferText != null) {
+                bufferPool.returnCharBuffer(messageBufferText);
+                messageBufferText = null;
+            }
+        }
+        messageBufferFrame = null;
         utf8DecoderMessage.reset();
         continuationExpected = false;
         newFrame();
@@ -612,6 +788,31 @@ public abstract class WsFrameBase {
     }
 
 
+    /**
+     * Ensures that {@link #inputBuffer} can be written to. If pooled buffers
+     * are used and no buffer is currently held, one is borrowed from the pool.
+     */
+    protected void acquireInputBuffer() {
+        if (bufferPool != null && inputBuffer == EMPTY_BUFFER) {
+            inputBuffer = bufferPool.getByteBuffer(Constants.DEFAULT_BUFFER_SIZE);
+            inputBuffer.position(0).limit(0);
+        }
+    }
+
+
+    /**
+     * If pooled buffers are used and {@link #inputBuffer} holds no data that
+     * has yet to be processed, returns the buffer to the pool. Called once the
+     * currently available data has been read and processed.
+     */
+    protected void releaseInputBuffer() {
+        if (bufferPool != null && inputBuffer != EMPTY_BUFFER && !inputBuffer.hasRemaining()) {
+            bufferPool.returnByteBuffer(inputBuffer);
+            inputBuffer = EMPTY_BUFFER;
+        }
+    }
+
+
     private void checkRoomHeaders() {
         // Is the start of the current frame too near the end of the input
         // buffer?
@@ -664,6 +865,53 @@ public abstract class WsFrameBase {
     }
 
 
+    private boolean isReadInPlace() {
+        Object value = wsSession.getUserProperties().get(Constants.READ_IN_PLACE_PROPERTY);
+        return Boolean.TRUE.equals(value) || "true".equals(value);
+    }
+
+
+    /**
+     * Unmask, in place, a region of a buffer. The mask is applied eight bytes
+     * at a time where possible.
+     *
+     * @param buffer    The buffer containing the masked data
+     * @param start     The absolute index of the first byte to unmask
+     * @param length    The number of bytes to unmask
+     * @param mask      The four byte mask
+     * @param maskIndex The index of the mask byte to apply to the first byte
+     *
+     * @return The index of the mask byte to apply to the byte following the
+     *         unmasked region
+     */
+    static int unmask(ByteBuffer buffer, int start, int length, byte[] mask, int maskIndex) {
+        int pos = start;
+        int end = start + length;
+        if (length >= 8) {
+            // Build a long from the mask starting at maskIndex. As eight is a
+            // multiple of four, maskIndex is unchanged after each long.
+            long maskLong = 0;
+            for (int i = 0; i < 8; i++) {
+                maskLong = (maskLong << 8) | (mask[(maskIndex + i) & 3] & 0xFF);
+            }
+            if (buffer.order() == ByteOrder.LITTLE_ENDIAN) {
+                maskLong = Long.reverseBytes(maskLong);
+            }
+            int wordEnd = end - 7;
+            while (pos < wordEnd) {
+                buffer.putLong(pos, buffer.getLong(pos) ^ maskLong);
+                pos += 8;
+            }
+        }
+        while (pos < end) {
+            buffer.put(pos, (byte) (buffer.get(pos) ^ mask[maskIndex]));
+            maskIndex = (maskIndex + 1) & 3;
+            pos++;
+        }
+        return maskIndex;
+    }
+
+
     protected static long byteArrayToLong(byte[] b, int start, int len) throws IOException {
         if (len > 8) {
             throw new IOException(sm.getString("wsFrame.byteToLongFail", Long.valueOf(len)));
@@ -982,16 +1230,18 @@ public abstract class WsFrameBase {
             // opCode is ignored as the transformation is the same for all
             // opCodes
             // rsv is ignored as it known to be zero at this point
-            while (payloadWritten < payloadLength && inputBuffer.remaining() > 0 &&
-                    dest.hasRemaining()) {
-                byte b = (byte) ((inputBuffer.get() ^ mask[maskIndex]) & 0xFF);
-                maskIndex++;
-                if (maskIndex == 4) {
-                    maskIndex = 0;
-                }
-                payloadWritten++;
-                dest.put(b);
-            }
+            long toWrite = Math.min(payloadLength - payloadWritten, inputBuffer.remaining());
+            toWrite = Math.min(toWrite, dest.remaining());
+
+            // Bulk copy and then unmask the copied data in the destination
+            int destStart = dest.position();
+            int orgLimit = inputBuffer.limit();
+            inputBuffer.limit(inputBuffer.position() + (int) toWrite);
+            dest.put(inputBuffer);
+            inputBuffer.limit(orgLimit);
+            maskIndex = unmask(dest, destStart, (int) toWrite, mask, maskIndex);
+            payloadWritten += toWrite;
+
             if (payloadWritten == payloadLength) {
                 return TransformationResult.END_OF_FRAME;
             } else if (inputBuffer.remaining() == 0) {
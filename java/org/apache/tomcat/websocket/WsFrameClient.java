@@ -76,6 +76,7 @@ public class WsFrameClient extends WsFrameBase {
                         // and then a new socket read will be performed
                         return;
                     }
+                    acquireInputBuffer();
                     inputBuffer.mark();
                     inputBuffer.position(inputBuffer.limit()).limit(inputBuffer.capacity());
 
@@ -95,6 +96,7 @@ public class WsFrameClient extends WsFrameBase {
                     processInputBuffer();
                 }
                 response.clear();
+                releaseInputBuffer();
 
                 // Get some more data
                 if (isOpen()) {
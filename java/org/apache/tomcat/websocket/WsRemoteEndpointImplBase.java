@@ -76,9 +76,13 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
     // Max size of WebSocket header is 14 bytes
     private final ByteBuffer headerBuffer = ByteBuffer.allocate(14);
-    private final ByteBuffer outputBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
+    // Not final as these are borrowed from the pool on demand when pooled
+    // buffers are used
+    private ByteBuffer outputBuffer;
     private final CharsetEncoder encoder = new Utf8Encoder();
-    private final ByteBuffer encoderBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
+    private ByteBuffer encoderBuffer;
+    // Null unless pooled buffers are used
+    private WsBufferPool bufferPool;
     private final AtomicBoolean batchingAllowed = new AtomicBoolean(false);
     private volatile long sendTimeout = -1;
     private WsSession wsSession;
@@ -208,7 +212,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         }
         stateMachine.textStart();
         TextMessageSendHandler tmsh = new TextMessageSendHandler(handler,
-                CharBuffer.wrap(text), true, encoder, encoderBuffer, this);
+                CharBuffer.wrap(text), true, encoder, getEncoderBuffer(), this);
         tmsh.write();
         // TextMessageSendHandler will update stateMachine when it completes
     }
@@ -238,6 +242,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
     void sendMessageBlock(CharBuffer part, boolean last) throws IOException {
         long timeoutExpiry = getTimeoutExpiry();
+        ByteBuffer encoderBuffer = getEncoderBuffer();
         boolean isDone = false;
         while (!isDone) {
             encoderBuffer.clear();
@@ -249,6 +254,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
             encoderBuffer.flip();
             sendMessageBlock(Constants.OPCODE_TEXT, encoderBuffer, last && isDone, timeoutExpiry);
         }
+        releaseEncoderBuffer();
         stateMachine.complete(last);
     }
 
@@ -328,6 +334,36 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     }
 
 
+    /**
+     * Send a message that is being broadcast to multiple sessions. Rather than
+     * failing if another message is currently being sent, the message is
+     * dropped for this session.
+     *
+     * @param opCode  The op code of the message or
+     *                {@link Constants#INTERNAL_OPCODE_FRAME} if the payload is
+     *                a complete frame
+     * @param payload The payload. This endpoint will modify the position of
+     *                the buffer but not its contents.
+     *
+     * @return <code>true</code> if the message is being sent, or
+     *         <code>false</code> if it was dropped
+     */
+    boolean sendBroadcast(byte opCode, ByteBuffer payload) {
+        if (!stateMachine.broadcastStart()) {
+            return false;
+        }
+        try {
+            startMessage(opCode, payload, true, new BroadcastSendHandler(this));
+        } catch (IllegalStateException ise) {
+            // Session has been closed before anything was written so the
+            // handler will not be called to restore the state
+            stateMachine.broadcastAbort();
+            return false;
+        }
+        return true;
+    }
+
+
     void startMessage(byte opCode, ByteBuffer payload, boolean last,
             SendHandler handler) {
 
@@ -393,6 +429,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
             mpNext = messagePartQueue.poll();
             if (mpNext == null) {
+                releaseOutputBuffer();
                 messagePartInProgress.release();
             } else if (!closed){
                 // Session may have been closed unexpectedly in the middle of
@@ -428,6 +465,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         if (Constants.INTERNAL_OPCODE_FLUSH == mp.getOpCode()) {
             nextFragmented = fragmented;
             nextText = text;
+            ByteBuffer outputBuffer = getOutputBuffer();
             outputBuffer.flip();
             SendHandler flushHandler = new OutputBufferFlushSendHandler(
                     outputBuffer, mp.getEndHandler());
@@ -435,6 +473,25 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
             return;
         }
 
+        if (Constants.INTERNAL_OPCODE_FRAME == mp.getOpCode()) {
+            // A complete frame. It is not fragmented and it is never masked so
+            // it can be written as is once any batched messages have been
+            // written.
+            nextFragmented = fragmented;
+            nextText = text;
+            if (outputBuffer != null && outputBuffer.position() > 0) {
+                outputBuffer.flip();
+                SendHandler flushHandler = new OutputBufferFlushSendHandler(
+                        outputBuffer, mp.getEndHandler());
+                doWrite(flushHandler, mp.getBlockingWriteTimeoutExpiry(), outputBuffer,
+                        mp.getPayload());
+            } else {
+                doWrite(mp.getEndHandler(), mp.getBlockingWriteTimeoutExpiry(),
+                        mp.getPayload());
+            }
+            return;
+        }
+
         // Control messages may be sent in the middle of fragmented message
         // so they have no effect on the fragmented or text flags
         boolean first;
@@ -487,7 +544,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
             OutputBufferSendHandler obsh = new OutputBufferSendHandler(
                     mp.getEndHandler(), mp.getBlockingWriteTimeoutExpiry(),
                     headerBuffer, mp.getPayload(), mask,
-                    outputBuffer, !getBatchingAllowed(), this);
+                    getOutputBuffer(), !getBatchingAllowed(), this);
             obsh.write();
         } else {
             // Can write directly
@@ -666,6 +723,51 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
     protected void setSession(WsSession wsSession) {
         this.wsSession = wsSession;
+        bufferPool = wsSession.getBufferPool();
+        if (bufferPool == null) {
+            outputBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
+            encoderBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
+        }
+    }
+
+
+    /*
+     * Only called while a text message is being sent. The state machine
+     * ensures that only one text message is sent at a time.
+     */
+    private ByteBuffer getEncoderBuffer() {
+        if (encoderBuffer == null) {
+            encoderBuffer = bufferPool.getByteBuffer(Constants.DEFAULT_BUFFER_SIZE);
+        }
+        return encoderBuffer;
+    }
+
+
+    private void releaseEncoderBuffer() {
+        if (bufferPool != null && encoderBuffer != null) {
+            bufferPool.returnByteBuffer(encoderBuffer);
+            encoderBuffer = null;
+        }
+    }
+
+
+    /*
+     * Only called while messagePartInProgress is held.
+     */
+    private ByteBuffer getOutputBuffer() {
+        if (outputBuffer == null) {
+            outputBuffer = bufferPool.getByteBuffer(Constants.DEFAULT_BUFFER_SIZE);
+        }
+        return outputBuffer;
+    }
+
+
+    private void releaseOutputBuffer() {
+        // The output buffer has to be retained while it holds batched messages
+        if (bufferPool != null && outputBuffer != null && outputBuffer.position() == 0) {
+            bufferPool.returnByteBuffer(outputBuffer);
+            outputBuffer = null;
+        }
     }
 
 
@@ -716,6 +818,25 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     protected abstract boolean isMasked();
     protected abstract void doClose();
 
+    /**
+     * Create a complete, unmasked, unfragmented frame for the given payload.
+     *
+     * @param opCode  The op code of the frame
+     * @param payload The payload of the frame. The position of the buffer is
+     *                not modified.
+     *
+     * @return The frame, ready to be written
+     */
+    static ByteBuffer createFrame(byte opCode, ByteBuffer payload) {
+        // Max size of an unmasked header is 10 bytes
+        ByteBuffer frame = ByteBuffer.allocate(10 + payload.remaining());
+        writeHeader(frame, true, 0, opCode, false, payload, null, true);
+        frame.put(payload.duplicate());
+        frame.flip();
+        return frame;
+    }
+
+
     private static void writeHeader(ByteBuffer headerBuffer, boolean fin,
             int rsv, byte opCode, boolean masked, ByteBuffer payload,
             byte[] mask, boolean first) {
@@ -807,6 +928,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         @Override
         public void onResult(SendResult result) {
             if (isDone) {
+                endpoint.releaseEncoderBuffer();
                 endpoint.stateMachine.complete(isLast);
                 handler.onResult(result);
             } else if(!result.isOK()) {
@@ -1155,7 +1277,8 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         BINARY_FULL_WRITING,
         TEXT_PARTIAL_WRITING,
         TEXT_PARTIAL_READY,
-        TEXT_FULL_WRITING
+        TEXT_FULL_WRITING,
+        BROADCAST_WRITING
     }
 
 
@@ -1192,11 +1315,30 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
             state = State.TEXT_FULL_WRITING;
         }
 
+        /*
+         * Unlike the other start methods, this does not throw an exception if
+         * another message is being sent.
+         */
+        public synchronized boolean broadcastStart() {
+            if (state == State.OPEN) {
+                state = State.BROADCAST_WRITING;
+                return true;
+            }
+            return false;
+        }
+
+        public synchronized void broadcastAbort() {
+            if (state == State.BROADCAST_WRITING) {
+                state = State.OPEN;
+            }
+        }
+
         public synchronized void complete(boolean last) {
             if (last) {
                 checkState(State.TEXT_PARTIAL_WRITING, State.TEXT_FULL_WRITING,
                         State.BINARY_PARTIAL_WRITING, State.BINARY_FULL_WRITING,
-                        State.STREAM_WRITING, State.WRITER_WRITING);
+                        State.STREAM_WRITING, State.WRITER_WRITING,
+                        State.BROADCAST_WRITING);
                 state = State.OPEN;
             } else {
                 checkState(State.TEXT_PARTIAL_WRITING, State.BINARY_PARTIAL_WRITING,
@@ -1251,6 +1393,30 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     }
 
 
+    private static class BroadcastSendHandler implements SendHandler {
+
+        private final WsRemoteEndpointImplBase endpoint;
+
+        public BroadcastSendHandler(WsRemoteEndpointImplBase endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            if (result.isOK()) {
+                endpoint.stateMachine.complete(true);
+            } else {
+                // There is no application provided handler to report the
+                // failure to so close the session
+                Throwable t = result.getException();
+                endpoint.wsSession.doClose(
+                        new CloseReason(CloseCodes.GOING_AWAY, t.getMessage()),
+                        new CloseReason(CloseCodes.CLOSED_ABNORMALLY, t.getMessage()));
+            }
+        }
+    }
+
+
     private static class BlockingSendHandler implements SendHandler {
 
         private SendResult sendResult = null;
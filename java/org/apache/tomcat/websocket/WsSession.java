@@ -73,6 +73,8 @@ public class WsSession implements Session {
     private final RemoteEndpoint.Basic remoteEndpointBasic;
     private final ClassLoader applicationClassLoader;
     private final WsWebSocketContainer webSocketContainer;
+    // Null unless pooled buffers are enabled for the container
+    private final WsBufferPool bufferPool;
     private final URI requestUri;
     private final Map<String, List<String>> requestParameterMap;
     private final String queryString;
@@ -143,6 +145,11 @@ public class WsSession implements Session {
             List<Extension> negotiatedExtensions, String subProtocol, Map<String, String> pathParameters,
             boolean secure, EndpointConfig endpointConfig) throws DeploymentException {
         this.localEndpoint = localEndpoint;
+        if (wsWebSocketContainer.getPooledBuffers()) {
+            this.bufferPool = wsWebSocketContainer.getBufferPool();
+        } else {
+            this.bufferPool = null;
+        }
         this.wsRemoteEndpoint = wsRemoteEndpoint;
         this.wsRemoteEndpoint.setSession(this);
         this.remoteEndpointAsync = new WsRemoteEndpointAsync(wsRemoteEndpoint);
@@ -393,6 +400,21 @@ public class WsSession implements Session {
     }
 
 
+    WsRemoteEndpointImplBase getWsRemoteEndpoint() {
+        return wsRemoteEndpoint;
+    }
+
+
+    /**
+     * @return The pool from which this session's frame and message buffers
+     *         should be borrowed or <code>null</code> if the session should
+     *         allocate its own buffers
+     */
+    WsBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+
     @Override
     public int getMaxBinaryMessageBufferSize() {
         checkState();
@@ -864,4 +886,20 @@ public class WsSession implements Session {
     public void resume() {
         wsFrame.resume();
     }
+
+
+    /**
+     * Obtain the permessage-deflate extension for this session so that its
+     * compression statistics may be examined.
+     *
+     * @return The extension or <code>null</code> if permessage-deflate was not
+     *         negotiated for this session
+     */
+    public PerMessageDeflate getPerMessageDeflate() {
+        WsFrameBase wsFrame = this.wsFrame;
+        if (wsFrame != null && wsFrame.getTransformation() instanceof PerMessageDeflate) {
+            return (PerMessageDeflate) wsFrame.getTransformation();
+        }
+        return null;
+    }
 }
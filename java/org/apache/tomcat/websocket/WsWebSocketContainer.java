@@ -102,6 +102,9 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
     private volatile long defaultMaxSessionIdleTimeout = 0;
     private int backgroundProcessCount = 0;
     private int processPeriod = Constants.DEFAULT_PROCESS_PERIOD;
+    private volatile boolean pooledBuffers = false;
+    private final WsBufferPool bufferPool = new WsBufferPool();
+    private final PerMessageDeflatePool deflatePool = new PerMessageDeflatePool();
 
     private InstanceManager instanceManager;
 
@@ -469,7 +472,8 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
             for (Extension extension : extensionsAgreed) {
                 List<List<Extension.Parameter>> wrapper = new ArrayList<>(1);
                 wrapper.add(extension.getParameters());
-                Transformation t = factory.create(extension.getName(), wrapper, false);
+                Transformation t = factory.create(extension.getName(), wrapper, false,
+                        deflatePool);
                 if (t == null) {
                     throw new DeploymentException(sm.getString(
                             "wsWebSocketContainer.invalidExtensionParameters"));
@@ -988,6 +992,43 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
     }
 
 
+    public boolean getPooledBuffers() {
+        return pooledBuffers;
+    }
+
+
+    /**
+     * Configure whether sessions created by this container borrow their frame
+     * and message buffers from the container's {@link WsBufferPool} only
+     * while a frame or message is being processed rather than allocating them
+     * for the lifetime of the session. This only affects sessions created
+     * after this is set.
+     *
+     * @param pooledBuffers <code>true</code> to use pooled buffers
+     */
+    public void setPooledBuffers(boolean pooledBuffers) {
+        this.pooledBuffers = pooledBuffers;
+    }
+
+
+    /**
+     * @return The pool used by sessions created by this container when
+     *         pooled buffers are enabled
+     */
+    public WsBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+
+    /**
+     * @return The permessage-deflate configuration and the pool of
+     *         compression state used by sessions created by this container
+     */
+    public PerMessageDeflatePool getPerMessageDeflatePool() {
+        return deflatePool;
+    }
+
+
     /**
      * {@inheritDoc}
      *
@@ -1049,6 +1090,9 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
                 }
             }
         }
+
+        bufferPool.clear();
+        deflatePool.clear();
     }
 
 
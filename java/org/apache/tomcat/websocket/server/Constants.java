@@ -27,6 +27,14 @@ public class Constants {
             "org.apache.tomcat.websocket.textBufferSize";
     public static final String ENFORCE_NO_ADD_AFTER_HANDSHAKE_CONTEXT_INIT_PARAM =
             "org.apache.tomcat.websocket.noAddAfterHandshake";
+    public static final String POOLED_BUFFERS_SERVLET_CONTEXT_INIT_PARAM =
+            "org.apache.tomcat.websocket.pooledBuffers";
+    public static final String DEFLATE_COMPRESSION_LEVEL_SERVLET_CONTEXT_INIT_PARAM =
+            "org.apache.tomcat.websocket.deflateCompressionLevel";
+    public static final String DEFLATE_CLIENT_MAX_WINDOW_BITS_SERVLET_CONTEXT_INIT_PARAM =
+            "org.apache.tomcat.websocket.deflateClientMaxWindowBits";
+    public static final String DEFLATE_RELEASE_WHEN_IDLE_SERVLET_CONTEXT_INIT_PARAM =
+            "org.apache.tomcat.websocket.deflateReleaseWhenIdle";
 
     public static final String SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE =
             "javax.websocket.server.ServerContainer";
@@ -40,6 +40,7 @@ import org.apache.tomcat.util.codec.binary.Base64;
 import org.apache.tomcat.util.res.StringManager;
 import org.apache.tomcat.util.security.ConcurrentMessageDigest;
 import org.apache.tomcat.websocket.Constants;
+import org.apache.tomcat.websocket.PerMessageDeflatePool;
 import org.apache.tomcat.websocket.Transformation;
 import org.apache.tomcat.websocket.TransformationFactory;
 import org.apache.tomcat.websocket.Util;
@@ -65,6 +66,9 @@ public class UpgradeUtil {
      * Note: RFC 2616 does not limit HTTP upgrade to GET requests but the Java
      *       WebSocket spec 1.0, section 8.2 implies such a limitation and RFC
      *       6455 section 4.1 requires that a WebSocket Upgrade uses GET.
+     * <p>
+     * An HTTP/2 extended CONNECT request for the WebSocket protocol, as
+     * defined by RFC 8441, is also treated as an upgrade request.
      * @param request  The request to check if it is an HTTP upgrade request for
      *                 a WebSocket connection
      * @param response The response associated with the request
@@ -76,10 +80,21 @@ public class UpgradeUtil {
 
         return ((request instanceof HttpServletRequest) &&
                 (response instanceof HttpServletResponse) &&
-                headerContainsToken((HttpServletRequest) request,
+                ((headerContainsToken((HttpServletRequest) request,
                         Constants.UPGRADE_HEADER_NAME,
                         Constants.UPGRADE_HEADER_VALUE) &&
-                "GET".equals(((HttpServletRequest) request).getMethod()));
+                "GET".equals(((HttpServletRequest) request).getMethod())) ||
+                isExtendedConnectRequest((HttpServletRequest) request)));
+    }
+
+
+    /*
+     * RFC 8441. The :protocol pseudo header is exposed by the HTTP/2 connector
+     * as a request attribute.
+     */
+    private static boolean isExtendedConnectRequest(HttpServletRequest req) {
+        return "CONNECT".equals(req.getMethod()) && Constants.UPGRADE_HEADER_VALUE.equals(
+                req.getAttribute(org.apache.coyote.Constants.CONNECT_PROTOCOL_ATTR));
     }
 
 
@@ -90,9 +105,12 @@ public class UpgradeUtil {
 
         // Validate the rest of the headers and reject the request if that
         // validation fails
-        String key;
+        String key = null;
         String subProtocol = null;
-        if (!headerContainsToken(req, Constants.CONNECTION_HEADER_NAME,
+        // RFC 8441 replaces the Connection, Upgrade and key headers with the
+        // :protocol pseudo header
+        boolean extendedConnect = isExtendedConnectRequest(req);
+        if (!extendedConnect && !headerContainsToken(req, Constants.CONNECTION_HEADER_NAME,
                 Constants.CONNECTION_HEADER_VALUE)) {
             resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
             return;
@@ -104,10 +122,12 @@ public class UpgradeUtil {
                     Constants.WS_VERSION_HEADER_VALUE);
             return;
         }
-        key = req.getHeader(Constants.WS_KEY_HEADER_NAME);
-        if (key == null) {
-            resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
-            return;
+        if (!extendedConnect) {
+            key = req.getHeader(Constants.WS_KEY_HEADER_NAME);
+            if (key == null) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
         }
 
 
@@ -149,7 +169,8 @@ public class UpgradeUtil {
         // to this connection. Note than an extension may be dropped at this
         // point if the client has requested a configuration that the server is
         // unable to support.
-        List<Transformation> transformations = createTransformations(negotiatedExtensionsPhase1);
+        List<Transformation> transformations = createTransformations(negotiatedExtensionsPhase1,
+                sc.getPerMessageDeflatePool());
 
         List<Extension> negotiatedExtensionsPhase2;
         if (transformations.isEmpty()) {
@@ -184,13 +205,16 @@ public class UpgradeUtil {
             throw new ServletException(sm.getString("upgradeUtil.incompatibleRsv"));
         }
 
-        // If we got this far, all is good. Accept the connection.
-        resp.setHeader(Constants.UPGRADE_HEADER_NAME,
-                Constants.UPGRADE_HEADER_VALUE);
-        resp.setHeader(Constants.CONNECTION_HEADER_NAME,
-                Constants.CONNECTION_HEADER_VALUE);
-        resp.setHeader(HandshakeResponse.SEC_WEBSOCKET_ACCEPT,
-                getWebSocketAccept(key));
+        // If we got this far, all is good. Accept the connection. For an
+        // extended CONNECT request, the 200 status is sufficient.
+        if (!extendedConnect) {
+            resp.setHeader(Constants.UPGRADE_HEADER_NAME,
+                    Constants.UPGRADE_HEADER_VALUE);
+            resp.setHeader(Constants.CONNECTION_HEADER_NAME,
+                    Constants.CONNECTION_HEADER_VALUE);
+            resp.setHeader(HandshakeResponse.SEC_WEBSOCKET_ACCEPT,
+                    getWebSocketAccept(key));
+        }
         if (subProtocol != null && subProtocol.length() > 0) {
             // RFC6455 4.2.2 explicitly states "" is not valid here
             resp.setHeader(Constants.WS_PROTOCOL_HEADER_NAME, subProtocol);
@@ -231,17 +255,25 @@ public class UpgradeUtil {
             throw new ServletException(e);
         }
 
-        WsHttpUpgradeHandler wsHandler =
-                req.upgrade(WsHttpUpgradeHandler.class);
-        wsHandler.preInit(ep, perSessionServerEndpointConfig, sc, wsRequest,
-                negotiatedExtensionsPhase2, subProtocol, transformation, pathParams,
-                req.isSecure());
+        if (extendedConnect) {
+            // The WebSocket connection uses this HTTP/2 stream
+            WsStreamHandler wsHandler = new WsStreamHandler(ep, perSessionServerEndpointConfig,
+                    sc, wsRequest, negotiatedExtensionsPhase2, subProtocol, transformation,
+                    pathParams, req.isSecure());
+            wsHandler.start(req, resp);
+        } else {
+            WsHttpUpgradeHandler wsHandler =
+                    req.upgrade(WsHttpUpgradeHandler.class);
+            wsHandler.preInit(ep, perSessionServerEndpointConfig, sc, wsRequest,
+                    negotiatedExtensionsPhase2, subProtocol, transformation, pathParams,
+                    req.isSecure());
+        }
 
     }
 
 
     private static List<Transformation> createTransformations(
-            List<Extension> negotiatedExtensions) {
+            List<Extension> negotiatedExtensions, PerMessageDeflatePool deflatePool) {
 
         TransformationFactory factory = TransformationFactory.getInstance();
 
@@ -265,7 +297,8 @@ public class UpgradeUtil {
 
         for (Map.Entry<String,List<List<Extension.Parameter>>> entry :
             extensionPreferences.entrySet()) {
-            Transformation transformation = factory.create(entry.getKey(), entry.getValue(), true);
+            Transformation transformation = factory.create(entry.getKey(), entry.getValue(), true,
+                    deflatePool);
             if (transformation != null) {
                 result.add(transformation);
             }
@@ -66,6 +66,7 @@ public class WsFrameServer extends WsFrameBase {
         }
 
         while (isOpen() && !isSuspended()) {
+            acquireInputBuffer();
             // Fill up the input buffer with as much data as we can
             inputBuffer.mark();
             inputBuffer.position(inputBuffer.limit()).limit(inputBuffer.capacity());
@@ -74,13 +75,16 @@ public class WsFrameServer extends WsFrameBase {
             if (read < 0) {
                 throw new EOFException();
             } else if (read == 0) {
-                return;
+                break;
             }
             if (log.isDebugEnabled()) {
                 log.debug(sm.getString("wsFrameServer.bytesRead", Integer.toString(read)));
             }
             processInputBuffer();
         }
+        // Nothing more to read for now so there is no need to hold on to the
+        // input buffer (if it is pooled) unless there is unprocessed data
+        releaseInputBuffer();
     }
 
 
@@ -0,0 +1,236 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
+import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.websocket.Transformation;
+import org.apache.tomcat.websocket.WsFrameBase;
+import org.apache.tomcat.websocket.WsIOException;
+import org.apache.tomcat.websocket.WsSession;
+
+/**
+ * Reads WebSocket frames from the request body of an HTTP/2 stream that has
+ * been bootstrapped with the extended CONNECT method defined by RFC 8441. The
+ * request body is read using Servlet 3.1 non-blocking IO.
+ */
+public class WsFrameStream extends WsFrameBase {
+
+    private final Log log = LogFactory.getLog(WsFrameStream.class); // must not be static
+    private static final StringManager sm = StringManager.getManager(WsFrameStream.class);
+
+    private final ServletInputStream inputStream;
+    private final AsyncContext asyncContext;
+    private final ReadListener readListener;
+    private final ClassLoader applicationClassLoader;
+
+
+    public WsFrameStream(ServletInputStream inputStream, AsyncContext asyncContext,
+            ReadListener readListener, WsSession wsSession, Transformation transformation,
+            ClassLoader applicationClassLoader) {
+        super(wsSession, transformation);
+        this.inputStream = inputStream;
+        this.asyncContext = asyncContext;
+        this.readListener = readListener;
+        this.applicationClassLoader = applicationClassLoader;
+    }
+
+
+    /**
+     * Called when there is data in the ServletInputStream to process.
+     *
+     * @throws IOException if an I/O error occurs while processing the available
+     *                     data
+     */
+    private void onDataAvailable() throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("wsFrameStream.onDataAvailable");
+        }
+        if (isOpen() && inputBuffer.hasRemaining() && !isSuspended()) {
+            // There might be a data that was left in the buffer when
+            // the read has been suspended.
+            // Consume this data before reading from the stream.
+            processInputBuffer();
+        }
+
+        // If isReady() returns false, the container will call the
+        // ReadListener when more data is available
+        while (isOpen() && !isSuspended() && inputStream.isReady()) {
+            acquireInputBuffer();
+            // Fill up the input buffer with as much data as we can
+            inputBuffer.mark();
+            inputBuffer.position(inputBuffer.limit()).limit(inputBuffer.capacity());
+            int read = inputStream.read(inputBuffer.array(),
+                    inputBuffer.arrayOffset() + inputBuffer.position(), inputBuffer.remaining());
+            if (read > 0) {
+                inputBuffer.position(inputBuffer.position() + read);
+            }
+            inputBuffer.limit(inputBuffer.position()).reset();
+            if (read < 0) {
+                throw new EOFException();
+            } else if (read == 0) {
+                break;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("wsFrameStream.bytesRead", Integer.toString(read)));
+            }
+            processInputBuffer();
+        }
+        // Nothing more to read for now so there is no need to hold on to the
+        // input buffer (if it is pooled) unless there is unprocessed data
+        releaseInputBuffer();
+    }
+
+
+    @Override
+    protected boolean isMasked() {
+        // Data is from the client so it should be masked
+        return true;
+    }
+
+
+    @Override
+    protected Transformation getTransformation() {
+        // Overridden to make it visible to other classes in this package
+        return super.getTransformation();
+    }
+
+
+    @Override
+    protected boolean isOpen() {
+        // Overridden to make it visible to other classes in this package
+        return super.isOpen();
+    }
+
+
+    @Override
+    protected Log getLog() {
+        return log;
+    }
+
+
+    @Override
+    protected void sendMessageText(boolean last) throws WsIOException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(applicationClassLoader);
+            super.sendMessageText(last);
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
+    }
+
+
+    @Override
+    protected void sendMessageBinary(ByteBuffer msg, boolean last) throws WsIOException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(applicationClassLoader);
+            super.sendMessageBinary(msg, last);
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
+    }
+
+
+    /*
+     * There is no socket level event to trigger so use a container thread to
+     * call the ReadListener. Any data already read into the input buffer is
+     * processed before the stream is read.
+     */
+    @Override
+    protected void resumeProcessing() {
+        asyncContext.start(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readListener.onDataAvailable();
+                } catch (Throwable t) {
+                    ExceptionUtils.handleThrowable(t);
+                    readListener.onError(t);
+                }
+            }
+        });
+    }
+
+
+    /*
+     * Unlike a socket, the container does not serialise calls to the
+     * ReadListener with the thread used to resume processing so this method is
+     * synchronized.
+     */
+    synchronized void notifyDataAvailable() throws IOException {
+        while (isOpen()) {
+            switch (getReadState()) {
+            case WAITING:
+                if (!changeReadState(ReadState.WAITING, ReadState.PROCESSING)) {
+                    continue;
+                }
+                try {
+                    doOnDataAvailable();
+                } catch (IOException e) {
+                    changeReadState(ReadState.CLOSING);
+                    throw e;
+                }
+                return;
+            case SUSPENDING_WAIT:
+                if (!changeReadState(ReadState.SUSPENDING_WAIT, ReadState.SUSPENDED)) {
+                    continue;
+                }
+                return;
+            case SUSPENDED:
+                // Processing will be triggered when the session is resumed
+                return;
+            default:
+                throw new IllegalStateException(
+                        sm.getString("wsFrameStream.illegalReadState", getReadState()));
+            }
+        }
+    }
+
+
+    private void doOnDataAvailable() throws IOException {
+        onDataAvailable();
+        while (isOpen()) {
+            switch (getReadState()) {
+            case PROCESSING:
+                if (!changeReadState(ReadState.PROCESSING, ReadState.WAITING)) {
+                    continue;
+                }
+                return;
+            case SUSPENDING_PROCESS:
+                if (!changeReadState(ReadState.SUSPENDING_PROCESS, ReadState.SUSPENDED)) {
+                    continue;
+                }
+                return;
+            default:
+                throw new IllegalStateException(
+                        sm.getString("wsFrameStream.illegalReadState", getReadState()));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket.server;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.websocket.Transformation;
+import org.apache.tomcat.websocket.WsRemoteEndpointImplBase;
+
+/**
+ * The server side {@link javax.websocket.RemoteEndpoint} implementation for
+ * WebSocket connections bootstrapped over an HTTP/2 stream using the extended
+ * CONNECT method defined by RFC 8441. Messages are written to the response
+ * body of the stream.
+ * <p>
+ * The response is written using blocking IO. The HTTP/2 connector limits the
+ * time a write may block waiting for the client to increase the flow control
+ * window via its <code>streamWriteTimeout</code>. Asynchronous sends are
+ * written by a container thread so the application thread is not blocked. The
+ * {@link SendHandler} is called from that thread once the write has completed.
+ * <p>
+ * Servlet non-blocking writes are not used. Once a
+ * {@link javax.servlet.WriteListener} is set, every write is non-blocking and
+ * data that does not fit in the flow control window is only written by a
+ * dispatch to the stream. A blocking send from a message handler already
+ * holds the stream so it would wait for that dispatch until it timed out.
+ */
+public class WsRemoteEndpointImplStream extends WsRemoteEndpointImplBase {
+
+    private static final StringManager sm =
+            StringManager.getManager(WsRemoteEndpointImplStream.class);
+    private final Log log = LogFactory.getLog(WsRemoteEndpointImplStream.class); // must not be static
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final ServletOutputStream outputStream;
+    private final AsyncContext asyncContext;
+    private byte[] copyBuffer = null;
+
+
+    public WsRemoteEndpointImplStream(ServletOutputStream outputStream,
+            AsyncContext asyncContext) {
+        this.outputStream = outputStream;
+        this.asyncContext = asyncContext;
+    }
+
+
+    @Override
+    protected final boolean isMasked() {
+        return false;
+    }
+
+
+    @Override
+    protected void doWrite(final SendHandler handler, final long blockingWriteTimeoutExpiry,
+            final ByteBuffer... buffers) {
+        if (blockingWriteTimeoutExpiry != -1) {
+            write(handler, blockingWriteTimeoutExpiry, buffers);
+            return;
+        }
+        // The write was triggered by an asynchronous send so it must not block
+        // the calling thread and the SendHandler must be called from a
+        // different thread
+        Runnable r = new Runnable() {
+            @Override
+            public void run() {
+                write(handler, blockingWriteTimeoutExpiry, buffers);
+            }
+        };
+        try {
+            asyncContext.start(r);
+        } catch (IllegalStateException e) {
+            // The stream has been closed so the container will not dispatch
+            // to a new thread. Only close messages are sent at this point so
+            // writing them directly does not risk the nested calls described
+            // in bug 55715.
+            r.run();
+        }
+    }
+
+
+    private void write(SendHandler handler, long blockingWriteTimeoutExpiry,
+            ByteBuffer... buffers) {
+        Throwable t = null;
+        try {
+            for (ByteBuffer buffer : buffers) {
+                if (blockingWriteTimeoutExpiry != -1 &&
+                        blockingWriteTimeoutExpiry < System.currentTimeMillis()) {
+                    t = new SocketTimeoutException();
+                    break;
+                }
+                write(buffer);
+            }
+            if (t == null) {
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            t = e;
+        }
+
+        if (t == null) {
+            handler.onResult(SENDRESULT_OK);
+        } else {
+            handler.onResult(new SendResult(t));
+        }
+    }
+
+
+    private void write(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            if (copyBuffer == null) {
+                copyBuffer = new byte[COPY_BUFFER_SIZE];
+            }
+            while (buffer.hasRemaining()) {
+                int len = Math.min(buffer.remaining(), copyBuffer.length);
+                buffer.get(copyBuffer, 0, len);
+                outputStream.write(copyBuffer, 0, len);
+            }
+        }
+    }
+
+
+    @Override
+    protected void doClose() {
+        try {
+            // Completing the request ends the HTTP/2 stream
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("wsRemoteEndpointStream.closeFailed"), e);
+            }
+        }
+    }
+
+
+    @Override
+    protected void setTransformation(Transformation transformation) {
+        // Overridden purely so it is visible to other classes in this package
+        super.setTransformation(transformation);
+    }
+}
@@ -17,7 +17,9 @@
 package org.apache.tomcat.websocket.server;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
@@ -27,6 +29,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
@@ -38,6 +41,7 @@ import javax.websocket.CloseReason;
 import javax.websocket.CloseReason.CloseCodes;
 import javax.websocket.DeploymentException;
 import javax.websocket.Encoder;
+import javax.websocket.Session;
 import javax.websocket.server.ServerContainer;
 import javax.websocket.server.ServerEndpoint;
 import javax.websocket.server.ServerEndpointConfig;
@@ -45,6 +49,8 @@ import javax.websocket.server.ServerEndpointConfig.Configurator;
 
 import org.apache.tomcat.InstanceManager;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.websocket.BroadcastMessage;
+import org.apache.tomcat.websocket.PerMessageDeflatePool;
 import org.apache.tomcat.websocket.WsSession;
 import org.apache.tomcat.websocket.WsWebSocketContainer;
 import org.apache.tomcat.websocket.pojo.PojoMethodMapping;
@@ -57,6 +63,10 @@ import org.apache.tomcat.websocket.pojo.PojoMethodMapping;
  * <ul>
  * <li>{@link Constants#BINARY_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM}</li>
  * <li>{@link Constants#TEXT_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM}</li>
+ * <li>{@link Constants#POOLED_BUFFERS_SERVLET_CONTEXT_INIT_PARAM}</li>
+ * <li>{@link Constants#DEFLATE_COMPRESSION_LEVEL_SERVLET_CONTEXT_INIT_PARAM}</li>
+ * <li>{@link Constants#DEFLATE_CLIENT_MAX_WINDOW_BITS_SERVLET_CONTEXT_INIT_PARAM}</li>
+ * <li>{@link Constants#DEFLATE_RELEASE_WHEN_IDLE_SERVLET_CONTEXT_INIT_PARAM}</li>
  * </ul>
  */
 public class WsServerContainer extends WsWebSocketContainer
@@ -83,6 +93,8 @@ public class WsServerContainer extends WsWebSocketContainer
             new ConcurrentHashMap<>();
     private volatile boolean endpointsRegistered = false;
     private volatile boolean deploymentFailed = false;
+    private final AtomicLong broadcastSentCount = new AtomicLong();
+    private final AtomicLong broadcastDroppedCount = new AtomicLong();
 
     WsServerContainer(ServletContext servletContext) {
 
@@ -108,6 +120,31 @@ public class WsServerContainer extends WsWebSocketContainer
             setEnforceNoAddAfterHandshake(Boolean.parseBoolean(value));
         }
 
+        value = servletContext.getInitParameter(
+                Constants.POOLED_BUFFERS_SERVLET_CONTEXT_INIT_PARAM);
+        if (value != null) {
+            setPooledBuffers(Boolean.parseBoolean(value));
+        }
+
+        PerMessageDeflatePool deflatePool = getPerMessageDeflatePool();
+        value = servletContext.getInitParameter(
+                Constants.DEFLATE_COMPRESSION_LEVEL_SERVLET_CONTEXT_INIT_PARAM);
+        if (value != null) {
+            deflatePool.setCompressionLevel(Integer.parseInt(value));
+        }
+
+        value = servletContext.getInitParameter(
+                Constants.DEFLATE_CLIENT_MAX_WINDOW_BITS_SERVLET_CONTEXT_INIT_PARAM);
+        if (value != null) {
+            deflatePool.setClientMaxWindowBits(Integer.parseInt(value));
+        }
+
+        value = servletContext.getInitParameter(
+                Constants.DEFLATE_RELEASE_WHEN_IDLE_SERVLET_CONTEXT_INIT_PARAM);
+        if (value != null) {
+            deflatePool.setReleaseWhenIdle(Boolean.parseBoolean(value));
+        }
+
         FilterRegistration.Dynamic fr = servletContext.addFilter(
                 "Tomcat WebSocket (JSR356) Filter", new WsFilter());
         fr.setAsyncSupported(true);
@@ -351,6 +388,82 @@ public class WsServerContainer extends WsWebSocketContainer
     }
 
 
+    /**
+     * Send a text message to each of the given sessions. The message is only
+     * encoded and framed once. See {@link BroadcastMessage} for details.
+     *
+     * @param sessions The sessions to send the message to
+     * @param text     The message
+     *
+     * @return The number of sessions the message is being sent to. The
+     *         message is dropped for sessions that are closed or are still
+     *         sending a previous message.
+     */
+    public int broadcast(Collection<? extends Session> sessions, String text) {
+        return broadcast(sessions, new BroadcastMessage(text));
+    }
+
+
+    /**
+     * Send a binary message to each of the given sessions. The message is
+     * only framed once. See {@link BroadcastMessage} for details.
+     *
+     * @param sessions The sessions to send the message to
+     * @param data     The message
+     *
+     * @return The number of sessions the message is being sent to. The
+     *         message is dropped for sessions that are closed or are still
+     *         sending a previous message.
+     */
+    public int broadcast(Collection<? extends Session> sessions, ByteBuffer data) {
+        return broadcast(sessions, new BroadcastMessage(data));
+    }
+
+
+    /**
+     * Send a message to each of the given sessions.
+     *
+     * @param sessions The sessions to send the message to
+     * @param message  The message
+     *
+     * @return The number of sessions the message is being sent to. The
+     *         message is dropped for sessions that are closed or are still
+     *         sending a previous message.
+     */
+    public int broadcast(Collection<? extends Session> sessions, BroadcastMessage message) {
+        int sent = 0;
+        int dropped = 0;
+        for (Session session : sessions) {
+            if (message.sendTo(session)) {
+                sent++;
+            } else {
+                dropped++;
+            }
+        }
+        broadcastSentCount.addAndGet(sent);
+        broadcastDroppedCount.addAndGet(dropped);
+        return sent;
+    }
+
+
+    /**
+     * @return The number of times a broadcast message has been sent to a
+     *         session
+     */
+    public long getBroadcastSentCount() {
+        return broadcastSentCount.get();
+    }
+
+
+    /**
+     * @return The number of times a broadcast message has been dropped for a
+     *         session because the session was closed or was still sending a
+     *         previous message
+     */
+    public long getBroadcastDroppedCount() {
+        return broadcastDroppedCount.get();
+    }
+
 
     public boolean isEnforceNoAddAfterHandshake() {
         return enforceNoAddAfterHandshake;
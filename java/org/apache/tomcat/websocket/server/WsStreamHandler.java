@@ -0,0 +1,251 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.Extension;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.websocket.Transformation;
+import org.apache.tomcat.websocket.WsIOException;
+import org.apache.tomcat.websocket.WsSession;
+
+/**
+ * Handles a WebSocket connection bootstrapped over an HTTP/2 stream using the
+ * extended CONNECT method defined by RFC 8441. Rather than upgrading the
+ * connection, the request is placed into asynchronous mode and the WebSocket
+ * frames are carried in the request and response bodies of the stream. This
+ * allows many WebSocket sessions to share a single HTTP/2 connection.
+ */
+public class WsStreamHandler implements ReadListener, AsyncListener {
+
+    private static final StringManager sm = StringManager.getManager(WsStreamHandler.class);
+
+    private final ClassLoader applicationClassLoader;
+
+    private final Endpoint ep;
+    private final ServerEndpointConfig serverEndpointConfig;
+    private final WsServerContainer webSocketContainer;
+    private final WsHandshakeRequest handshakeRequest;
+    private final List<Extension> negotiatedExtensions;
+    private final String subProtocol;
+    private final Transformation transformation;
+    private final Map<String,String> pathParameters;
+    private final boolean secure;
+
+    private WsRemoteEndpointImplStream wsRemoteEndpointStream;
+    private WsFrameStream wsFrame;
+    private WsSession wsSession;
+
+
+    public WsStreamHandler(Endpoint ep, ServerEndpointConfig serverEndpointConfig,
+            WsServerContainer wsc, WsHandshakeRequest handshakeRequest,
+            List<Extension> negotiatedExtensionsPhase2, String subProtocol,
+            Transformation transformation, Map<String,String> pathParameters,
+            boolean secure) {
+        applicationClassLoader = Thread.currentThread().getContextClassLoader();
+        this.ep = ep;
+        this.serverEndpointConfig = serverEndpointConfig;
+        this.webSocketContainer = wsc;
+        this.handshakeRequest = handshakeRequest;
+        this.negotiatedExtensions = negotiatedExtensionsPhase2;
+        this.subProtocol = subProtocol;
+        this.transformation = transformation;
+        this.pathParameters = pathParameters;
+        this.secure = secure;
+    }
+
+
+    /**
+     * Send the response headers, open the WebSocket session and start reading
+     * frames from the request body. The response status and headers must have
+     * been set before this method is called.
+     *
+     * @param req   The extended CONNECT request
+     * @param resp  The response to the extended CONNECT request
+     *
+     * @throws IOException If the response headers cannot be sent
+     */
+    public void start(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String httpSessionId = null;
+        Object session = handshakeRequest.getHttpSession();
+        if (session != null ) {
+            httpSessionId = ((HttpSession) session).getId();
+        }
+
+        AsyncContext asyncContext = req.startAsync();
+        // The session idle timeout applies rather than the async timeout
+        asyncContext.setTimeout(-1);
+        asyncContext.addListener(this);
+        // The client waits for the response headers before it sends any
+        // WebSocket frames
+        resp.flushBuffer();
+
+        ServletInputStream inputStream = req.getInputStream();
+
+        // Need to call onOpen using the web application's class loader
+        // Create the frame using the application's class loader so it can pick
+        // up application specific config from the ServerContainerImpl
+        Thread t = Thread.currentThread();
+        ClassLoader cl = t.getContextClassLoader();
+        t.setContextClassLoader(applicationClassLoader);
+        boolean opened = false;
+        try {
+            wsRemoteEndpointStream = new WsRemoteEndpointImplStream(
+                    resp.getOutputStream(), asyncContext);
+            wsSession = new WsSession(ep, wsRemoteEndpointStream,
+                    webSocketContainer, handshakeRequest.getRequestURI(),
+                    handshakeRequest.getParameterMap(),
+                    handshakeRequest.getQueryString(),
+                    handshakeRequest.getUserPrincipal(), httpSessionId,
+                    negotiatedExtensions, subProtocol, pathParameters, secure,
+                    serverEndpointConfig);
+            wsFrame = new WsFrameStream(inputStream, asyncContext, this, wsSession,
+                    transformation, applicationClassLoader);
+            // WsFrame adds the necessary final transformations. Copy the
+            // completed transformation chain to the remote end point.
+            wsRemoteEndpointStream.setTransformation(wsFrame.getTransformation());
+            ep.onOpen(wsSession, serverEndpointConfig);
+            webSocketContainer.registerSession(serverEndpointConfig.getPath(), wsSession);
+            opened = true;
+        } catch (DeploymentException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            t.setContextClassLoader(cl);
+            if (!opened) {
+                // Nothing will read from or write to the stream so end it
+                // rather than leave it open until the connection closes. The
+                // session was never opened so there is nothing to close.
+                wsSession = null;
+                asyncContext.complete();
+            }
+        }
+
+        inputStream.setReadListener(this);
+    }
+
+
+    // ---------------------------------------------------------- ReadListener
+
+    @Override
+    public void onDataAvailable() {
+        try {
+            wsFrame.notifyDataAvailable();
+        } catch (WsIOException ws) {
+            close(ws.getCloseReason());
+        } catch (IOException ioe) {
+            onError(ioe);
+        }
+    }
+
+
+    @Override
+    public void onAllDataRead() {
+        // The client closed its side of the stream. If that happened before
+        // the WebSocket closing handshake, treat it as the end of the
+        // underlying connection.
+        if (wsFrame.isOpen()) {
+            onError(new EOFException());
+        }
+    }
+
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (!wsSession.isOpen()) {
+            return;
+        }
+        // Need to call onError using the web application's class loader
+        Thread t = Thread.currentThread();
+        ClassLoader cl = t.getContextClassLoader();
+        t.setContextClassLoader(applicationClassLoader);
+        try {
+            ep.onError(wsSession, throwable);
+        } finally {
+            t.setContextClassLoader(cl);
+        }
+        CloseReason cr = new CloseReason(
+                CloseCodes.CLOSED_ABNORMALLY, throwable.getMessage());
+        close(cr);
+    }
+
+
+    // --------------------------------------------------------- AsyncListener
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        // The stream is complete. If the session is still open, the stream
+        // was closed without a WebSocket closing handshake.
+        if (wsSession != null && wsSession.isOpen()) {
+            String msg = sm.getString("wsStreamHandler.closeOnComplete");
+            wsSession.doClose(new CloseReason(CloseCodes.GOING_AWAY, msg),
+                    new CloseReason(CloseCodes.CLOSED_ABNORMALLY, msg));
+        }
+    }
+
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        // NO-OP. There is no async timeout.
+    }
+
+
+    @Override
+    public void onError(AsyncEvent event) {
+        if (wsSession != null) {
+            Throwable t = event.getThrowable();
+            if (t == null) {
+                t = new IOException();
+            }
+            onError(t);
+        }
+    }
+
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        // NO-OP
+    }
+
+
+    private void close(CloseReason cr) {
+        /*
+         * Any call to this method is a result of a problem reading from the
+         * client. At this point that state of the stream is unknown. Attempt
+         * to send a close frame to the client and then end the stream
+         * immediately.
+         */
+        wsSession.onClose(cr);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.jdbc.pool.interceptor;
+
+/**
+ * A count-min sketch used to estimate how often a query has been seen,
+ * including queries that are not currently tracked. The counters are
+ * periodically halved so that the estimates reflect recent popularity rather
+ * than all time popularity. Updates are not synchronized; lost updates only
+ * make the estimates slightly less accurate.
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = new int[] {
+        0x97cb3127, 0xb1a9e7f5, 0x6a09e667, 0x3c6ef372 };
+
+    private final int[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Creates a sketch suitable for tracking roughly the given number of
+     * distinct entries.
+     * @param capacity the expected number of tracked entries
+     */
+    public FrequencySketch(int capacity) {
+        int width = 16;
+        while (width < capacity * 8 && width < (1 << 24)) {
+            width <<= 1;
+        }
+        table = new int[width * DEPTH];
+        mask = width - 1;
+        sampleSize = width * 10;
+    }
+
+    /**
+     * Records an occurrence of the given key.
+     * @param key the key
+     */
+    public void increment(String key) {
+        int hash = spread(key.hashCode());
+        int width = mask + 1;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = i * width + indexOf(hash, i);
+            if (table[index] < Integer.MAX_VALUE) {
+                table[index]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the estimated number of recent occurrences of the given key
+     */
+    public int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int width = mask + 1;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, table[i * width + indexOf(hash, i)]);
+        }
+        return min;
+    }
+
+    private void age() {
+        additions = 0;
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+    }
+
+    private int indexOf(int hash, int i) {
+        int h = (hash ^ SEEDS[i]) * SEEDS[i];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int h) {
+        h ^= (h >>> 16);
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -20,6 +20,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
@@ -50,10 +51,30 @@ public class SlowQueryReport extends AbstractQueryReport  {
      */
     protected static final ConcurrentHashMap<String,ConcurrentHashMap<String,QueryStats>> perPoolStats =
         new ConcurrentHashMap<>();
+    /**
+     * the access frequency sketches used to decide which queries are tracked
+     * once maxQueries has been reached, on a per pool basis
+     */
+    protected static final ConcurrentHashMap<String,FrequencySketch> perPoolSketches =
+        new ConcurrentHashMap<>();
+    /**
+     * The number of tracked queries that are sampled when looking for a query
+     * to evict
+     */
+    protected static final int EVICTION_SAMPLE_SIZE = 8;
     /**
      * the queries that are used for this interceptor.
      */
     protected volatile ConcurrentHashMap<String,QueryStats> queries = null;
+    /**
+     * the frequency sketch for the queries of this pool
+     */
+    protected volatile FrequencySketch sketch = null;
+    /**
+     * the position in the queries map where sampling for eviction continues,
+     * so that over time all tracked queries are considered
+     */
+    private Iterator<QueryStats> evictionCursor = null;
     /**
      * Maximum number of queries we will be storing
      */
@@ -83,6 +104,26 @@ public class SlowQueryReport extends AbstractQueryReport  {
         return perPoolStats.get(poolname);
     }
 
+    /**
+     * Returns the query stats for a given pool in CSV format, one line per
+     * query preceded by a header line
+     * @param poolname - the name of the pool we want to retrieve stats for
+     * @return the stats or <code>null</code> if there are no stats for the pool
+     */
+    public static String getPoolStatsCsv(String poolname) {
+        ConcurrentHashMap<String,QueryStats> queries = perPoolStats.get(poolname);
+        if (queries == null) {
+            return null;
+        }
+        StringBuilder buf = new StringBuilder(QueryStats.CSV_HEADER);
+        buf.append('\n');
+        for (QueryStats qs : queries.values()) {
+            qs.appendCsv(buf);
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+
     /**
      * Creates a slow query report interceptor
      */
@@ -129,9 +170,9 @@ public class SlowQueryReport extends AbstractQueryReport  {
             QueryStats qs = this.getQueryStats(sql);
             if (qs != null) {
                 qs.add(delta, start);
-                if (isLogSlow() && log.isWarnEnabled()) {
-                    log.warn("Slow Query Report SQL="+sql+"; time="+delta+" ms;");
-                }
+            }
+            if (isLogSlow() && log.isWarnEnabled()) {
+                log.warn("Slow Query Report SQL="+sql+"; time="+delta+" ms;");
             }
         }
         return sql;
@@ -180,6 +221,13 @@ public class SlowQueryReport extends AbstractQueryReport  {
                 queries = SlowQueryReport.perPoolStats.get(pool.getName());
             }
         }
+        sketch = SlowQueryReport.perPoolSketches.get(pool.getName());
+        if (sketch==null) {
+            sketch = new FrequencySketch(maxQueries);
+            if (perPoolSketches.putIfAbsent(pool.getName(), sketch)!=null) {
+                sketch = SlowQueryReport.perPoolSketches.get(pool.getName());
+            }
+        }
     }
 
     /**
@@ -188,6 +236,7 @@ public class SlowQueryReport extends AbstractQueryReport  {
     @Override
     public void poolClosed(ConnectionPool pool) {
         perPoolStats.remove(pool.getName());
+        perPoolSketches.remove(pool.getName());
         super.poolClosed(pool);
     }
 
@@ -198,21 +247,95 @@ public class SlowQueryReport extends AbstractQueryReport  {
             if (log.isWarnEnabled()) log.warn("Connection has already been closed or abandoned");
             return null;
         }
+        FrequencySketch sketch = SlowQueryReport.this.sketch;
+        if (sketch != null) {
+            sketch.increment(sql);
+        }
         QueryStats qs = queries.get(sql);
         if (qs == null) {
+            if (sketch != null && queries.size() >= maxQueries) {
+                //only start tracking the query if it is seen more often than
+                //the query it would replace, so one-off queries can't flush
+                //the frequently executed ones
+                QueryStats victim = selectVictim(queries, sketch);
+                if (victim != null) {
+                    if (sketch.frequency(sql) <= sketch.frequency(victim.getQuery())) {
+                        return null;
+                    }
+                    queries.remove(victim.getQuery(), victim);
+                    if (log.isDebugEnabled()) log.debug("Removing slow query, capacity reached:"+victim.getQuery());
+                }
+            }
             qs = new QueryStats(sql);
             if (queries.putIfAbsent(sql,qs)!=null) {
                 qs = queries.get(sql);
             } else {
                 //we added a new element, see if we need to remove the oldest
                 if (queries.size() > maxQueries) {
-                    removeOldest(queries);
+                    if (sketch == null) {
+                        removeOldest(queries);
+                    } else {
+                        removeSampled(queries, sketch);
+                    }
                 }
             }
         }
         return qs;
     }
 
+    /**
+     * Selects the least frequently used query from a small sample of the
+     * tracked queries, using the last invocation time to break ties. This
+     * keeps the cost of an eviction independent of maxQueries.
+     * @param queries The queries map
+     * @param sketch The frequency sketch for the queries
+     * @return the query to evict or <code>null</code> if there are no queries
+     */
+    protected QueryStats selectVictim(ConcurrentHashMap<String,QueryStats> queries, FrequencySketch sketch) {
+        QueryStats victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        Iterator<QueryStats> it = evictionCursor;
+        boolean restarted = false;
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+            if (it == null || !it.hasNext()) {
+                if (restarted) {
+                    break;
+                }
+                it = queries.values().iterator();
+                restarted = true;
+                if (!it.hasNext()) {
+                    break;
+                }
+            }
+            QueryStats candidate = it.next();
+            int frequency = sketch.frequency(candidate.getQuery());
+            if (victim == null || frequency < victimFrequency ||
+                    frequency == victimFrequency &&
+                    queryStatsComparator.compare(candidate, victim) < 0) {
+                victim = candidate;
+                victimFrequency = frequency;
+            }
+        }
+        evictionCursor = it;
+        return victim;
+    }
+
+    /**
+     * Removes sampled queries until the map is back within maxQueries.
+     * @param queries The queries map
+     * @param sketch The frequency sketch for the queries
+     */
+    protected void removeSampled(ConcurrentHashMap<String,QueryStats> queries, FrequencySketch sketch) {
+        while (queries.size() > maxQueries) {
+            QueryStats victim = selectVictim(queries, sketch);
+            if (victim == null) {
+                return;
+            }
+            queries.remove(victim.getQuery(), victim);
+            if (log.isDebugEnabled()) log.debug("Removing slow query, capacity reached:"+victim.getQuery());
+        }
+    }
+
     /**
      * Sort QueryStats by last invocation time
      * @param queries The queries map
@@ -233,10 +356,14 @@ public class SlowQueryReport extends AbstractQueryReport  {
     @Override
     public void reset(ConnectionPool parent, PooledConnection con) {
         super.reset(parent, con);
-        if (parent!=null)
+        evictionCursor = null;
+        if (parent!=null) {
             queries = SlowQueryReport.perPoolStats.get(parent.getName());
-        else
+            sketch = SlowQueryReport.perPoolSketches.get(parent.getName());
+        } else {
             queries = null;
+            sketch = null;
+        }
     }
 
 
@@ -294,7 +421,10 @@ public class SlowQueryReport extends AbstractQueryReport  {
             "failures",
             "prepareCount",
             "prepareTime",
-            "lastInvocation"
+            "lastInvocation",
+            "p50InvocationTime",
+            "p99InvocationTime",
+            "p999InvocationTime"
         };
 
         static final  String[] FIELD_DESCRIPTIONS = new String[] {
@@ -308,7 +438,10 @@ public class SlowQueryReport extends AbstractQueryReport  {
             "The number of failures for this query",
             "The number of times this query was prepared (prepareStatement/prepareCall)",
             "The total number of milliseconds spent preparing this query",
-            "The date and time of the last invocation"
+            "The date and time of the last invocation",
+            "The median time for this query in milliseconds",
+            "The 99th percentile time for this query in milliseconds",
+            "The 99.9th percentile time for this query in milliseconds"
         };
 
         static final OpenType<?>[] FIELD_TYPES = new OpenType[] {
@@ -322,9 +455,17 @@ public class SlowQueryReport extends AbstractQueryReport  {
             SimpleType.LONG,
             SimpleType.INTEGER,
             SimpleType.LONG,
+            SimpleType.LONG,
+            SimpleType.LONG,
+            SimpleType.LONG,
             SimpleType.LONG
         };
 
+        static final String CSV_HEADER =
+            "query,nrOfInvocations,failures,minInvocationTime,maxInvocationTime," +
+            "totalInvocationTime,p50InvocationTime,p99InvocationTime,p999InvocationTime," +
+            "prepareCount,prepareTime,lastInvocation";
+
         private final String query;
         private volatile int nrOfInvocations;
         private volatile long maxInvocationTime = Long.MIN_VALUE;
@@ -336,6 +477,7 @@ public class SlowQueryReport extends AbstractQueryReport  {
         private volatile int prepareCount;
         private volatile long prepareTime;
         private volatile long lastInvocation = 0;
+        private final LatencyHistogram histogram = new LatencyHistogram();
 
         public static String[] getFieldNames() {
             return FIELD_NAMES;
@@ -376,6 +518,12 @@ public class SlowQueryReport extends AbstractQueryReport  {
             buf.append(prepareCount);
             buf.append(", prepareTime:");
             buf.append(prepareTime);
+            buf.append(", p50InvocationTime:");
+            buf.append(getPercentileInvocationTime(50.0));
+            buf.append(", p99InvocationTime:");
+            buf.append(getPercentileInvocationTime(99.0));
+            buf.append(", p999InvocationTime:");
+            buf.append(getPercentileInvocationTime(99.9));
             buf.append("]");
             return buf.toString();
         }
@@ -392,11 +540,35 @@ public class SlowQueryReport extends AbstractQueryReport  {
                     Long.valueOf(failures),
                     Integer.valueOf(prepareCount),
                     Long.valueOf(prepareTime),
-                    Long.valueOf(lastInvocation)
+                    Long.valueOf(lastInvocation),
+                    Long.valueOf(getPercentileInvocationTime(50.0)),
+                    Long.valueOf(getPercentileInvocationTime(99.0)),
+                    Long.valueOf(getPercentileInvocationTime(99.9))
             };
             return new CompositeDataSupport(type,FIELD_NAMES,values);
         }
 
+        /**
+         * Appends the stats as a CSV line matching {@link #CSV_HEADER}.
+         * @param buf the buffer to append to
+         */
+        void appendCsv(StringBuilder buf) {
+            buf.append('"');
+            buf.append(query.replace("\"", "\"\""));
+            buf.append('"');
+            buf.append(',').append(nrOfInvocations);
+            buf.append(',').append(failures);
+            buf.append(',').append(nrOfInvocations > 0 ? minInvocationTime : 0);
+            buf.append(',').append(nrOfInvocations > 0 ? maxInvocationTime : 0);
+            buf.append(',').append(totalInvocationTime);
+            buf.append(',').append(getPercentileInvocationTime(50.0));
+            buf.append(',').append(getPercentileInvocationTime(99.0));
+            buf.append(',').append(getPercentileInvocationTime(99.9));
+            buf.append(',').append(prepareCount);
+            buf.append(',').append(prepareTime);
+            buf.append(',').append(lastInvocation);
+        }
+
         public QueryStats(String query) {
             this.query = query;
         }
@@ -420,6 +592,7 @@ public class SlowQueryReport extends AbstractQueryReport  {
             nrOfInvocations++;
             totalInvocationTime+=invocationTime;
             lastInvocation = now;
+            histogram.record(invocationTime);
         }
 
         public void failure(long invocationTime, long now) {
@@ -456,6 +629,15 @@ public class SlowQueryReport extends AbstractQueryReport  {
             return totalInvocationTime;
         }
 
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the invocation time in milliseconds at the given percentile,
+         *         accurate to within 1/8th of the value
+         */
+        public long getPercentileInvocationTime(double percentile) {
+            return histogram.getValueAtPercentile(percentile);
+        }
+
         @Override
         public int hashCode() {
             return query.hashCode();
@@ -243,6 +243,15 @@ public class SlowQueryReportJmx extends SlowQueryReport implements NotificationE
         return result;
     }
 
+    /**
+     * JMX operation - returns all the queries we have collected.
+     * @return - the slow query report in CSV format, one line per query
+     */
+    @Override
+    public String getSlowQueriesCsv() {
+        return getPoolStatsCsv(poolName);
+    }
+
     protected void deregisterJmx() {
         try {
             if (mbeans.remove(poolName)!=null) {
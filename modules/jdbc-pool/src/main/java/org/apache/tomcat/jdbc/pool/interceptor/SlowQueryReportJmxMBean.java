@@ -20,4 +20,5 @@ import javax.management.openmbean.OpenDataException;
 
 public interface SlowQueryReportJmxMBean {
     public CompositeData[] getSlowQueriesCD() throws OpenDataException;
+    public String getSlowQueriesCsv();
 }
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.jdbc.test;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.jdbc.pool.interceptor.FrequencySketch;
+import org.apache.tomcat.jdbc.pool.interceptor.LatencyHistogram;
+import org.apache.tomcat.jdbc.pool.interceptor.SlowQueryReport;
+import org.apache.tomcat.jdbc.pool.interceptor.SlowQueryReport.QueryStats;
+
+public class TestSlowQueryHistogram {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99.0));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 8; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(8, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(0.0));
+        Assert.assertEquals(3, histogram.getValueAtPercentile(50.0));
+        Assert.assertEquals(7, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void testPercentilePrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        assertWithinPrecision(5000, histogram.getValueAtPercentile(50.0));
+        assertWithinPrecision(9900, histogram.getValueAtPercentile(99.0));
+        assertWithinPrecision(9990, histogram.getValueAtPercentile(99.9));
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50.0));
+        Assert.assertTrue(histogram.getValueAtPercentile(100.0) > 0);
+    }
+
+    @Test
+    public void testQueryStatsPercentiles() {
+        QueryStats qs = new QueryStats("select 1");
+        for (int i = 0; i < 999; i++) {
+            qs.add(10, i);
+        }
+        qs.add(5000, 1000);
+        assertWithinPrecision(10, qs.getPercentileInvocationTime(50.0));
+        assertWithinPrecision(10, qs.getPercentileInvocationTime(99.0));
+        assertWithinPrecision(5000, qs.getPercentileInvocationTime(100.0));
+    }
+
+    @Test
+    public void testSketch() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("hot");
+        }
+        sketch.increment("cold");
+        Assert.assertTrue(sketch.frequency("hot") >= 10);
+        Assert.assertTrue(sketch.frequency("cold") >= 1);
+        Assert.assertTrue(sketch.frequency("hot") > sketch.frequency("cold"));
+    }
+
+    @Test
+    public void testSketchAging() {
+        FrequencySketch sketch = new FrequencySketch(1);
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment("hot");
+        }
+        // The counters are halved periodically
+        Assert.assertTrue(sketch.frequency("hot") < 1000);
+    }
+
+    @Test
+    public void testFrequentQueriesAreNotEvicted() {
+        TesterSlowQueryReport report = new TesterSlowQueryReport(10);
+        for (int i = 0; i < 1000; i++) {
+            report.record("hot" + (i % 10));
+            report.record("cold" + i);
+        }
+        Assert.assertEquals(10, report.getQueries().size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(report.getQueries().get("hot" + i));
+        }
+    }
+
+    @Test
+    public void testRepeatedQueryIsAdmitted() {
+        TesterSlowQueryReport report = new TesterSlowQueryReport(10);
+        for (int i = 0; i < 10; i++) {
+            report.record("q" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            report.record("new");
+        }
+        Assert.assertEquals(10, report.getQueries().size());
+        Assert.assertNotNull(report.getQueries().get("new"));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        Assert.assertTrue("Expected [" + expected + "] but was [" + actual + "]",
+                actual >= expected && actual <= expected + expected / 8);
+    }
+
+    private static class TesterSlowQueryReport extends SlowQueryReport {
+
+        public TesterSlowQueryReport(int maxQueries) {
+            setMaxQueries(maxQueries);
+            queries = new ConcurrentHashMap<>();
+            sketch = new FrequencySketch(maxQueries);
+        }
+
+        public void record(String sql) {
+            QueryStats qs = getQueryStats(sql);
+            if (qs != null) {
+                qs.add(1, System.currentTimeMillis());
+            }
+        }
+
+        public ConcurrentHashMap<String,QueryStats> getQueries() {
+            return queries;
+        }
+    }
+}
@@ -274,6 +274,41 @@ public class TestBeanELResolver {
         resolver.setValue(context, new TesterBean(BEAN_NAME), PROPERTY01_NAME, PROPERTY_VALUE);
     }
 
+    /**
+     * Tests that a value of the wrong type is reported as an illegal argument
+     * rather than as an exception thrown by the setter.
+     */
+    @Test
+    public void testSetValue08() {
+        BeanELResolver resolver = new BeanELResolver();
+        ELContext context = new StandardELContext(ELManager.getExpressionFactory());
+
+        try {
+            resolver.setValue(context, new TesterBean(BEAN_NAME), PROPERTY03_NAME,
+                    Integer.valueOf(1));
+            Assert.fail();
+        } catch (ELException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * Tests that an exception thrown by the setter is reported as such.
+     */
+    @Test
+    public void testSetValue09() {
+        BeanELResolver resolver = new BeanELResolver();
+        ELContext context = new StandardELContext(ELManager.getExpressionFactory());
+
+        try {
+            resolver.setValue(context, new ThrowingBean(), "value", "a");
+            Assert.fail();
+        } catch (ELException e) {
+            Assert.assertTrue(e.getCause() instanceof ClassCastException);
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(ThrowingBean.class.getName()));
+        }
+    }
+
     /**
      * Tests that a null context results in an NPE as per EL Javadoc.
      */
@@ -938,6 +973,34 @@ public class TestBeanELResolver {
         Assert.assertEquals(BEAN_NAME, result);
     }
 
+    /**
+     * Tests that an exception thrown by the method is reported as the cause.
+     */
+    @Test
+    public void testInvoke07() {
+        BeanELResolver resolver = new BeanELResolver();
+        ELContext context = new StandardELContext(ELManager.getExpressionFactory());
+
+        try {
+            resolver.invoke(context, new ThrowingBean(), "setValue",
+                    new Class<?>[] { Object.class }, new Object[] { "a" });
+            Assert.fail();
+        } catch (ELException e) {
+            Assert.assertTrue(e.getCause() instanceof ClassCastException);
+        }
+    }
+
+    public static class ThrowingBean {
+
+        public Object getValue() {
+            return null;
+        }
+
+        public void setValue(@SuppressWarnings("unused") Object value) {
+            throw new ClassCastException();
+        }
+    }
+
     private static class Bean {
 
         @SuppressWarnings("unused")
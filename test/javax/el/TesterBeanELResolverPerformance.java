@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package javax.el;
+
+import org.junit.Test;
+
+/*
+ * Measures the cost of reading and writing bean properties and invoking bean
+ * methods via the BeanELResolver. Run with and without a SecurityManager to
+ * compare the MethodHandle based accessors with the reflection fallback.
+ */
+public class TesterBeanELResolverPerformance {
+
+    private static final int ITERATIONS = 10000000;
+
+    @Test
+    public void testGetValue() {
+        BeanELResolver resolver = new BeanELResolver();
+        ELContext context = new TesterELContext();
+        TesterBean bean = new TesterBean("name");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            resolver.getValue(context, bean, "name");
+        }
+        long end = System.nanoTime();
+        System.out.println("getValue: " + (end - start) / 1000000 + "ms");
+    }
+
+    @Test
+    public void testSetValue() {
+        BeanELResolver resolver = new BeanELResolver();
+        ELContext context = new TesterELContext();
+        TesterBean bean = new TesterBean("name");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            resolver.setValue(context, bean, "name", "value");
+        }
+        long end = System.nanoTime();
+        System.out.println("setValue: " + (end - start) / 1000000 + "ms");
+    }
+
+    @Test
+    public void testInvoke() {
+        BeanELResolver resolver = new BeanELResolver();
+        ELContext context = new TesterELContext();
+        TesterBean bean = new TesterBean("name");
+        Class<?>[] paramTypes = new Class<?>[] { String.class };
+        Object[] params = new Object[] { "value" };
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            resolver.invoke(context, bean, "setName", paramTypes, params);
+        }
+        long end = System.nanoTime();
+        System.out.println("invoke: " + (end - start) / 1000000 + "ms");
+    }
+}
@@ -17,16 +17,23 @@
 package org.apache.catalina.loader;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.catalina.WebResource;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.catalina.webresources.StandardRoot;
 
 public class TestWebappClassLoader extends TomcatBaseTest {
 
@@ -61,6 +68,145 @@ public class TestWebappClassLoader extends TomcatBaseTest {
         }
     }
 
+    @Test
+    public void testClassResourceIndex() throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "classResourceIndex");
+        File libDir = new File(appDir, "WEB-INF/lib");
+        Assert.assertTrue(libDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+        createJar(new File(libDir, "a.jar"), "shared.txt", "a-only.txt");
+        createJar(new File(libDir, "b.jar"), "shared.txt", "b-only.txt", "pkg/", "pkg/b.txt");
+
+        Tomcat tomcat = getTomcatInstance();
+        StandardContext ctx =
+                (StandardContext) tomcat.addContext("", appDir.getAbsolutePath());
+        tomcat.start();
+
+        StandardRoot root = (StandardRoot) ctx.getResources();
+        root.setCachingAllowed(false);
+
+        String[] paths = new String[] { "/shared.txt", "/a-only.txt", "/b-only.txt",
+                "/pkg", "/pkg/", "/pkg/b.txt", "/missing.txt", "/pkg/missing.txt" };
+
+        String[] expected = new String[paths.length];
+        int[] expectedCounts = new int[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            expected[i] = toString(root.getClassLoaderResource(paths[i]));
+            expectedCounts[i] = countExisting(root.getClassLoaderResources(paths[i]));
+        }
+
+        root.setIndexClassResources(true);
+        for (int i = 0; i < paths.length; i++) {
+            Assert.assertEquals(paths[i], expected[i],
+                    toString(root.getClassLoaderResource(paths[i])));
+            Assert.assertEquals(paths[i], expectedCounts[i],
+                    countExisting(root.getClassLoaderResources(paths[i])));
+        }
+        Assert.assertEquals(2, root.getClassResourceIndexJarCount());
+
+        ClassLoader cl = ctx.getLoader().getClassLoader();
+        Assert.assertNotNull(cl.getResource("b-only.txt"));
+        Assert.assertNull(cl.getResource("missing.txt"));
+    }
+
+
+    @Test
+    public void testShareableJars() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        StandardContext ctx1 = addShareableJarsContext(tomcat, "app1");
+        StandardContext ctx2 = addShareableJarsContext(tomcat, "app2");
+        tomcat.start();
+
+        ClassLoader cl1 = ctx1.getLoader().getClassLoader();
+        ClassLoader cl2 = ctx2.getLoader().getClassLoader();
+        Assert.assertTrue(cl1.getParent() instanceof SharedJarClassLoader);
+        Assert.assertSame(cl1.getParent(), cl2.getParent());
+
+        // Served by the shared class loader
+        URL shared1 = cl1.getResource("shared.txt");
+        Assert.assertEquals(shared1, cl2.getResource("shared.txt"));
+        Assert.assertTrue(shared1.toString().contains("sharedJars"));
+        Assert.assertEquals(1, Collections.list(cl1.getResources("shared.txt")).size());
+
+        // Not shareable so served by each web application
+        URL local1 = cl1.getResource("local.txt");
+        URL local2 = cl2.getResource("local.txt");
+        Assert.assertTrue(local1.toString().contains("app1"));
+        Assert.assertTrue(local2.toString().contains("app2"));
+
+        // Stopping one web application must not affect the other
+        SharedJarClassLoader sharedClassLoader = (SharedJarClassLoader) cl1.getParent();
+        ctx1.stop();
+        Assert.assertNotNull(sharedClassLoader.getResource("shared.txt"));
+        Assert.assertEquals(shared1, cl2.getResource("shared.txt"));
+
+        // The copy is deleted once the last web application using it stops
+        File sharedDir = new File(getTemporaryDirectory(), "work/sharedJars");
+        Assert.assertEquals(1, sharedDir.list().length);
+        ctx2.stop();
+        Assert.assertEquals(0, sharedDir.list().length);
+
+        // Copies left behind by an unclean stop are removed on the next start
+        File orphan = new File(sharedDir, "orphan.jar");
+        Assert.assertTrue(orphan.createNewFile());
+        ctx1.start();
+        Assert.assertFalse(orphan.exists());
+        Assert.assertEquals(1, sharedDir.list().length);
+    }
+
+
+    private StandardContext addShareableJarsContext(Tomcat tomcat, String name)
+            throws IOException {
+        File appDir = new File(getTemporaryDirectory(), name);
+        File libDir = new File(appDir, "WEB-INF/lib");
+        Assert.assertTrue(libDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+        createJar(new File(libDir, "shared-lib.jar"), "shared.txt");
+        // Same name and size but different content for each application
+        createJar(new File(libDir, "local-lib.jar"), "local.txt", name + ".txt");
+
+        StandardContext ctx =
+                (StandardContext) tomcat.addContext("/" + name, appDir.getAbsolutePath());
+        WebappLoader loader = new WebappLoader(ctx.getParentClassLoader());
+        loader.setShareableJars("shared-*.jar");
+        ctx.setLoader(loader);
+        return ctx;
+    }
+
+
+    private static void createJar(File file, String... entryNames) throws IOException {
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(file))) {
+            for (String entryName : entryNames) {
+                jos.putNextEntry(new JarEntry(entryName));
+                if (!entryName.endsWith("/")) {
+                    jos.write((file.getName() + ":" + entryName).getBytes(
+                            StandardCharsets.UTF_8));
+                }
+                jos.closeEntry();
+            }
+        }
+    }
+
+
+    private static String toString(WebResource resource) {
+        if (!resource.exists()) {
+            return null;
+        }
+        return resource.getURL().toString();
+    }
+
+
+    private static int countExisting(WebResource[] resources) {
+        int result = 0;
+        for (WebResource resource : resources) {
+            if (resource.exists()) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+
     @Test
     public void testFilter() throws IOException {
 
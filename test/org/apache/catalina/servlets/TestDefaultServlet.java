@@ -16,19 +16,26 @@
  */
 package org.apache.catalina.servlets;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
+import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Assert;
@@ -40,6 +47,7 @@ import org.apache.catalina.Wrapper;
 import org.apache.catalina.startup.SimpleHttpClient;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.catalina.util.IOTools;
 import org.apache.tomcat.util.buf.ByteChunk;
 import org.apache.tomcat.websocket.server.WsContextListener;
 
@@ -435,6 +443,130 @@ public class TestDefaultServlet extends TomcatBaseTest {
 
     }
 
+    /*
+     * Verify compressed variants are created for frequently requested
+     * resources, both in memory and on disk.
+     */
+    @Test
+    public void testCompressionCache() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        File appDir = new File(getTemporaryDirectory(), "compressionCache");
+        Assert.assertTrue(appDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+        StringBuilder css = new StringBuilder();
+        while (css.length() < 8 * 1024) {
+            css.append("body { margin: 0; padding: 0; }\n");
+        }
+        writeFile(new File(appDir, "small.css"), css.toString());
+        while (css.length() < 1024 * 1024) {
+            css.append(css.length()).append(" { margin: 0; }\n");
+        }
+        writeFile(new File(appDir, "large.css"), css.toString());
+
+        Context ctxt = tomcat.addContext("", appDir.getAbsolutePath());
+        Wrapper defaultServlet = Tomcat.addServlet(ctxt, "default",
+                "org.apache.catalina.servlets.DefaultServlet");
+        defaultServlet.addInitParameter("compressionCache", "true");
+        ctxt.addServletMappingDecoded("/", "default");
+        ctxt.addMimeMapping("css", "text/css");
+
+        tomcat.start();
+
+        doTestCompressionCache("/small.css", 8 * 1024);
+        doTestCompressionCache("/large.css", 1024 * 1024);
+
+        File spillDir = new File((File) ctxt.getServletContext().getAttribute(
+                ServletContext.TEMPDIR), "compressionCache-default");
+        String[] spilled = spillDir.list();
+        Assert.assertNotNull(spilled);
+        Assert.assertEquals(1, spilled.length);
+
+        // A variant that has been removed from disk is no longer used
+        Assert.assertTrue(new File(spillDir, spilled[0]).delete());
+        Map<String,List<String>> reqHeaders = new HashMap<>();
+        reqHeaders.put("Accept-Encoding", Collections.singletonList("gzip"));
+        Map<String,List<String>> resHeaders = new HashMap<>();
+        ByteChunk out = new ByteChunk();
+        int rc = getUrl("http://localhost:" + getPort() + "/large.css", out,
+                reqHeaders, resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertNull(resHeaders.get("Content-Encoding"));
+        Assert.assertEquals(css.length(), out.getLength());
+
+        tomcat.stop();
+        Assert.assertEquals(0, spillDir.list().length);
+    }
+
+    private void doTestCompressionCache(String path, int minLength) throws Exception {
+        String url = "http://localhost:" + getPort() + path;
+        Map<String,List<String>> reqHeaders = new HashMap<>();
+        reqHeaders.put("Accept-Encoding", Collections.singletonList("gzip"));
+        Map<String,List<String>> resHeaders = new HashMap<>();
+        ByteChunk out = new ByteChunk();
+
+        // The first request is served uncompressed
+        out.recycle();
+        int rc = getUrl(url, out, reqHeaders, resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertNull(resHeaders.get("Content-Encoding"));
+        Assert.assertEquals("accept-encoding", resHeaders.get("vary").get(0));
+        byte[] original = Arrays.copyOfRange(out.getBuffer(), 0, out.getLength());
+        Assert.assertTrue(original.length >= minLength);
+
+        // The variant is created in the background after the second request
+        int count = 0;
+        while (count < 100) {
+            resHeaders.clear();
+            out.recycle();
+            rc = getUrl(url, out, reqHeaders, resHeaders);
+            Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+            if (resHeaders.get("Content-Encoding") != null) {
+                break;
+            }
+            Thread.sleep(50);
+            count++;
+        }
+        Assert.assertEquals("gzip", resHeaders.get("Content-Encoding").get(0));
+        Assert.assertEquals("accept-encoding", resHeaders.get("vary").get(0));
+        byte[] compressed = Arrays.copyOfRange(out.getBuffer(), 0, out.getLength());
+        Assert.assertTrue(compressed.length < original.length);
+        Assert.assertEquals(Integer.toString(compressed.length),
+                resHeaders.get("Content-Length").get(0));
+        try (GZIPInputStream gzis = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            IOTools.flow(gzis, decompressed);
+            Assert.assertArrayEquals(original, decompressed.toByteArray());
+        }
+
+        // Ranges apply to the compressed representation
+        reqHeaders.put("Range", Collections.singletonList("bytes=0-9"));
+        resHeaders.clear();
+        out.recycle();
+        rc = getUrl(url, out, reqHeaders, resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, rc);
+        Assert.assertEquals("gzip", resHeaders.get("Content-Encoding").get(0));
+        Assert.assertEquals("bytes 0-9/" + compressed.length,
+                resHeaders.get("Content-Range").get(0));
+        Assert.assertArrayEquals(Arrays.copyOfRange(compressed, 0, 10),
+                Arrays.copyOfRange(out.getBuffer(), 0, out.getLength()));
+
+        // Clients that do not accept gzip get the original
+        resHeaders.clear();
+        out.recycle();
+        rc = getUrl(url, out, null, resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertNull(resHeaders.get("Content-Encoding"));
+        Assert.assertEquals(original.length, out.getLength());
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.US_ASCII)) {
+            w.write(content);
+        }
+    }
+
     /*
      * Test https://bz.apache.org/bugzilla/show_bug.cgi?id=50413 Serving a
      * custom error page
@@ -17,8 +17,12 @@
 package org.apache.catalina.startup;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletContainerInitializer;
@@ -154,6 +158,53 @@ public class TestContextConfig extends TomcatBaseTest {
         assertPageContains("/test/TesterServlet2", "OK");
     }
 
+    @Test
+    public void testAnnotationScanCaching() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        File appDir = new File(getTemporaryDirectory(), "annotationScanCaching");
+        File libDir = new File(appDir, "WEB-INF/lib");
+        Assert.assertTrue(libDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        String entryName = "org/apache/catalina/startup/ParamServlet.class";
+        try (JarOutputStream jos = new JarOutputStream(
+                new FileOutputStream(new File(libDir, "annotated.jar")));
+                InputStream is = getClass().getClassLoader().getResourceAsStream(entryName)) {
+            jos.putNextEntry(new JarEntry(entryName));
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = is.read(buf)) > 0) {
+                jos.write(buf, 0, n);
+            }
+            jos.closeEntry();
+        }
+
+        StandardContext ctxt = (StandardContext) tomcat.addContext(null,
+                "/test", appDir.getAbsolutePath());
+        ctxt.setDefaultWebXml(new File("conf/web.xml").getAbsolutePath());
+        ctxt.addLifecycleListener(new ContextConfig());
+        ctxt.setParallelAnnotationScanning(true);
+        ctxt.setAnnotationScanCaching(true);
+
+        tomcat.start();
+
+        assertPageContains("/test/annotation/overwrite", "Hello World!");
+
+        File cache = new File(ctxt.getWorkPath(), AnnotationScanCache.FILE_NAME);
+        Assert.assertTrue(cache.isFile());
+        // Make sure any re-write of the cache would be detected
+        long lastModified = cache.lastModified() - 60000;
+        Assert.assertTrue(cache.setLastModified(lastModified));
+
+        // The JAR has not changed so the cached index is used and the cache is
+        // not written again
+        ctxt.reload();
+
+        assertPageContains("/test/annotation/overwrite", "Hello World!");
+        Assert.assertEquals(lastModified, cache.lastModified());
+    }
+
     private static class CustomDefaultServletSCI
             implements ServletContainerInitializer {
 
@@ -21,10 +21,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.catalina.Container;
+import org.apache.catalina.ContainerEvent;
+import org.apache.catalina.ContainerListener;
 import org.apache.catalina.Context;
 import org.apache.catalina.Host;
 import org.apache.catalina.Lifecycle;
@@ -1884,6 +1890,101 @@ public class TestHostConfigAutomaticDeployment extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testPhasedDeployment() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        StandardHost host = (StandardHost) tomcat.getHost();
+        host.setPhasedDeployment(true);
+
+        File dirA = new File(host.getAppBaseFile(), "phasedA");
+        recursiveCopy(DIR_SOURCE.toPath(), dirA.toPath());
+        File dirB = new File(host.getAppBaseFile(), "phasedB");
+        recursiveCopy(DIR_SOURCE.toPath(), dirB.toPath());
+        File xmlB = new File(dirB, Constants.ApplicationContextXml);
+        Assert.assertTrue(xmlB.getParentFile().isDirectory() || xmlB.getParentFile().mkdirs());
+        // Both paths and base names are accepted
+        Files.write(xmlB.toPath(),
+                "<Context startAfter=\"/phasedA, phasedC\" />".getBytes(StandardCharsets.ISO_8859_1));
+        File warC = new File(host.getAppBaseFile(), "phasedC.war");
+        Files.copy(WAR_SOURCE.toPath(), warC.toPath());
+
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        host.addContainerListener(new ContainerListener() {
+            @Override
+            public void containerEvent(ContainerEvent event) {
+                if (Container.ADD_CHILD_EVENT.equals(event.getType())) {
+                    started.add(((Context) event.getData()).getPath());
+                }
+            }
+        });
+
+        tomcat.start();
+        host.backgroundProcess();
+
+        Assert.assertEquals(3, started.size());
+        for (String path : started) {
+            Assert.assertEquals(LifecycleState.STARTED, host.findChild(path).getState());
+        }
+        Assert.assertEquals("/phasedB", started.get(2));
+        Assert.assertEquals("/phasedA, phasedC",
+                ((StandardContext) host.findChild("/phasedB")).getStartAfter());
+
+        // Expanded by the expand phase
+        Assert.assertTrue(new File(host.getAppBaseFile(), "phasedC").isDirectory());
+
+        HostConfig hostConfig = null;
+        for (LifecycleListener listener : host.findLifecycleListeners()) {
+            if (listener instanceof HostConfig) {
+                hostConfig = (HostConfig) listener;
+            }
+        }
+        Assert.assertNotNull(hostConfig);
+        String[] timeline = hostConfig.getDeploymentTimeline();
+        Assert.assertEquals(6, timeline.length);
+        Assert.assertTrue(timeline[0].startsWith("phase=scan,"));
+        Assert.assertTrue(timeline[1].startsWith("phase=expand,"));
+        Assert.assertTrue(timeline[2].startsWith("phase=start,"));
+    }
+
+
+    @Test
+    public void testPhasedDeploymentFailedDependency() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        StandardHost host = (StandardHost) tomcat.getHost();
+        host.setPhasedDeployment(true);
+        for (LifecycleListener listener : host.findLifecycleListeners()) {
+            if (listener instanceof HostConfig) {
+                host.removeLifecycleListener(listener);
+            }
+        }
+        host.addLifecycleListener(new HostConfig() {
+            @Override
+            protected void deployDirectory(ContextName cn, File dir) {
+                if ("/phasedA".equals(cn.getPath())) {
+                    throw new IllegalStateException();
+                }
+                super.deployDirectory(cn, dir);
+            }
+        });
+
+        File dirA = new File(host.getAppBaseFile(), "phasedA");
+        recursiveCopy(DIR_SOURCE.toPath(), dirA.toPath());
+        File dirB = new File(host.getAppBaseFile(), "phasedB");
+        recursiveCopy(DIR_SOURCE.toPath(), dirB.toPath());
+        File xmlB = new File(dirB, Constants.ApplicationContextXml);
+        Assert.assertTrue(xmlB.getParentFile().isDirectory() || xmlB.getParentFile().mkdirs());
+        Files.write(xmlB.toPath(),
+                "<Context startAfter=\"/phasedA\" />".getBytes(StandardCharsets.ISO_8859_1));
+
+        tomcat.start();
+        host.backgroundProcess();
+
+        // The failure to deploy phasedA must not prevent phasedB starting
+        Assert.assertNull(host.findChild("/phasedA"));
+        Assert.assertEquals(LifecycleState.STARTED, host.findChild("/phasedB").getState());
+    }
+
+
     public static class TesterContext extends StandardContext {
         // No functional change
     }
@@ -0,0 +1,144 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.coyote.http11.filters.DeflateContentEncoder;
+import org.apache.coyote.http11.filters.GzipContentEncoder;
+
+public class TestCompressionConfig {
+
+    @Test
+    public void testNegotiation() {
+        CompressionConfig config = createConfig();
+        config.setCompression("on");
+        config.setCompressionEncodings("gzip,deflate");
+
+        // No Accept-Encoding header
+        doTestNegotiation(config, null, null);
+        // Server preference is used to break ties
+        doTestNegotiation(config, "deflate, gzip", "gzip");
+        doTestNegotiation(config, "deflate;q=1, gzip;q=0.5", "deflate");
+        doTestNegotiation(config, "x-gzip", "gzip");
+        doTestNegotiation(config, "*", "gzip");
+        doTestNegotiation(config, "gzip;q=0, *", "deflate");
+        doTestNegotiation(config, "gzip;q=0, deflate;q=0", null);
+        doTestNegotiation(config, "br", null);
+        doTestNegotiation(config, "identity", null);
+    }
+
+
+    private void doTestNegotiation(CompressionConfig config, String acceptEncoding,
+            String expected) {
+        Request request = new Request();
+        Response response = new Response();
+        response.setContentType("text/html");
+        if (acceptEncoding != null) {
+            request.getMimeHeaders().addValue("accept-encoding").setString(acceptEncoding);
+        }
+
+        ContentEncoder encoder = config.getContentEncoder(request, response);
+        if (expected == null) {
+            Assert.assertNull(encoder);
+            Assert.assertNull(response.getMimeHeaders().getHeader("Content-Encoding"));
+        } else {
+            Assert.assertEquals(expected, encoder.getName());
+            Assert.assertEquals(expected, response.getMimeHeaders().getHeader("Content-Encoding"));
+        }
+        Assert.assertEquals("accept-encoding", response.getMimeHeaders().getHeader("Vary"));
+    }
+
+
+    @Test
+    public void testAlreadyEncoded() {
+        CompressionConfig config = createConfig();
+        config.setCompression("force");
+        Request request = new Request();
+        request.getMimeHeaders().addValue("accept-encoding").setString("gzip");
+        Response response = new Response();
+        response.getMimeHeaders().addValue("Content-Encoding").setString("zstd");
+
+        Assert.assertNull(config.getContentEncoder(request, response));
+    }
+
+
+    @Test
+    public void testLevels() {
+        CompressionConfig config = createConfig();
+        config.setCompressionEncodings("gzip,deflate");
+        config.setCompressionLevels("gzip=6, gzip:100000=4, gzip:1000000=1, deflate:5000=9");
+        ContentEncoder gzip = config.getContentEncoders()[0];
+        ContentEncoder deflate = config.getContentEncoders()[1];
+
+        Assert.assertEquals(6, config.getLevel(gzip, -1));
+        Assert.assertEquals(6, config.getLevel(gzip, 99999));
+        Assert.assertEquals(4, config.getLevel(gzip, 100000));
+        Assert.assertEquals(1, config.getLevel(gzip, 5000000));
+        Assert.assertEquals(ContentEncoder.DEFAULT_LEVEL, config.getLevel(deflate, -1));
+        Assert.assertEquals(ContentEncoder.DEFAULT_LEVEL, config.getLevel(deflate, 4999));
+        Assert.assertEquals(9, config.getLevel(deflate, 5000));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnknownEncoder() {
+        CompressionConfig config = createConfig();
+        config.setCompressionEncodings("gzip,org.example.DoesNotExist");
+    }
+
+
+    @Test
+    public void testCopy() {
+        CompressionConfig config = createConfig();
+        config.setCompression("on");
+        config.setCompressionEncodings("gzip,deflate");
+
+        CompressionConfig copy = new CompressionConfig(config);
+        Assert.assertEquals("on", copy.getCompression());
+        Assert.assertSame(config.getContentEncoders()[1], copy.getContentEncoders()[1]);
+
+        // Changes to the copy do not affect the original
+        copy.setCompression("off");
+        copy.setCompressionEncodings("deflate");
+        Assert.assertEquals("on", config.getCompression());
+        Assert.assertEquals(2, config.getContentEncoders().length);
+        Assert.assertEquals("gzip,deflate", config.getCompressionEncodings());
+    }
+
+
+    @Test
+    public void testEncodersReplacedOnReconfiguration() {
+        CompressionConfig config = createConfig();
+        ContentEncoder[] encoders = config.getContentEncoders();
+        Assert.assertEquals(1, encoders.length);
+        Assert.assertEquals("gzip", encoders[0].getName());
+
+        config.setCompressionEncodings("deflate");
+        Assert.assertNotSame(encoders, config.getContentEncoders());
+        Assert.assertEquals("deflate", config.getContentEncoders()[0].getName());
+    }
+
+
+    private static CompressionConfig createConfig() {
+        CompressionConfig config = new CompressionConfig();
+        config.addContentEncoder(new GzipContentEncoder());
+        config.addContentEncoder(new DeflateContentEncoder());
+        return config;
+    }
+}
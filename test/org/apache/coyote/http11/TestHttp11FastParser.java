@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.coyote.Request;
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.HttpParser;
+
+public class TestHttp11FastParser {
+
+    private final Http11FastParser parser = new Http11FastParser(new HttpParser(null, null));
+
+
+    @Test
+    public void testIndexOf() {
+        byte[] bytes = new byte[40];
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+            for (int pos = 0; pos < bytes.length; pos++) {
+                for (int i = 0; i < bytes.length; i++) {
+                    // Includes bytes that differ from the target only in the
+                    // high bit or the lowest bit
+                    bytes[i] = (byte) (i % 2 == 0 ? 0xBA : 0x3B);
+                }
+                bytes[pos] = ':';
+                long pattern = Http11FastParser.pattern((byte) ':');
+                for (int start = 0; start <= pos; start++) {
+                    Assert.assertEquals(pos,
+                            Http11FastParser.indexOf(buffer, start, bytes.length, pattern));
+                }
+                Assert.assertEquals(-1,
+                        Http11FastParser.indexOf(buffer, pos + 1, bytes.length, pattern));
+                Assert.assertEquals(-1, Http11FastParser.indexOf(buffer, 0, pos, pattern));
+            }
+        }
+    }
+
+
+    @Test
+    public void testRequestLine() {
+        Request request = new Request();
+        ByteBuffer buffer = wrap("GET /foo/bar?a=b&c HTTP/1.1\r\nHost: localhost\r\n");
+        Assert.assertTrue(parser.parseRequestLine(buffer, request));
+        Assert.assertEquals("GET", request.method().toString());
+        Assert.assertEquals("/foo/bar", request.requestURI().toString());
+        Assert.assertEquals("a=b&c", request.queryString().toString());
+        Assert.assertEquals("HTTP/1.1", request.protocol().toString());
+        Assert.assertEquals('H', buffer.get(buffer.position()));
+    }
+
+
+    @Test
+    public void testRequestLineFallback() {
+        doTestRequestLineFallback("GET /foo HTTP/1.1");
+        doTestRequestLineFallback("GET  /foo HTTP/1.1\r\n");
+        doTestRequestLineFallback("GET /foo  HTTP/1.1\r\n");
+        doTestRequestLineFallback("GET /foo\r\n");
+        doTestRequestLineFallback("GET /f{o HTTP/1.1\r\n");
+        doTestRequestLineFallback("G(T /foo HTTP/1.1\r\n");
+        doTestRequestLineFallback("GET /foo HTTP/1.1 \r\n");
+        doTestRequestLineFallback("GET /foo\tHTTP/1.1\r\n");
+    }
+
+
+    private void doTestRequestLineFallback(String input) {
+        Request request = new Request();
+        ByteBuffer buffer = wrap(input);
+        Assert.assertFalse(input, parser.parseRequestLine(buffer, request));
+        Assert.assertEquals(0, buffer.position());
+        Assert.assertTrue(request.method().isNull());
+        Assert.assertTrue(request.requestURI().isNull());
+    }
+
+
+    @Test
+    public void testHeaders() {
+        MimeHeaders headers = new MimeHeaders();
+        ByteBuffer buffer = wrap("Host: localhost\r\nContent-Length:\t 10 \r\nX-Empty:\r\n\r\n");
+        Assert.assertEquals(Http11FastParser.HEADER, parser.parseHeader(buffer, headers));
+        Assert.assertEquals(Http11FastParser.HEADER, parser.parseHeader(buffer, headers));
+        Assert.assertEquals(Http11FastParser.HEADER, parser.parseHeader(buffer, headers));
+        Assert.assertEquals(Http11FastParser.DONE, parser.parseHeader(buffer, headers));
+        Assert.assertFalse(buffer.hasRemaining());
+
+        Assert.assertEquals(3, headers.size());
+        Assert.assertEquals("content-length", headers.getName(1).toString());
+        Assert.assertEquals("localhost", headers.getHeader("host"));
+        Assert.assertEquals("10", headers.getHeader("Content-Length"));
+        Assert.assertEquals("", headers.getHeader("x-empty"));
+    }
+
+
+    @Test
+    public void testHeaderFallback() {
+        // Incomplete
+        doTestHeaderFallback("Host: localhost");
+        doTestHeaderFallback("Host: localhost\r\n");
+        doTestHeaderFallback("\r");
+        // Folded
+        doTestHeaderFallback("X-Folded: a\r\n b\r\n\r\n");
+        // Invalid
+        doTestHeaderFallback("X Space: a\r\n\r\n");
+        doTestHeaderFallback(": a\r\n\r\n");
+        doTestHeaderFallback("X-CR: a\rb\r\n\r\n");
+        doTestHeaderFallback("X-No-Colon\r\n\r\n");
+    }
+
+
+    private void doTestHeaderFallback(String input) {
+        MimeHeaders headers = new MimeHeaders();
+        ByteBuffer buffer = wrap(input);
+        Assert.assertEquals(input, Http11FastParser.FALLBACK, parser.parseHeader(buffer, headers));
+        Assert.assertEquals(0, buffer.position());
+        Assert.assertEquals(0, headers.size());
+    }
+
+
+    private static ByteBuffer wrap(String input) {
+        return ByteBuffer.wrap(input.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
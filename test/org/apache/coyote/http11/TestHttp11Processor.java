@@ -17,6 +17,7 @@
 package org.apache.coyote.http11;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -31,11 +32,14 @@ import java.net.SocketAddress;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.DispatcherType;
@@ -1519,6 +1523,81 @@ public class TestHttp11Processor extends TomcatBaseTest {
     }
 
 
+
+    @Test
+    public void testCompressionNegotiation() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("compression", "on"));
+        Assert.assertTrue(tomcat.getConnector().setProperty("compressionEncodings", "gzip,deflate"));
+        Assert.assertTrue(tomcat.getConnector().setProperty("compressionLevels", "deflate=9"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "large", new LargeTextServlet());
+        ctx.addServletMappingDecoded("/", "large");
+
+        tomcat.start();
+
+        doTestCompressionNegotiation("gzip, deflate", "gzip");
+        doTestCompressionNegotiation("gzip;q=0.5, deflate", "deflate");
+        doTestCompressionNegotiation("identity", null);
+        // Check the filters are reused correctly
+        doTestCompressionNegotiation("deflate", "deflate");
+        doTestCompressionNegotiation("gzip", "gzip");
+    }
+
+
+    private void doTestCompressionNegotiation(String acceptEncoding, String expected)
+            throws Exception {
+        ByteChunk responseBody = new ByteChunk();
+        Map<String,List<String>> reqHeaders = new HashMap<>();
+        reqHeaders.put("Accept-Encoding", Collections.singletonList(acceptEncoding));
+        Map<String,List<String>> resHeaders = new HashMap<>();
+        int rc = getUrl("http://localhost:" + getPort() + "/", responseBody,
+                reqHeaders, resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+
+        List<String> contentEncoding = resHeaders.get("Content-Encoding");
+        InputStream is = new ByteArrayInputStream(responseBody.getBytes(),
+                responseBody.getStart(), responseBody.getLength());
+        if (expected == null) {
+            Assert.assertNull(contentEncoding);
+        } else {
+            Assert.assertEquals(expected, contentEncoding.get(0));
+            if ("gzip".equals(expected)) {
+                is = new GZIPInputStream(is);
+            } else {
+                is = new InflaterInputStream(is);
+            }
+        }
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(is, StandardCharsets.UTF_8));
+        for (int i = 0; i < LargeTextServlet.LINES; i++) {
+            Assert.assertEquals(LargeTextServlet.LINE + i, reader.readLine());
+        }
+        Assert.assertNull(reader.readLine());
+    }
+
+
+    private static class LargeTextServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String LINE = "Line of compressible text ";
+        private static final int LINES = 2000;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            PrintWriter pw = resp.getWriter();
+            for (int i = 0; i < LINES; i++) {
+                pw.print(LINE + i + "\n");
+            }
+        }
+    }
+
     /**
      * Test servlet that prints out the values of
      * HttpServletRequest.getServerName() and
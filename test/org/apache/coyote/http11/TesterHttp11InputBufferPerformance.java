@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.coyote.Request;
+import org.apache.tomcat.util.http.parser.HttpParser;
+import org.apache.tomcat.util.net.ApplicationBufferHandler;
+import org.apache.tomcat.util.net.NioChannel;
+import org.apache.tomcat.util.net.NioEndpoint;
+import org.apache.tomcat.util.net.SSLSupport;
+import org.apache.tomcat.util.net.SendfileDataBase;
+import org.apache.tomcat.util.net.SendfileState;
+import org.apache.tomcat.util.net.SocketBufferHandler;
+import org.apache.tomcat.util.net.SocketWrapperBase;
+
+/**
+ * Compares the time taken to parse the request line and headers of a typical
+ * browser request, and to look up some of the headers, with and without the
+ * fast parser.
+ */
+public class TesterHttp11InputBufferPerformance {
+
+    private static final int ITERATIONS = 1000000;
+
+    private static final byte[] REQUEST = ("GET /examples/servlets/servlet/RequestHeaderExample?a=b HTTP/1.1\r\n" +
+            "Host: localhost:8080\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Upgrade-Insecure-Requests: 1\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/70.0.3538.77 Safari/537.36\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9," +
+            "image/webp,image/apng,*/*;q=0.8\r\n" +
+            "Referer: http://localhost:8080/examples/servlets/\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Accept-Language: en-GB,en-US;q=0.9,en;q=0.8\r\n" +
+            "Cookie: JSESSIONID=4C8E0B6B5D0E3A4F9B2C1D0E3A4F9B2C\r\n" +
+            "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+
+    @Test
+    public void testParse() throws Exception {
+        // Warm up
+        doTestParse(false);
+        doTestParse(true);
+
+        for (int i = 0; i < 3; i++) {
+            System.out.println("State machine: " + doTestParse(false) + "ms");
+            System.out.println("Fast parser:   " + doTestParse(true) + "ms");
+        }
+    }
+
+
+    private long doTestParse(boolean fastHeaderParsing) throws IOException {
+        Request request = new Request();
+        Http11InputBuffer inputBuffer =
+                new Http11InputBuffer(request, 8192, false, new HttpParser(null, null));
+        inputBuffer.setFastHeaderParsing(fastHeaderParsing);
+        TesterSocketWrapper wrapper = new TesterSocketWrapper();
+        inputBuffer.init(wrapper);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            wrapper.reset();
+            inputBuffer.init(wrapper);
+            Assert.assertTrue(inputBuffer.parseRequestLine(false));
+            Assert.assertTrue(inputBuffer.parseHeaders());
+            Assert.assertNotNull(request.getMimeHeaders().getValue("host"));
+            Assert.assertNull(request.getMimeHeaders().getValue("content-length"));
+            Assert.assertNull(request.getMimeHeaders().getValue("transfer-encoding"));
+            inputBuffer.recycle();
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+
+    private static class TesterSocketWrapper extends SocketWrapperBase<NioChannel> {
+
+        private boolean read = false;
+
+        TesterSocketWrapper() {
+            super(null, new NioEndpoint());
+            socketBufferHandler = new SocketBufferHandler(8192, 8192, false);
+        }
+
+        void reset() {
+            read = false;
+        }
+
+        @Override
+        public int read(boolean block, ByteBuffer to) throws IOException {
+            if (read) {
+                return 0;
+            }
+            read = true;
+            to.put(REQUEST);
+            return REQUEST.length;
+        }
+
+        @Override
+        public int read(boolean block, byte[] b, int off, int len) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isReadyForRead() throws IOException {
+            return !read;
+        }
+
+        @Override
+        public void setAppReadBufHandler(ApplicationBufferHandler handler) {
+            // NO-OP
+        }
+
+        @Override
+        public void close() throws IOException {
+            // NO-OP
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        protected void doWrite(boolean block, ByteBuffer from) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerReadInterest() {
+            // NO-OP
+        }
+
+        @Override
+        public void registerWriteInterest() {
+            // NO-OP
+        }
+
+        @Override
+        public SendfileDataBase createSendfileData(String filename, long pos, long length) {
+            return null;
+        }
+
+        @Override
+        public SendfileState processSendfile(SendfileDataBase sendfileData) {
+            return null;
+        }
+
+        @Override
+        public void doClientAuth(SSLSupport sslSupport) throws IOException {
+            // NO-OP
+        }
+
+        @Override
+        public SSLSupport getSslSupport(String clientCertProvider) {
+            return null;
+        }
+
+        @Override
+        protected void populateRemoteHost() {
+            // NO-OP
+        }
+
+        @Override
+        protected void populateRemoteAddr() {
+            // NO-OP
+        }
+
+        @Override
+        protected void populateRemotePort() {
+            // NO-OP
+        }
+
+        @Override
+        protected void populateLocalName() {
+            // NO-OP
+        }
+
+        @Override
+        protected void populateLocalAddr() {
+            // NO-OP
+        }
+
+        @Override
+        protected void populateLocalPort() {
+            // NO-OP
+        }
+    }
+}
@@ -17,13 +17,17 @@
 
 package org.apache.coyote.http11.filters;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.catalina.util.IOTools;
 import org.apache.coyote.Response;
 
 /**
@@ -83,4 +87,74 @@ public class TestGzipOutputFilter {
         // most of the data should have been flushed out
         Assert.assertTrue(dataFound.length >= (dataExpected.length - 20));
     }
+
+
+    @Test
+    public void testPooledDeflater() throws Exception {
+        DeflaterPool pool = new DeflaterPool();
+        pool.setMimeTypes("text/plain=1:huffmanOnly,text/html=9");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("Line ").append(i).append(" of the response body\n");
+        }
+        byte[] d = sb.toString().getBytes("UTF-8");
+
+        for (int i = 0; i < 3; i++) {
+            Response res = new Response();
+            res.setContentType("text/html");
+            TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+            res.setOutputBuffer(tob);
+            GzipOutputFilter gf = new GzipOutputFilter(pool);
+            tob.addFilter(gf);
+            tob.addActiveFilter(gf);
+
+            // Write via a direct buffer for one of the responses
+            ByteBuffer bb;
+            if (i == 1) {
+                bb = ByteBuffer.allocateDirect(d.length);
+                bb.put(d).flip();
+            } else {
+                bb = ByteBuffer.wrap(d);
+            }
+            tob.doWrite(bb);
+            tob.end();
+
+            Assert.assertArrayEquals(d, gunzip(tob.toByteArray()));
+            tob.nextRequest();
+        }
+
+        Assert.assertEquals(1, pool.getCreatedCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(3, pool.getCompressedCount());
+        Assert.assertEquals(3L * d.length, pool.getBytesIn());
+        Assert.assertTrue(pool.getCompressionRatio() < 0.5);
+
+        Assert.assertEquals(9, pool.getLevel("text/html;charset=UTF-8"));
+        Assert.assertEquals(Deflater.DEFAULT_STRATEGY, pool.getStrategy("text/html"));
+        Assert.assertEquals(1, pool.getLevel("text/plain"));
+        Assert.assertEquals(Deflater.HUFFMAN_ONLY, pool.getStrategy("text/plain"));
+        Assert.assertEquals(Deflater.DEFAULT_COMPRESSION, pool.getLevel("application/json"));
+        Assert.assertEquals(Deflater.DEFAULT_COMPRESSION, pool.getLevel(null));
+
+        pool.clear();
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidMimeTypeSettings() {
+        DeflaterPool pool = new DeflaterPool();
+        pool.setMimeTypes("text/html=10");
+    }
+
+
+    private static byte[] gunzip(byte[] compressed) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPInputStream gis =
+                new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            IOTools.flow(gis, baos);
+        }
+        return baos.toByteArray();
+    }
 }
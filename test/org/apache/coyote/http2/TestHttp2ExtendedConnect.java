@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+import javax.websocket.server.ServerContainer;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.tomcat.websocket.TesterEchoServer;
+import org.apache.tomcat.websocket.server.Constants;
+
+/**
+ * Tests for bootstrapping WebSockets over HTTP/2 as defined by RFC 8441.
+ */
+public class TestHttp2ExtendedConnect extends Http2TestBase {
+
+    @Test
+    public void testWebSocket() throws Exception {
+        http2ConnectWebSocket(true);
+
+        // Two WebSocket sessions multiplexed over the one connection
+        sendConnectRequest(3, TesterEchoServer.Config.PATH_BASIC, "CONNECT");
+        sendConnectRequest(5, TesterEchoServer.Config.PATH_BASIC, "CONNECT");
+        readUntil("3-Header-[:status]-[200]\n", "5-Header-[:status]-[200]\n");
+        Assert.assertFalse(output.getTrace(), output.getTrace().contains("EndOfStream"));
+        output.clearTrace();
+
+        sendData(3, buildMaskedFrame(0x81, "Hello".getBytes(StandardCharsets.UTF_8)));
+        sendData(5, buildMaskedFrame(0x81, "World".getBytes(StandardCharsets.UTF_8)));
+        readUntil(getBodyTrace(3, 0x81, "Hello".getBytes(StandardCharsets.UTF_8)),
+                getBodyTrace(5, 0x81, "World".getBytes(StandardCharsets.UTF_8)));
+        output.clearTrace();
+
+        // Closing one WebSocket session ends its stream
+        byte[] closePayload = new byte[] { 0x03, (byte) 0xE8 };
+        sendData(3, buildMaskedFrame(0x88, closePayload));
+        readUntil(getBodyTrace(3, 0x88, closePayload), "3-EndOfStream\n");
+        output.clearTrace();
+
+        // The other session is unaffected
+        sendData(5, buildMaskedFrame(0x81, "Again".getBytes(StandardCharsets.UTF_8)));
+        readUntil(getBodyTrace(5, 0x81, "Again".getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    @Test
+    public void testAsyncSend() throws Exception {
+        http2ConnectWebSocket(true);
+
+        sendConnectRequest(3, AsyncEcho.PATH, "CONNECT");
+        readUntil("3-Header-[:status]-[200]\n");
+        output.clearTrace();
+
+        sendData(3, buildMaskedFrame(0x81, "Hello".getBytes(StandardCharsets.UTF_8)));
+        readUntil(getBodyTrace(3, 0x81, "Hello".getBytes(StandardCharsets.UTF_8)));
+        output.clearTrace();
+
+        sendData(3, buildMaskedFrame(0x81, "World".getBytes(StandardCharsets.UTF_8)));
+        readUntil(getBodyTrace(3, 0x81, "World".getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    @Test
+    public void testOnOpenFails() throws Exception {
+        http2ConnectWebSocket(true);
+
+        // The stream is ended rather than left open
+        sendConnectRequest(3, OnOpenFails.PATH, "CONNECT");
+        readUntil("3-Header-[:status]-[200]\n", "3-EndOfStream\n");
+        output.clearTrace();
+
+        // The connection is still usable
+        sendConnectRequest(5, TesterEchoServer.Config.PATH_BASIC, "CONNECT");
+        readUntil("5-Header-[:status]-[200]\n");
+    }
+
+
+    @Test
+    public void testNotEnabled() throws Exception {
+        http2ConnectWebSocket(false);
+
+        sendConnectRequest(3, TesterEchoServer.Config.PATH_BASIC, "CONNECT");
+        readUntil("3-RST-[1]\n");
+    }
+
+
+    @Test
+    public void testProtocolWithoutConnect() throws Exception {
+        http2ConnectWebSocket(true);
+
+        sendConnectRequest(3, TesterEchoServer.Config.PATH_BASIC, "GET");
+        readUntil("3-RST-[1]\n");
+    }
+
+
+    private void http2ConnectWebSocket(boolean enableConnectProtocol) throws Exception {
+        enableHttp2();
+        Tomcat tomcat = getTomcatInstance();
+        for (UpgradeProtocol protocol : tomcat.getConnector().findUpgradeProtocols()) {
+            if (protocol instanceof Http2Protocol) {
+                ((Http2Protocol) protocol).setEnableConnectProtocol(enableConnectProtocol);
+            }
+        }
+
+        Context ctxt = tomcat.addContext("", null);
+        ctxt.addApplicationListener(TesterEchoServer.Config.class.getName());
+        ctxt.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "default", new DefaultServlet());
+        ctxt.addServletMappingDecoded("/", "default");
+        tomcat.start();
+
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+
+        // Settings, settings ack, ping and the response to the upgrade request
+        for (int i = 0; i < 5; i++) {
+            parser.readFrame(true);
+        }
+        Assert.assertEquals(output.getTrace(), Boolean.valueOf(enableConnectProtocol),
+                Boolean.valueOf(output.getTrace().contains("0-Settings-[8]-[1]\n")));
+        output.clearTrace();
+        output.setTraceBody(true);
+    }
+
+
+    private void sendConnectRequest(int streamId, String path, String method) throws Exception {
+        List<Header> headers = new ArrayList<>();
+        headers.add(new Header(":method", method));
+        headers.add(new Header(":protocol", "websocket"));
+        headers.add(new Header(":scheme", "http"));
+        headers.add(new Header(":path", path));
+        headers.add(new Header(":authority", "localhost:" + getPort()));
+        headers.add(new Header("sec-websocket-version", "13"));
+
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+        buildGetRequest(frameHeader, headersPayload, null, headers, streamId);
+        // End of headers only. The stream remains open for WebSocket frames.
+        frameHeader[4] = 0x04;
+        writeFrame(frameHeader, headersPayload);
+    }
+
+
+    private void readUntil(String... expected) throws Exception {
+        while (!containsAll(output.getTrace(), expected)) {
+            parser.readFrame(true);
+        }
+    }
+
+
+    private static boolean containsAll(String trace, String... expected) {
+        for (String s : expected) {
+            if (!trace.contains(s)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static byte[] buildMaskedFrame(int firstByte, byte[] payload) {
+        byte[] mask = new byte[] { 0x12, 0x34, 0x56, 0x78 };
+        byte[] result = new byte[6 + payload.length];
+        result[0] = (byte) firstByte;
+        result[1] = (byte) (0x80 | payload.length);
+        System.arraycopy(mask, 0, result, 2, 4);
+        for (int i = 0; i < payload.length; i++) {
+            result[6 + i] = (byte) (payload[i] ^ mask[i % 4]);
+        }
+        return result;
+    }
+
+
+    private static String getBodyTrace(int streamId, int firstByte, byte[] payload) {
+        // Matches the way TestOutput traces each byte of the body
+        StringBuilder sb = new StringBuilder();
+        sb.append(streamId);
+        sb.append("-Body-");
+        sb.append((char) (byte) firstByte);
+        sb.append((char) (byte) payload.length);
+        for (byte b : payload) {
+            sb.append((char) b);
+        }
+        sb.append('\n');
+        return sb.toString();
+    }
+
+
+    public static class Config implements ServletContextListener {
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            ServerContainer sc = (ServerContainer) sce.getServletContext().getAttribute(
+                    Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+            try {
+                sc.addEndpoint(ServerEndpointConfig.Builder.create(
+                        AsyncEcho.class, AsyncEcho.PATH).build());
+                sc.addEndpoint(ServerEndpointConfig.Builder.create(
+                        OnOpenFails.class, OnOpenFails.PATH).build());
+            } catch (DeploymentException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void contextDestroyed(ServletContextEvent sce) {
+            // NO-OP
+        }
+    }
+
+
+    public static class AsyncEcho extends Endpoint {
+
+        public static final String PATH = "/echoAsyncRemote";
+
+        @Override
+        public void onOpen(final Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    session.getAsyncRemote().sendText(message);
+                }
+            });
+        }
+    }
+
+
+    public static class OnOpenFails extends Endpoint {
+
+        public static final String PATH = "/onOpenFails";
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.el.util;
+
+import java.util.HashMap;
+
+import javax.el.BeanELResolver;
+import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.ELResolver;
+import javax.el.ExpressionFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.el.TesterBeanA;
+import org.apache.el.TesterBeanB;
+import org.apache.el.lang.EvaluationContext;
+import org.apache.jasper.el.ELContextImpl;
+
+public class TestPropertyInlineCache {
+
+    private static final ELResolver RESOLVER = new BeanELResolver();
+
+    @Test
+    public void testMonomorphic() {
+        TesterBeanB bean = new TesterBeanB();
+        bean.setName("Tomcat");
+
+        PropertyInlineCache cache =
+                PropertyInlineCache.update(null, RESOLVER, bean, "name");
+        Assert.assertNotSame(PropertyInlineCache.MEGAMORPHIC, cache);
+        Assert.assertTrue(cache.matches(RESOLVER, bean));
+        Assert.assertEquals("Tomcat", cache.getValue(createContext(), bean, "name"));
+    }
+
+    @Test
+    public void testDifferentResolver() {
+        TesterBeanB bean = new TesterBeanB();
+
+        PropertyInlineCache cache =
+                PropertyInlineCache.update(null, RESOLVER, bean, "name");
+        Assert.assertFalse(cache.matches(new BeanELResolver(), bean));
+    }
+
+    @Test
+    public void testPolymorphic() {
+        TesterBeanB beanB = new TesterBeanB();
+        TesterBeanA beanA = new TesterBeanA();
+
+        PropertyInlineCache cache =
+                PropertyInlineCache.update(null, RESOLVER, beanB, "name");
+        Assert.assertFalse(cache.matches(RESOLVER, beanA));
+        cache = PropertyInlineCache.update(cache, RESOLVER, beanA, "name");
+        Assert.assertSame(PropertyInlineCache.MEGAMORPHIC, cache);
+        Assert.assertFalse(cache.matches(RESOLVER, beanA));
+        Assert.assertFalse(cache.matches(RESOLVER, beanB));
+    }
+
+    @Test
+    public void testMap() {
+        HashMap<String,String> map = new HashMap<>();
+        PropertyInlineCache cache =
+                PropertyInlineCache.update(null, RESOLVER, map, "empty");
+        Assert.assertSame(PropertyInlineCache.MEGAMORPHIC, cache);
+    }
+
+    @Test
+    public void testNoReadMethod() {
+        PropertyInlineCache cache = PropertyInlineCache.update(
+                null, RESOLVER, new TesterBeanB(), "doesNotExist");
+        Assert.assertSame(PropertyInlineCache.MEGAMORPHIC, cache);
+    }
+
+    @Test(expected=ELException.class)
+    public void testReadError() {
+        Failing bean = new Failing();
+        PropertyInlineCache cache =
+                PropertyInlineCache.update(null, RESOLVER, bean, "value");
+        cache.getValue(createContext(), bean, "value");
+    }
+
+    private static EvaluationContext createContext() {
+        ELContext context = new ELContextImpl(ExpressionFactory.newInstance());
+        return new EvaluationContext(context, null, null);
+    }
+
+    public static class Failing {
+        public String getValue() {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.compiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.startup.LoggingBaseTest;
+
+public class TestClassResourceCache extends LoggingBaseTest {
+
+    private static final String CLASS_NAME = "org.example.Added";
+    private static final byte[] CLASS_BYTES = new byte[] { 1, 2, 3, 4 };
+
+
+    @Test
+    public void testMissingClassAddedLater() throws Exception {
+        File classes = createClassesDirectory("runtime");
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] { classes.toURI().toURL() }, null)) {
+            ClassResourceCache cache = new ClassResourceCache(loader, false);
+
+            Assert.assertFalse(cache.exists(CLASS_NAME));
+            Assert.assertNull(cache.getClassBytes(CLASS_NAME));
+
+            writeClass(classes);
+
+            Assert.assertTrue(cache.exists(CLASS_NAME));
+            Assert.assertArrayEquals(CLASS_BYTES, cache.getClassBytes(CLASS_NAME));
+        }
+    }
+
+
+    @Test
+    public void testMissingClassCachedWhenPrecompiling() throws Exception {
+        File classes = createClassesDirectory("precompile");
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] { classes.toURI().toURL() }, null)) {
+            ClassResourceCache cache = new ClassResourceCache(loader, true);
+
+            Assert.assertFalse(cache.exists(CLASS_NAME));
+
+            writeClass(classes);
+
+            Assert.assertFalse(cache.exists(CLASS_NAME));
+            Assert.assertNull(cache.getClassBytes(CLASS_NAME));
+        }
+    }
+
+
+    private File createClassesDirectory(String name) {
+        File classes = new File(getTemporaryDirectory(), name);
+        Assert.assertTrue(classes.mkdirs());
+        addDeleteOnTearDown(classes);
+        return classes;
+    }
+
+
+    private static void writeClass(File classes) throws IOException {
+        File dir = new File(classes, "org/example");
+        Assert.assertTrue(dir.mkdirs());
+        try (OutputStream os = new FileOutputStream(new File(dir, "Added.class"))) {
+            os.write(CLASS_BYTES);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.compiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.jasper.servlet.JasperInitializer;
+import org.apache.jasper.servlet.JspServlet;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestJspFileWatcher extends TomcatBaseTest {
+
+    @Test
+    public void testIncludedFileChange() throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "watcher");
+        Assert.assertTrue(appDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        writeFile(new File(appDir, "index.jsp"), "<%@ include file=\"include.jspf\" %>");
+        File include = new File(appDir, "include.jspf");
+        writeFile(include, "OK-1");
+
+        Tomcat tomcat = getTomcatInstance();
+
+        // Create the context (don't use addWebapp as we want to modify the
+        // JSP Servlet settings).
+        StandardContext ctxt = (StandardContext) tomcat.addContext(
+                null, "/test", appDir.getAbsolutePath());
+        ctxt.addServletContainerInitializer(new JasperInitializer(), null);
+        Tomcat.initWebappDefaults(ctxt);
+        Wrapper w = (Wrapper) ctxt.findChild("jsp");
+        w.addInitParameter("watchSourceFiles", "true");
+        w.addInitParameter("modificationTestInterval", "0");
+
+        tomcat.start();
+        // The content of the included file would otherwise be served from the
+        // cache for up to 5s after it changed
+        ctxt.getResources().setCachingAllowed(false);
+
+        String url = "http://localhost:" + getPort() + "/test/index.jsp";
+        // The first request compiles the JSP and the second starts watching
+        // the JSP and the included file. Later requests are served without
+        // checking the file system.
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("OK-1", getUrl(url).toString().trim());
+        }
+
+        writeFile(include, "OK-2");
+        // Ensure the timestamp changes on file systems with a coarse resolution
+        Assert.assertTrue(include.setLastModified(include.lastModified() + 10000));
+
+        // File system events are delivered asynchronously
+        String result = null;
+        int count = 0;
+        while (count < 50) {
+            result = getUrl(url).toString().trim();
+            if ("OK-2".equals(result)) {
+                break;
+            }
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertEquals("OK-2", result);
+    }
+
+
+    @Test
+    public void testRemovedJspStopsWatch() throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "watcher-removed");
+        File subDir = new File(appDir, "sub");
+        Assert.assertTrue(subDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        writeFile(new File(appDir, "index.jsp"), "OK-1");
+        File jsp = new File(subDir, "page.jsp");
+        writeFile(jsp, "OK-2");
+
+        Tomcat tomcat = getTomcatInstance();
+        StandardContext ctxt = (StandardContext) tomcat.addContext(
+                null, "/test", appDir.getAbsolutePath());
+        ctxt.addServletContainerInitializer(new JasperInitializer(), null);
+        Tomcat.initWebappDefaults(ctxt);
+        Wrapper w = (Wrapper) ctxt.findChild("jsp");
+        w.addInitParameter("watchSourceFiles", "true");
+        w.addInitParameter("modificationTestInterval", "0");
+
+        tomcat.start();
+        ctxt.getResources().setCachingAllowed(false);
+
+        String base = "http://localhost:" + getPort() + "/test/";
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals("OK-1", getUrl(base + "index.jsp").toString().trim());
+            Assert.assertEquals("OK-2", getUrl(base + "sub/page.jsp").toString().trim());
+        }
+
+        JspFileWatcher watcher = getFileWatcher(w);
+        Assert.assertEquals(2, watcher.getWatchedDirectoryCount());
+
+        // Once the JSP has gone, its directory is no longer watched
+        Assert.assertTrue(jsp.delete());
+        int rc = 0;
+        int count = 0;
+        while (count < 50) {
+            rc = getUrl(base + "sub/page.jsp", new ByteChunk(), null);
+            if (rc == HttpServletResponse.SC_NOT_FOUND) {
+                break;
+            }
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, rc);
+        Assert.assertEquals(1, watcher.getWatchedDirectoryCount());
+    }
+
+
+    private static JspFileWatcher getFileWatcher(Wrapper w) throws Exception {
+        JspServlet jspServlet = (JspServlet) w.getServlet();
+        Field field = JspServlet.class.getDeclaredField("rctxt");
+        field.setAccessible(true);
+        return ((JspRuntimeContext) field.get(jspServlet)).getFileWatcher();
+    }
+
+
+    private static void writeFile(File file, String content) throws IOException {
+        try (Writer w = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(content);
+        }
+    }
+}
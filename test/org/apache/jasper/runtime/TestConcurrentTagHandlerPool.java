@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.jsp.tagext.Tag;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.jasper.servlet.JasperInitializer;
+import org.apache.jasper.servlet.JspServlet;
+
+public class TestConcurrentTagHandlerPool extends TomcatBaseTest {
+
+    @Test
+    public void testReuse() throws Exception {
+        Wrapper w = startApp("<% for (int i = 0; i < 10; i++) { %><t:count/><% } %>OK", 5);
+
+        TesterCountingTag.INSTANCE_COUNT.set(0);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("OK", getUrl("http://localhost:" + getPort() +
+                    "/test/index.jsp").toString().trim());
+        }
+
+        // Each request is processed by a single thread so the same tag handler
+        // is used for every iteration. Requests may be processed by different
+        // threads.
+        int count = TesterCountingTag.INSTANCE_COUNT.get();
+        Assert.assertTrue(Integer.toString(count), count >= 1 && count <= 5);
+
+        JspServlet jspServlet = (JspServlet) w.getServlet();
+        Assert.assertEquals(count, jspServlet.getTagPoolInstantiationCount());
+        Assert.assertEquals(count, jspServlet.getTagPoolMissCount());
+        Assert.assertEquals(50 - count, jspServlet.getTagPoolHitCount());
+    }
+
+
+    @Test
+    public void testMaxSizeIncludesThreadCache() throws Exception {
+        Wrapper w = startApp("<t:count><t:count>OK</t:count></t:count>", 1);
+
+        Assert.assertEquals("OK", getUrl("http://localhost:" + getPort() +
+                "/test/index.jsp").toString().trim());
+
+        // The nested tags need two handlers at once but only one may be kept
+        // once both have been returned
+        JspServlet jspServlet = (JspServlet) w.getServlet();
+        Assert.assertEquals(2, jspServlet.getTagPoolInstantiationCount());
+        Assert.assertEquals(1, jspServlet.getTagPoolIdleCount());
+    }
+
+
+    @Test
+    public void testTerminatedThreadCacheReleased() throws Exception {
+        Wrapper w = startApp("OK", 5);
+        final ConcurrentTagHandlerPool pool = new ConcurrentTagHandlerPool();
+        pool.init(w.getServlet().getServletConfig());
+
+        TesterCountingTag.RELEASE_COUNT.set(0);
+        final Exception[] exception = new Exception[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pool.reuse(pool.get(TesterCountingTag.class));
+                } catch (Exception e) {
+                    exception[0] = e;
+                }
+            }
+        };
+        t.start();
+        t.join();
+        Assert.assertNull(exception[0]);
+        // The handler is cached by the terminated thread
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(0, TesterCountingTag.RELEASE_COUNT.get());
+
+        // The first use by another thread releases it
+        Tag handler = pool.get(TesterCountingTag.class);
+        Assert.assertEquals(1, TesterCountingTag.RELEASE_COUNT.get());
+        pool.reuse(handler);
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(2, pool.getInstantiationCount());
+        Assert.assertEquals(2, pool.getMissCount());
+
+        pool.release();
+        Assert.assertEquals(2, TesterCountingTag.RELEASE_COUNT.get());
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+
+
+    private Wrapper startApp(String body, int maxSize) throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "tagpool");
+        File webInf = new File(appDir, "WEB-INF");
+        Assert.assertTrue(webInf.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        writeFile(new File(webInf, "tester.tld"),
+                "<taglib xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"2.1\">" +
+                "<tlib-version>1.0</tlib-version><short-name>t</short-name>" +
+                "<tag><name>count</name>" +
+                "<tag-class>org.apache.jasper.runtime.TesterCountingTag</tag-class>" +
+                "<body-content>JSP</body-content></tag></taglib>");
+        writeFile(new File(appDir, "index.jsp"),
+                "<%@ taglib uri=\"/WEB-INF/tester.tld\" prefix=\"t\" %>" + body);
+
+        Tomcat tomcat = getTomcatInstance();
+
+        // Create the context (don't use addWebapp as we want to modify the
+        // JSP Servlet settings).
+        StandardContext ctxt = (StandardContext) tomcat.addContext(
+                null, "/test", appDir.getAbsolutePath());
+        ctxt.addServletContainerInitializer(new JasperInitializer(), null);
+        Tomcat.initWebappDefaults(ctxt);
+        Wrapper w = (Wrapper) ctxt.findChild("jsp");
+        w.addInitParameter(TagHandlerPool.OPTION_TAGPOOL,
+                ConcurrentTagHandlerPool.class.getName());
+        w.addInitParameter(TagHandlerPool.OPTION_MAXSIZE, Integer.toString(maxSize));
+
+        tomcat.start();
+
+        return w;
+    }
+
+
+    private static void writeFile(File file, String content) throws IOException {
+        try (Writer w = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(content);
+        }
+    }
+}
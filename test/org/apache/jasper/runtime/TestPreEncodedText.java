@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.jasper.Constants;
+import org.apache.jasper.servlet.JasperInitializer;
+import org.apache.tomcat.PreEncodedWriter;
+import org.apache.tomcat.unittest.TesterResponse;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestPreEncodedText extends TomcatBaseTest {
+
+    private static final String TEXT = "café-€";
+
+    @Test
+    public void testUnbuffered() throws Exception {
+        doTest("<%@ page buffer=\"none\" %>");
+    }
+
+
+    @Test
+    public void testBuffered() throws Exception {
+        doTest("<%@ page buffer=\"1kb\" %>");
+    }
+
+
+    @Test
+    public void testDefaultBuffer() throws Exception {
+        doTest("");
+    }
+
+
+    @Test
+    public void testUnbufferedOtherCharset() throws Exception {
+        doTest("<%@ page buffer=\"none\" %><% response.setCharacterEncoding(\"UTF-16\"); %>");
+    }
+
+
+    @Test
+    public void testBufferedBytesWrittenOnFlush() throws Exception {
+        RecordingWriter recorder = new RecordingWriter(StandardCharsets.UTF_8);
+        JspWriterImpl out = new JspWriterImpl(new RecordingResponse(recorder),
+                Constants.DEFAULT_BUFFER_SIZE, true);
+        PreEncodedText text = new PreEncodedText(TEXT, "UTF-8");
+
+        text.writeTo(out);
+        out.write("x");
+        text.writeTo(out);
+        Assert.assertEquals("", recorder.toString());
+
+        out.flush();
+        Assert.assertEquals("[bytes:" + TEXT + "][chars:x][bytes:" + TEXT + "]",
+                recorder.toString());
+    }
+
+
+    @Test
+    public void testBufferedOtherCharset() throws Exception {
+        RecordingWriter recorder = new RecordingWriter(StandardCharsets.UTF_16);
+        JspWriterImpl out = new JspWriterImpl(new RecordingResponse(recorder),
+                Constants.DEFAULT_BUFFER_SIZE, true);
+        PreEncodedText text = new PreEncodedText(TEXT, "UTF-8");
+
+        text.writeTo(out);
+        out.flush();
+        Assert.assertEquals("[chars:" + TEXT + "]", recorder.toString());
+    }
+
+
+    @Test
+    public void testBufferedClear() throws Exception {
+        RecordingWriter recorder = new RecordingWriter(StandardCharsets.UTF_8);
+        JspWriterImpl out = new JspWriterImpl(new RecordingResponse(recorder),
+                Constants.DEFAULT_BUFFER_SIZE, true);
+        PreEncodedText text = new PreEncodedText(TEXT, "UTF-8");
+
+        text.writeTo(out);
+        out.clearBuffer();
+        out.write("x");
+        out.flush();
+        Assert.assertEquals("[chars:x]", recorder.toString());
+    }
+
+
+    private void doTest(String directive) throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "preencoded");
+        Assert.assertTrue(appDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            large.append(TEXT);
+        }
+
+        // Mix template text, including text larger than the page buffer, with
+        // dynamic content to check the output remains in order
+        writeFile(new File(appDir, "index.jsp"),
+                "<%@ page contentType=\"text/plain;charset=UTF-8\" pageEncoding=\"UTF-8\" %>" +
+                directive + "[" + TEXT + "]<%= 1 %>[" + large + "]<%= 2 %>[" + TEXT + "]");
+
+        Tomcat tomcat = getTomcatInstance();
+
+        // Create the context (don't use addWebapp as we want to modify the
+        // JSP Servlet settings).
+        StandardContext ctxt = (StandardContext) tomcat.addContext(
+                null, "/test", appDir.getAbsolutePath());
+        ctxt.addServletContainerInitializer(new JasperInitializer(), null);
+        Tomcat.initWebappDefaults(ctxt);
+        Wrapper w = (Wrapper) ctxt.findChild("jsp");
+        w.addInitParameter("genStringAsByteArray", "true");
+
+        tomcat.start();
+
+        ByteChunk res = new ByteChunk();
+        int rc = getUrl("http://localhost:" + getPort() + "/test/index.jsp", res, null);
+        Assert.assertEquals(200, rc);
+
+        String expected = "[" + TEXT + "]1[" + large + "]2[" + TEXT + "]";
+        res.setCharset(directive.contains("UTF-16") ? StandardCharsets.UTF_16 : StandardCharsets.UTF_8);
+        Assert.assertEquals(expected, res.toString());
+    }
+
+
+    private static void writeFile(File file, String content) throws IOException {
+        try (Writer w = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(content);
+        }
+    }
+
+
+    private static class RecordingResponse extends TesterResponse {
+
+        private final PrintWriter writer;
+
+        RecordingResponse(RecordingWriter recorder) {
+            writer = recorder;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return writer;
+        }
+    }
+
+
+    private static class RecordingWriter extends PrintWriter implements PreEncodedWriter {
+
+        private final Charset charset;
+        private final StringBuilder record = new StringBuilder();
+
+        RecordingWriter(Charset charset) {
+            super(new NullWriter());
+            this.charset = charset;
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            record.append("[chars:").append(buf, off, len).append(']');
+        }
+
+        @Override
+        public Charset getCharset() {
+            return charset;
+        }
+
+        @Override
+        public void writePreEncoded(byte[] b, int off, int len) {
+            record.append("[bytes:").append(new String(b, off, len, charset)).append(']');
+        }
+
+        @Override
+        public String toString() {
+            return record.toString();
+        }
+    }
+
+
+    private static class NullWriter extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            // NO-OP
+        }
+
+        @Override
+        public void flush() {
+            // NO-OP
+        }
+
+        @Override
+        public void close() {
+            // NO-OP
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.io.CharArrayWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSegmentedCharBuffer {
+
+    @Test
+    public void testAppendAcrossSegments() throws Exception {
+        CharSegmentPool pool = new CharSegmentPool(8, 16, 0);
+        SegmentedCharBuffer buffer = new SegmentedCharBuffer(pool);
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            String s = "abcdefghijklm".substring(0, i + 1);
+            buffer.append(s, 0, s.length());
+            buffer.append(s.toCharArray(), 0, s.length());
+            buffer.append('|');
+            expected.append(s).append(s).append('|');
+        }
+
+        Assert.assertEquals(expected.length(), buffer.length());
+        Assert.assertEquals(expected.toString(), buffer.toString());
+        Assert.assertEquals(expected.toString(), new String(buffer.toCharArray()));
+
+        CharArrayWriter out = new CharArrayWriter();
+        buffer.writeTo(out);
+        Assert.assertEquals(expected.toString(), out.toString());
+
+        int segments = (expected.length() + 7) / 8;
+        Assert.assertEquals(segments * 8, buffer.capacity());
+    }
+
+
+    @Test
+    public void testWriteRange() throws Exception {
+        CharSegmentPool pool = new CharSegmentPool(8, 16, 0);
+        SegmentedCharBuffer buffer = new SegmentedCharBuffer(pool);
+
+        String s = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        buffer.append(s, 0, s.length());
+
+        for (int start = 0; start <= s.length(); start += 3) {
+            for (int end = start; end <= s.length(); end += 5) {
+                CharArrayWriter out = new CharArrayWriter();
+                buffer.writeTo(out, start, end);
+                Assert.assertEquals(s.substring(start, end), out.toString());
+            }
+        }
+    }
+
+
+    @Test
+    public void testClearKeepsSegments() {
+        CharSegmentPool pool = new CharSegmentPool(8, 16, 0);
+        SegmentedCharBuffer buffer = new SegmentedCharBuffer(pool);
+
+        buffer.append("0123456789ABCDEF", 0, 16);
+        buffer.clear();
+        Assert.assertEquals(0, buffer.length());
+        Assert.assertEquals(16, buffer.capacity());
+        Assert.assertEquals("", buffer.toString());
+
+        buffer.append("0123456789ABCDEF", 0, 16);
+        Assert.assertEquals("0123456789ABCDEF", buffer.toString());
+        Assert.assertEquals(16, buffer.capacity());
+        Assert.assertEquals(0, pool.getPooledCount());
+    }
+
+
+    @Test
+    public void testReleaseReturnsSegments() {
+        CharSegmentPool pool = new CharSegmentPool(8, 2, 0);
+        SegmentedCharBuffer buffer = new SegmentedCharBuffer(pool);
+
+        buffer.append("0123456789ABCDEFGHIJ", 0, 20);
+        buffer.release();
+        Assert.assertEquals(0, buffer.length());
+        Assert.assertEquals(0, buffer.capacity());
+        // The third segment is discarded
+        Assert.assertEquals(2, pool.getPooledCount());
+
+        buffer.append("0123456789", 0, 10);
+        Assert.assertEquals("0123456789", buffer.toString());
+        Assert.assertEquals(0, pool.getPooledCount());
+    }
+
+
+    @Test
+    public void testThreadCache() throws Exception {
+        final CharSegmentPool pool = new CharSegmentPool(8, 16, 2);
+        char[] a = pool.take();
+        char[] b = pool.take();
+        char[] c = pool.take();
+
+        pool.offer(a);
+        pool.offer(b);
+        pool.offer(c);
+        // Only the segment that did not fit in this thread's cache is shared
+        Assert.assertEquals(1, pool.getPooledCount());
+
+        // Another thread can only obtain the shared segment
+        final char[][] taken = new char[2][];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                taken[0] = pool.take();
+                taken[1] = pool.take();
+            }
+        };
+        t.start();
+        t.join();
+        Assert.assertSame(c, taken[0]);
+        Assert.assertNotSame(a, taken[1]);
+        Assert.assertNotSame(b, taken[1]);
+        Assert.assertEquals(0, pool.getPooledCount());
+
+        // This thread re-uses its cached segments
+        Assert.assertSame(b, pool.take());
+        Assert.assertSame(a, pool.take());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.TagSupport;
+
+/**
+ * A tag that counts how many instances have been created and released and
+ * includes its body.
+ */
+public class TesterCountingTag extends TagSupport {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final AtomicInteger INSTANCE_COUNT = new AtomicInteger();
+    public static final AtomicInteger RELEASE_COUNT = new AtomicInteger();
+
+    public TesterCountingTag() {
+        INSTANCE_COUNT.incrementAndGet();
+    }
+
+    @Override
+    public int doStartTag() throws JspException {
+        return EVAL_BODY_INCLUDE;
+    }
+
+    @Override
+    public void release() {
+        RELEASE_COUNT.incrementAndGet();
+        super.release();
+    }
+}
@@ -17,7 +17,11 @@
 package org.apache.jasper.servlet;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -28,6 +32,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
 import org.apache.tomcat.util.buf.ByteChunk;
@@ -95,6 +101,56 @@ public class TestJspServlet  extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testPrecompileOnStartup() throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "precompile");
+        File subDir = new File(appDir, "sub");
+        Assert.assertTrue(subDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        writeFile(new File(appDir, "a.jsp"), "OK-A");
+        writeFile(new File(subDir, "b.jsp"), "OK-B");
+
+        Tomcat tomcat = getTomcatInstance();
+
+        // Create the context (don't use addWebapp as we want to modify the
+        // JSP Servlet settings).
+        StandardContext ctxt = (StandardContext) tomcat.addContext(
+                null, "/test", appDir.getAbsolutePath());
+        ctxt.addServletContainerInitializer(new JasperInitializer(), null);
+        Tomcat.initWebappDefaults(ctxt);
+        Wrapper w = (Wrapper) ctxt.findChild("jsp");
+        w.addInitParameter("precompileOnStartup", "true");
+
+        tomcat.start();
+
+        // Both JSPs are compiled without being requested
+        File classDir = new File(ctxt.getWorkPath(), "org/apache/jsp");
+        File classA = new File(classDir, "a_jsp.class");
+        File classB = new File(classDir, "sub/b_jsp.class");
+        int count = 0;
+        while (count < 300 && !(classA.isFile() && classB.isFile())) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertTrue(classA.isFile());
+        Assert.assertTrue(classB.isFile());
+
+        Assert.assertEquals("OK-A",
+                getUrl("http://localhost:" + getPort() + "/test/a.jsp").toString().trim());
+        Assert.assertEquals("OK-B",
+                getUrl("http://localhost:" + getPort() + "/test/sub/b.jsp").toString().trim());
+    }
+
+
+    private static void writeFile(File file, String content) throws IOException {
+        try (Writer w = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(content);
+        }
+    }
+
+
     private static class Bug56568aServlet extends HttpServlet {
 
         private static final long serialVersionUID = 1L;
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.servlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.startup.LoggingBaseTest;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+
+public class TestTldScanCache extends LoggingBaseTest {
+
+    @Test
+    public void testSharedTldReleased() throws Exception {
+        File dir = new File(getTemporaryDirectory(), "sharedTld");
+        Assert.assertTrue(dir.mkdirs());
+        addDeleteOnTearDown(dir);
+        File jar = new File(dir, "shared.jar");
+        try (OutputStream os = new FileOutputStream(jar)) {
+            os.write(new byte[] { 1, 2, 3 });
+        }
+
+        String key = jar.toURI().toString() + "!/META-INF/shared.tld";
+        TaglibXml tld = new TaglibXml();
+        TldScanCache.putSharedTld(key, jar, tld);
+        Assert.assertSame(tld, TldScanCache.getSharedTld(key, jar));
+        int count = TldScanCache.getSharedTldCount();
+
+        // Once no web application uses the TLD, it is discarded
+        tld = null;
+        for (int i = 0; i < 20 && TldScanCache.getSharedTldCount() == count; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Assert.assertNull(TldScanCache.getSharedTld(key, jar));
+        Assert.assertEquals(count - 1, TldScanCache.getSharedTldCount());
+    }
+}
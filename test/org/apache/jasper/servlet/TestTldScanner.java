@@ -17,12 +17,19 @@
 package org.apache.jasper.servlet;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.servlet.ServletContext;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -30,6 +37,7 @@ import org.junit.Test;
 import org.apache.catalina.Context;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.jasper.Constants;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.Jar;
 import org.apache.tomcat.util.buf.ByteChunk;
@@ -88,6 +96,65 @@ public class TestTldScanner extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testScanCache() throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "tldScanCache");
+        File libDir = new File(appDir, "WEB-INF/lib");
+        Assert.assertTrue(libDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        String tld = "<taglib xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"2.1\">" +
+                "<tlib-version>1.0</tlib-version><short-name>test</short-name>" +
+                "<uri>http://tomcat.apache.org/tldScanCache</uri></taglib>";
+        createJar(new File(libDir, "with-tld.jar"), "META-INF/test.tld", tld);
+        File noTldJar = new File(libDir, "without-tld.jar");
+        createJar(noTldJar, "META-INF/test.txt", "test");
+
+        Tomcat tomcat = getTomcatInstance();
+        Context context = tomcat.addContext("/test", appDir.getAbsolutePath());
+        context.addParameter(Constants.TLD_SCAN_CACHE_INIT_PARAM, "true");
+        tomcat.start();
+
+        TldScanner scanner = new TldScanner(context.getServletContext(), true, false, true);
+        scanner.scan();
+        Assert.assertTrue(scanner.getUriTldResourcePathMap().containsKey(
+                "http://tomcat.apache.org/tldScanCache"));
+
+        File workDir = (File) context.getServletContext().getAttribute(
+                ServletContext.TEMPDIR);
+        File cacheFile = new File(workDir, TldScanCache.FILE_NAME);
+        Assert.assertTrue(cacheFile.isFile());
+        long cacheLastModified = cacheFile.lastModified() - 60000;
+        Assert.assertTrue(cacheFile.setLastModified(cacheLastModified));
+
+        // Corrupt the JAR without a TLD. It can only be skipped if the cached
+        // result is used.
+        long jarLength = noTldJar.length();
+        long jarLastModified = noTldJar.lastModified();
+        try (OutputStream os = new FileOutputStream(noTldJar)) {
+            os.write(new byte[(int) jarLength]);
+        }
+        Assert.assertTrue(noTldJar.setLastModified(jarLastModified));
+
+        scanner = new TldScanner(context.getServletContext(), true, false, true);
+        scanner.scan();
+        Assert.assertTrue(scanner.getUriTldResourcePathMap().containsKey(
+                "http://tomcat.apache.org/tldScanCache"));
+        // Nothing changed so the cache should not have been written
+        Assert.assertEquals(cacheLastModified, cacheFile.lastModified());
+    }
+
+
+    private static void createJar(File file, String entryName, String content)
+            throws Exception {
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(file))) {
+            jos.putNextEntry(new JarEntry(entryName));
+            jos.write(content.getBytes(StandardCharsets.UTF_8));
+            jos.closeEntry();
+        }
+    }
+
+
     /** Assertion for text printed by tags:echo */
     private static void assertEcho(String result, String expected) {
         Assert.assertTrue(result, result.indexOf("<p>" + expected + "</p>") > 0);
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.dbcp.pool2.impl;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.tomcat.dbcp.pool2.BasePooledObjectFactory;
+import org.apache.tomcat.dbcp.pool2.PooledObject;
+
+/*
+ * Checks that a pool with idle object stripes behaves the same way as a pool
+ * without them.
+ */
+public class TestGenericObjectPoolIdleStripes {
+
+    private ObjectFactory factory;
+    private GenericObjectPool<Object> pool;
+
+
+    @Before
+    public void setUp() {
+        factory = new ObjectFactory();
+        GenericObjectPoolConfig<Object> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(2);
+        config.setIdleStripes(4);
+        config.setJmxEnabled(false);
+        pool = new GenericObjectPool<>(factory, config);
+    }
+
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+
+    @Test
+    public void testMaxWait() throws Exception {
+        pool.setMaxWaitMillis(100);
+        Object obj1 = pool.borrowObject();
+        Object obj2 = pool.borrowObject();
+        pool.returnObject(obj1);
+        // The returned object is reused
+        Assert.assertSame(obj1, pool.borrowObject());
+
+        long start = System.currentTimeMillis();
+        try {
+            pool.borrowObject();
+            Assert.fail();
+        } catch (NoSuchElementException expected) {
+            // Expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+
+        pool.setBlockWhenExhausted(false);
+        try {
+            pool.borrowObject();
+            Assert.fail();
+        } catch (NoSuchElementException expected) {
+            // Expected
+        }
+        pool.returnObject(obj1);
+        pool.returnObject(obj2);
+        Assert.assertEquals(2, factory.created.get());
+    }
+
+
+    @Test
+    public void testWaiterReceivesReturnedObject() throws Exception {
+        final Object obj1 = pool.borrowObject();
+        final Object obj2 = pool.borrowObject();
+
+        BorrowThread borrower = new BorrowThread();
+        borrower.start();
+        // Wait for the borrower to block
+        int count = 0;
+        while (pool.getNumWaiters() == 0 && count < 100) {
+            Thread.sleep(50);
+            count++;
+        }
+        Assert.assertEquals(1, pool.getNumWaiters());
+
+        pool.returnObject(obj1);
+        borrower.join(5000);
+        Assert.assertFalse(borrower.isAlive());
+        Assert.assertNull(borrower.failure);
+        Assert.assertSame(obj1, borrower.result);
+
+        pool.returnObject(obj1);
+        pool.returnObject(obj2);
+        Assert.assertEquals(0, pool.getNumActive());
+        Assert.assertEquals(2, pool.getNumIdle());
+    }
+
+
+    @Test
+    public void testEviction() throws Exception {
+        pool.setMinEvictableIdleTimeMillis(50);
+        pool.setNumTestsPerEvictionRun(2);
+        Object obj1 = pool.borrowObject();
+        Object obj2 = pool.borrowObject();
+        pool.returnObject(obj1);
+        pool.returnObject(obj2);
+        Assert.assertEquals(2, pool.getNumIdle());
+
+        Thread.sleep(100);
+        pool.evict();
+        Assert.assertEquals(0, pool.getNumIdle());
+        Assert.assertEquals(2, factory.destroyed.get());
+    }
+
+
+    @Test
+    public void testClear() throws Exception {
+        Object obj1 = pool.borrowObject();
+        Object obj2 = pool.borrowObject();
+        pool.returnObject(obj1);
+        pool.clear();
+        Assert.assertEquals(0, pool.getNumIdle());
+        Assert.assertEquals(1, pool.getNumActive());
+        Assert.assertEquals(1, factory.destroyed.get());
+
+        // A new object is created in place of the destroyed one
+        Assert.assertNotSame(obj1, pool.borrowObject());
+        Assert.assertEquals(3, factory.created.get());
+        pool.returnObject(obj2);
+    }
+
+
+    @Test
+    public void testClose() throws Exception {
+        Object obj1 = pool.borrowObject();
+        Object obj2 = pool.borrowObject();
+        pool.returnObject(obj1);
+        pool.close();
+        Assert.assertEquals(1, factory.destroyed.get());
+
+        // Objects returned after the pool is closed are destroyed
+        pool.returnObject(obj2);
+        Assert.assertEquals(2, factory.destroyed.get());
+        Assert.assertEquals(0, pool.getNumIdle());
+        try {
+            pool.borrowObject();
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+    }
+
+
+    private class BorrowThread extends Thread {
+
+        private volatile Object result;
+        private volatile Exception failure;
+
+        @Override
+        public void run() {
+            try {
+                result = pool.borrowObject();
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+
+
+    private static class ObjectFactory extends BasePooledObjectFactory<Object> {
+
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger destroyed = new AtomicInteger();
+
+        @Override
+        public Object create() throws Exception {
+            created.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        public PooledObject<Object> wrap(Object obj) {
+            return new DefaultPooledObject<>(obj);
+        }
+
+        @Override
+        public void destroyObject(PooledObject<Object> p) throws Exception {
+            destroyed.incrementAndGet();
+        }
+    }
+}
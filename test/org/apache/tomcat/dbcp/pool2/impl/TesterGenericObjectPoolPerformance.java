@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.dbcp.pool2.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.dbcp.pool2.BasePooledObjectFactory;
+import org.apache.tomcat.dbcp.pool2.PooledObject;
+
+/*
+ * Compares borrow/return throughput of a GenericObjectPool with and without
+ * idle object stripes across a range of thread counts.
+ */
+public class TesterGenericObjectPoolPerformance {
+
+    private static final int ITERATIONS = 200000;
+    private static final int[] THREAD_COUNTS = new int[] { 1, 2, 4, 8, 16, 32 };
+
+    @Test
+    public void testBorrowReturn() throws Exception {
+        for (int threadCount : THREAD_COUNTS) {
+            long plain = doTest(threadCount, 0);
+            long striped = doTest(threadCount, 16);
+            System.out.println("Threads: " + threadCount + ", no stripes: " +
+                    plain + "ms, 16 stripes: " + striped + "ms");
+        }
+    }
+
+
+    private long doTest(int threadCount, int idleStripes) throws Exception {
+        GenericObjectPoolConfig<Object> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(threadCount);
+        config.setMaxIdle(threadCount);
+        config.setIdleStripes(idleStripes);
+        config.setJmxEnabled(false);
+
+        try (GenericObjectPool<Object> pool =
+                new GenericObjectPool<>(new ObjectFactory(), config)) {
+            BorrowThread[] threads = new BorrowThread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new BorrowThread(pool);
+            }
+
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < threadCount; i++) {
+                threads[i].start();
+            }
+            for (int i = 0; i < threadCount; i++) {
+                threads[i].join();
+            }
+            long end = System.currentTimeMillis();
+
+            for (int i = 0; i < threadCount; i++) {
+                Assert.assertNull(threads[i].failure);
+            }
+            Assert.assertEquals(0, pool.getNumActive());
+            Assert.assertTrue(pool.getNumIdle() <= threadCount);
+
+            return end - start;
+        }
+    }
+
+
+    private static class BorrowThread extends Thread {
+
+        private final GenericObjectPool<Object> pool;
+        private volatile Exception failure;
+
+        public BorrowThread(GenericObjectPool<Object> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    Object obj = pool.borrowObject();
+                    pool.returnObject(obj);
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+
+
+    private static class ObjectFactory extends BasePooledObjectFactory<Object> {
+
+        @Override
+        public Object create() throws Exception {
+            return new Object();
+        }
+
+        @Override
+        public PooledObject<Object> wrap(Object obj) {
+            return new DefaultPooledObject<>(obj);
+        }
+    }
+}
@@ -1300,4 +1300,14 @@ public class TesterContext implements Context {
     public void setCreateUploadTargets(boolean createUploadTargets) { /* NO-OP */}
     @Override
     public boolean getCreateUploadTargets() { return false; }
+
+    @Override
+    public void setParallelAnnotationScanning(boolean parallelAnnotationScanning) { /* NO-OP */ }
+    @Override
+    public boolean getParallelAnnotationScanning() { return false; }
+
+    @Override
+    public void setAnnotationScanCaching(boolean annotationScanCaching) { /* NO-OP */ }
+    @Override
+    public boolean getAnnotationScanCaching() { return false; }
 }
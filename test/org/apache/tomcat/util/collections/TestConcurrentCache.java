@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestConcurrentCache {
+
+    @Test
+    public void testGetPut() {
+        ConcurrentCache<String,String> cache = new ConcurrentCache<>(10);
+        Assert.assertNull(cache.get("a"));
+        cache.put("a", "1");
+        Assert.assertEquals("1", cache.get("a"));
+        cache.put("a", "2");
+        Assert.assertEquals("2", cache.get("a"));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testBounded() {
+        ConcurrentCache<Integer,Integer> cache = new ConcurrentCache<>(100);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+        Assert.assertEquals(100, cache.size());
+        Assert.assertNotNull(cache.get(Integer.valueOf(9999)));
+    }
+
+    @Test
+    public void testFrequentlyUsedEntriesRetained() {
+        ConcurrentCache<Integer,Integer> cache = new ConcurrentCache<>(100);
+        for (int i = 0; i < 10; i++) {
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+        for (int i = 10; i < 10000; i++) {
+            // Keep the first 10 entries in use
+            Assert.assertNotNull(cache.get(Integer.valueOf(i % 10)));
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(cache.get(Integer.valueOf(i)));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestKeyedIdlePool {
+
+    @Test
+    public void testPollByKey() {
+        TesterPool pool = new TesterPool(10);
+        Assert.assertNull(pool.poll(1));
+
+        pool.offer(1, "a");
+        pool.offer(2, "b");
+        Assert.assertEquals(2, pool.getIdleCount());
+
+        Assert.assertNull(pool.poll(3));
+        Assert.assertEquals("b", pool.poll(2));
+        Assert.assertNull(pool.poll(2));
+        Assert.assertEquals("a", pool.poll(1));
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(0, pool.discarded.size());
+    }
+
+
+    @Test
+    public void testMaxIdle() {
+        TesterPool pool = new TesterPool(1);
+
+        pool.offer(1, "a");
+        pool.offer(2, "b");
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(1, pool.discarded.size());
+        Assert.assertEquals("b", pool.discarded.get(0));
+
+        pool.setMaxIdle(2);
+        pool.offer(2, "c");
+        Assert.assertEquals(2, pool.getIdleCount());
+    }
+
+
+    @Test
+    public void testClear() {
+        TesterPool pool = new TesterPool(10);
+        pool.offer(1, "a");
+        pool.offer(2, "b");
+
+        pool.clear();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(2, pool.discarded.size());
+        Assert.assertNull(pool.poll(1));
+        Assert.assertNull(pool.poll(2));
+    }
+
+
+    private static class TesterPool extends KeyedIdlePool<String> {
+
+        private final List<String> discarded = new ArrayList<>();
+
+        TesterPool(int maxIdle) {
+            super(maxIdle);
+        }
+
+        @Override
+        protected void discard(String object) {
+            discarded.add(object);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/*
+ * Measures throughput and hit ratio of ConcurrentCache for a skewed key
+ * distribution that is larger than the cache, similar to the expression and
+ * bean property lookups performed by the EL implementation on a large
+ * application.
+ */
+public class TesterConcurrentCachePerformance {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int ITERATIONS = 1000000;
+    private static final int CACHE_SIZE = 1000;
+    private static final int KEY_COUNT = 10000;
+
+    @Test
+    public void testSkewedAccess() throws InterruptedException {
+        final ConcurrentCache<String,Object> cache = new ConcurrentCache<>(CACHE_SIZE);
+        final AtomicLong missCount = new AtomicLong();
+        final String[] keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "${bean" + i + ".property}";
+        }
+
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final long seed = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    long misses = 0;
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        // Roughly exponential distribution: low keys are much
+                        // more popular than high keys
+                        int index = (int) (-Math.log(1 - random.nextDouble()) * KEY_COUNT / 20);
+                        String key = keys[Math.min(index, KEY_COUNT - 1)];
+                        if (cache.get(key) == null) {
+                            misses++;
+                            cache.put(key, new Object());
+                        }
+                    }
+                    missCount.addAndGet(misses);
+                }
+            };
+        }
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i].start();
+        }
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i].join();
+        }
+        long end = System.currentTimeMillis();
+
+        long lookups = (long) THREAD_COUNT * ITERATIONS;
+        System.out.println("ConcurrentCache: " + (end - start) + "ms, hit ratio: " +
+                (double) (lookups - missCount.get()) / lookups);
+    }
+}
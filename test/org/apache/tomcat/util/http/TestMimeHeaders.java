@@ -16,6 +16,8 @@
  */
 package org.apache.tomcat.util.http;
 
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -61,4 +63,73 @@ public class TestMimeHeaders {
         Assert.assertEquals(HEADER_NAME_MIXED_STRING, mh.getValue(HEADER_NAME_MIXED_STRING).toString());
     }
 
+    @Test
+    public void testCommonHeaders() {
+        MimeHeaders mh = new MimeHeaders();
+        byte[] bytes = "content-lengthHOST".getBytes(StandardCharsets.ISO_8859_1);
+
+        mh.addValue("X-Other").setString("other");
+        mh.addValue(bytes, 0, 14).setString("10");
+        mh.addValue(bytes, 14, 4).setString("a");
+        mh.addValue("Host").setString("b");
+
+        Assert.assertEquals("10", mh.getHeader("Content-Length"));
+        Assert.assertEquals("10", mh.getUniqueValue("CONTENT-LENGTH").toString());
+        Assert.assertEquals("a", mh.getHeader("host"));
+        Assert.assertNull(mh.getValue("Cookie"));
+        Assert.assertNull(mh.getUniqueValue("cookie"));
+        try {
+            mh.getUniqueValue("Host");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+
+        // Removing a header moves the last header to its position so the
+        // second host header is now the first
+        mh.removeHeader("x-other");
+        Assert.assertEquals("10", mh.getHeader("content-length"));
+        Assert.assertEquals("b", mh.getHeader("host"));
+        mh.removeHeader("content-length");
+        Assert.assertNull(mh.getHeader("content-length"));
+        Assert.assertEquals("b", mh.getHeader("host"));
+
+        // Setting a header removes all the other values
+        mh.setValue("HOST").setString("c");
+        Assert.assertEquals(1, mh.size());
+        Assert.assertEquals("c", mh.getUniqueValue("host").toString());
+
+        mh.recycle();
+        Assert.assertNull(mh.getValue("host"));
+        mh.setValue("host").setString("d");
+        Assert.assertEquals("d", mh.getHeader("Host"));
+    }
+
+    @Test
+    public void testCommonHeadersDuplicate() throws Exception {
+        MimeHeaders source = new MimeHeaders();
+        source.addValue("Accept").setString("a");
+        source.addValue("accept").setString("b");
+        MimeHeaders mh = new MimeHeaders();
+        mh.duplicate(source);
+        Assert.assertEquals("a", mh.getHeader("ACCEPT"));
+        try {
+            mh.getUniqueValue("accept");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCommonHeadersNonAscii() {
+        // Only the String comparison treats the Kelvin sign as a 'k'
+        MimeHeaders mh = new MimeHeaders();
+        mh.addValue("\u212Aeep-alive").setString("a");
+        Assert.assertEquals("a", mh.getHeader("keep-alive"));
+        mh.recycle();
+        mh.addValue("keep-alive".getBytes(StandardCharsets.ISO_8859_1), 0, 10).setString("b");
+        Assert.assertNull(mh.getHeader("\u212Aeep-alive"));
+    }
+
 }
@@ -0,0 +1,67 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAcceptEncoding {
+
+    @Test
+    public void testSingle() throws Exception {
+        List<AcceptEncoding> actual = AcceptEncoding.parse(new StringReader("GZip"));
+
+        Assert.assertEquals(1, actual.size());
+        Assert.assertEquals("gzip", actual.get(0).getEncoding());
+        Assert.assertEquals(1, actual.get(0).getQuality(), 0.0001);
+    }
+
+    @Test
+    public void testMultiple() throws Exception {
+        List<AcceptEncoding> actual =
+                AcceptEncoding.parse(new StringReader("gzip;q=0.5, br , *;q=0"));
+
+        Assert.assertEquals(3, actual.size());
+        Assert.assertEquals("gzip", actual.get(0).getEncoding());
+        Assert.assertEquals(0.5, actual.get(0).getQuality(), 0.0001);
+        Assert.assertEquals("br", actual.get(1).getEncoding());
+        Assert.assertEquals(1, actual.get(1).getQuality(), 0.0001);
+        // Zero quality is retained as it excludes the coding
+        Assert.assertEquals("*", actual.get(2).getEncoding());
+        Assert.assertEquals(0, actual.get(2).getQuality(), 0.0001);
+    }
+
+    @Test
+    public void testMalformedQuality() throws Exception {
+        List<AcceptEncoding> actual =
+                AcceptEncoding.parse(new StringReader("gzip;q=2,deflate"));
+
+        Assert.assertEquals(2, actual.size());
+        Assert.assertEquals(0, actual.get(0).getQuality(), 0.0001);
+        Assert.assertEquals("deflate", actual.get(1).getEncoding());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        List<AcceptEncoding> actual = AcceptEncoding.parse(new StringReader(""));
+
+        Assert.assertEquals(0, actual.size());
+    }
+}
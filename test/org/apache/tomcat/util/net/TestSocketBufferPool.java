@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.TesterServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.modeler.Registry;
+
+public class TestSocketBufferPool extends TomcatBaseTest {
+
+    private static final int SIZE = 8192;
+
+    @Test
+    public void testReleaseAndReattach() {
+        SocketBufferPool pool = new SocketBufferPool(SIZE, SIZE, false, -1);
+        SocketBufferHandler handler = new SocketBufferHandler(pool);
+        Assert.assertEquals(2 * SIZE, pool.getAttachedBytes());
+        Assert.assertEquals(0, pool.getPooledBytes());
+
+        ByteBuffer readBuffer = handler.getReadBuffer();
+        readBuffer.put((byte) 'a');
+
+        // Unread data prevents the buffers being released
+        Assert.assertFalse(handler.release());
+        handler.configureReadBufferForRead();
+        Assert.assertEquals('a', handler.getReadBuffer().get());
+
+        Assert.assertTrue(handler.release());
+        Assert.assertTrue(handler.isReleased());
+        Assert.assertTrue(handler.isReadBufferEmpty());
+        Assert.assertTrue(handler.isWriteBufferEmpty());
+        Assert.assertEquals(0, pool.getAttachedBytes());
+        Assert.assertEquals(2 * SIZE, pool.getPooledBytes());
+        Assert.assertEquals(1, pool.getReleaseCount());
+
+        // Releasing again is a NO-OP
+        Assert.assertFalse(handler.release());
+
+        // The buffers are borrowed again, empty, when next used
+        handler.configureReadBufferForRead();
+        Assert.assertFalse(handler.isReleased());
+        Assert.assertSame(readBuffer, handler.getReadBuffer());
+        Assert.assertEquals(0, handler.getReadBuffer().remaining());
+        Assert.assertEquals(2 * SIZE, pool.getAttachedBytes());
+        Assert.assertEquals(0, pool.getPooledBytes());
+    }
+
+
+    @Test
+    public void testPendingWrite() {
+        SocketBufferPool pool = new SocketBufferPool(SIZE, SIZE, false, -1);
+        SocketBufferHandler handler = new SocketBufferHandler(pool);
+        handler.configureWriteBufferForWrite();
+        handler.getWriteBuffer().put((byte) 'a');
+        Assert.assertFalse(handler.release());
+        handler.reset();
+        Assert.assertTrue(handler.release());
+    }
+
+
+    @Test
+    public void testPoolLimit() {
+        SocketBufferPool pool = new SocketBufferPool(SIZE, SIZE, false, SIZE);
+        SocketBufferHandler handler = new SocketBufferHandler(pool);
+        Assert.assertTrue(handler.release());
+        // Only the read buffer fits in the pool
+        Assert.assertEquals(SIZE, pool.getPooledBytes());
+        Assert.assertEquals(0, pool.getAttachedBytes());
+
+        handler.getReadBuffer();
+        Assert.assertEquals(0, pool.getPooledBytes());
+        Assert.assertEquals(2 * SIZE, pool.getAttachedBytes());
+    }
+
+
+    @Test
+    public void testExpandedBuffersPooled() {
+        SocketBufferPool pool = new SocketBufferPool(SIZE, SIZE, false, -1);
+        SocketBufferHandler handler = new SocketBufferHandler(pool);
+        handler.configureReadBufferForWrite();
+        handler.getReadBuffer().put((byte) 'a');
+        handler.expand(2 * SIZE);
+        Assert.assertEquals(4 * SIZE, pool.getAttachedBytes());
+        // The buffers of the configured size are returned to the pool
+        Assert.assertEquals(2 * SIZE, pool.getPooledBytes());
+
+        // The data is retained
+        handler.configureReadBufferForRead();
+        Assert.assertEquals('a', handler.getReadBuffer().get());
+
+        ByteBuffer readBuffer = handler.getReadBuffer();
+        ByteBuffer writeBuffer = handler.getWriteBuffer();
+        Assert.assertTrue(handler.release());
+        Assert.assertEquals(0, pool.getAttachedBytes());
+        Assert.assertEquals(6 * SIZE, pool.getPooledBytes());
+
+        // Another connection that expands its buffers re-uses them
+        SocketBufferHandler handler2 = new SocketBufferHandler(pool);
+        Assert.assertEquals(4 * SIZE, pool.getPooledBytes());
+        handler2.expand(2 * SIZE);
+        Assert.assertEquals(4 * SIZE, pool.getAttachedBytes());
+        Assert.assertEquals(2 * SIZE, pool.getPooledBytes());
+        ByteBuffer readBuffer2 = handler2.getReadBuffer();
+        ByteBuffer writeBuffer2 = handler2.getWriteBuffer();
+        Assert.assertTrue(readBuffer2 == readBuffer || readBuffer2 == writeBuffer);
+        Assert.assertTrue(writeBuffer2 == readBuffer || writeBuffer2 == writeBuffer);
+        Assert.assertEquals(0, readBuffer2.position());
+    }
+
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        doTestKeepAlive(false);
+    }
+
+
+    @Test
+    public void testKeepAliveTls() throws Exception {
+        doTestKeepAlive(true);
+    }
+
+
+    private void doTestKeepAlive(boolean tls) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        String protocol = tomcat.getConnector().getProtocolHandlerClassName();
+        Assume.assumeTrue("This test is only for the NIO connector",
+                protocol.contains("Nio") && !protocol.contains("Nio2"));
+        Assert.assertTrue(tomcat.getConnector().setProperty("socket.releaseIdleBuffers", "true"));
+        if (tls) {
+            TesterSupport.initSsl(tomcat);
+        }
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "servlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/", "servlet");
+        tomcat.start();
+
+        MBeanServer mbeanServer = Registry.getRegistry(null, null).getMBeanServer();
+        Set<ObjectName> onames =
+                mbeanServer.queryNames(new ObjectName("Tomcat:type=ThreadPool,name=*"), null);
+        Assert.assertEquals(1, onames.size());
+        ObjectName oname = onames.iterator().next();
+
+        Socket socket;
+        if (tls) {
+            SSLContext sc = SSLContext.getInstance(Constants.SSL_PROTO_TLS);
+            sc.init(null, new TrustManager[] { new TesterSupport.TrustAllCerts() }, null);
+            socket = sc.getSocketFactory().createSocket("localhost", getPort());
+        } else {
+            socket = new Socket("localhost", getPort());
+        }
+        long pooledBytes = -1;
+        try {
+            OutputStream os = socket.getOutputStream();
+            InputStream is = socket.getInputStream();
+            for (int i = 1; i < 3; i++) {
+                os.write(("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(
+                        StandardCharsets.ISO_8859_1));
+                os.flush();
+                readResponse(is);
+
+                // The buffers are released once the connection is idle
+                int count = 0;
+                while (getLong(mbeanServer, oname, "socketBufferReleaseCount") < i &&
+                        count < 100) {
+                    Thread.sleep(50);
+                    count++;
+                }
+                Assert.assertEquals(i, getLong(mbeanServer, oname, "socketBufferReleaseCount"));
+                Assert.assertEquals(0, getLong(mbeanServer, oname, "socketBufferAttachedBytes"));
+                if (tls) {
+                    // The buffers are expanded to the application buffer size
+                    // of the TLS engine. Those are pooled along with the
+                    // buffers of the configured size they replaced.
+                    if (i == 1) {
+                        pooledBytes = getLong(mbeanServer, oname, "socketBufferPooledBytes");
+                        Assert.assertTrue(Long.toString(pooledBytes), pooledBytes > 4 * SIZE);
+                    } else {
+                        // The pooled buffers were re-used
+                        Assert.assertEquals(pooledBytes,
+                                getLong(mbeanServer, oname, "socketBufferPooledBytes"));
+                    }
+                } else {
+                    Assert.assertEquals(2 * SIZE,
+                            getLong(mbeanServer, oname, "socketBufferPooledBytes"));
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+
+    private static long getLong(MBeanServer mbeanServer, ObjectName oname, String name)
+            throws Exception {
+        return ((Long) mbeanServer.getAttribute(oname, name)).longValue();
+    }
+
+
+    private static void readResponse(InputStream is) throws Exception {
+        // TesterServlet responds with "OK" and a content length
+        StringBuilder sb = new StringBuilder();
+        while (!sb.toString().endsWith("\r\n\r\nOK")) {
+            int b = is.read();
+            Assert.assertTrue(sb.toString(), b != -1);
+            sb.append((char) b);
+        }
+    }
+}
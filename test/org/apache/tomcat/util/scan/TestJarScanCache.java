@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.scan;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.startup.LoggingBaseTest;
+
+public class TestJarScanCache extends LoggingBaseTest {
+
+    private static final int MAGIC = 0x54455354;
+
+    private static final JarScanCache.Serializer<String> SERIALIZER =
+            new JarScanCache.Serializer<String>() {
+
+        @Override
+        public void write(DataOutputStream out, String value) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInputStream in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+
+    @Test
+    public void testPersistence() throws Exception {
+        File dir = createDirectory("persistence");
+        File cacheFile = new File(dir, "cache.dat");
+        File jar1 = createJar(dir, "one.jar");
+        File jar2 = createJar(dir, "two.jar");
+
+        JarScanCache<String> cache = JarScanCache.load(cacheFile, MAGIC, 1, SERIALIZER);
+        Assert.assertNull(cache.get("one", jar1));
+        cache.put("one", jar1, "result-1");
+        cache.put("two", jar2, "result-2");
+        cache.save();
+        Assert.assertTrue(cacheFile.isFile());
+        Assert.assertFalse(new File(dir, "cache.dat.new").exists());
+
+        // Modify one JAR
+        try (OutputStream os = new FileOutputStream(jar2, true)) {
+            os.write(1);
+        }
+
+        cache = JarScanCache.load(cacheFile, MAGIC, 1, SERIALIZER);
+        Assert.assertEquals("result-1", cache.get("one", jar1));
+        Assert.assertNull(cache.get("two", jar2));
+
+        // Results for a different version are ignored
+        cache = JarScanCache.load(cacheFile, MAGIC, 2, SERIALIZER);
+        Assert.assertNull(cache.get("one", jar1));
+    }
+
+
+    @Test
+    public void testUnchangedNotWritten() throws Exception {
+        File dir = createDirectory("unchanged");
+        File cacheFile = new File(dir, "cache.dat");
+        File jar = createJar(dir, "one.jar");
+
+        JarScanCache<String> cache = JarScanCache.load(cacheFile, MAGIC, 1, SERIALIZER);
+        cache.put("one", jar, "result");
+        cache.save();
+        long lastModified = cacheFile.lastModified() - 60000;
+        Assert.assertTrue(cacheFile.setLastModified(lastModified));
+
+        // Same result for the same JAR
+        cache = JarScanCache.load(cacheFile, MAGIC, 1, SERIALIZER);
+        cache.put("one", jar, "result");
+        cache.save();
+        Assert.assertEquals(lastModified, cacheFile.lastModified());
+
+        // JAR no longer present
+        cache = JarScanCache.load(cacheFile, MAGIC, 1, SERIALIZER);
+        cache.save();
+        Assert.assertTrue(lastModified != cacheFile.lastModified());
+    }
+
+
+    @Test
+    public void testGetJarFile() throws Exception {
+        File dir = createDirectory("jarfile");
+        File jar = createJar(dir, "one.jar");
+
+        Assert.assertEquals(jar.getCanonicalFile(),
+                JarScanCache.getJarFile(jar.toURI().toURL()).getCanonicalFile());
+        Assert.assertEquals(jar.getCanonicalFile(), JarScanCache.getJarFile(
+                new URL("jar:" + jar.toURI().toURL() + "!/")).getCanonicalFile());
+        Assert.assertNull(JarScanCache.getJarFile(dir.toURI().toURL()));
+    }
+
+
+    private File createDirectory(String name) {
+        File dir = new File(getTemporaryDirectory(), name);
+        Assert.assertTrue(dir.mkdirs());
+        addDeleteOnTearDown(dir);
+        return dir;
+    }
+
+
+    private static File createJar(File dir, String name) throws IOException {
+        File jar = new File(dir, name);
+        try (OutputStream os = new FileOutputStream(jar)) {
+            os.write(new byte[] { 1, 2, 3 });
+        }
+        return jar;
+    }
+}
@@ -22,10 +22,13 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import javax.websocket.Extension;
 import javax.websocket.Extension.Parameter;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 public class TestPerMessageDeflate {
@@ -60,6 +63,158 @@ public class TestPerMessageDeflate {
     }
 
 
+    @Test
+    public void testReleaseWhenIdle() throws IOException {
+        PerMessageDeflatePool serverPool = new PerMessageDeflatePool();
+        serverPool.setReleaseWhenIdle(true);
+
+        // Client offers the defaults
+        List<List<Parameter>> preferences = new ArrayList<>();
+        preferences.add(Collections.<Parameter>emptyList());
+
+        PerMessageDeflate server = PerMessageDeflate.negotiate(preferences, true, serverPool);
+        server.setNext(new TesterTransformation());
+        Assert.assertTrue(server.isReleaseWhenIdle());
+
+        // Server adds the no context takeover parameters to the response
+        List<Parameter> response = server.getExtensionResponse().getParameters();
+        Assert.assertEquals(2, response.size());
+        Assert.assertEquals("server_no_context_takeover", response.get(0).getName());
+        Assert.assertEquals("client_no_context_takeover", response.get(1).getName());
+
+        PerMessageDeflatePool clientPool = new PerMessageDeflatePool();
+        clientPool.setReleaseWhenIdle(true);
+        List<List<Parameter>> agreed = new ArrayList<>();
+        agreed.add(response);
+        PerMessageDeflate client = PerMessageDeflate.negotiate(agreed, false, clientPool);
+        TesterSourceTransformation source = new TesterSourceTransformation();
+        client.setNext(source);
+        Assert.assertTrue(client.isReleaseWhenIdle());
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("Hello World ");
+        }
+        byte[] message = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 2; i++) {
+            List<MessagePart> uncompressedParts = new ArrayList<>();
+            uncompressedParts.add(new MessagePart(true, 0, Constants.OPCODE_TEXT,
+                    ByteBuffer.wrap(message), null, null, -1));
+            List<MessagePart> compressedParts = server.sendMessagePart(uncompressedParts);
+            Assert.assertEquals(1, compressedParts.size());
+            MessagePart compressedPart = compressedParts.get(0);
+
+            // Compression state is returned once the message has been written
+            Assert.assertEquals(1, serverPool.getIdleCount());
+
+            source.setSource(compressedPart.getPayload());
+            ByteBuffer dest = ByteBuffer.allocate(message.length * 2);
+            TransformationResult tr;
+            do {
+                tr = client.getMoreData(Constants.OPCODE_TEXT, true, compressedPart.getRsv(), dest);
+            } while (!TransformationResult.END_OF_FRAME.equals(tr));
+            dest.flip();
+            Assert.assertEquals(ByteBuffer.wrap(message), dest);
+
+            // Decompression state is returned once the message has been read
+            Assert.assertEquals(1, clientPool.getIdleCount());
+        }
+
+        // The pooled state was re-used for the second message
+        Assert.assertEquals(1, serverPool.getCreatedCount());
+        Assert.assertEquals(1, clientPool.getCreatedCount());
+
+        Assert.assertEquals(message.length * 2, server.getSentUncompressedBytes());
+        Assert.assertTrue(server.getSentCompressedBytes() < message.length);
+        Assert.assertEquals(server.getSentCompressedBytes(), client.getReceivedCompressedBytes());
+        Assert.assertEquals(message.length * 2, client.getReceivedUncompressedBytes());
+
+        server.close();
+        client.close();
+    }
+
+
+    @Test
+    public void testPoolMaxIdle() {
+        PerMessageDeflatePool pool = new PerMessageDeflatePool();
+        pool.setMaxIdle(1);
+
+        Deflater deflater1 = pool.getDeflater();
+        Deflater deflater2 = pool.getDeflater();
+        Inflater inflater = pool.getInflater();
+        Assert.assertEquals(3, pool.getCreatedCount());
+
+        pool.returnDeflater(deflater1);
+        pool.returnDeflater(deflater2);
+        pool.returnInflater(inflater);
+        // The limit applies to Deflaters and Inflaters separately
+        Assert.assertEquals(2, pool.getIdleCount());
+
+        Assert.assertSame(deflater1, pool.getDeflater());
+        Assert.assertSame(inflater, pool.getInflater());
+        Assert.assertEquals(0, pool.getIdleCount());
+
+        pool.returnDeflater(deflater1);
+        pool.returnInflater(inflater);
+        pool.clear();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertNotSame(deflater1, pool.getDeflater());
+    }
+
+
+    @Test
+    public void testClientMaxWindowBits() {
+        PerMessageDeflatePool pool = new PerMessageDeflatePool();
+        pool.setClientMaxWindowBits(10);
+
+        // Client indicates support for client_max_window_bits
+        List<Parameter> parameters = new ArrayList<>();
+        parameters.add(new WsExtensionParameter("client_max_window_bits", null));
+        List<List<Parameter>> preferences = new ArrayList<>();
+        preferences.add(parameters);
+
+        PerMessageDeflate perMessageDeflate =
+                PerMessageDeflate.negotiate(preferences, true, pool);
+        List<Parameter> response = perMessageDeflate.getExtensionResponse().getParameters();
+        Assert.assertEquals(1, response.size());
+        Assert.assertEquals("client_max_window_bits", response.get(0).getName());
+        Assert.assertEquals("10", response.get(0).getValue());
+        Assert.assertFalse(perMessageDeflate.isReleaseWhenIdle());
+
+        // Client does not support client_max_window_bits
+        preferences.clear();
+        preferences.add(Collections.<Parameter>emptyList());
+        perMessageDeflate = PerMessageDeflate.negotiate(preferences, true, pool);
+        Assert.assertEquals(0, perMessageDeflate.getExtensionResponse().getParameters().size());
+    }
+
+
+    /*
+     * Provides the data from a buffer as a single frame.
+     */
+    private static class TesterSourceTransformation extends TesterTransformation {
+
+        private ByteBuffer source;
+
+        public void setSource(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public TransformationResult getMoreData(byte opCode, boolean fin, int rsv, ByteBuffer dest)
+                throws IOException {
+            while (source.hasRemaining() && dest.hasRemaining()) {
+                dest.put(source.get());
+            }
+            if (source.hasRemaining()) {
+                return TransformationResult.OVERFLOW;
+            }
+            return TransformationResult.END_OF_FRAME;
+        }
+    }
+
+
     /*
      * Minimal implementation to enable other transformations to be tested.
      */
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.Session;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicBinary;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicText;
+import org.apache.tomcat.websocket.TesterMessageCountClient.TesterProgrammaticEndpoint;
+import org.apache.tomcat.websocket.server.Constants;
+
+public class TestWsBufferPool extends WebSocketBaseTest {
+
+    @Test
+    public void testPoolReuse() {
+        WsBufferPool pool = new WsBufferPool();
+
+        ByteBuffer bb = pool.getByteBuffer(16);
+        bb.put((byte) 1);
+        pool.returnByteBuffer(bb);
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        // Different capacity so a new buffer is required
+        ByteBuffer bb2 = pool.getByteBuffer(32);
+        Assert.assertNotSame(bb, bb2);
+
+        ByteBuffer bb3 = pool.getByteBuffer(16);
+        Assert.assertSame(bb, bb3);
+        Assert.assertEquals(0, bb3.position());
+        Assert.assertEquals(16, bb3.limit());
+
+        CharBuffer cb = pool.getCharBuffer(16);
+        pool.returnCharBuffer(cb);
+        Assert.assertSame(cb, pool.getCharBuffer(16));
+
+        Assert.assertEquals(3, pool.getCreatedCount());
+        Assert.assertEquals(0, pool.getDiscardedCount());
+        Assert.assertEquals(3, pool.getActiveCount());
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+
+
+    @Test
+    public void testMaxIdle() {
+        WsBufferPool pool = new WsBufferPool();
+        pool.setMaxIdle(1);
+
+        ByteBuffer bb1 = pool.getByteBuffer(16);
+        ByteBuffer bb2 = pool.getByteBuffer(16);
+        pool.returnByteBuffer(bb1);
+        pool.returnByteBuffer(bb2);
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getDiscardedCount());
+        Assert.assertEquals(0, pool.getActiveCount());
+
+        pool.clear();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(2, pool.getDiscardedCount());
+        Assert.assertEquals(0, pool.getActiveCount());
+    }
+
+
+    @Test
+    public void testPooledEcho() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        ctx.addParameter(Constants.POOLED_BUFFERS_SERVLET_CONTEXT_INIT_PARAM, "true");
+        ctx.addApplicationListener(TesterEchoServer.Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        WsWebSocketContainer wsContainer = new WsWebSocketContainer();
+        wsContainer.setPooledBuffers(true);
+
+        Session wsSession = wsContainer.connectToServer(
+                TesterProgrammaticEndpoint.class,
+                ClientEndpointConfig.Builder.create().build(),
+                new URI("ws://localhost:" + getPort() +
+                        TesterEchoServer.Config.PATH_BASIC));
+
+        // Large enough to need more than one read of the input buffer
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 800; i++) {
+            sb.append("0123456789");
+        }
+        String text = sb.toString();
+        byte[] binary = text.getBytes("UTF-8");
+
+        int count = 10;
+        CountDownLatch latch = new CountDownLatch(count * 2);
+        BasicText textHandler = new BasicText(latch);
+        BasicBinary binaryHandler = new BasicBinary(latch);
+        wsSession.addMessageHandler(textHandler);
+        wsSession.addMessageHandler(binaryHandler);
+
+        for (int i = 0; i < count; i++) {
+            wsSession.getBasicRemote().sendText(text);
+            wsSession.getBasicRemote().sendBinary(ByteBuffer.wrap(binary));
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        for (String message : textHandler.getMessages()) {
+            Assert.assertEquals(text, message);
+        }
+        for (ByteBuffer message : binaryHandler.getMessages()) {
+            Assert.assertEquals(ByteBuffer.wrap(binary), message);
+        }
+
+        WsBufferPool serverPool = ((WsWebSocketContainer) ctx.getServletContext().getAttribute(
+                Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE)).getBufferPool();
+        WsBufferPool clientPool = wsContainer.getBufferPool();
+
+        // Buffers are returned once the message handler has completed
+        int wait = 0;
+        while ((serverPool.getActiveCount() > 0 || clientPool.getActiveCount() > 0) &&
+                wait < 50) {
+            Thread.sleep(100);
+            wait++;
+        }
+
+        // Idle sessions hold no buffers but buffers have been reused
+        Assert.assertEquals(0, serverPool.getActiveCount());
+        Assert.assertEquals(0, clientPool.getActiveCount());
+        Assert.assertTrue(serverPool.getCreatedCount() < count);
+        Assert.assertTrue(clientPool.getCreatedCount() < count);
+
+        wsSession.close();
+    }
+}
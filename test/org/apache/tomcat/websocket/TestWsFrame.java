@@ -17,6 +17,8 @@
 package org.apache.tomcat.websocket;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -46,4 +48,44 @@ public class TestWsFrame {
                 WsFrameBase.byteArrayToLong(new byte[] { 20, -1, -1, -1 }, 1, 3));
     }
 
+
+    @Test
+    public void testUnmask() {
+        doTestUnmask(ByteBuffer.allocate(64));
+    }
+
+
+    @Test
+    public void testUnmaskLittleEndian() {
+        doTestUnmask(ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+
+    @Test
+    public void testUnmaskDirect() {
+        doTestUnmask(ByteBuffer.allocateDirect(64));
+    }
+
+
+    private void doTestUnmask(ByteBuffer buffer) {
+        byte[] mask = new byte[] { 0x12, (byte) 0xAB, 0x7F, (byte) 0x80 };
+        for (int start = 0; start < 8; start++) {
+            for (int length = 0; length < 40; length++) {
+                for (int maskIndex = 0; maskIndex < 4; maskIndex++) {
+                    for (int i = 0; i < buffer.capacity(); i++) {
+                        buffer.put(i, (byte) (i * 31));
+                    }
+                    int result = WsFrameBase.unmask(buffer, start, length, mask, maskIndex);
+                    Assert.assertEquals((maskIndex + length) % 4, result);
+                    for (int i = 0; i < buffer.capacity(); i++) {
+                        byte expected = (byte) (i * 31);
+                        if (i >= start && i < start + length) {
+                            expected ^= mask[(maskIndex + i - start) % 4];
+                        }
+                        Assert.assertEquals(expected, buffer.get(i));
+                    }
+                }
+            }
+        }
+    }
 }
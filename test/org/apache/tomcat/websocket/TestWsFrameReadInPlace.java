@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContextEvent;
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.ServerContainer;
+import javax.websocket.server.ServerEndpoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicBinary;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicText;
+import org.apache.tomcat.websocket.TesterMessageCountClient.TesterProgrammaticEndpoint;
+import org.apache.tomcat.websocket.server.WsContextListener;
+
+public class TestWsFrameReadInPlace extends WebSocketBaseTest {
+
+    private static final int BINARY_SIZE = 100 * 1024;
+
+    @Test
+    public void testReadInPlace() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        WsWebSocketContainer wsContainer = new WsWebSocketContainer();
+        // Large enough for the echoed binary message to be read directly into
+        // an exactly sized buffer
+        wsContainer.setDefaultMaxBinaryMessageBufferSize(2 * BINARY_SIZE);
+
+        Session wsSession = wsContainer.connectToServer(
+                TesterProgrammaticEndpoint.class,
+                ClientEndpointConfig.Builder.create().build(),
+                new URI("ws://localhost:" + getPort() + Config.PATH));
+
+        // Multi-byte sequences will be split across reads
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("a\u00e9\u4e2d\ud83d\ude00");
+        }
+        String text = sb.toString();
+        byte[] binary = new byte[BINARY_SIZE];
+        new Random().nextBytes(binary);
+
+        int count = 5;
+        CountDownLatch latch = new CountDownLatch(count * 2);
+        BasicText textHandler = new BasicText(latch);
+        BasicBinary binaryHandler = new BasicBinary(latch);
+        wsSession.addMessageHandler(textHandler);
+        wsSession.addMessageHandler(binaryHandler);
+
+        for (int i = 0; i < count; i++) {
+            wsSession.getBasicRemote().sendText(text);
+            wsSession.getBasicRemote().sendBinary(ByteBuffer.wrap(binary));
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        for (String message : textHandler.getMessages()) {
+            Assert.assertEquals(text, message);
+        }
+        for (ByteBuffer message : binaryHandler.getMessages()) {
+            Assert.assertEquals(ByteBuffer.wrap(binary), message);
+        }
+        // Every part of every message was a view of the same input buffer
+        Assert.assertFalse(Echo.copied);
+
+        wsSession.close();
+    }
+
+
+    public static class Config extends WsContextListener {
+
+        public static final String PATH = "/readInPlace";
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            super.contextInitialized(sce);
+            ServerContainer sc = (ServerContainer) sce.getServletContext().getAttribute(
+                    org.apache.tomcat.websocket.server.Constants.
+                    SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+            try {
+                sc.addEndpoint(Echo.class);
+            } catch (DeploymentException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+
+    @ServerEndpoint(Config.PATH)
+    public static class Echo {
+
+        private static volatile boolean copied = false;
+
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private byte[] inputArray = null;
+
+        @OnOpen
+        public void onOpen(Session session) {
+            session.getUserProperties().put(Constants.READ_IN_PLACE_PROPERTY, Boolean.TRUE);
+        }
+
+
+        @OnMessage
+        public void echoTextMessage(Session session, String msg) throws IOException {
+            session.getBasicRemote().sendText(msg);
+        }
+
+
+        @OnMessage
+        public void echoBinaryMessage(Session session, ByteBuffer msg, boolean last)
+                throws IOException {
+            if (inputArray == null) {
+                inputArray = msg.array();
+            } else if (inputArray != msg.array()) {
+                copied = true;
+            }
+            received.write(msg.array(), msg.arrayOffset() + msg.position(), msg.remaining());
+            if (last) {
+                session.getBasicRemote().sendBinary(ByteBuffer.wrap(received.toByteArray()));
+                received.reset();
+            }
+        }
+    }
+}
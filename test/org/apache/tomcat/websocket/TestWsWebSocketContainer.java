@@ -1009,10 +1009,26 @@ public class TestWsWebSocketContainer extends WebSocketBaseTest {
     }
 
 
+    @Test
+    public void testPerMessageDeflateReleaseWhenIdle() throws Exception {
+        doTestPerMessageDeflateClient(MESSAGE_STRING_1, 2, true);
+    }
+
+
     private void doTestPerMessageDeflateClient(String msg, int count) throws Exception {
+        doTestPerMessageDeflateClient(msg, count, false);
+    }
+
+
+    private void doTestPerMessageDeflateClient(String msg, int count, boolean releaseWhenIdle)
+            throws Exception {
         Tomcat tomcat = getTomcatInstance();
         // No file system docBase required
         Context ctx = tomcat.addContext("", null);
+        if (releaseWhenIdle) {
+            ctx.addParameter(org.apache.tomcat.websocket.server.Constants.
+                    DEFLATE_RELEASE_WHEN_IDLE_SERVLET_CONTEXT_INIT_PARAM, "true");
+        }
         ctx.addApplicationListener(TesterEchoServer.Config.class.getName());
         Tomcat.addServlet(ctx, "default", new DefaultServlet());
         ctx.addServletMappingDecoded("/", "default");
@@ -1028,6 +1044,8 @@ public class TestWsWebSocketContainer extends WebSocketBaseTest {
 
         WebSocketContainer wsContainer =
                 ContainerProvider.getWebSocketContainer();
+        ((WsWebSocketContainer) wsContainer).getPerMessageDeflatePool().setReleaseWhenIdle(
+                releaseWhenIdle);
         Session wsSession = wsContainer.connectToServer(
                 TesterProgrammaticEndpoint.class,
                 clientConfig,
@@ -1044,6 +1062,16 @@ public class TestWsWebSocketContainer extends WebSocketBaseTest {
 
         Assert.assertTrue(latchResult);
 
+        PerMessageDeflate clientDeflate = ((WsSession) wsSession).getPerMessageDeflate();
+        Assert.assertNotNull(clientDeflate);
+        // The server negotiated no context takeover in both directions
+        Assert.assertEquals(Boolean.valueOf(releaseWhenIdle),
+                Boolean.valueOf(clientDeflate.isReleaseWhenIdle()));
+        if (msg.length() > 0) {
+            Assert.assertTrue(clientDeflate.getSentCompressedBytes() > 0);
+            Assert.assertTrue(clientDeflate.getReceivedUncompressedBytes() > 0);
+        }
+
         ((WsWebSocketContainer) wsContainer).destroy();
     }
 
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.Session;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicText;
+import org.apache.tomcat.websocket.TesterMessageCountClient.TesterProgrammaticEndpoint;
+import org.apache.tomcat.websocket.server.Constants;
+
+/*
+ * Measures the heap retained per idle session (client and server side
+ * combined) with and without pooled buffers. Each session sends and receives
+ * a text message before it is left idle so any lazily allocated buffers have
+ * been used at least once.
+ */
+public class TesterWsBufferPoolPerformance extends WebSocketBaseTest {
+
+    private static final int SESSIONS = 500;
+
+    @Test
+    public void testUnpooled() throws Exception {
+        doTestIdleSessions(false);
+    }
+
+
+    @Test
+    public void testPooled() throws Exception {
+        doTestIdleSessions(true);
+    }
+
+
+    private void doTestIdleSessions(boolean pooled) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        ctx.addParameter(Constants.POOLED_BUFFERS_SERVLET_CONTEXT_INIT_PARAM,
+                Boolean.toString(pooled));
+        ctx.addApplicationListener(TesterEchoServer.Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        WsWebSocketContainer wsContainer = new WsWebSocketContainer();
+        wsContainer.setPooledBuffers(pooled);
+        URI uri = new URI("ws://localhost:" + getPort() + TesterEchoServer.Config.PATH_BASIC);
+
+        // Warm up so class loading etc. is not included in the measurement
+        for (Session session : openSessions(wsContainer, uri, 10)) {
+            session.close();
+        }
+
+        long before = usedMemory();
+        List<Session> sessions = openSessions(wsContainer, uri, SESSIONS);
+        long after = usedMemory();
+
+        System.out.println("Pooled buffers [" + pooled + "], sessions [" + SESSIONS +
+                "], bytes per idle session [" + (after - before) / SESSIONS + "]");
+        if (pooled) {
+            WsBufferPool serverPool = ((WsWebSocketContainer) ctx.getServletContext().getAttribute(
+                    Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE)).getBufferPool();
+            System.out.println("Server pool: created [" + serverPool.getCreatedCount() +
+                    "], discarded [" + serverPool.getDiscardedCount() + "], idle [" +
+                    serverPool.getIdleCount() + "]");
+            WsBufferPool clientPool = wsContainer.getBufferPool();
+            System.out.println("Client pool: created [" + clientPool.getCreatedCount() +
+                    "], discarded [" + clientPool.getDiscardedCount() + "], idle [" +
+                    clientPool.getIdleCount() + "]");
+        }
+
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+
+    private static List<Session> openSessions(WsWebSocketContainer wsContainer, URI uri,
+            int count) throws Exception {
+        List<Session> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Session session = wsContainer.connectToServer(TesterProgrammaticEndpoint.class,
+                    ClientEndpointConfig.Builder.create().build(), uri);
+            CountDownLatch latch = new CountDownLatch(1);
+            session.addMessageHandler(new BasicText(latch));
+            session.getBasicRemote().sendText("Hello");
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            result.add(session);
+        }
+        return result;
+    }
+
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
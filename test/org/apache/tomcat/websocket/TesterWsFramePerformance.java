@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContextEvent;
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.ServerContainer;
+import javax.websocket.server.ServerEndpoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.TesterMessageCountClient.TesterProgrammaticEndpoint;
+import org.apache.tomcat.websocket.server.WsContextListener;
+
+/*
+ * Measures the time taken for the server to read and deliver masked frames
+ * sent by the client. Small frames use the single byte length encoding, large
+ * frames span several reads of the input buffer.
+ */
+public class TesterWsFramePerformance extends WebSocketBaseTest {
+
+    private static final int SMALL = 125;
+    private static final int LARGE = 64 * 1024;
+    private static final long TOTAL_BYTES = 128L * 1024 * 1024;
+
+    private static volatile CountDownLatch latch;
+
+    @Test
+    public void testSmallBinary() throws Exception {
+        doTest(Config.PATH_WHOLE, SMALL, false);
+    }
+
+
+    @Test
+    public void testSmallBinaryInPlace() throws Exception {
+        doTest(Config.PATH_IN_PLACE, SMALL, false);
+    }
+
+
+    @Test
+    public void testSmallText() throws Exception {
+        doTest(Config.PATH_WHOLE, SMALL, true);
+    }
+
+
+    @Test
+    public void testLargeBinary() throws Exception {
+        doTest(Config.PATH_WHOLE, LARGE, false);
+    }
+
+
+    @Test
+    public void testLargeBinaryInPlace() throws Exception {
+        doTest(Config.PATH_IN_PLACE, LARGE, false);
+    }
+
+
+    @Test
+    public void testLargeText() throws Exception {
+        doTest(Config.PATH_WHOLE, LARGE, true);
+    }
+
+
+    private void doTest(String path, int size, boolean text) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        ctx.addParameter(org.apache.tomcat.websocket.server.Constants.
+                BINARY_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM, Integer.toString(LARGE));
+        ctx.addParameter(org.apache.tomcat.websocket.server.Constants.
+                TEXT_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM, Integer.toString(LARGE));
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        WsWebSocketContainer wsContainer = new WsWebSocketContainer();
+        Session wsSession = wsContainer.connectToServer(TesterProgrammaticEndpoint.class,
+                ClientEndpointConfig.Builder.create().build(),
+                new URI("ws://localhost:" + getPort() + path));
+
+        byte[] payload = new byte[size];
+        Arrays.fill(payload, (byte) 'x');
+        String payloadText = new String(payload, "UTF-8");
+        int count = (int) (TOTAL_BYTES / size);
+
+        // Warm up
+        send(wsSession, payload, payloadText, text, count / 10);
+
+        long start = System.nanoTime();
+        send(wsSession, payload, payloadText, text, count);
+        long duration = System.nanoTime() - start;
+
+        System.out.println("Path [" + path + "], text [" + text + "], frame size [" + size +
+                "], frames [" + count + "], time [" + duration / 1000000 + "] ms, throughput [" +
+                TOTAL_BYTES * 1000 / duration + "] MB/s");
+
+        wsSession.close();
+    }
+
+
+    private static void send(Session wsSession, byte[] payload, String payloadText, boolean text,
+            int count) throws Exception {
+        latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            if (text) {
+                wsSession.getBasicRemote().sendText(payloadText);
+            } else {
+                wsSession.getBasicRemote().sendBinary(ByteBuffer.wrap(payload));
+            }
+        }
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+    }
+
+
+    public static class Config extends WsContextListener {
+
+        public static final String PATH_WHOLE = "/whole";
+        public static final String PATH_IN_PLACE = "/inPlace";
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            super.contextInitialized(sce);
+            ServerContainer sc = (ServerContainer) sce.getServletContext().getAttribute(
+                    org.apache.tomcat.websocket.server.Constants.
+                    SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+            try {
+                sc.addEndpoint(Whole.class);
+                sc.addEndpoint(InPlace.class);
+            } catch (DeploymentException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+
+    @ServerEndpoint(Config.PATH_WHOLE)
+    public static class Whole {
+
+        @OnMessage
+        public void onText(@SuppressWarnings("unused") String msg) {
+            latch.countDown();
+        }
+
+
+        @OnMessage
+        public void onBinary(@SuppressWarnings("unused") ByteBuffer msg) {
+            latch.countDown();
+        }
+    }
+
+
+    @ServerEndpoint(Config.PATH_IN_PLACE)
+    public static class InPlace {
+
+        @OnOpen
+        public void onOpen(Session session) {
+            session.getUserProperties().put(Constants.READ_IN_PLACE_PROPERTY, Boolean.TRUE);
+        }
+
+
+        @OnMessage
+        public void onBinary(@SuppressWarnings("unused") ByteBuffer msg, boolean last) {
+            if (last) {
+                latch.countDown();
+            }
+        }
+    }
+}
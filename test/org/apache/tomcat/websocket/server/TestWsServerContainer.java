@@ -17,13 +17,18 @@
 package org.apache.tomcat.websocket.server;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import javax.websocket.ContainerProvider;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
+import javax.websocket.server.ServerEndpoint;
 import javax.websocket.server.ServerEndpointConfig;
 
 import org.junit.Assert;
@@ -204,4 +209,96 @@ public class TestWsServerContainer extends WebSocketBaseTest {
         Assert.assertEquals(configA, sc.findMapping("/a/x/y").getConfig());
         Assert.assertEquals(configB, sc.findMapping("/a/b/y").getConfig());
     }
+
+
+    @Test
+    public void testBroadcast() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        ctx.addApplicationListener(BroadcastConfig.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        WebSocketContainer wsContainer =
+                ContainerProvider.getWebSocketContainer();
+
+        tomcat.start();
+
+        URI uri = new URI("ws://localhost:" + getPort() + BroadcastEndpoint.PATH);
+
+        int count = 3;
+        CountDownLatch latch = new CountDownLatch(count * 2);
+        List<Session> sessions = new ArrayList<>();
+        List<BasicText> handlers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Session session = wsContainer.connectToServer(new SimpleClient(), uri);
+            BasicText handler = new BasicText(latch);
+            session.addMessageHandler(handler);
+            sessions.add(session);
+            handlers.add(handler);
+        }
+
+        // Wait for all the sessions to be open on the server
+        WsServerContainer sc = (WsServerContainer) ctx.getServletContext().getAttribute(
+                Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+        int wait = 0;
+        while (BroadcastEndpoint.openSessions < count && wait < 50) {
+            Thread.sleep(100);
+            wait++;
+        }
+
+        // Each message is sent to every session. The second message is sent
+        // once the first has been received so it is not dropped.
+        sessions.get(0).getBasicRemote().sendText("first");
+        wait = 0;
+        while (latch.getCount() > count && wait < 100) {
+            Thread.sleep(100);
+            wait++;
+        }
+        sessions.get(count - 1).getBasicRemote().sendText("second");
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (BasicText handler : handlers) {
+            Queue<String> messages = handler.getMessages();
+            Assert.assertEquals(2, messages.size());
+            Assert.assertEquals("first", messages.poll());
+            Assert.assertEquals("second", messages.poll());
+        }
+        Assert.assertEquals(count * 2, sc.getBroadcastSentCount());
+        Assert.assertEquals(0, sc.getBroadcastDroppedCount());
+
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+
+    public static class BroadcastConfig extends TesterEndpointConfig {
+
+        @Override
+        protected Class<?> getEndpointClass() {
+            return BroadcastEndpoint.class;
+        }
+    }
+
+
+    @ServerEndpoint(BroadcastEndpoint.PATH)
+    public static class BroadcastEndpoint {
+
+        public static final String PATH = "/broadcast";
+
+        private static volatile int openSessions = 0;
+
+        @OnOpen
+        public void onOpen(Session session) {
+            openSessions = session.getOpenSessions().size();
+        }
+
+        @OnMessage
+        public void onMessage(Session session, String message) {
+            ((WsServerContainer) session.getContainer()).broadcast(
+                    session.getOpenSessions(), message);
+        }
+    }
 }